@@ -6,8 +6,10 @@ import android.util.Log;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Random;
 
 import de.danoeh.antennapod.model.feed.FeedFile;
+import de.danoeh.antennapod.model.feed.FeedMedia;
 import de.danoeh.antennapod.storage.preferences.UserPreferences;
 import de.danoeh.antennapod.net.download.serviceinterface.DownloadRequest;
 import de.danoeh.antennapod.model.download.DownloadStatus;
@@ -15,10 +17,12 @@ import de.danoeh.antennapod.core.service.download.Downloader;
 import de.danoeh.antennapod.core.service.download.HttpDownloader;
 import de.danoeh.antennapod.model.download.DownloadError;
 import de.test.antennapod.util.service.download.HTTPBin;
+import org.apache.commons.io.FileUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -46,6 +50,7 @@ public class HttpDownloaderTest {
         }
 
         httpServer.stop();
+        HttpDownloader.setMinSegmentedSize(0);
     }
 
     @Before
@@ -58,10 +63,15 @@ public class HttpDownloaderTest {
         httpServer.start();
         url404 = httpServer.getBaseUrl() + "/status/404";
         urlAuth = httpServer.getBaseUrl() + "/basic-auth/user/passwd";
+        HttpDownloader.setMinSegmentedSize(256 * 1024);
     }
 
     private FeedFileImpl setupFeedFile(String downloadUrl, String title, boolean deleteExisting) {
-        FeedFileImpl feedfile = new FeedFileImpl(downloadUrl);
+        return setupFeedFile(downloadUrl, title, deleteExisting, 0);
+    }
+
+    private FeedFileImpl setupFeedFile(String downloadUrl, String title, boolean deleteExisting, int type) {
+        FeedFileImpl feedfile = new FeedFileImpl(downloadUrl, type);
         String fileUrl = new File(destDir, title).getAbsolutePath();
         File file = new File(fileUrl);
         if (deleteExisting) {
@@ -161,6 +171,89 @@ public class HttpDownloaderTest {
         assertEquals(DownloadError.ERROR_UNAUTHORIZED, downloader.getResult().getReason());
     }
 
+    @Test
+    public void testSegmentedDownload() throws IOException {
+        byte[] content = createServedFile("segmented.mp3", 1024 * 1024 + 3);
+        String url = httpServer.getBaseUrl() + "/files/0";
+        FeedFileImpl feedFile = setupFeedFile(url, "testSegmented.mp3", true, FeedMedia.FEEDFILETYPE_FEEDMEDIA);
+
+        Downloader downloader = downloadMedia(feedFile);
+        assertTrue(downloader.getResult().isSuccessful());
+        // The first segment is read from the initial response
+        assertEquals(3, httpServer.getRangeRequestCount());
+        assertEquals(content.length, downloader.getDownloadRequest().getSoFar());
+        assertArrayEquals(content, FileUtils.readFileToByteArray(new File(feedFile.getFile_url())));
+        assertFalse(new File(feedFile.getFile_url() + ".segments").exists());
+    }
+
+    @Test
+    public void testSegmentedDownloadResume() throws IOException {
+        byte[] content = createServedFile("resume.mp3", 1024 * 1024);
+        String url = httpServer.getBaseUrl() + "/files/0";
+        FeedFileImpl feedFile = setupFeedFile(url, "testResume.mp3", true, FeedMedia.FEEDFILETYPE_FEEDMEDIA);
+
+        // Unfinished download: first half complete, second half not started
+        int half = content.length / 2;
+        byte[] partial = new byte[content.length];
+        System.arraycopy(content, 0, partial, 0, half);
+        FileUtils.writeByteArrayToFile(new File(feedFile.getFile_url()), partial);
+        FileUtils.writeStringToFile(new File(feedFile.getFile_url() + ".segments"),
+                content.length + "\n" + HTTPBin.getETag(new File(destDir, "resume.mp3")) + "\n"
+                        + "0 " + (half - 1) + " " + half + "\n"
+                        + half + " " + (content.length - 1) + " 0\n",
+                "UTF-8");
+
+        Downloader downloader = downloadMedia(feedFile);
+        assertTrue(downloader.getResult().isSuccessful());
+        assertEquals(1, httpServer.getRangeRequestCount());
+        assertArrayEquals(content, FileUtils.readFileToByteArray(new File(feedFile.getFile_url())));
+        assertFalse(new File(feedFile.getFile_url() + ".segments").exists());
+    }
+
+    @Test
+    public void testFileWithoutValidatorIsNotSegmented() throws IOException {
+        httpServer.setSendETags(false);
+        byte[] content = createServedFile("unvalidated.mp3", 1024 * 1024);
+        String url = httpServer.getBaseUrl() + "/files/0";
+        FeedFileImpl feedFile = setupFeedFile(url, "testUnvalidated.mp3", true, FeedMedia.FEEDFILETYPE_FEEDMEDIA);
+
+        Downloader downloader = downloadMedia(feedFile);
+        assertTrue(downloader.getResult().isSuccessful());
+        // Without If-Range, the segments could come from different versions of the file
+        assertEquals(0, httpServer.getRangeRequestCount());
+        assertArrayEquals(content, FileUtils.readFileToByteArray(new File(feedFile.getFile_url())));
+    }
+
+    @Test
+    public void testSmallFileIsNotSegmented() throws IOException {
+        byte[] content = createServedFile("small.mp3", 64 * 1024);
+        String url = httpServer.getBaseUrl() + "/files/0";
+        FeedFileImpl feedFile = setupFeedFile(url, "testSmall.mp3", true, FeedMedia.FEEDFILETYPE_FEEDMEDIA);
+
+        Downloader downloader = downloadMedia(feedFile);
+        assertTrue(downloader.getResult().isSuccessful());
+        assertEquals(0, httpServer.getRangeRequestCount());
+        assertArrayEquals(content, FileUtils.readFileToByteArray(new File(feedFile.getFile_url())));
+    }
+
+    private byte[] createServedFile(String name, int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        File file = new File(destDir, name);
+        FileUtils.writeByteArrayToFile(file, content);
+        assertEquals(0, httpServer.serveFile(file));
+        return content;
+    }
+
+    private Downloader downloadMedia(FeedFileImpl feedFile) {
+        DownloadRequest request = new DownloadRequest(feedFile.getFile_url(), feedFile.getDownload_url(), "media", 0,
+                feedFile.getTypeAsInt(), null, null, false, null, false);
+        Downloader downloader = new HttpDownloader(request);
+        downloader.call();
+        assertTrue(downloader.getResult().isDone());
+        return downloader;
+    }
+
     /* TODO: replace with smaller test file
     public void testUrlWithSpaces() {
         download("http://acedl.noxsolutions.com/ace/Don't Call Salman Rushdie Sneezy in Finland.mp3", "testUrlWithSpaces", true);
@@ -168,8 +261,11 @@ public class HttpDownloaderTest {
     */
 
     private static class FeedFileImpl extends FeedFile {
-        public FeedFileImpl(String download_url) {
+        private final int type;
+
+        public FeedFileImpl(String download_url, int type) {
             super(null, download_url, false);
+            this.type = type;
         }
 
 
@@ -180,7 +276,7 @@ public class HttpDownloaderTest {
 
         @Override
         public int getTypeAsInt() {
-            return 0;
+            return type;
         }
     }
 
@@ -0,0 +1,132 @@
+package de.test.antennapod.storage;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.filters.LargeTest;
+import androidx.test.platform.app.InstrumentationRegistry;
+import de.danoeh.antennapod.core.storage.DBReader;
+import de.danoeh.antennapod.core.storage.DBTasks;
+import de.danoeh.antennapod.model.feed.Feed;
+import de.danoeh.antennapod.model.feed.FeedItem;
+import de.danoeh.antennapod.model.feed.FeedMedia;
+import de.danoeh.antennapod.storage.database.PodDBAdapter;
+import de.danoeh.antennapod.storage.preferences.UserPreferences;
+import de.test.antennapod.EspressoTestUtils;
+import de.test.antennapod.IgnoreOnCi;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Measures how long the UI waits for database queries while all feeds are refreshed, with and without
+ * write-ahead logging. The latencies are written to the log and reported as instrumentation status, for example
+ * with <code>adb shell am instrument -r -e class de.test.antennapod.storage.WalReaderLatencyTest ...</code>.
+ */
+@LargeTest
+@IgnoreOnCi
+public class WalReaderLatencyTest {
+    private static final String TAG = "WalReaderLatencyTest";
+    private static final int NUM_FEEDS = 200;
+    private static final int EPISODES_PER_FEED = 50;
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+    }
+
+    @After
+    public void tearDown() {
+        PodDBAdapter.tearDownTests();
+        PodDBAdapter.setWriteAheadLoggingEnabled(UserPreferences.isDatabaseWriteAheadLoggingEnabled());
+        EspressoTestUtils.clearDatabase();
+    }
+
+    @Test
+    public void testReaderLatencyDuringRefresh() throws Exception {
+        Bundle results = new Bundle();
+        for (boolean writeAheadLogging : new boolean[] {false, true}) {
+            List<Long> latencies = measureDuringRefresh(writeAheadLogging);
+            assertTrue(latencies.size() > 0);
+            Collections.sort(latencies);
+            String mode = writeAheadLogging ? "wal" : "rollback";
+            long median = latencies.get(latencies.size() / 2);
+            long p95 = latencies.get(latencies.size() * 95 / 100);
+            long max = latencies.get(latencies.size() - 1);
+            Log.i(TAG, String.format(Locale.US, "%s: %d queries, median %d ms, p95 %d ms, max %d ms",
+                    mode, latencies.size(), median, p95, max));
+            results.putLong(mode + "_median_ms", median);
+            results.putLong(mode + "_p95_ms", p95);
+            results.putLong(mode + "_max_ms", max);
+        }
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+    }
+
+    /**
+     * Refreshes all feeds on another thread and returns the duration of each query that the test
+     * thread ran in the meantime, in milliseconds.
+     */
+    private List<Long> measureDuringRefresh(boolean writeAheadLogging) throws Exception {
+        PodDBAdapter.tearDownTests();
+        PodDBAdapter.setWriteAheadLoggingEnabled(writeAheadLogging);
+        EspressoTestUtils.clearDatabase();
+        for (int i = 0; i < NUM_FEEDS; i++) {
+            DBTasks.updateFeed(context, feed(i, EPISODES_PER_FEED), false);
+        }
+        Feed readFeed = DBReader.getFeedList().get(0);
+
+        AtomicReference<Exception> writerError = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                // Every feed gets one new episode, like during a refresh of all subscriptions
+                for (int i = 0; i < NUM_FEEDS; i++) {
+                    DBTasks.updateFeed(context, feed(i, EPISODES_PER_FEED + 1), false);
+                }
+            } catch (Exception e) {
+                writerError.set(e);
+            }
+        });
+
+        List<Long> latencies = new ArrayList<>();
+        writer.start();
+        while (writer.isAlive()) {
+            long start = System.nanoTime();
+            assertEquals(NUM_FEEDS, DBReader.getFeedList().size());
+            DBReader.getFeedItemList(readFeed);
+            latencies.add((System.nanoTime() - start) / 1000000);
+        }
+        writer.join();
+        if (writerError.get() != null) {
+            throw writerError.get();
+        }
+        return latencies;
+    }
+
+    private static Feed feed(int feedIndex, int numEpisodes) {
+        Feed feed = new Feed("https://example.com/feed" + feedIndex + ".xml", null, "Feed " + feedIndex);
+        feed.setItems(new ArrayList<>());
+        for (int i = numEpisodes - 1; i >= 0; i--) {
+            FeedItem item = new FeedItem(0, "Episode " + i, "feed" + feedIndex + "-episode" + i,
+                    "https://example.com/episode" + i, new Date(i * HOUR), FeedItem.UNPLAYED, feed);
+            item.setDescriptionIfLonger("Description of episode " + i + " of feed " + feedIndex);
+            item.setMedia(new FeedMedia(item, "https://example.com/feed" + feedIndex + "/episode" + i + ".mp3",
+                    30000000, "audio/mpeg"));
+            feed.getItems().add(item);
+        }
+        return feed;
+    }
+}
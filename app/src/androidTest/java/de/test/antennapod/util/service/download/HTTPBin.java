@@ -5,6 +5,7 @@ import android.util.Log;
 
 import fi.iki.elonen.NanoHTTPD;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.ByteArrayInputStream;
@@ -22,6 +23,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPOutputStream;
 
 import de.danoeh.antennapod.BuildConfig;
@@ -37,6 +39,7 @@ import de.danoeh.antennapod.BuildConfig;
  * /basic-auth/username/password: Basic auth with username and password
  * /gzip/n:      Send gzipped data of size n bytes
  * /files/id:     Accesses the file with the specified ID (this has to be added first via serveFile).
+ *               Supports range requests and If-Range with the ETag of the file.
  */
 public class HTTPBin extends NanoHTTPD {
     private static final String TAG = "HTTPBin";
@@ -45,12 +48,35 @@ public class HTTPBin extends NanoHTTPD {
     private static final String MIME_PLAIN = "text/plain";
 
     private final List<File> servedFiles;
+    private final AtomicInteger rangeRequestCount = new AtomicInteger(0);
+    private volatile boolean sendETags = true;
 
     public HTTPBin() {
         super(0); // Let system pick a free port
         this.servedFiles = new ArrayList<>();
     }
 
+    /**
+     * Returns the number of file requests that contained a range header.
+     */
+    public int getRangeRequestCount() {
+        return rangeRequestCount.get();
+    }
+
+    /**
+     * Sets whether file responses contain an ETag. Without it, clients have no validator for If-Range.
+     */
+    public void setSendETags(boolean sendETags) {
+        this.sendETags = sendETags;
+    }
+
+    /**
+     * Returns the strong ETag that is sent for the given file.
+     */
+    public static String getETag(File file) {
+        return "\"" + file.length() + "-" + file.lastModified() + "\"";
+    }
+
     public String getBaseUrl() {
         return "http://127.0.0.1:" + getListeningPort();
     }
@@ -203,11 +229,15 @@ public class HTTPBin extends NanoHTTPD {
         }
         InputStream inputStream = null;
         String contentRange = null;
+        long contentLength = file.length();
         Response.Status status;
         boolean successful = false;
         try {
             inputStream = new FileInputStream(file);
-            if (header.containsKey("range")) {
+            String ifRange = header.get("if-range");
+            boolean rangeValid = ifRange == null || (sendETags && ifRange.equals(getETag(file)));
+            if (header.containsKey("range") && rangeValid) {
+                rangeRequestCount.incrementAndGet();
                 // read range header field
                 final String value = header.get("range");
                 final String[] segments = value.split("=");
@@ -222,13 +252,18 @@ public class HTTPBin extends NanoHTTPD {
                 }
                 try {
                     long start = Long.parseLong(StringUtils.substringBefore(segments[1], "-"));
-                    if (start >= file.length()) {
+                    String endValue = StringUtils.substringAfter(segments[1], "-");
+                    long end = endValue.isEmpty() ? file.length() - 1
+                            : Math.min(Long.parseLong(endValue), file.length() - 1);
+                    if (start >= file.length() || end < start) {
                         return getRangeNotSatisfiable();
                     }
 
                     // skip 'start' bytes
                     IOUtils.skipFully(inputStream, start);
-                    contentRange = "bytes " + start + (file.length() - 1) + "/" + file.length();
+                    contentLength = end - start + 1;
+                    inputStream = new BoundedInputStream(inputStream, contentLength);
+                    contentRange = "bytes " + start + "-" + end + "/" + file.length();
 
                 } catch (NumberFormatException e) {
                     e.printStackTrace();
@@ -258,10 +293,13 @@ public class HTTPBin extends NanoHTTPD {
         Response response = new Response(status, URLConnection.guessContentTypeFromName(file.getAbsolutePath()), inputStream);
 
         response.addHeader("Accept-Ranges", "bytes");
+        if (sendETags) {
+            response.addHeader("ETag", getETag(file));
+        }
         if (contentRange != null) {
             response.addHeader("Content-Range", contentRange);
         }
-        response.addHeader("Content-Length", String.valueOf(file.length()));
+        response.addHeader("Content-Length", String.valueOf(contentLength));
         return response;
     }
 
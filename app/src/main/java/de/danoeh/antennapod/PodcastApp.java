@@ -18,9 +18,12 @@ import de.danoeh.antennapod.core.ClientConfig;
 import de.danoeh.antennapod.core.ClientConfigurator;
 import de.danoeh.antennapod.error.CrashReportWriter;
 import de.danoeh.antennapod.error.RxJavaErrorHandlerSetup;
+import de.danoeh.antennapod.making_history.MHDiscoverListLoader;
 import de.danoeh.antennapod.spa.SPAUtil;
 import org.greenrobot.eventbus.EventBus;
 
+import java.io.File;
+
 /** Main application class. */
 public class PodcastApp extends MultiDexApplication {
 
@@ -54,6 +57,7 @@ public class PodcastApp extends MultiDexApplication {
         singleton = this;
 
         ClientConfigurator.initialize(this);
+        MHDiscoverListLoader.setCacheDirectory(new File(getCacheDir(), "discover"));
 
         Iconify.with(new FontAwesomeModule());
         Iconify.with(new MaterialModule());
@@ -27,9 +27,11 @@ import de.danoeh.antennapod.R;
 import de.danoeh.antennapod.activity.MainActivity;
 import de.danoeh.antennapod.activity.OnlineFeedViewActivity;
 import de.danoeh.antennapod.adapter.itunes.ItunesAdapter;
+import de.danoeh.antennapod.net.discovery.CombinedSearcher;
 import de.danoeh.antennapod.net.discovery.PodcastSearchResult;
 import de.danoeh.antennapod.net.discovery.PodcastSearcher;
 import de.danoeh.antennapod.net.discovery.PodcastSearcherRegistry;
+import io.reactivex.Observable;
 import io.reactivex.disposables.Disposable;
 
 public class OnlineSearchFragment extends Fragment {
@@ -189,15 +191,22 @@ public class OnlineSearchFragment extends Fragment {
             disposable.dispose();
         }
         showOnlyProgressBar();
-        disposable = searchProvider.search(query).subscribe(result -> {
+        searchResults = new ArrayList<>();
+        Observable<List<PodcastSearchResult>> search;
+        if (searchProvider instanceof CombinedSearcher) {
+            search = ((CombinedSearcher) searchProvider).searchIncrementally(query);
+        } else {
+            search = searchProvider.search(query).toObservable();
+        }
+        disposable = search.subscribe(result -> {
             searchResults = result;
-            progressBar.setVisibility(View.GONE);
             adapter.clear();
             adapter.addAll(searchResults);
             adapter.notifyDataSetInvalidated();
-            gridView.setVisibility(!searchResults.isEmpty() ? View.VISIBLE : View.GONE);
-            txtvEmpty.setVisibility(searchResults.isEmpty() ? View.VISIBLE : View.GONE);
-            txtvEmpty.setText(getString(R.string.no_results_for_query, query));
+            if (!searchResults.isEmpty()) {
+                progressBar.setVisibility(View.GONE);
+                gridView.setVisibility(View.VISIBLE);
+            }
         }, error -> {
                 Log.e(TAG, Log.getStackTraceString(error));
                 progressBar.setVisibility(View.GONE);
@@ -205,6 +214,11 @@ public class OnlineSearchFragment extends Fragment {
                 txtvError.setVisibility(View.VISIBLE);
                 butRetry.setOnClickListener(v -> search(query));
                 butRetry.setVisibility(View.VISIBLE);
+            }, () -> {
+                progressBar.setVisibility(View.GONE);
+                gridView.setVisibility(!searchResults.isEmpty() ? View.VISIBLE : View.GONE);
+                txtvEmpty.setVisibility(searchResults.isEmpty() ? View.VISIBLE : View.GONE);
+                txtvEmpty.setText(getString(R.string.no_results_for_query, query));
             });
     }
 
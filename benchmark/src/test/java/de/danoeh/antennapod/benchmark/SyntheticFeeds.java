@@ -0,0 +1,89 @@
+package de.danoeh.antennapod.benchmark;
+
+import de.danoeh.antennapod.model.feed.Feed;
+import de.danoeh.antennapod.model.feed.FeedItem;
+import de.danoeh.antennapod.model.feed.FeedMedia;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Generates feeds of a given size. The content only depends on the arguments,
+ * so results of different builds can be compared.
+ */
+public class SyntheticFeeds {
+    /**
+     * The feed sizes that all feed benchmarks run with.
+     */
+    public static final int[] SIZES = {100, 1000, 10000};
+
+    public static final String FEED_URL = "https://example.com/feed.xml";
+
+    private static final long NEWEST_PUBDATE = 1600000000000L;
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private SyntheticFeeds() {
+    }
+
+    /**
+     * Publication date of the given episode. Episode 0 is the newest one.
+     */
+    public static Date pubDate(int index) {
+        return new Date(NEWEST_PUBDATE - index * HOUR);
+    }
+
+    /**
+     * An RSS 2.0 document with iTunes tags, as most podcast feeds are.
+     */
+    public static String rss(int numItems) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        StringBuilder builder = new StringBuilder();
+        builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<rss version=\"2.0\" xmlns:itunes=\"http://www.itunes.com/dtds/podcast-1.0.dtd\"")
+                .append(" xmlns:content=\"http://purl.org/rss/1.0/modules/content/\">\n")
+                .append("<channel>\n")
+                .append("<title>Benchmark feed</title>\n")
+                .append("<link>https://example.com</link>\n")
+                .append("<description>A feed with ").append(numItems).append(" episodes</description>\n")
+                .append("<language>en</language>\n")
+                .append("<itunes:author>Benchmark author</itunes:author>\n")
+                .append("<itunes:image href=\"https://example.com/cover.jpg\"/>\n");
+        for (int i = 0; i < numItems; i++) {
+            builder.append("<item>\n")
+                    .append("<title>Episode ").append(i).append("</title>\n")
+                    .append("<guid isPermaLink=\"false\">episode-").append(i).append("</guid>\n")
+                    .append("<link>https://example.com/episodes/").append(i).append("</link>\n")
+                    .append("<pubDate>").append(format.format(pubDate(i))).append("</pubDate>\n")
+                    .append("<description><![CDATA[<p>Show notes of episode ").append(i)
+                    .append(" with a <a href=\"https://example.com/").append(i).append("\">link</a>.</p>]]>")
+                    .append("</description>\n")
+                    .append("<enclosure url=\"https://example.com/media/").append(i).append(".mp3\"")
+                    .append(" length=\"").append(10000000 + i).append("\" type=\"audio/mpeg\"/>\n")
+                    .append("<itunes:duration>01:02:03</itunes:duration>\n")
+                    .append("</item>\n");
+        }
+        builder.append("</channel>\n</rss>\n");
+        return builder.toString();
+    }
+
+    /**
+     * A feed as it comes out of the parser, with a media file for every episode.
+     */
+    public static Feed feed(int numItems) {
+        Feed feed = new Feed(FEED_URL, null, "Benchmark feed");
+        feed.setItems(new ArrayList<>(numItems));
+        for (int i = 0; i < numItems; i++) {
+            FeedItem item = new FeedItem(0, "Episode " + i, "episode-" + i,
+                    "https://example.com/episodes/" + i, pubDate(i), FeedItem.UNPLAYED, feed);
+            item.setDescriptionIfLonger("<p>Show notes of episode " + i + "</p>");
+            item.setMedia(new FeedMedia(0, item, 3723000, 0, 10000000 + i, "audio/mpeg", null,
+                    "https://example.com/media/" + i + ".mp3", false, null, 0, 0));
+            feed.getItems().add(item);
+        }
+        return feed;
+    }
+}
@@ -0,0 +1,66 @@
+package de.danoeh.antennapod.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generates ID3v2.3 tags with a given number of chapters.
+ */
+public class SyntheticId3Tags {
+    private static final byte ENCODING_ISO = 0;
+
+    private SyntheticId3Tags() {
+    }
+
+    /**
+     * A tag with one CHAP frame (with a TIT2 title sub-frame) per chapter, followed by a cover
+     * picture that the chapter reader has to skip.
+     */
+    public static byte[] tagWithChapters(int numChapters) {
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        for (int i = 0; i < numChapters; i++) {
+            byte[] title = ("\0Chapter " + i + "\0").getBytes(StandardCharsets.ISO_8859_1);
+            title[0] = ENCODING_ISO;
+            ByteArrayOutputStream chapter = new ByteArrayOutputStream();
+            write(chapter, ("ch" + i + "\0").getBytes(StandardCharsets.ISO_8859_1));
+            write(chapter, int32(i * 60000)); // Start time
+            write(chapter, int32((i + 1) * 60000)); // End time
+            write(chapter, int32(-1)); // Start offset
+            write(chapter, int32(-1)); // End offset
+            write(chapter, frameHeader("TIT2", title.length));
+            write(chapter, title);
+            write(frames, frameHeader("CHAP", chapter.size()));
+            write(frames, chapter.toByteArray());
+        }
+        byte[] picture = new byte[64 * 1024];
+        write(frames, frameHeader("APIC", picture.length));
+        write(frames, picture);
+
+        ByteArrayOutputStream tag = new ByteArrayOutputStream();
+        write(tag, new byte[] {'I', 'D', '3', 3, 0, 0});
+        write(tag, synchsafe(frames.size()));
+        write(tag, frames.toByteArray());
+        return tag.toByteArray();
+    }
+
+    private static byte[] frameHeader(String id, int size) {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        write(header, id.getBytes(StandardCharsets.ISO_8859_1));
+        write(header, int32(size));
+        write(header, new byte[] {0, 0}); // Flags
+        return header.toByteArray();
+    }
+
+    private static byte[] int32(int value) {
+        return new byte[] {(byte) (value >> 24), (byte) (value >> 16), (byte) (value >> 8), (byte) value};
+    }
+
+    private static byte[] synchsafe(int value) {
+        return new byte[] {(byte) ((value >> 21) & 0x7F), (byte) ((value >> 14) & 0x7F),
+                (byte) ((value >> 7) & 0x7F), (byte) (value & 0x7F)};
+    }
+
+    private static void write(ByteArrayOutputStream stream, byte[] bytes) {
+        stream.write(bytes, 0, bytes.length);
+    }
+}
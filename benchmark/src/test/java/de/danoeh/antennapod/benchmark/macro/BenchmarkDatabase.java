@@ -0,0 +1,62 @@
+package de.danoeh.antennapod.benchmark.macro;
+
+import android.app.Application;
+import android.content.Context;
+import androidx.test.platform.app.InstrumentationRegistry;
+import de.danoeh.antennapod.core.ApplicationCallbacks;
+import de.danoeh.antennapod.core.ClientConfig;
+import de.danoeh.antennapod.core.preferences.PlaybackPreferences;
+import de.danoeh.antennapod.core.storage.DBWriter;
+import de.danoeh.antennapod.model.feed.Feed;
+import de.danoeh.antennapod.storage.database.PodDBAdapter;
+import de.danoeh.antennapod.storage.preferences.UserPreferences;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Sets up an empty database the same way the database tests of the core module do.
+ */
+class BenchmarkDatabase {
+
+    private BenchmarkDatabase() {
+    }
+
+    static Context setUp(boolean writeAheadLogging) {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        UserPreferences.init(context);
+        PlaybackPreferences.init(context);
+
+        Application app = (Application) context;
+        ClientConfig.applicationCallbacks = mock(ApplicationCallbacks.class);
+        when(ClientConfig.applicationCallbacks.getApplicationInstance()).thenReturn(app);
+
+        PodDBAdapter.init(context);
+        PodDBAdapter.setWriteAheadLoggingEnabled(writeAheadLogging);
+        PodDBAdapter.deleteDatabase();
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        adapter.close();
+        return context;
+    }
+
+    static void tearDown() {
+        DBWriter.tearDownTests();
+        PodDBAdapter.tearDownTests();
+        PodDBAdapter.setWriteAheadLoggingEnabled(false);
+    }
+
+    /**
+     * Removes all feeds and episodes, but keeps the database open.
+     */
+    static void clear() {
+        PodDBAdapter.deleteDatabase();
+    }
+
+    static void store(Feed feed) {
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        adapter.setCompleteFeed(feed);
+        adapter.close();
+    }
+}
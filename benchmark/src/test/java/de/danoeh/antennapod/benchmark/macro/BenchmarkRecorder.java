@@ -0,0 +1,119 @@
+package de.danoeh.antennapod.benchmark.macro;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Measures code that needs the Robolectric runtime and cannot run in a JMH fork.
+ * Every iteration is timed on its own, like the single shot mode of JMH. The results are written
+ * in the JSON format of JMH, so that both kinds of benchmarks can be compared with the same tools.
+ */
+public class BenchmarkRecorder {
+    public static final int WARMUP_ITERATIONS = 3;
+    public static final int MEASUREMENT_ITERATIONS = 10;
+
+    private static final double Z_99_9 = 3.29;
+
+    private final String benchmarkClass;
+    private final JSONArray results = new JSONArray();
+
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    public BenchmarkRecorder(Class<?> benchmarkClass) {
+        this.benchmarkClass = benchmarkClass.getName();
+    }
+
+    /**
+     * Runs setup and task repeatedly, and records the time the task took.
+     *
+     * @param setup Prepares the state for one iteration, not measured.
+     */
+    public void measure(String name, Map<String, String> params, Task setup, Task task) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            setup.run();
+            task.run();
+        }
+        List<Double> samples = new ArrayList<>();
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            setup.run();
+            long start = System.nanoTime();
+            task.run();
+            samples.add((System.nanoTime() - start) / 1e6);
+        }
+        record(name, params, "ss", "ms/op", samples);
+    }
+
+    /**
+     * Records samples that were measured by the benchmark itself.
+     */
+    public void record(String name, Map<String, String> params, String mode, String unit,
+                       List<Double> samples) throws JSONException {
+        List<Double> sorted = new ArrayList<>(samples);
+        Collections.sort(sorted);
+        double mean = 0;
+        for (double sample : sorted) {
+            mean += sample;
+        }
+        mean /= sorted.size();
+        double variance = 0;
+        for (double sample : sorted) {
+            variance += (sample - mean) * (sample - mean);
+        }
+        double error = sorted.size() > 1
+                ? Z_99_9 * Math.sqrt(variance / (sorted.size() - 1)) / Math.sqrt(sorted.size()) : 0;
+
+        JSONObject percentiles = new JSONObject();
+        for (double percentile : new double[] {0.0, 50.0, 90.0, 99.0, 100.0}) {
+            int index = (int) Math.ceil(percentile / 100 * sorted.size()) - 1;
+            percentiles.put(String.valueOf(percentile), sorted.get(Math.max(0, index)));
+        }
+        JSONObject metric = new JSONObject();
+        metric.put("score", mean);
+        metric.put("scoreError", error);
+        metric.put("scoreConfidence", new JSONArray().put(mean - error).put(mean + error));
+        metric.put("scorePercentiles", percentiles);
+        metric.put("scoreUnit", unit);
+        metric.put("rawData", new JSONArray().put(new JSONArray(samples)));
+
+        JSONObject result = new JSONObject();
+        result.put("benchmark", benchmarkClass + "." + name);
+        result.put("mode", mode);
+        result.put("threads", 1);
+        result.put("forks", 1);
+        result.put("measurementIterations", samples.size());
+        result.put("params", new JSONObject(params));
+        result.put("primaryMetric", metric);
+        results.put(result);
+        System.out.println(benchmarkClass + "." + name + " " + params + ": "
+                + String.format(Locale.US, "%.3f ± %.3f %s", mean, error, unit));
+    }
+
+    /**
+     * Writes all recorded results to {@code <benchmark.outputDir>/<benchmark class>.json}.
+     */
+    public void write() throws IOException, JSONException {
+        File outputDir = new File(System.getProperty("benchmark.outputDir", "build/reports/benchmark"));
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            throw new IOException("Unable to create " + outputDir);
+        }
+        File file = new File(outputDir, benchmarkClass + ".json");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(results.toString(2));
+        }
+    }
+}
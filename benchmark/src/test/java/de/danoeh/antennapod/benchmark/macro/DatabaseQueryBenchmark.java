@@ -0,0 +1,66 @@
+package de.danoeh.antennapod.benchmark.macro;
+
+import de.danoeh.antennapod.benchmark.SyntheticFeeds;
+import de.danoeh.antennapod.core.storage.DBReader;
+import de.danoeh.antennapod.core.storage.DBTasks;
+import de.danoeh.antennapod.model.feed.Feed;
+import de.danoeh.antennapod.model.feed.FeedCounter;
+import de.danoeh.antennapod.model.feed.FeedItem;
+import de.danoeh.antennapod.storage.database.PodDBAdapter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs the queries behind the most used screens on a database with one feed of the given size.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseQueryBenchmark {
+
+    @Before
+    public void setUp() {
+        BenchmarkDatabase.setUp(false);
+    }
+
+    @After
+    public void tearDown() {
+        BenchmarkDatabase.tearDown();
+    }
+
+    @Test
+    public void queries() throws Exception {
+        BenchmarkRecorder recorder = new BenchmarkRecorder(DatabaseQueryBenchmark.class);
+        for (int size : SyntheticFeeds.SIZES) {
+            Map<String, String> params = Collections.singletonMap("items", String.valueOf(size));
+            BenchmarkDatabase.clear();
+            Feed feed = SyntheticFeeds.feed(size);
+            List<FeedItem> items = feed.getItems();
+            for (int i = 0; i < items.size(); i += 2) {
+                items.get(i).setPlayed(true);
+            }
+            BenchmarkDatabase.store(feed);
+
+            recorder.measure("getFeedItemList", params, () -> { }, () -> DBReader.getFeedItemList(feed));
+            recorder.measure("getNavDrawerData", params, () -> { }, DBReader::getNavDrawerData);
+            recorder.measure("getFeedCounters", params, () -> { }, () -> {
+                PodDBAdapter adapter = PodDBAdapter.getInstance();
+                adapter.open();
+                adapter.getFeedCounters(FeedCounter.SHOW_UNPLAYED);
+                adapter.close();
+            });
+            recorder.measure("searchFeedItems", params, () -> { }, () -> {
+                FutureTask<List<FeedItem>> search = DBTasks.searchFeedItems(0, "episode 42");
+                search.run();
+                search.get();
+            });
+        }
+        recorder.write();
+    }
+}
@@ -0,0 +1,37 @@
+package de.danoeh.antennapod.benchmark.macro;
+
+import de.danoeh.antennapod.benchmark.SyntheticFeeds;
+import de.danoeh.antennapod.model.feed.Feed;
+import de.danoeh.antennapod.parser.feed.FeedHandler;
+import de.danoeh.antennapod.parser.feed.FeedHandlerResult;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Parses RSS feeds with {@link FeedHandler} and {@link de.danoeh.antennapod.parser.feed.SyndHandler}.
+ * Runs with Robolectric because the namespace handlers convert HTML with the Android framework.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FeedParserBenchmark {
+
+    @Test
+    public void parseFeed() throws Exception {
+        BenchmarkRecorder recorder = new BenchmarkRecorder(FeedParserBenchmark.class);
+        for (int size : SyntheticFeeds.SIZES) {
+            byte[] document = SyntheticFeeds.rss(size).getBytes(StandardCharsets.UTF_8);
+            final FeedHandlerResult[] result = new FeedHandlerResult[1];
+            recorder.measure("parseFeed", Collections.singletonMap("items", String.valueOf(size)), () -> { },
+                    () -> result[0] = new FeedHandler().parseFeed(new Feed(SyntheticFeeds.FEED_URL, null),
+                            new ByteArrayInputStream(document)));
+            assertEquals(size, result[0].feed.getItems().size());
+        }
+        recorder.write();
+    }
+}
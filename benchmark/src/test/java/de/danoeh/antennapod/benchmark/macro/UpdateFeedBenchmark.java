@@ -0,0 +1,63 @@
+package de.danoeh.antennapod.benchmark.macro;
+
+import android.content.Context;
+import de.danoeh.antennapod.benchmark.SyntheticFeeds;
+import de.danoeh.antennapod.core.storage.DBTasks;
+import de.danoeh.antennapod.model.feed.Feed;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Saves refreshed feeds with {@link DBTasks#updateFeed}, which matches every episode of the refreshed
+ * feed against the stored episodes before writing the changes.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class UpdateFeedBenchmark {
+    private Context context;
+    private Feed refreshed;
+
+    @Before
+    public void setUp() {
+        context = BenchmarkDatabase.setUp(false);
+    }
+
+    @After
+    public void tearDown() {
+        BenchmarkDatabase.tearDown();
+    }
+
+    @Test
+    public void updateFeed() throws Exception {
+        BenchmarkRecorder recorder = new BenchmarkRecorder(UpdateFeedBenchmark.class);
+        for (int size : SyntheticFeeds.SIZES) {
+            Map<String, String> params = Collections.singletonMap("items", String.valueOf(size));
+
+            // First refresh of a new subscription, every episode is inserted
+            recorder.measure("newFeed", params, () -> {
+                BenchmarkDatabase.clear();
+                refreshed = SyntheticFeeds.feed(size);
+            }, () -> DBTasks.updateFeed(context, refreshed, false));
+
+            // Refresh without any changes, every episode is matched and nothing is written
+            recorder.measure("unchangedFeed", params, () -> {
+                BenchmarkDatabase.clear();
+                BenchmarkDatabase.store(SyntheticFeeds.feed(size));
+                refreshed = SyntheticFeeds.feed(size);
+            }, () -> DBTasks.updateFeed(context, refreshed, false));
+
+            // The usual refresh, one episode was published since the last one
+            recorder.measure("oneNewEpisode", params, () -> {
+                BenchmarkDatabase.clear();
+                BenchmarkDatabase.store(SyntheticFeeds.feed(size));
+                refreshed = SyntheticFeeds.feed(size + 1);
+            }, () -> DBTasks.updateFeed(context, refreshed, false));
+        }
+        recorder.write();
+    }
+}
@@ -0,0 +1,75 @@
+package de.danoeh.antennapod.benchmark.macro;
+
+import de.danoeh.antennapod.benchmark.SyntheticFeeds;
+import de.danoeh.antennapod.core.storage.DBReader;
+import de.danoeh.antennapod.model.feed.Feed;
+import de.danoeh.antennapod.storage.database.PodDBAdapter;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Reads a feed while another thread keeps writing new subscriptions, with and without write-ahead logging.
+ * This is a smoke test that both modes work with a concurrent writer. Robolectric runs all database
+ * connections on one thread and only one feed is read, so the timings say nothing about the latency
+ * on a device and are not recorded. The latency is measured on a device by WalReaderLatencyTest
+ * in the instrumented tests of the app.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class WalReaderSmokeTest {
+    private static final int FEED_SIZE = 1000;
+    private static final int QUERIES = 200;
+
+    @Test
+    public void readWhileWriting() throws Exception {
+        for (boolean writeAheadLogging : new boolean[] {false, true}) {
+            BenchmarkDatabase.setUp(writeAheadLogging);
+            try {
+                readWhileWriting(writeAheadLogging);
+            } finally {
+                BenchmarkDatabase.tearDown();
+            }
+        }
+    }
+
+    private void readWhileWriting(boolean writeAheadLogging) throws Exception {
+        Feed feed = SyntheticFeeds.feed(FEED_SIZE);
+        BenchmarkDatabase.store(feed);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<Exception> writerError = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                while (running.get()) {
+                    // Every refresh of a new subscription writes all its episodes in one transaction
+                    Feed subscription = SyntheticFeeds.feed(FEED_SIZE);
+                    subscription.setDownload_url(SyntheticFeeds.FEED_URL + "?" + System.nanoTime());
+                    PodDBAdapter adapter = PodDBAdapter.getInstance();
+                    adapter.open();
+                    adapter.setCompleteFeed(subscription);
+                    adapter.close();
+                }
+            } catch (Exception e) {
+                writerError.set(e);
+            }
+        });
+
+        writer.start();
+        try {
+            for (int i = 0; i < QUERIES; i++) {
+                assertEquals("wal=" + writeAheadLogging, FEED_SIZE, DBReader.getFeedItemList(feed).size());
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+        if (writerError.get() != null) {
+            throw writerError.get();
+        }
+    }
+}
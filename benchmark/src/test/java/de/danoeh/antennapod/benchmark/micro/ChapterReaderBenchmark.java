@@ -0,0 +1,59 @@
+package de.danoeh.antennapod.benchmark.micro;
+
+import de.danoeh.antennapod.benchmark.SyntheticId3Tags;
+import de.danoeh.antennapod.model.feed.Chapter;
+import de.danoeh.antennapod.parser.media.id3.ChapterReader;
+import de.danoeh.antennapod.parser.media.id3.ID3Reader;
+import de.danoeh.antennapod.parser.media.id3.ID3ReaderException;
+import org.apache.commons.io.input.CountingInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads ID3 tags from memory, so that only the parsing is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChapterReaderBenchmark {
+    @Param({"10", "100", "1000"})
+    public int chapters;
+
+    private byte[] tag;
+
+    @Setup
+    public void setUp() {
+        tag = SyntheticId3Tags.tagWithChapters(chapters);
+    }
+
+    @Benchmark
+    public ID3Reader skipFrames() throws IOException, ID3ReaderException {
+        ID3Reader reader = new ID3Reader(new CountingInputStream(new ByteArrayInputStream(tag)));
+        reader.readInputStream();
+        return reader;
+    }
+
+    @Benchmark
+    public List<Chapter> readChapters() throws IOException, ID3ReaderException {
+        ChapterReader reader = new ChapterReader(new CountingInputStream(new ByteArrayInputStream(tag)));
+        reader.readInputStream();
+        return reader.getChapters();
+    }
+}
@@ -0,0 +1,42 @@
+package de.danoeh.antennapod.benchmark.micro;
+
+import de.danoeh.antennapod.parser.feed.util.DateUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses dates in the formats that are common in feeds. The first two are handled by the scanner,
+ * the others fall back to the patterns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateUtilsBenchmark {
+    @Param({
+            "Wed, 08 Oct 2014 09:00:00 +0000",
+            "2014-10-08T09:00:00.000+02:00",
+            "Wed, 08 Oct 2014 09:00:00 CST",
+            "08 Oct 14 09:00:00 GMT",
+            "not a date"
+    })
+    public String input;
+
+    @Benchmark
+    public Date parse() {
+        return DateUtils.parse(input);
+    }
+}
@@ -27,6 +27,7 @@ public class ClientConfigurator {
         }
         PodDBAdapter.init(context);
         UserPreferences.init(context);
+        PodDBAdapter.setWriteAheadLoggingEnabled(UserPreferences.isDatabaseWriteAheadLoggingEnabled());
         UsageStatistics.init(context);
         PlaybackPreferences.init(context);
         SslProviderInstaller.install(context);
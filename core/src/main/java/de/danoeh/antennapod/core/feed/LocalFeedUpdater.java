@@ -17,12 +17,18 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import androidx.annotation.VisibleForTesting;
 import androidx.documentfile.provider.DocumentFile;
@@ -50,6 +56,8 @@ public class LocalFeedUpdater {
     private static final String TAG = "LocalFeedUpdater";
 
     static final String[] PREFERRED_FEED_IMAGE_FILENAMES = {"folder.jpg", "Folder.jpg", "folder.png", "Folder.png"};
+    private static final int NUM_METADATA_THREADS = Math.max(1, Math.min(4,
+            Runtime.getRuntime().availableProcessors()));
 
     public static void updateFeed(Feed feed, Context context,
                                   @Nullable UpdaterProgressListener updaterProgressListener) {
@@ -69,6 +77,10 @@ public class LocalFeedUpdater {
             if (mustReportDownloadSuccessful(feed)) {
                 reportSuccess(feed);
             }
+        } catch (InterruptedException e) {
+            Log.d(TAG, "Interrupted while updating " + feed.getDownload_url());
+            reportError(feed, "Interrupted");
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             e.printStackTrace();
             reportError(feed, e.getMessage());
@@ -77,12 +89,17 @@ public class LocalFeedUpdater {
 
     @VisibleForTesting
     static void tryUpdateFeed(Feed feed, Context context, Uri folderUri,
-                              UpdaterProgressListener updaterProgressListener) {
+                              UpdaterProgressListener updaterProgressListener) throws InterruptedException {
         if (feed.getItems() == null) {
             feed.setItems(new ArrayList<>());
         }
         //make sure it is the latest 'version' of this feed from the db (all items etc)
-        feed = DBTasks.updateFeed(context, feed, false);
+        Feed savedFeed = DBTasks.searchFeedByIdentifyingValueOrID(feed);
+        if (savedFeed == null) {
+            // Store the new feed first, so that it gets its default preferences
+            savedFeed = DBTasks.updateFeed(context, feed, false);
+        }
+        feed = savedFeed;
 
         // list files in feed folder
         List<FastDocumentFile> allFiles = FastDocumentFile.list(context, folderUri);
@@ -97,22 +114,66 @@ public class LocalFeedUpdater {
             }
         }
 
-        // add new files to feed and update item data
-        List<FeedItem> newItems = feed.getItems();
-        for (int i = 0; i < mediaFiles.size(); i++) {
-            FeedItem oldItem = feedContainsFile(feed, mediaFiles.get(i).getName());
-            FeedItem newItem = createFeedItem(feed, mediaFiles.get(i), context);
-            if (oldItem == null) {
-                newItems.add(newItem);
-            } else {
-                oldItem.updateFromOther(newItem);
+        // index the known items, so that looking up a file does not scan the whole item list
+        Map<String, FeedItem> itemsByFilename = new HashMap<>();
+        Map<String, FeedItem> itemsByUri = new HashMap<>();
+        for (FeedItem item : feed.getItems()) {
+            if (item.getMedia() != null) {
+                itemsByFilename.put(item.getLink(), item);
+                itemsByUri.put(item.getMedia().getDownload_url(), item);
+            }
+        }
+
+        // only read the metadata of new or changed files, several files at the same time
+        List<Future<FeedItem>> scans = new ArrayList<>();
+        ExecutorService executor = null;
+        try {
+            for (FastDocumentFile file : mediaFiles) {
+                FeedItem oldItem = itemsByFilename.get(file.getName());
+                if (oldItem != null && isUnchanged(oldItem.getMedia(), file)) {
+                    oldItem.getMedia().setFileLastModified(file.getLastModified());
+                    scans.add(null);
+                } else {
+                    if (executor == null) {
+                        executor = Executors.newFixedThreadPool(NUM_METADATA_THREADS, r -> {
+                            Thread t = new Thread(r, "LocalFeedMetadata");
+                            t.setPriority(Thread.MIN_PRIORITY);
+                            return t;
+                        });
+                    }
+                    final Feed scannedFeed = feed;
+                    final FeedItem sameFile = itemsByUri.get(file.getUri().toString());
+                    scans.add(executor.submit(() -> createFeedItem(scannedFeed, file, sameFile, context)));
+                }
+            }
+
+            // add new files to feed and update item data
+            List<FeedItem> newItems = feed.getItems();
+            for (int i = 0; i < mediaFiles.size(); i++) {
+                Future<FeedItem> scan = scans.get(i);
+                if (scan != null) {
+                    FeedItem oldItem = itemsByFilename.get(mediaFiles.get(i).getName());
+                    FeedItem newItem = scan.get();
+                    if (oldItem == null) {
+                        newItems.add(newItem);
+                    } else {
+                        oldItem.updateFromOther(newItem);
+                    }
+                }
+                if (updaterProgressListener != null) {
+                    updaterProgressListener.onLocalFileScanned(i, mediaFiles.size());
+                }
             }
-            if (updaterProgressListener != null) {
-                updaterProgressListener.onLocalFileScanned(i, mediaFiles.size());
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
             }
         }
 
         // remove feed items without corresponding file
+        List<FeedItem> newItems = feed.getItems();
         Iterator<FeedItem> it = newItems.iterator();
         while (it.hasNext()) {
             FeedItem feedItem = it.next();
@@ -135,6 +196,16 @@ public class LocalFeedUpdater {
         DBTasks.updateFeed(context, feed, removeUnlistedItems);
     }
 
+    /**
+     * Returns true if the file is the one that was scanned for the media. Media that was scanned
+     * before the modification time was stored is compared by size only.
+     */
+    static boolean isUnchanged(FeedMedia media, FastDocumentFile file) {
+        return media.getDownload_url().equals(file.getUri().toString())
+                && media.getSize() == file.getLength()
+                && (media.getFileLastModified() == 0 || media.getFileLastModified() == file.getLastModified());
+    }
+
     /**
      * Returns the image URL for the local feed.
      */
@@ -161,17 +232,13 @@ public class LocalFeedUpdater {
         return Feed.PREFIX_GENERATIVE_COVER + folderUri;
     }
 
-    private static FeedItem feedContainsFile(Feed feed, String filename) {
-        List<FeedItem> items = feed.getItems();
-        for (FeedItem i : items) {
-            if (i.getMedia() != null && i.getLink().equals(filename)) {
-                return i;
-            }
-        }
-        return null;
-    }
-
-    private static FeedItem createFeedItem(Feed feed, FastDocumentFile file, Context context) {
+    /**
+     * Creates the item for a new or changed file.
+     *
+     * @param sameFile A known item with the URI of the file. Its metadata is re-used if the file did not change.
+     */
+    private static FeedItem createFeedItem(Feed feed, FastDocumentFile file, @Nullable FeedItem sameFile,
+                                           Context context) {
         FeedItem item = new FeedItem(0, file.getName(), UUID.randomUUID().toString(),
                 file.getName(), new Date(file.getLastModified()), FeedItem.UNPLAYED, feed);
         item.disableAutoDownload();
@@ -179,16 +246,13 @@ public class LocalFeedUpdater {
         long size = file.getLength();
         FeedMedia media = new FeedMedia(0, item, 0, 0, size, file.getType(),
                 file.getUri().toString(), file.getUri().toString(), false, null, 0, 0);
+        media.setFileLastModified(file.getLastModified());
         item.setMedia(media);
 
-        for (FeedItem existingItem : feed.getItems()) {
-            if (existingItem.getMedia() != null
-                    && existingItem.getMedia().getDownload_url().equals(file.getUri().toString())
-                    && file.getLength() == existingItem.getMedia().getSize()) {
-                // We found an old file that we already scanned. Re-use metadata.
-                item.updateFromOther(existingItem);
-                return item;
-            }
+        if (sameFile != null && isUnchanged(sameFile.getMedia(), file)) {
+            // We found an old file that we already scanned. Re-use metadata.
+            item.updateFromOther(sameFile);
+            return item;
         }
 
         // Did not find existing item. Scan metadata.
@@ -0,0 +1,201 @@
+package de.danoeh.antennapod.core.service.download;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.danoeh.antennapod.net.download.serviceinterface.DownloadRequest;
+
+/**
+ * The downloaders of the {@link DownloadService}, indexed by source URL, feed file and destination.
+ * Every change publishes a new immutable {@link Snapshot}. Readers only look at the current snapshot,
+ * so the UI can check the download state of every visible row without locking or scanning a list.
+ * Call {@link #refresh()} after cancelling a downloader, so that the snapshot no longer counts it as running.
+ * <p/>
+ * Publishing a snapshot only copies the list of downloaders. The lookup maps of a snapshot are built
+ * the first time it is asked for them, so a burst of changes without reads in between does not build them
+ * for every intermediate snapshot.
+ */
+public class DownloadRegistry {
+    private final List<Downloader> downloads = new ArrayList<>();
+    private volatile Snapshot snapshot = new Snapshot(Collections.emptyList());
+
+    /**
+     * An immutable view of the downloaders at one point in time.
+     */
+    public static final class Snapshot {
+        private final List<Downloader> downloads;
+        private volatile Index index;
+
+        private Snapshot(List<Downloader> downloads) {
+            this.downloads = Collections.unmodifiableList(new ArrayList<>(downloads));
+        }
+
+        private Index getIndex() {
+            Index result = index;
+            if (result == null) {
+                synchronized (this) {
+                    result = index;
+                    if (result == null) {
+                        result = new Index(downloads);
+                        index = result;
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * All downloaders in the order they were added, including cancelled ones.
+         */
+        @NonNull
+        public List<Downloader> getDownloads() {
+            return downloads;
+        }
+
+        /**
+         * The downloaders that were not cancelled, in the order they were added.
+         */
+        @NonNull
+        public List<Downloader> getRunning() {
+            return getIndex().running;
+        }
+
+        public int size() {
+            return downloads.size();
+        }
+
+        /**
+         * Returns the downloader for the given URL. Prefers a running downloader over a cancelled one.
+         */
+        @Nullable
+        public Downloader findBySource(String source) {
+            return getIndex().bySource.get(source);
+        }
+
+        @Nullable
+        public Downloader findByFeedfile(int feedfileType, long feedfileId) {
+            Map<Long, Downloader> ofType = getIndex().byFeedfile.get(feedfileType);
+            return ofType != null ? ofType.get(feedfileId) : null;
+        }
+
+        public boolean isDownloading(String source) {
+            Downloader downloader = getIndex().bySource.get(source);
+            return downloader != null && !downloader.cancelled;
+        }
+
+        public boolean hasDestination(String destination) {
+            return getIndex().destinations.contains(destination);
+        }
+
+        /**
+         * Returns the number of downloaders of the given feed file type that were not cancelled.
+         */
+        public int getRunningCount(int feedfileType) {
+            Integer count = getIndex().runningCounts.get(feedfileType);
+            return count != null ? count : 0;
+        }
+    }
+
+    /**
+     * The lookup maps of a snapshot.
+     */
+    private static final class Index {
+        private final List<Downloader> running;
+        private final Map<String, Downloader> bySource = new HashMap<>();
+        private final Map<Integer, Map<Long, Downloader>> byFeedfile = new HashMap<>();
+        private final Set<String> destinations = new HashSet<>();
+        private final Map<Integer, Integer> runningCounts = new HashMap<>();
+
+        private Index(List<Downloader> downloads) {
+            List<Downloader> running = new ArrayList<>();
+            for (Downloader downloader : downloads) {
+                DownloadRequest request = downloader.getDownloadRequest();
+                Downloader previous = bySource.get(request.getSource());
+                if (previous == null || (previous.cancelled && !downloader.cancelled)) {
+                    bySource.put(request.getSource(), downloader);
+                }
+                Map<Long, Downloader> ofType = byFeedfile.get(request.getFeedfileType());
+                if (ofType == null) {
+                    ofType = new HashMap<>();
+                    byFeedfile.put(request.getFeedfileType(), ofType);
+                }
+                previous = ofType.get(request.getFeedfileId());
+                if (previous == null || (previous.cancelled && !downloader.cancelled)) {
+                    ofType.put(request.getFeedfileId(), downloader);
+                }
+                destinations.add(request.getDestination());
+                if (!downloader.cancelled) {
+                    running.add(downloader);
+                    Integer count = runningCounts.get(request.getFeedfileType());
+                    runningCounts.put(request.getFeedfileType(), count == null ? 1 : count + 1);
+                }
+            }
+            this.running = Collections.unmodifiableList(running);
+        }
+    }
+
+    @NonNull
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public synchronized void add(Downloader downloader) {
+        downloads.add(downloader);
+        publish();
+    }
+
+    /**
+     * Adds several downloaders and publishes a single snapshot for all of them.
+     */
+    public synchronized void addAll(Collection<Downloader> downloaders) {
+        if (downloaders.isEmpty()) {
+            return;
+        }
+        downloads.addAll(downloaders);
+        publish();
+    }
+
+    public synchronized void remove(Downloader downloader) {
+        if (downloads.remove(downloader)) {
+            publish();
+        }
+    }
+
+    /**
+     * Replaces a downloader by a new attempt of the same request.
+     */
+    public synchronized void replace(Downloader downloader, Downloader replacement) {
+        int index = downloads.indexOf(downloader);
+        if (index < 0) {
+            downloads.add(replacement);
+        } else {
+            downloads.set(index, replacement);
+        }
+        publish();
+    }
+
+    public synchronized void clear() {
+        downloads.clear();
+        publish();
+    }
+
+    /**
+     * Publishes a new snapshot after downloaders were cancelled.
+     */
+    public synchronized void refresh() {
+        publish();
+    }
+
+    private void publish() {
+        snapshot = new Snapshot(downloads);
+    }
+}
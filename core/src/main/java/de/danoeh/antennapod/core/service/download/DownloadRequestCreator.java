@@ -32,7 +32,9 @@ public class DownloadRequestCreator {
         return new DownloadRequest.Builder(dest.toString(), feed)
                 .withAuthentication(username, password)
                 .deleteOnFailure(true)
-                .lastModified(feed.getLastUpdate());
+                .lastModified(feed.getLastUpdate())
+                .etag(feed.getEtag())
+                .contentDigest(feed.getContentDigest());
     }
 
     public static DownloadRequest.Builder create(FeedMedia media) {
@@ -85,12 +87,7 @@ public class DownloadRequestCreator {
      * taken by another requested download.
      */
     private static boolean isFilenameAvailable(String path) {
-        for (Downloader downloader : DownloadService.downloads) {
-            if (downloader.request.getDestination().equals(path)) {
-                return false;
-            }
-        }
-        return true;
+        return !DownloadService.downloads.getSnapshot().hasDestination(path);
     }
 
     private static String getFeedfilePath() {
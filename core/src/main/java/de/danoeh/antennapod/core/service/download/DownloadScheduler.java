@@ -0,0 +1,266 @@
+package de.danoeh.antennapod.core.service.download;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import de.danoeh.antennapod.model.feed.Feed;
+import de.danoeh.antennapod.net.download.serviceinterface.DownloadRequest;
+import okhttp3.HttpUrl;
+
+/**
+ * Decides when the downloads of the {@link DownloadService} start. Waiting downloads are kept in three lanes:
+ * downloads that the user started, feed refreshes and automatic downloads. A free slot goes to the first download
+ * of the highest lane whose host is below its connection limit and did not ask to back off with Retry-After.
+ */
+public class DownloadScheduler {
+    private static final String TAG = "DownloadScheduler";
+    public static final int LANE_USER = 0;
+    public static final int LANE_FEED_REFRESH = 1;
+    public static final int LANE_AUTO_DOWNLOAD = 2;
+    private static final int NUM_LANES = 3;
+
+    static final int MAX_CONNECTIONS_PER_HOST = 2;
+    static final long DEFAULT_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    static final long MAX_RETRY_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    static final int MAX_RETRIES = 2;
+
+    private final Executor executor;
+    private final int maxParallel;
+    private final ScheduledExecutorService timer;
+    private final List<Deque<Job>> lanes = new ArrayList<>();
+    private final Map<String, Integer> connectionsPerHost = new HashMap<>();
+    private final Map<String, Long> backoffUntil = new HashMap<>();
+    private final Map<String, Integer> retries = new HashMap<>();
+    private int running = 0;
+
+    private static class Job {
+        @Nullable
+        final String host;
+        final Runnable work;
+
+        Job(@Nullable String host, Runnable work) {
+            this.host = host;
+            this.work = work;
+        }
+    }
+
+    /**
+     * @param executor Runs the downloads. Must be able to run maxParallel downloads at the same time.
+     */
+    public DownloadScheduler(Executor executor, int maxParallel) {
+        this.executor = executor;
+        this.maxParallel = maxParallel;
+        for (int i = 0; i < NUM_LANES; i++) {
+            lanes.add(new ArrayDeque<>());
+        }
+        timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "DownloadSchedulerTimer");
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    /**
+     * Returns the lane of a single request. When the user refreshes all feeds, the feeds are submitted to
+     * {@link #LANE_FEED_REFRESH} instead, so that they do not hold up episodes that the user downloads.
+     */
+    public static int getLane(DownloadRequest request) {
+        if (request.isInitiatedByUser()) {
+            return LANE_USER;
+        } else if (request.getFeedfileType() == Feed.FEEDFILETYPE_FEED) {
+            return LANE_FEED_REFRESH;
+        }
+        return LANE_AUTO_DOWNLOAD;
+    }
+
+    /**
+     * Returns the host that the connection limits apply to, or null for requests that do not use the network.
+     */
+    @Nullable
+    public static String getHost(String source) {
+        HttpUrl url = HttpUrl.parse(source);
+        return url != null ? url.host() : null;
+    }
+
+    /**
+     * Queues the work of downloading the request. It is run as soon as the limits allow it.
+     */
+    public void submit(@NonNull DownloadRequest request, @NonNull Runnable work) {
+        submit(request, getLane(request), work);
+    }
+
+    /**
+     * Queues the work of downloading the request in the given lane.
+     */
+    public void submit(@NonNull DownloadRequest request, int lane, @NonNull Runnable work) {
+        synchronized (this) {
+            lanes.get(lane).add(new Job(getHost(request.getSource()), work));
+        }
+        dispatch();
+    }
+
+    /**
+     * Stops starting downloads from the host of the given URL for the given time.
+     */
+    public void backOff(String source, long millis) {
+        String host = getHost(source);
+        if (host == null) {
+            return;
+        }
+        long delay = Math.min(millis > 0 ? millis : DEFAULT_BACKOFF_MILLIS, MAX_RETRY_AFTER_MILLIS);
+        Log.d(TAG, "Backing off from " + host + " for " + delay + " ms");
+        synchronized (this) {
+            Long previous = backoffUntil.get(host);
+            backoffUntil.put(host, Math.max(previous != null ? previous : 0, now() + delay));
+        }
+        if (!timer.isShutdown()) {
+            timer.schedule(this::dispatch, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns true if a download that the server rejected with the given Retry-After time
+     * should be tried again. Each URL is retried at most {@link #MAX_RETRIES} times.
+     */
+    public synchronized boolean shouldRetry(String source, long retryAfterMillis) {
+        if (retryAfterMillis > MAX_RETRY_AFTER_MILLIS) {
+            return false;
+        }
+        Integer count = retries.get(source);
+        count = count != null ? count : 0;
+        if (count >= MAX_RETRIES) {
+            return false;
+        }
+        retries.put(source, count + 1);
+        return true;
+    }
+
+    /**
+     * Forgets the retries of a URL once its download is done.
+     */
+    public synchronized void clearRetries(String source) {
+        retries.remove(source);
+    }
+
+    @VisibleForTesting
+    synchronized int getRetryCount() {
+        return retries.size();
+    }
+
+    public synchronized int getWaitingCount() {
+        int count = 0;
+        for (Deque<Job> lane : lanes) {
+            count += lane.size();
+        }
+        return count;
+    }
+
+    /**
+     * Drops all waiting downloads. Downloads that are running are not affected.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            for (Deque<Job> lane : lanes) {
+                lane.clear();
+            }
+        }
+        timer.shutdownNow();
+    }
+
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    void dispatch() {
+        List<Job> jobs = new ArrayList<>();
+        synchronized (this) {
+            long now = now();
+            while (running < maxParallel) {
+                Job job = pollAvailableJob(now);
+                if (job == null) {
+                    break;
+                }
+                running++;
+                if (job.host != null) {
+                    Integer connections = connectionsPerHost.get(job.host);
+                    connectionsPerHost.put(job.host, connections != null ? connections + 1 : 1);
+                }
+                jobs.add(job);
+            }
+        }
+        for (Job job : jobs) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        job.work.run();
+                    } finally {
+                        onFinished(job);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                Log.d(TAG, "Executor is shutting down, dropping download");
+            }
+        }
+    }
+
+    @Nullable
+    private Job pollAvailableJob(long now) {
+        for (Deque<Job> lane : lanes) {
+            Iterator<Job> iterator = lane.iterator();
+            while (iterator.hasNext()) {
+                Job job = iterator.next();
+                if (isHostAvailable(job.host, now)) {
+                    iterator.remove();
+                    return job;
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean isHostAvailable(@Nullable String host, long now) {
+        if (host == null) {
+            return true;
+        }
+        Long until = backoffUntil.get(host);
+        if (until != null) {
+            if (until > now) {
+                return false;
+            }
+            backoffUntil.remove(host);
+        }
+        Integer connections = connectionsPerHost.get(host);
+        return connections == null || connections < MAX_CONNECTIONS_PER_HOST;
+    }
+
+    private void onFinished(Job job) {
+        synchronized (this) {
+            running--;
+            if (job.host != null) {
+                Integer connections = connectionsPerHost.get(job.host);
+                if (connections == null || connections <= 1) {
+                    connectionsPerHost.remove(job.host);
+                } else {
+                    connectionsPerHost.put(job.host, connections - 1);
+                }
+            }
+        }
+        dispatch();
+    }
+}
@@ -29,8 +29,9 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -74,11 +75,12 @@ public class DownloadService extends Service {
 
     public static boolean isRunning = false;
 
-    // Can be modified from another thread while iterating. Both possible race conditions are not critical:
-    // Remove while iterating: We think it is still downloading and don't start a new download with the same file.
-    // Add while iterating: We think it is not downloading and might start a second download with the same file.
-    static final List<Downloader> downloads = Collections.synchronizedList(new CopyOnWriteArrayList<>());
+    // Readers see the downloads of the last published snapshot. Both possible race conditions are not critical:
+    // Remove while reading: We think it is still downloading and don't start a new download with the same file.
+    // Add while reading: We think it is not downloading and might start a second download with the same file.
+    static final DownloadRegistry downloads = new DownloadRegistry();
     private final ExecutorService downloadHandleExecutor;
+    private final DownloadScheduler downloadScheduler;
     private final ExecutorService downloadEnqueueExecutor;
 
     private final List<DownloadStatus> reportQueue = new ArrayList<>();
@@ -114,6 +116,7 @@ public class DownloadService extends Service {
                 t.setPriority(Thread.MIN_PRIORITY);
                 return t;
             });
+        downloadScheduler = new DownloadScheduler(downloadHandleExecutor, UserPreferences.getParallelDownloads());
         notificationUpdateExecutor = new ScheduledThreadPoolExecutor(SCHED_EX_POOL_SIZE,
                 r -> {
                     Thread t = new Thread(r, "NotificationUpdateExecutor");
@@ -142,48 +145,34 @@ public class DownloadService extends Service {
         if (!isRunning) {
             return false;
         }
-        for (Downloader downloader : downloads) {
-            if (downloader.request.getFeedfileType() == Feed.FEEDFILETYPE_FEED && !downloader.cancelled) {
-                return true;
-            }
-        }
-        return false;
+        return downloads.getSnapshot().getRunningCount(Feed.FEEDFILETYPE_FEED) > 0;
     }
 
     public static boolean isDownloadingFile(String downloadUrl) {
         if (!isRunning) {
             return false;
         }
-        for (Downloader downloader : downloads) {
-            if (downloader.request.getSource().equals(downloadUrl) && !downloader.cancelled) {
-                return true;
-            }
-        }
-        return false;
+        return downloads.getSnapshot().isDownloading(downloadUrl);
     }
 
     public static DownloadRequest findRequest(String downloadUrl) {
-        for (Downloader downloader : downloads) {
-            if (downloader.request.getSource().equals(downloadUrl)) {
-                return downloader.request;
-            }
-        }
-        return null;
+        Downloader downloader = downloads.getSnapshot().findBySource(downloadUrl);
+        return downloader != null ? downloader.request : null;
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         if (intent != null && intent.hasExtra(EXTRA_REQUESTS)) {
-            Notification notification = notificationManager.updateNotifications(downloads);
+            Notification notification = notificationManager.updateNotifications(downloads.getSnapshot().getDownloads());
             startForeground(R.id.notification_downloading, notification);
             setupNotificationUpdaterIfNecessary();
             downloadEnqueueExecutor.execute(() -> onDownloadQueued(intent));
         } else if (intent != null && intent.getBooleanExtra(EXTRA_REFRESH_ALL, false)) {
-            Notification notification = notificationManager.updateNotifications(downloads);
+            Notification notification = notificationManager.updateNotifications(downloads.getSnapshot().getDownloads());
             startForeground(R.id.notification_downloading, notification);
             setupNotificationUpdaterIfNecessary();
             downloadEnqueueExecutor.execute(() -> enqueueAll(intent));
-        } else if (downloads.size() == 0) {
+        } else if (downloads.getSnapshot().size() == 0) {
             shutdown();
         } else {
             Log.d(TAG, "onStartCommand: Unknown intent");
@@ -208,6 +197,7 @@ public class DownloadService extends Service {
         EventBus.getDefault().postSticky(DownloadEvent.refresh(Collections.emptyList()));
         cancelNotificationUpdater();
         downloadEnqueueExecutor.shutdownNow();
+        downloadScheduler.shutdown();
         downloadHandleExecutor.shutdownNow();
         notificationUpdateExecutor.shutdownNow();
         if (downloadPostFuture != null) {
@@ -223,12 +213,20 @@ public class DownloadService extends Service {
      * This method MUST NOT, in any case, throw an exception.
      * Otherwise, it hangs up the refresh thread pool.
      */
-    private void performDownload(Downloader downloader) {
+    private void performDownload(Downloader downloader, int lane) {
         try {
             downloader.call();
         } catch (Exception e) {
             e.printStackTrace();
         }
+        try {
+            if (retryLater(downloader, lane)) {
+                return;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        downloadScheduler.clearRetries(downloader.getDownloadRequest().getSource());
         try {
             if (downloader.getResult().isSuccessful()) {
                 handleSuccessfulDownload(downloader);
@@ -244,6 +242,34 @@ public class DownloadService extends Service {
         });
     }
 
+    /**
+     * Backs off from the host if the server asked for it with 429 or 503, and schedules
+     * the download again if it can be retried.
+     *
+     * @return true if the download was replaced by a new attempt
+     */
+    private boolean retryLater(Downloader downloader, int lane) {
+        long retryAfter = downloader.getRetryAfterMillis();
+        if (retryAfter < 0 || downloader.cancelled) {
+            return false;
+        }
+        DownloadRequest request = downloader.getDownloadRequest();
+        downloadScheduler.backOff(request.getSource(), retryAfter);
+        if (!downloadScheduler.shouldRetry(request.getSource(), retryAfter)) {
+            return false;
+        }
+        Downloader retry = downloaderFactory.create(request);
+        if (retry == null) {
+            return false;
+        }
+        Log.d(TAG, "Server asked to retry later: " + request.getSource());
+        downloadEnqueueExecutor.submit(() -> {
+            downloads.replace(downloader, retry);
+            downloadScheduler.submit(request, lane, () -> performDownload(retry, lane));
+        });
+        return true;
+    }
+
     /**
      * This method MUST NOT, in any case, throw an exception.
      * Otherwise, it hangs up the refresh thread pool.
@@ -273,25 +299,26 @@ public class DownloadService extends Service {
 
         if (type == Feed.FEEDFILETYPE_FEED) {
             Log.d(TAG, "Handling completed Feed Download");
-            FeedSyncTask task = new FeedSyncTask(DownloadService.this, request);
+            if (downloader.getFeedUnchangedReason() != null) {
+                Log.d(TAG, "Feed did not change, nothing to save");
+                DBWriter.setFeedRefreshUnchanged(request.getFeedfileId(),
+                        downloader.getFeedUnchangedReason() == Downloader.FeedUnchangedReason.NOT_MODIFIED,
+                        request.getLastModified(), request.getEtag());
+                handleSuccessfulFeedRefresh(downloader, status);
+                return;
+            }
+            FeedSyncTask task = new FeedSyncTask(DownloadService.this, request, downloader.getFeedParserTask());
             boolean success = task.run();
 
             if (success) {
                 if (request.getFeedfileId() == 0) {
                     return; // No download logs for new subscriptions
                 }
-                // we create a 'successful' download log if the feed's last refresh failed
-                List<DownloadStatus> log = DBReader.getFeedDownloadLog(request.getFeedfileId());
-                if (log.size() > 0 && !log.get(0).isSuccessful()) {
-                    saveDownloadStatus(task.getDownloadStatus());
-                }
+                handleSuccessfulFeedRefresh(downloader, task.getDownloadStatus());
                 if (!request.isInitiatedByUser()) {
                     // Was stored in the database before and not initiated manually
                     newEpisodesNotification.showIfNeeded(DownloadService.this, task.getSavedFeed());
                 }
-                if (downloader.permanentRedirectUrl != null) {
-                    DBWriter.updateFeedDownloadURL(request.getSource(), downloader.permanentRedirectUrl);
-                }
             } else {
                 DBWriter.setFeedLastUpdateFailed(request.getFeedfileId(), true);
                 saveDownloadStatus(task.getDownloadStatus());
@@ -304,6 +331,21 @@ public class DownloadService extends Service {
         }
     }
 
+    /**
+     * Finishes a refresh of a subscribed feed, whether the feed changed or not.
+     */
+    private void handleSuccessfulFeedRefresh(Downloader downloader, DownloadStatus status) {
+        DownloadRequest request = downloader.getDownloadRequest();
+        // we create a 'successful' download log if the feed's last refresh failed
+        List<DownloadStatus> log = DBReader.getFeedDownloadLog(request.getFeedfileId());
+        if (log.size() > 0 && !log.get(0).isSuccessful()) {
+            saveDownloadStatus(status);
+        }
+        if (downloader.permanentRedirectUrl != null) {
+            DBWriter.updateFeedDownloadURL(request.getSource(), downloader.permanentRedirectUrl);
+        }
+    }
+
     private void handleFailedDownload(Downloader downloader) {
         DownloadStatus status = downloader.getResult();
         final int type = status.getFeedfileType();
@@ -366,9 +408,10 @@ public class DownloadService extends Service {
                 });
             } else if (TextUtils.equals(intent.getAction(), ACTION_CANCEL_ALL_DOWNLOADS)) {
                 downloadEnqueueExecutor.execute(() -> {
-                    for (Downloader d : downloads) {
+                    for (Downloader d : downloads.getSnapshot().getDownloads()) {
                         d.cancel();
                     }
+                    downloads.refresh();
                     Log.d(TAG, "Cancelled all downloads");
                     postDownloaders();
                     stopServiceIfEverythingDone();
@@ -379,11 +422,19 @@ public class DownloadService extends Service {
 
     private void doCancel(String url) {
         Log.d(TAG, "Cancelling download with url " + url);
-        for (Downloader downloader : downloads) {
+        List<Downloader> cancelled = new ArrayList<>();
+        for (Downloader downloader : downloads.getSnapshot().getDownloads()) {
             if (downloader.cancelled || !downloader.getDownloadRequest().getSource().equals(url)) {
                 continue;
             }
             downloader.cancel();
+            cancelled.add(downloader);
+        }
+        if (cancelled.isEmpty()) {
+            return;
+        }
+        downloads.refresh();
+        for (Downloader downloader : cancelled) {
             DownloadRequest request = downloader.getDownloadRequest();
             FeedItem item = getFeedItemFromId(request.getFeedfileId());
             if (item != null) {
@@ -408,9 +459,7 @@ public class DownloadService extends Service {
             EpisodeCleanupAlgorithmFactory.build().makeRoomForEpisodes(getApplicationContext(), requests.size());
         }
 
-        for (DownloadRequest request : requests) {
-            addNewRequest(request);
-        }
+        addNewRequests(requests, false);
         postDownloaders();
         stopServiceIfEverythingDone();
 
@@ -455,36 +504,55 @@ public class DownloadService extends Service {
     private void enqueueAll(Intent intent) {
         boolean initiatedByUser = intent.getBooleanExtra(EXTRA_INITIATED_BY_USER, false);
         List<Feed> feeds = DBReader.getFeedList();
+        List<DownloadRequest> requests = new ArrayList<>();
         for (Feed feed : feeds) {
             if (feed.getPreferences().getKeepUpdated()) {
                 DownloadRequest.Builder builder = DownloadRequestCreator.create(feed);
                 builder.withInitiatedByUser(initiatedByUser);
-                addNewRequest(builder.build());
+                requests.add(builder.build());
             }
         }
+        // Even if the user started it, refreshing all feeds must not hold up downloads of episodes
+        addNewRequests(requests, true);
         postDownloaders();
         stopServiceIfEverythingDone();
     }
 
-    private void addNewRequest(@NonNull DownloadRequest request) {
-        if (isDownloadingFile(request.getSource())) {
-            Log.d(TAG, "Skipped enqueueing request. Already running.");
-            return;
-        } else if (downloadHandleExecutor.isShutdown()) {
-            Log.d(TAG, "Skipped enqueueing request. Service is already shutting down.");
-            return;
+    /**
+     * Starts downloaders for the requests. They are registered together, so that the UI gets a single update.
+     *
+     * @param refreshAll If the requests refresh all feeds. They are then scheduled as feed refreshes.
+     */
+    private void addNewRequests(@NonNull List<DownloadRequest> requests, boolean refreshAll) {
+        List<Downloader> newDownloaders = new ArrayList<>();
+        Set<String> sources = new HashSet<>();
+        for (DownloadRequest request : requests) {
+            if (isDownloadingFile(request.getSource()) || !sources.add(request.getSource())) {
+                Log.d(TAG, "Skipped enqueueing request. Already running.");
+                continue;
+            } else if (downloadHandleExecutor.isShutdown()) {
+                Log.d(TAG, "Skipped enqueueing request. Service is already shutting down.");
+                continue;
+            }
+            Log.d(TAG, "Add new request: " + request.getSource());
+            if (request.getSource().startsWith(Feed.PREFIX_LOCAL_FOLDER)) {
+                newDownloaders.add(new LocalFeedStubDownloader(request));
+            } else {
+                writeFileUrl(request);
+                Downloader downloader = downloaderFactory.create(request);
+                if (downloader != null) {
+                    newDownloaders.add(downloader);
+                }
+            }
         }
-        Log.d(TAG, "Add new request: " + request.getSource());
-        if (request.getSource().startsWith(Feed.PREFIX_LOCAL_FOLDER)) {
-            Downloader downloader = new LocalFeedStubDownloader(request);
-            downloads.add(downloader);
-            downloadHandleExecutor.submit(() -> performLocalFeedRefresh(downloader, request));
-        } else {
-            writeFileUrl(request);
-            Downloader downloader = downloaderFactory.create(request);
-            if (downloader != null) {
-                downloads.add(downloader);
-                downloadHandleExecutor.submit(() -> performDownload(downloader));
+        downloads.addAll(newDownloaders);
+        for (Downloader downloader : newDownloaders) {
+            DownloadRequest request = downloader.getDownloadRequest();
+            int lane = refreshAll ? DownloadScheduler.LANE_FEED_REFRESH : DownloadScheduler.getLane(request);
+            if (downloader instanceof LocalFeedStubDownloader) {
+                downloadScheduler.submit(request, lane, () -> performLocalFeedRefresh(downloader, request));
+            } else {
+                downloadScheduler.submit(request, lane, () -> performDownload(downloader, lane));
             }
         }
     }
@@ -516,8 +584,9 @@ public class DownloadService extends Service {
      * Check if there's something else to download, otherwise stop.
      */
     private void stopServiceIfEverythingDone() {
-        Log.d(TAG, downloads.size() + " downloads left");
-        if (downloads.size() <= 0) {
+        int downloadsLeft = downloads.getSnapshot().size();
+        Log.d(TAG, downloadsLeft + " downloads left");
+        if (downloadsLeft <= 0) {
             Log.d(TAG, "Attempting shutdown");
             shutdown();
         }
@@ -593,7 +662,7 @@ public class DownloadService extends Service {
 
     private class NotificationUpdater implements Runnable {
         public void run() {
-            Notification n = notificationManager.updateNotifications(downloads);
+            Notification n = notificationManager.updateNotifications(downloads.getSnapshot().getDownloads());
             if (n != null) {
                 NotificationManager nm = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
                 nm.notify(R.id.notification_downloading, n);
@@ -3,12 +3,14 @@ package de.danoeh.antennapod.core.service.download;
 import android.content.Context;
 import android.net.wifi.WifiManager;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.util.Date;
 import java.util.concurrent.Callable;
 
 import de.danoeh.antennapod.core.ClientConfig;
 import de.danoeh.antennapod.core.R;
+import de.danoeh.antennapod.core.service.download.handler.FeedParserTask;
 import de.danoeh.antennapod.model.download.DownloadStatus;
 import de.danoeh.antennapod.net.download.serviceinterface.DownloadRequest;
 
@@ -21,6 +23,19 @@ public abstract class Downloader implements Callable<Downloader> {
     private volatile boolean finished;
     public volatile boolean cancelled;
     public String permanentRedirectUrl = null;
+    /**
+     * Set if the feed did not change since the last download. In this case, the result is successful,
+     * but there is nothing to parse or save.
+     */
+    @Nullable
+    FeedUnchangedReason feedUnchangedReason = null;
+    @Nullable
+    FeedParserTask feedParserTask = null;
+    /**
+     * Set if the server asked to try again later, in milliseconds. 0 if the server did not say when,
+     * -1 if it did not ask to back off.
+     */
+    long retryAfterMillis = -1;
 
     @NonNull
     final DownloadRequest request;
@@ -67,6 +82,27 @@ public abstract class Downloader implements Callable<Downloader> {
         return result;
     }
 
+    /**
+     * Returns the task that already parsed the feed while it was downloaded,
+     * or null if the downloaded file still needs to be parsed.
+     */
+    @Nullable
+    public FeedParserTask getFeedParserTask() {
+        return feedParserTask;
+    }
+
+    @Nullable
+    public FeedUnchangedReason getFeedUnchangedReason() {
+        return feedUnchangedReason;
+    }
+
+    /**
+     * Returns the time after which the server accepts the request again, or -1 if it did not ask to back off.
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
     public boolean isFinished() {
         return finished;
     }
@@ -75,4 +111,11 @@ public abstract class Downloader implements Callable<Downloader> {
         cancelled = true;
     }
 
+    public enum FeedUnchangedReason {
+        /** The server answered the conditional request with 304 Not Modified. */
+        NOT_MODIFIED,
+        /** The server sent the same document as last time. */
+        SAME_DIGEST
+    }
+
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package de.danoeh.antennapod.core.service.download;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -13,19 +15,33 @@ import org.apache.commons.io.IOUtils;
 
 import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
 import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Collections;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import de.danoeh.antennapod.core.BuildConfig;
 import de.danoeh.antennapod.core.R;
+import de.danoeh.antennapod.core.service.download.handler.FeedParserTask;
+import de.danoeh.antennapod.model.feed.Feed;
 import de.danoeh.antennapod.model.feed.FeedMedia;
+import de.danoeh.antennapod.parser.feed.FeedHandlerResult;
 import de.danoeh.antennapod.parser.feed.util.DateUtils;
 import de.danoeh.antennapod.model.download.DownloadError;
 import de.danoeh.antennapod.core.util.StorageUtils;
@@ -35,21 +51,55 @@ import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.ByteString;
 
 public class HttpDownloader extends Downloader {
     private static final String TAG = "HttpDownloader";
     private static final int BUFFER_SIZE = 8 * 1024;
+    private static final long DEFAULT_MIN_SEGMENTED_SIZE = 32 * 1024 * 1024;
+    private static final String FEED_COPY_SUFFIX = ".last";
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private static long minSegmentedSize = DEFAULT_MIN_SEGMENTED_SIZE;
+    private static boolean keepFeedCopies = BuildConfig.DEBUG;
+
+    private final boolean parseFeedWhileDownloading;
 
     public HttpDownloader(@NonNull DownloadRequest request) {
+        this(request, false);
+    }
+
+    /**
+     * @param parseFeedWhileDownloading If true, feeds are parsed directly from the response body instead of
+     *                                  being written to the destination file. The result is available from
+     *                                  {@link #getFeedParserTask()}.
+     */
+    public HttpDownloader(@NonNull DownloadRequest request, boolean parseFeedWhileDownloading) {
         super(request);
+        this.parseFeedWhileDownloading = parseFeedWhileDownloading;
     }
 
     @Override
     protected void download() {
         File destination = new File(request.getDestination());
+        SegmentedDownload unfinishedSegmentedDownload = null;
+        if (SegmentedDownload.getStateFile(destination).exists()) {
+            if (request.getFeedfileType() == FeedMedia.FEEDFILETYPE_FEEDMEDIA) {
+                unfinishedSegmentedDownload = SegmentedDownload.resume(destination);
+                if (unfinishedSegmentedDownload != null && unfinishedSegmentedDownload.getValidator() == null) {
+                    unfinishedSegmentedDownload = null; // Started before segments required a validator
+                }
+            }
+            if (unfinishedSegmentedDownload == null) {
+                // The preallocated file can not be resumed with a single range request
+                Log.d(TAG, "Discarding unfinished segmented download");
+                SegmentedDownload.deleteState(destination);
+                destination.delete();
+            }
+        }
         final boolean fileExists = destination.exists();
 
-        if (request.isDeleteOnFailure() && fileExists) {
+        if (request.isDeleteOnFailure() && fileExists && unfinishedSegmentedDownload == null) {
             Log.w(TAG, "File already exists");
             onSuccess();
             return;
@@ -61,34 +111,22 @@ public class HttpDownloader extends Downloader {
 
         try {
             final URI uri = URIUtil.getURIFromRequestUrl(request.getSource());
-            Request.Builder httpReq = new Request.Builder().url(uri.toURL());
-            httpReq.tag(request);
-            httpReq.cacheControl(new CacheControl.Builder().noStore().build());
-
-            if (request.getFeedfileType() == FeedMedia.FEEDFILETYPE_FEEDMEDIA) {
-                // set header explicitly so that okhttp doesn't do transparent gzip
-                Log.d(TAG, "addHeader(\"Accept-Encoding\", \"identity\")");
-                httpReq.addHeader("Accept-Encoding", "identity");
-                httpReq.cacheControl(new CacheControl.Builder().noCache().build()); // noStore breaks CDNs
+            if (unfinishedSegmentedDownload != null) {
+                Log.d(TAG, "Resuming segmented download at position " + unfinishedSegmentedDownload.getSoFar());
+                downloadSegments(unfinishedSegmentedDownload, uri, null);
+                return;
             }
 
-            if (uri.getScheme().equals("http")) {
-                httpReq.addHeader("Upgrade-Insecure-Requests", "1");
-            }
+            Request.Builder httpReq = newRequestBuilder(uri);
 
+            // Send both validators, servers that support ETags give them precedence
+            if (!TextUtils.isEmpty(request.getEtag())) {
+                Log.d(TAG, "addHeader(\"If-None-Match\", \"" + request.getEtag() + "\")");
+                httpReq.addHeader("If-None-Match", request.getEtag());
+            }
             if (!TextUtils.isEmpty(request.getLastModified())) {
-                String lastModified = request.getLastModified();
-                Date lastModifiedDate = DateUtils.parse(lastModified);
-                if (lastModifiedDate != null) {
-                    long threeDaysAgo = System.currentTimeMillis() - 1000 * 60 * 60 * 24 * 3;
-                    if (lastModifiedDate.getTime() > threeDaysAgo) {
-                        Log.d(TAG, "addHeader(\"If-Modified-Since\", \"" + lastModified + "\")");
-                        httpReq.addHeader("If-Modified-Since", lastModified);
-                    }
-                } else {
-                    Log.d(TAG, "addHeader(\"If-None-Match\", \"" + lastModified + "\")");
-                    httpReq.addHeader("If-None-Match", lastModified);
-                }
+                Log.d(TAG, "addHeader(\"If-Modified-Since\", \"" + request.getLastModified() + "\")");
+                httpReq.addHeader("If-Modified-Since", request.getLastModified());
             }
 
             // add range header if necessary
@@ -108,8 +146,20 @@ public class HttpDownloader extends Downloader {
 
             Log.d(TAG, "Response code is " + response.code());
             if (!response.isSuccessful() && response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
-                Log.d(TAG, "Feed '" + request.getSource() + "' not modified since last update, Download canceled");
-                onCancelled();
+                if (request.getFeedfileType() != Feed.FEEDFILETYPE_FEED) {
+                    onCancelled();
+                    return;
+                }
+                Log.d(TAG, "Feed '" + request.getSource() + "' not modified since last update");
+                // The response may contain updated validators, the old ones are kept otherwise
+                if (response.header("Last-Modified") != null) {
+                    request.setLastModified(response.header("Last-Modified"));
+                }
+                if (response.header("ETag") != null) {
+                    request.setEtag(response.header("ETag"));
+                }
+                feedUnchangedReason = FeedUnchangedReason.NOT_MODIFIED;
+                onSuccess();
                 return;
             } else if (!response.isSuccessful() || response.body() == null) {
                 callOnFailByResponseCode(response);
@@ -122,6 +172,13 @@ public class HttpDownloader extends Downloader {
             checkIfRedirect(response);
 
             connection = new BufferedInputStream(responseBody.byteStream());
+            MessageDigest contentDigest = null;
+            if (request.getFeedfileType() == Feed.FEEDFILETYPE_FEED) {
+                contentDigest = newContentDigest();
+                if (contentDigest != null) {
+                    connection = new DigestInputStream(connection, contentDigest);
+                }
+            }
 
             String contentRangeHeader = (fileExists) ? response.header("Content-Range") : null;
             if (fileExists && response.code() == HttpURLConnection.HTTP_PARTIAL
@@ -159,6 +216,23 @@ public class HttpDownloader extends Downloader {
                 return;
             }
 
+            if (canDownloadInSegments(response, isGzip)) {
+                IOUtils.closeQuietly(out);
+                out = null;
+                Log.d(TAG, "Starting segmented download");
+                SegmentedDownload segmentedDownload = SegmentedDownload.create(destination,
+                        request.getSize(), getRangeValidator(response));
+                downloadSegments(segmentedDownload, response.request().url().uri(), connection);
+                return;
+            }
+
+            if (parseFeedWhileDownloading && request.getFeedfileType() == Feed.FEEDFILETYPE_FEED) {
+                IOUtils.closeQuietly(out);
+                out = null;
+                parseFeed(destination, connection, response, isGzip, contentDigest);
+                return;
+            }
+
             Log.d(TAG, "Starting download");
             try {
                 while (!cancelled && (count = connection.read(buffer)) != -1) {
@@ -184,11 +258,14 @@ public class HttpDownloader extends Downloader {
                     onFail(DownloadError.ERROR_IO_ERROR, "Download completed, but nothing was read");
                     return;
                 }
-                String lastModified = response.header("Last-Modified");
-                if (lastModified != null) {
-                    request.setLastModified(lastModified);
-                } else {
-                    request.setLastModified(response.header("ETag"));
+                request.setLastModified(response.header("Last-Modified"));
+                request.setEtag(response.header("ETag"));
+                if (contentDigest != null && setContentDigest(contentDigest)) {
+                    Log.d(TAG, "Feed '" + request.getSource() + "' has the same content as last time");
+                    feedUnchangedReason = FeedUnchangedReason.SAME_DIGEST;
+                    if (!destination.delete()) {
+                        Log.w(TAG, "Unable to delete " + destination.getName());
+                    }
                 }
                 onSuccess();
             }
@@ -224,6 +301,242 @@ public class HttpDownloader extends Downloader {
         }
     }
 
+    /**
+     * Parses the feed while it arrives. The destination file is not written,
+     * only debug builds keep a copy of the last response of each feed next to it.
+     */
+    private void parseFeed(File destination, InputStream connection, Response response, boolean isGzip,
+                           @Nullable MessageDigest contentDigest) throws IOException {
+        if (destination.exists() && !destination.delete()) {
+            Log.w(TAG, "Unable to delete " + destination.getName());
+        }
+        String previousLastModified = request.getLastModified();
+        String previousEtag = request.getEtag();
+        // Needs to be known before parsing, it is stored in the parsed feed
+        request.setLastModified(response.header("Last-Modified"));
+        request.setEtag(response.header("ETag"));
+
+        OutputStream copy = keepFeedCopies ? new FileOutputStream(destination.getPath() + FEED_COPY_SUFFIX) : null;
+        FeedBodyStream body = new FeedBodyStream(connection, copy);
+        try {
+            Log.d(TAG, "Starting download and parsing of feed");
+            FeedParserTask task = new FeedParserTask(request, body);
+            task.call();
+            if (!cancelled && body.failure == null) {
+                // The parser does not necessarily read trailing content after the root element
+                byte[] buffer = new byte[BUFFER_SIZE];
+                //noinspection StatementWithEmptyBody
+                while (body.read(buffer) != -1) {
+                }
+            }
+
+            if (cancelled) {
+                request.setLastModified(previousLastModified);
+                request.setEtag(previousEtag);
+                onCancelled();
+            } else if (body.failure != null) {
+                request.setLastModified(previousLastModified);
+                request.setEtag(previousEtag);
+                throw body.failure;
+            } else if (!isGzip && request.getSize() != DownloadStatus.SIZE_UNKNOWN
+                    && request.getSoFar() != request.getSize()) {
+                request.setLastModified(previousLastModified);
+                request.setEtag(previousEtag);
+                onFail(DownloadError.ERROR_IO_WRONG_SIZE, "Download completed but size: "
+                        + request.getSoFar() + " does not equal expected size " + request.getSize());
+            } else {
+                if (contentDigest != null) {
+                    // The digest is only known after the whole document was read
+                    if (setContentDigest(contentDigest)) {
+                        Log.d(TAG, "Feed '" + request.getSource() + "' has the same content as last time");
+                        feedUnchangedReason = FeedUnchangedReason.SAME_DIGEST;
+                    }
+                    FeedHandlerResult result = task.call();
+                    if (result != null) {
+                        result.feed.setContentDigest(request.getContentDigest());
+                    }
+                }
+                feedParserTask = task;
+                onSuccess();
+            }
+        } finally {
+            IOUtils.closeQuietly(copy);
+        }
+    }
+
+    /**
+     * Passes the response body to the feed parser and keeps track of the download progress.
+     * Errors of the connection are remembered, so they can be told apart from parser errors.
+     */
+    private class FeedBodyStream extends FilterInputStream {
+        @Nullable
+        private final OutputStream copy;
+        private IOException failure = null;
+
+        FeedBodyStream(InputStream in, @Nullable OutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            int count = read(buffer, 0, 1);
+            return count == -1 ? -1 : buffer[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (cancelled) {
+                throw new InterruptedIOException("Download cancelled");
+            }
+            int count;
+            try {
+                count = super.read(buffer, offset, length);
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+            if (count > 0) {
+                if (copy != null) {
+                    copy.write(buffer, offset, count);
+                }
+                request.setSoFar(request.getSoFar() + count);
+                request.setProgressPercent((int) (100.0 * request.getSoFar() / request.getSize()));
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, BUFFER_SIZE)];
+            return Math.max(0, read(buffer, 0, buffer.length));
+        }
+
+        @Override
+        public void close() {
+            // The parser closes its input when the document ends, the response body is closed by the downloader
+        }
+    }
+
+    @Nullable
+    private static MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            return null;
+        }
+    }
+
+    /**
+     * Stores the digest of the downloaded document in the request.
+     *
+     * @return true if the document has the same digest as the last download of the feed
+     */
+    private boolean setContentDigest(MessageDigest contentDigest) {
+        String previousDigest = request.getContentDigest();
+        String digest = ByteString.of(contentDigest.digest()).hex();
+        request.setContentDigest(digest);
+        return digest.equals(previousDigest);
+    }
+
+    private Request.Builder newRequestBuilder(URI uri) throws MalformedURLException {
+        Request.Builder httpReq = new Request.Builder().url(uri.toURL());
+        httpReq.tag(request);
+        httpReq.cacheControl(new CacheControl.Builder().noStore().build());
+
+        if (request.getFeedfileType() == FeedMedia.FEEDFILETYPE_FEEDMEDIA) {
+            // set header explicitly so that okhttp doesn't do transparent gzip
+            Log.d(TAG, "addHeader(\"Accept-Encoding\", \"identity\")");
+            httpReq.addHeader("Accept-Encoding", "identity");
+            httpReq.cacheControl(new CacheControl.Builder().noCache().build()); // noStore breaks CDNs
+        }
+
+        if (uri.getScheme().equals("http")) {
+            httpReq.addHeader("Upgrade-Insecure-Requests", "1");
+        }
+        return httpReq;
+    }
+
+    /**
+     * Large media files are downloaded over several connections in parallel
+     * if the server announces that it supports range requests. The server also needs to send a validator
+     * for If-Range, otherwise the segments could come from different versions of the file.
+     */
+    private boolean canDownloadInSegments(Response response, boolean isGzip) {
+        return request.getFeedfileType() == FeedMedia.FEEDFILETYPE_FEEDMEDIA
+                && response.code() == HttpURLConnection.HTTP_OK
+                && !isGzip
+                && "bytes".equalsIgnoreCase(response.header("Accept-Ranges"))
+                && request.getSize() >= minSegmentedSize
+                && getRangeValidator(response) != null;
+    }
+
+    /**
+     * Returns the value for If-Range headers. Weak ETags can not be used there.
+     */
+    @Nullable
+    private static String getRangeValidator(Response response) {
+        String etag = response.header("ETag");
+        if (!TextUtils.isEmpty(etag) && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return response.header("Last-Modified");
+    }
+
+    private void downloadSegments(SegmentedDownload segmentedDownload, URI uri,
+                                  @Nullable InputStream firstSegmentStream) throws IOException {
+        request.setStatusMsg(R.string.download_running);
+        request.setSize(segmentedDownload.getSize());
+        File destination = new File(request.getDestination());
+        AtomicBoolean rangeRequestFailed = new AtomicBoolean(false);
+        try {
+            segmentedDownload.download(this, (from, to, validator) -> {
+                Request.Builder httpReq = newRequestBuilder(uri);
+                httpReq.addHeader("Range", "bytes=" + from + "-" + to);
+                if (validator != null) {
+                    httpReq.addHeader("If-Range", validator);
+                }
+                Response response = newCall(httpReq);
+                if (response.code() != HttpURLConnection.HTTP_PARTIAL) {
+                    response.close();
+                    rangeRequestFailed.set(true);
+                    throw new IOException("Range request failed with status " + response.code());
+                }
+                return response;
+            }, firstSegmentStream);
+        } catch (IOException e) {
+            if (rangeRequestFailed.get()) {
+                // The file changed on the server or ranges are no longer supported, start over next time
+                SegmentedDownload.deleteState(destination);
+                if (destination.exists() && !destination.delete()) {
+                    Log.w(TAG, "Unable to delete partially downloaded file");
+                }
+            }
+            throw e;
+        }
+
+        if (cancelled) {
+            onCancelled();
+        } else if (!segmentedDownload.isComplete()) {
+            onFail(DownloadError.ERROR_IO_WRONG_SIZE, "Segmented download stopped at "
+                    + segmentedDownload.getSoFar() + " of " + segmentedDownload.getSize() + " bytes");
+        } else {
+            SegmentedDownload.deleteState(destination);
+            request.setSoFar(segmentedDownload.getSize());
+            onSuccess();
+        }
+    }
+
+    /**
+     * Sets the minimum size of files that are downloaded in segments. Values <= 0 restore the default.
+     */
+    @VisibleForTesting
+    public static void setMinSegmentedSize(long size) {
+        minSegmentedSize = size > 0 ? size : DEFAULT_MIN_SEGMENTED_SIZE;
+    }
+
     private Response newCall(Request.Builder httpReq) throws IOException {
         OkHttpClient httpClient = AntennapodHttpClient.getHttpClient();
         try {
@@ -274,9 +587,29 @@ public class HttpDownloader extends Downloader {
             error = DownloadError.ERROR_HTTP_DATA_ERROR;
             details = String.valueOf(response.code());
         }
+        if (response.code() == HTTP_TOO_MANY_REQUESTS || response.code() == HttpURLConnection.HTTP_UNAVAILABLE) {
+            retryAfterMillis = parseRetryAfter(response.header("Retry-After"), System.currentTimeMillis());
+        }
         onFail(error, details);
     }
 
+    /**
+     * Parses the value of a Retry-After header, which is either a number of seconds or a date.
+     *
+     * @return The time to wait in milliseconds, or 0 if the header is missing or invalid.
+     */
+    static long parseRetryAfter(@Nullable String value, long now) {
+        if (TextUtils.isEmpty(value)) {
+            return 0;
+        }
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            Date date = DateUtils.parse(value);
+            return date != null ? Math.max(0, date.getTime() - now) : 0;
+        }
+    }
+
     private void checkIfRedirect(Response response) {
         // detect 301 Moved permanently and 308 Permanent Redirect
         ArrayList<Response> responses = new ArrayList<>();
@@ -325,6 +658,7 @@ public class HttpDownloader extends Downloader {
     private void cleanup() {
         if (request.getDestination() != null) {
             File dest = new File(request.getDestination());
+            SegmentedDownload.deleteState(dest);
             if (dest.exists()) {
                 boolean rc = dest.delete();
                 Log.d(TAG, "Deleted file " + dest.getName() + "; Result: "
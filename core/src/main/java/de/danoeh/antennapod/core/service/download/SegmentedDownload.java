@@ -0,0 +1,319 @@
+package de.danoeh.antennapod.core.service.download;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import de.danoeh.antennapod.net.download.serviceinterface.DownloadRequest;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads a file as several byte ranges in parallel. Each range is written to its own position of a
+ * preallocated file. The progress of every segment is stored in a state file next to the destination,
+ * so an interrupted download can be resumed without downloading completed parts again.
+ */
+class SegmentedDownload {
+    private static final String TAG = "SegmentedDownload";
+    private static final String STATE_FILE_SUFFIX = ".segments";
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final long CHECKPOINT_INTERVAL = 1024 * 1024;
+    static final int SEGMENT_COUNT = 4;
+
+    /**
+     * Opens a connection that returns the given (inclusive) byte range with status 206.
+     */
+    interface RangeOpener {
+        @NonNull
+        Response open(long from, long to, @Nullable String validator) throws IOException;
+    }
+
+    private final File destination;
+    private final File stateFile;
+    private final long size;
+    @Nullable
+    private final String validator;
+    private final List<Segment> segments;
+    private volatile boolean aborted = false;
+
+    private SegmentedDownload(File destination, long size, @Nullable String validator, List<Segment> segments) {
+        this.destination = destination;
+        this.stateFile = getStateFile(destination);
+        this.size = size;
+        this.validator = validator;
+        this.segments = segments;
+    }
+
+    static File getStateFile(File destination) {
+        return new File(destination.getPath() + STATE_FILE_SUFFIX);
+    }
+
+    /**
+     * Splits a download of the given size into segments and preallocates the destination file.
+     *
+     * @param validator Strong ETag or Last-Modified date that is sent as If-Range, so that all
+     *                  segments are guaranteed to come from the same version of the file.
+     */
+    static SegmentedDownload create(File destination, long size, @Nullable String validator) throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        long segmentSize = size / SEGMENT_COUNT;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            long start = i * segmentSize;
+            long end = (i == SEGMENT_COUNT - 1) ? size - 1 : start + segmentSize - 1;
+            segments.add(new Segment(start, end, 0));
+        }
+        SegmentedDownload download = new SegmentedDownload(destination, size, validator, segments);
+        try (RandomAccessFile file = new RandomAccessFile(destination, "rw")) {
+            file.setLength(size);
+        }
+        download.saveState();
+        return download;
+    }
+
+    /**
+     * Loads the state of a previous, interrupted segmented download.
+     *
+     * @return null if there is no usable state for the destination file.
+     */
+    @Nullable
+    static SegmentedDownload resume(File destination) {
+        File stateFile = getStateFile(destination);
+        if (!stateFile.exists()) {
+            return null;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(stateFile))) {
+            long size = Long.parseLong(reader.readLine());
+            String validator = reader.readLine();
+            List<Segment> segments = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] values = line.split(" ");
+                segments.add(new Segment(Long.parseLong(values[0]), Long.parseLong(values[1]),
+                        Long.parseLong(values[2])));
+            }
+            if (segments.isEmpty() || destination.length() != size) {
+                return null;
+            }
+            return new SegmentedDownload(destination, size, validator.isEmpty() ? null : validator, segments);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Unable to read download state: " + e.getMessage());
+            return null;
+        }
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    @Nullable
+    String getValidator() {
+        return validator;
+    }
+
+    long getSoFar() {
+        long soFar = 0;
+        for (Segment segment : segments) {
+            soFar += segment.written.get();
+        }
+        return soFar;
+    }
+
+    boolean isComplete() {
+        for (Segment segment : segments) {
+            if (!segment.isComplete()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Downloads all remaining segments in parallel and reports the combined progress to the request.
+     *
+     * @param firstSegmentStream Body of a response that starts at byte 0, used for the first segment
+     *                           instead of opening a new connection. May be null.
+     */
+    void download(Downloader downloader, RangeOpener opener, @Nullable InputStream firstSegmentStream)
+            throws IOException {
+        DownloadRequest request = downloader.getDownloadRequest();
+        AtomicLong soFar = new AtomicLong(getSoFar());
+        request.setSoFar(soFar.get());
+        ExecutorService executor = Executors.newFixedThreadPool(segments.size(), r -> {
+            Thread thread = new Thread(r, "SegmentedDownload");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            if (segment.isComplete()) {
+                continue;
+            }
+            InputStream stream = (i == 0 && segment.written.get() == 0) ? firstSegmentStream : null;
+            futures.add(executor.submit(() -> {
+                try {
+                    downloadSegment(downloader, opener, segment, stream, soFar);
+                } catch (IOException | RuntimeException e) {
+                    // Stop the other segments, the download is retried as a whole
+                    aborted = true;
+                    throw e;
+                }
+                return null;
+            }));
+        }
+        executor.shutdown();
+
+        IOException error = null;
+        try {
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (error == null) {
+                        error = e.getCause() instanceof IOException
+                                ? (IOException) e.getCause() : new IOException(e.getCause());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            aborted = true;
+            Thread.currentThread().interrupt();
+            error = new IOException("Interrupted while downloading segments");
+        } finally {
+            saveState();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void downloadSegment(Downloader downloader, RangeOpener opener, Segment segment,
+                                 @Nullable InputStream firstSegmentStream, AtomicLong soFar) throws IOException {
+        Response response = null;
+        InputStream in = firstSegmentStream;
+        try (RandomAccessFile out = new RandomAccessFile(destination, "rw")) {
+            if (in == null) {
+                response = opener.open(segment.start + segment.written.get(), segment.end, validator);
+                checkContentRange(response, segment);
+                ResponseBody body = response.body();
+                if (body == null) {
+                    throw new IOException("Empty response for segment " + segment);
+                }
+                in = body.byteStream();
+            }
+            out.seek(segment.start + segment.written.get());
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long lastCheckpoint = segment.written.get();
+            while (!downloader.cancelled && !aborted && !segment.isComplete()) {
+                int maxCount = (int) Math.min(buffer.length, segment.remaining());
+                int count = in.read(buffer, 0, maxCount);
+                if (count == -1) {
+                    throw new IOException("Connection closed before segment " + segment + " was complete");
+                }
+                out.write(buffer, 0, count);
+                segment.written.addAndGet(count);
+                reportProgress(downloader.getDownloadRequest(), soFar.addAndGet(count));
+                if (segment.written.get() - lastCheckpoint >= CHECKPOINT_INTERVAL) {
+                    lastCheckpoint = segment.written.get();
+                    saveState();
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(in);
+            IOUtils.closeQuietly(response);
+        }
+    }
+
+    private void checkContentRange(Response response, Segment segment) throws IOException {
+        String contentRange = response.header("Content-Range");
+        String expected = "bytes " + (segment.start + segment.written.get()) + "-" + segment.end + "/" + size;
+        if (contentRange == null || !contentRange.trim().equals(expected)) {
+            response.close();
+            throw new IOException("Unexpected range " + contentRange + ", expected " + expected);
+        }
+    }
+
+    private void reportProgress(DownloadRequest request, long soFar) {
+        synchronized (request) {
+            if (soFar > request.getSoFar()) {
+                request.setSoFar(soFar);
+                request.setProgressPercent((int) (100.0 * soFar / size));
+            }
+        }
+    }
+
+    /**
+     * Writes the progress of all segments. The state is written to a temporary file first,
+     * so a crash while saving never leaves a truncated state file behind.
+     */
+    private synchronized void saveState() {
+        File tempFile = new File(stateFile.getPath() + ".tmp");
+        try (Writer writer = new FileWriter(tempFile)) {
+            writer.write(size + "\n");
+            writer.write((validator != null ? validator : "") + "\n");
+            for (Segment segment : segments) {
+                writer.write(segment.start + " " + segment.end + " " + segment.written.get() + "\n");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to save download state: " + e.getMessage());
+            return;
+        }
+        if (!tempFile.renameTo(stateFile)) {
+            Log.e(TAG, "Unable to replace download state file");
+        }
+    }
+
+    /**
+     * Removes the state file. Needs to be called when the download has completed or was discarded.
+     */
+    static void deleteState(File destination) {
+        File stateFile = getStateFile(destination);
+        if (stateFile.exists() && !stateFile.delete()) {
+            Log.w(TAG, "Unable to delete download state file");
+        }
+    }
+
+    private static class Segment {
+        final long start;
+        final long end;
+        final AtomicLong written;
+
+        Segment(long start, long end, long written) {
+            this.start = start;
+            this.end = end;
+            this.written = new AtomicLong(written);
+        }
+
+        long remaining() {
+            return end - start + 1 - written.get();
+        }
+
+        boolean isComplete() {
+            return remaining() <= 0;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return start + "-" + end;
+        }
+    }
+}
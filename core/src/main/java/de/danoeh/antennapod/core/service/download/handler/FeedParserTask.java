@@ -3,6 +3,7 @@ package de.danoeh.antennapod.core.service.download.handler;
 import android.text.TextUtils;
 import android.util.Log;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import de.danoeh.antennapod.model.feed.Feed;
 import de.danoeh.antennapod.model.feed.FeedItem;
 import de.danoeh.antennapod.model.feed.FeedPreferences;
@@ -19,26 +20,55 @@ import org.xml.sax.SAXException;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Date;
 import java.util.concurrent.Callable;
 
 public class FeedParserTask implements Callable<FeedHandlerResult> {
     private static final String TAG = "FeedParserTask";
     private final DownloadRequest request;
+    @Nullable
+    private final InputStream body;
     private DownloadStatus downloadStatus;
     private boolean successful = true;
+    private boolean finished = false;
+    private FeedHandlerResult parsedResult = null;
 
+    /**
+     * Parses the file that the request was downloaded to. The file is deleted afterwards.
+     */
     public FeedParserTask(DownloadRequest request) {
+        this(request, null);
+    }
+
+    /**
+     * Parses the feed from the given stream while it is being downloaded.
+     */
+    public FeedParserTask(DownloadRequest request, @Nullable InputStream body) {
         this.request = request;
+        this.body = body;
         downloadStatus = new DownloadStatus(
         0, request.getTitle(), 0, request.getFeedfileType(), false,
                 false, true, DownloadError.ERROR_REQUEST_ERROR, new Date(),
                 "Unknown error: Status not set", request.isInitiatedByUser());
     }
 
+    /**
+     * Parses the feed. Calling this method again returns the result of the first call.
+     */
     @Override
     public FeedHandlerResult call() {
+        if (!finished) {
+            parsedResult = parse();
+            finished = true;
+        }
+        return parsedResult;
+    }
+
+    private FeedHandlerResult parse() {
         Feed feed = new Feed(request.getSource(), request.getLastModified());
+        feed.setEtag(request.getEtag());
+        feed.setContentDigest(request.getContentDigest());
         feed.setFile_url(request.getDestination());
         feed.setId(request.getFeedfileId());
         feed.setDownloaded(true);
@@ -52,7 +82,11 @@ public class FeedParserTask implements Callable<FeedHandlerResult> {
 
         FeedHandlerResult result = null;
         try {
-            result = feedHandler.parseFeed(feed);
+            if (body != null) {
+                result = feedHandler.parseFeed(feed, body);
+            } else {
+                result = feedHandler.parseFeed(feed);
+            }
             Log.d(TAG, feed.getTitle() + " parsed");
             checkFeedData(feed);
             if (TextUtils.isEmpty(feed.getImageUrl())) {
@@ -78,7 +112,7 @@ public class FeedParserTask implements Callable<FeedHandlerResult> {
             reasonDetailed = e.getMessage();
         } finally {
             File feedFile = new File(request.getDestination());
-            if (feedFile.exists()) {
+            if (body == null && feedFile.exists()) {
                 boolean deleted = feedFile.delete();
                 Log.d(TAG, "Deletion of file '" + feedFile.getAbsolutePath() + "' "
                         + (deleted ? "successful" : "FAILED"));
@@ -3,6 +3,7 @@ package de.danoeh.antennapod.core.service.download.handler;
 import android.content.Context;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import de.danoeh.antennapod.model.feed.Feed;
 import de.danoeh.antennapod.net.download.serviceinterface.DownloadRequest;
 import de.danoeh.antennapod.model.download.DownloadStatus;
@@ -16,9 +17,17 @@ public class FeedSyncTask {
     private final FeedParserTask task;
 
     public FeedSyncTask(Context context, DownloadRequest request) {
+        this(context, request, null);
+    }
+
+    /**
+     * @param parserTask Task that already parsed the feed while it was downloaded,
+     *                   or null if the feed still needs to be parsed from the downloaded file.
+     */
+    public FeedSyncTask(Context context, DownloadRequest request, @Nullable FeedParserTask parserTask) {
         this.request = request;
         this.context = context;
-        this.task = new FeedParserTask(request);
+        this.task = parserTask != null ? parserTask : new FeedParserTask(request);
     }
 
     public boolean run() {
@@ -1,29 +1,18 @@
 package de.danoeh.antennapod.core.service.download.handler;
 
 import de.danoeh.antennapod.core.event.DownloadEvent;
-import de.danoeh.antennapod.core.service.download.Downloader;
+import de.danoeh.antennapod.core.service.download.DownloadRegistry;
 import org.greenrobot.eventbus.EventBus;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
 public class PostDownloaderTask implements Runnable {
-    private List<Downloader> downloads;
+    private final DownloadRegistry downloads;
 
-    public PostDownloaderTask(List<Downloader> downloads) {
+    public PostDownloaderTask(DownloadRegistry downloads) {
         this.downloads = downloads;
     }
 
     @Override
     public void run() {
-        List<Downloader> runningDownloads = new ArrayList<>();
-        for (Downloader downloader : downloads) {
-            if (!downloader.cancelled) {
-                runningDownloads.add(downloader);
-            }
-        }
-        List<Downloader> list = Collections.unmodifiableList(runningDownloads);
-        EventBus.getDefault().postSticky(DownloadEvent.refresh(list));
+        EventBus.getDefault().postSticky(DownloadEvent.refresh(downloads.getSnapshot().getRunning()));
     }
 }
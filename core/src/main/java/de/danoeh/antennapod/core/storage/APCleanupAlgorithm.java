@@ -5,7 +5,6 @@ import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 import android.util.Log;
 
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
@@ -14,7 +13,6 @@ import java.util.Locale;
 import java.util.concurrent.ExecutionException;
 
 import de.danoeh.antennapod.model.feed.FeedItem;
-import de.danoeh.antennapod.model.feed.FeedMedia;
 
 /**
  * Implementation of the EpisodeCleanupAlgorithm interface used by AntennaPod.
@@ -35,32 +33,14 @@ public class APCleanupAlgorithm extends EpisodeCleanupAlgorithm {
      */
     public int getReclaimableItems()
     {
-        return getCandidates().size();
+        return DBReader.getCleanupCandidatesSummary(true, getPlayedBefore()).getCount();
     }
 
     @Override
     public int performCleanup(Context context, int numberOfEpisodesToDelete) {
-        List<FeedItem> candidates = getCandidates();
-        List<FeedItem> delete;
-
-        Collections.sort(candidates, (lhs, rhs) -> {
-            Date l = lhs.getMedia().getPlaybackCompletionDate();
-            Date r = rhs.getMedia().getPlaybackCompletionDate();
-
-            if (l == null) {
-                l = new Date();
-            }
-            if (r == null) {
-                r = new Date();
-            }
-            return l.compareTo(r);
-        });
-
-        if (candidates.size() > numberOfEpisodesToDelete) {
-            delete = candidates.subList(0, numberOfEpisodesToDelete);
-        } else {
-            delete = candidates;
-        }
+        List<FeedItem> delete = numberOfEpisodesToDelete > 0
+                ? DBReader.getCleanupCandidates(true, getPlayedBefore(), numberOfEpisodesToDelete)
+                : Collections.emptyList();
 
         for (FeedItem item : delete) {
             try {
@@ -85,29 +65,11 @@ public class APCleanupAlgorithm extends EpisodeCleanupAlgorithm {
         return minusHours(currentDate, numberOfHoursAfterPlayback);
     }
 
-    @NonNull
-    private List<FeedItem> getCandidates() {
-        List<FeedItem> candidates = new ArrayList<>();
-        List<FeedItem> downloadedItems = DBReader.getDownloadedItems();
-
-        Date mostRecentDateForDeletion = calcMostRecentDateForDeletion(new Date());
-        for (FeedItem item : downloadedItems) {
-            if (item.hasMedia()
-                    && item.getMedia().isDownloaded()
-                    && !item.isTagged(FeedItem.TAG_QUEUE)
-                    && item.isPlayed()
-                    && !item.isTagged(FeedItem.TAG_FAVORITE)) {
-                FeedMedia media = item.getMedia();
-                // make sure this candidate was played at least the proper amount of days prior
-                // to now
-                if (media != null
-                        && media.getPlaybackCompletionDate() != null
-                        && media.getPlaybackCompletionDate().before(mostRecentDateForDeletion)) {
-                    candidates.add(item);
-                }
-            }
-        }
-        return candidates;
+    /**
+     * Only episodes whose playback was completed before this time may be deleted.
+     */
+    private long getPlayedBefore() {
+        return calcMostRecentDateForDeletion(new Date()).getTime();
     }
 
     @Override
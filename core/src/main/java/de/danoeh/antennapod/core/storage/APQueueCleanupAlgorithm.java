@@ -1,12 +1,9 @@
 package de.danoeh.antennapod.core.storage;
 
 import android.content.Context;
-import androidx.annotation.NonNull;
 import android.util.Log;
 
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.ExecutionException;
@@ -26,33 +23,14 @@ public class APQueueCleanupAlgorithm extends EpisodeCleanupAlgorithm {
      */
     public int getReclaimableItems()
     {
-        return getCandidates().size();
+        return DBReader.getCleanupCandidatesSummary(true, 0).getCount();
     }
 
     @Override
     public int performCleanup(Context context, int numberOfEpisodesToDelete) {
-        List<FeedItem> candidates = getCandidates();
-        List<FeedItem> delete;
-
-        // in the absence of better data, we'll sort by item publication date
-        Collections.sort(candidates, (lhs, rhs) -> {
-            Date l = lhs.getPubDate();
-            Date r = rhs.getPubDate();
-
-            if (l == null) {
-                l = new Date();
-            }
-            if (r == null) {
-                r = new Date();
-            }
-            return l.compareTo(r);
-        });
-
-        if (candidates.size() > numberOfEpisodesToDelete) {
-            delete = candidates.subList(0, numberOfEpisodesToDelete);
-        } else {
-            delete = candidates;
-        }
+        List<FeedItem> delete = numberOfEpisodesToDelete > 0
+                ? DBReader.getCleanupCandidates(true, 0, numberOfEpisodesToDelete)
+                : Collections.emptyList();
 
         for (FeedItem item : delete) {
             try {
@@ -72,21 +50,6 @@ public class APQueueCleanupAlgorithm extends EpisodeCleanupAlgorithm {
         return counter;
     }
 
-    @NonNull
-    private List<FeedItem> getCandidates() {
-        List<FeedItem> candidates = new ArrayList<>();
-        List<FeedItem> downloadedItems = DBReader.getDownloadedItems();
-        for (FeedItem item : downloadedItems) {
-            if (item.hasMedia()
-                    && item.getMedia().isDownloaded()
-                    && !item.isTagged(FeedItem.TAG_QUEUE)
-                    && !item.isTagged(FeedItem.TAG_FAVORITE)) {
-                candidates.add(item);
-            }
-        }
-        return candidates;
-    }
-
     @Override
     public int getDefaultCleanupParameter() {
         return getNumEpisodesToCleanup(0);
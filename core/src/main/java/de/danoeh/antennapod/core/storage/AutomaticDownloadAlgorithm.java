@@ -4,15 +4,15 @@ import android.content.Context;
 import android.util.Log;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import de.danoeh.antennapod.net.download.serviceinterface.DownloadRequest;
 import de.danoeh.antennapod.core.service.download.DownloadRequestCreator;
 import de.danoeh.antennapod.net.download.serviceinterface.DownloadServiceInterface;
 import de.danoeh.antennapod.core.util.PlaybackStatus;
 import de.danoeh.antennapod.model.feed.FeedItem;
-import de.danoeh.antennapod.model.feed.FeedPreferences;
 import de.danoeh.antennapod.storage.preferences.UserPreferences;
 import de.danoeh.antennapod.core.util.NetworkUtils;
 import de.danoeh.antennapod.core.util.PowerUtils;
@@ -23,6 +23,7 @@ import de.danoeh.antennapod.core.util.PowerUtils;
  */
 public class AutomaticDownloadAlgorithm {
     private static final String TAG = "DownloadAlgorithm";
+    private static final int PAGE_SIZE = 100;
 
     /**
      * Looks for undownloaded episodes in the queue or list of new items and request a download if
@@ -50,47 +51,35 @@ public class AutomaticDownloadAlgorithm {
 
                 Log.d(TAG, "Performing auto-dl of undownloaded episodes");
 
-                List<FeedItem> candidates;
-                final List<FeedItem> queue = DBReader.getQueue();
-                final List<FeedItem> newItems = DBReader.getNewItemsList(0, Integer.MAX_VALUE);
-                candidates = new ArrayList<>(queue.size() + newItems.size());
-                candidates.addAll(queue);
-                for (FeedItem newItem : newItems) {
-                    FeedPreferences feedPrefs = newItem.getFeed().getPreferences();
-                    if (feedPrefs.getAutoDownload()
-                            && !candidates.contains(newItem)
-                            && feedPrefs.getFilter().shouldAutoDownload(newItem)) {
-                        candidates.add(newItem);
-                    }
-                }
+                boolean cacheIsUnlimited =
+                        UserPreferences.getEpisodeCacheSize() == UserPreferences.EPISODE_CACHE_SIZE_UNLIMITED;
+                int episodeCacheSize = UserPreferences.getEpisodeCacheSize();
+                int downloadedEpisodes = DBReader.getNumberOfDownloadedEpisodes();
+                EpisodeCleanupAlgorithm cleanupAlgorithm = EpisodeCleanupAlgorithmFactory.build();
 
-                // filter items that are not auto downloadable
-                Iterator<FeedItem> it = candidates.iterator();
-                while (it.hasNext()) {
-                    FeedItem item = it.next();
-                    if (!item.isAutoDownloadable(System.currentTimeMillis())
-                            || PlaybackStatus.isPlaying(item.getMedia())
-                            || item.getFeed().isLocalFeed()) {
-                        it.remove();
-                    }
+                // Only load as many episodes as could fit into the cache after a cleanup
+                int maxCandidates = Integer.MAX_VALUE;
+                if (!cacheIsUnlimited) {
+                    maxCandidates = Math.max(0,
+                            episodeCacheSize - downloadedEpisodes + cleanupAlgorithm.getReclaimableItems());
                 }
+                List<FeedItem> candidates = new ArrayList<>();
+                Set<Long> candidateIds = new HashSet<>();
+                long now = System.currentTimeMillis();
+                addCandidates(true, candidates, candidateIds, maxCandidates, now);
+                addCandidates(false, candidates, candidateIds, maxCandidates, now);
 
                 int autoDownloadableEpisodes = candidates.size();
-                int downloadedEpisodes = DBReader.getNumberOfDownloadedEpisodes();
-                int deletedEpisodes = EpisodeCleanupAlgorithmFactory.build()
-                        .makeRoomForEpisodes(context, autoDownloadableEpisodes);
-                boolean cacheIsUnlimited =
-                        UserPreferences.getEpisodeCacheSize() == UserPreferences.EPISODE_CACHE_SIZE_UNLIMITED;
-                int episodeCacheSize = UserPreferences.getEpisodeCacheSize();
+                int deletedEpisodes = cleanupAlgorithm.makeRoomForEpisodes(context, autoDownloadableEpisodes);
 
                 int episodeSpaceLeft;
                 if (cacheIsUnlimited || episodeCacheSize >= downloadedEpisodes + autoDownloadableEpisodes) {
                     episodeSpaceLeft = autoDownloadableEpisodes;
                 } else {
-                    episodeSpaceLeft = episodeCacheSize - (downloadedEpisodes - deletedEpisodes);
+                    episodeSpaceLeft = Math.max(0, episodeCacheSize - (downloadedEpisodes - deletedEpisodes));
                 }
 
-                List<FeedItem> itemsToDownload = candidates.subList(0, episodeSpaceLeft);
+                List<FeedItem> itemsToDownload = candidates.subList(0, Math.min(episodeSpaceLeft, candidates.size()));
                 if (itemsToDownload.size() > 0) {
                     Log.d(TAG, "Enqueueing " + itemsToDownload.size() + " items for download");
 
@@ -105,4 +94,41 @@ public class AutomaticDownloadAlgorithm {
             }
         };
     }
+
+    /**
+     * Adds episodes that should be downloaded, in order of priority, until there are maxCandidates.
+     * Episodes are loaded page by page, so that a long list of new episodes is not loaded completely.
+     *
+     * @param queued true to add episodes from the queue, false to add new episodes.
+     */
+    private static void addCandidates(boolean queued, List<FeedItem> candidates, Set<Long> candidateIds,
+                                      int maxCandidates, long now) {
+        int offset = 0;
+        while (candidates.size() < maxCandidates) {
+            List<FeedItem> page = DBReader.getAutoDownloadCandidates(queued, offset, PAGE_SIZE);
+            for (FeedItem item : page) {
+                if (candidates.size() >= maxCandidates) {
+                    return;
+                }
+                if (!candidateIds.contains(item.getId()) && isAutoDownloadable(item, queued, now)) {
+                    candidateIds.add(item.getId());
+                    candidates.add(item);
+                }
+            }
+            if (page.size() < PAGE_SIZE) {
+                return;
+            }
+            offset += PAGE_SIZE;
+        }
+    }
+
+    /**
+     * Checks what the database query does not: failed downloads that are waiting for a retry,
+     * the episode that is playing and the title filters of the feed.
+     */
+    private static boolean isAutoDownloadable(FeedItem item, boolean queued, long now) {
+        return item.isAutoDownloadable(now)
+                && !PlaybackStatus.isPlaying(item.getMedia())
+                && (queued || item.getFeed().getPreferences().getFilter().shouldAutoDownload(item));
+    }
 }
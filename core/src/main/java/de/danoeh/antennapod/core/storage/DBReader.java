@@ -4,15 +4,19 @@ import android.database.Cursor;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.collection.ArrayMap;
+import androidx.core.util.Pair;
 import android.text.TextUtils;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import de.danoeh.antennapod.model.feed.Chapter;
 import de.danoeh.antennapod.model.feed.Feed;
@@ -49,6 +53,44 @@ public final class DBReader {
      */
     private static final int DOWNLOAD_LOG_SIZE = 200;
 
+    /**
+     * Feeds (including their preferences) by ID, used to attach the feed to loaded items.
+     * The feeds do not have their items set. Entries are removed by DBWriter whenever a feed changes.
+     */
+    private static final Map<Long, Feed> feedCache = new HashMap<>();
+    private static boolean feedCacheComplete = false;
+    private static long feedCacheGeneration = 0;
+
+    /**
+     * Summaries of the downloaded episodes and of the episodes that the cleanup may delete, by query.
+     * The summaries are cleared by DBWriter whenever downloads, the queue, favorites or the played state change.
+     */
+    private static final Map<String, CachedSummary> episodeCacheSummaries = new HashMap<>();
+    private static long episodeCacheGeneration = 0;
+
+    private static class CachedSummary {
+        final EpisodeCacheSummary summary;
+        final long playedBefore;
+        final long nextCompletionDate;
+
+        /**
+         * @param nextCompletionDate The earliest completion date of the played episodes that were not yet
+         *                           old enough, Long.MAX_VALUE if there are none.
+         */
+        CachedSummary(EpisodeCacheSummary summary, long playedBefore, long nextCompletionDate) {
+            this.summary = summary;
+            this.playedBefore = playedBefore;
+            this.nextCompletionDate = nextCompletionDate;
+        }
+
+        /**
+         * The summary only changes with time if another episode becomes old enough to be deleted.
+         */
+        boolean isValidFor(long playedBefore) {
+            return playedBefore == this.playedBefore
+                    || (playedBefore > this.playedBefore && playedBefore <= nextCompletionDate);
+        }
+    }
 
     private DBReader() {
     }
@@ -139,12 +181,7 @@ public final class DBReader {
      * @param items The FeedItems whose Feed-objects should be loaded.
      */
     private static void loadFeedDataOfFeedItemList(List<FeedItem> items) {
-        List<Feed> feeds = getFeedList();
-
-        Map<Long, Feed> feedIndex = new ArrayMap<>(feeds.size());
-        for (Feed feed : feeds) {
-            feedIndex.put(feed.getId(), feed);
-        }
+        Map<Long, Feed> feedIndex = getCachedFeeds(items);
         for (FeedItem item : items) {
             Feed feed = feedIndex.get(item.getFeedId());
             if (feed == null) {
@@ -155,6 +192,178 @@ public final class DBReader {
         }
     }
 
+    /**
+     * Returns the feeds of the given items from the feed cache. The first call loads all feeds,
+     * later calls only load the feeds that changed since they were cached.
+     */
+    private static Map<Long, Feed> getCachedFeeds(List<FeedItem> items) {
+        Map<Long, Feed> result = new ArrayMap<>();
+        Set<Long> missing = new HashSet<>();
+        boolean loadAll;
+        long generation;
+        synchronized (feedCache) {
+            for (FeedItem item : items) {
+                Feed feed = feedCache.get(item.getFeedId());
+                if (feed != null) {
+                    result.put(feed.getId(), feed);
+                } else {
+                    missing.add(item.getFeedId());
+                }
+            }
+            if (missing.isEmpty()) {
+                return result;
+            }
+            loadAll = !feedCacheComplete;
+            generation = feedCacheGeneration;
+        }
+
+        List<Feed> loaded;
+        if (loadAll) {
+            loaded = getFeedList();
+        } else {
+            loaded = new ArrayList<>(missing.size());
+            PodDBAdapter adapter = PodDBAdapter.getInstance();
+            adapter.open();
+            try {
+                for (long feedId : missing) {
+                    try (Cursor cursor = adapter.getFeedCursor(feedId)) {
+                        if (cursor.moveToNext()) {
+                            loaded.add(extractFeedFromCursorRow(cursor));
+                        }
+                    }
+                }
+            } finally {
+                adapter.close();
+            }
+        }
+
+        synchronized (feedCache) {
+            // Only cache what was loaded if no feed changed in the meantime
+            boolean upToDate = generation == feedCacheGeneration;
+            for (Feed feed : loaded) {
+                if (upToDate) {
+                    feedCache.put(feed.getId(), feed);
+                }
+                if (missing.contains(feed.getId())) {
+                    result.put(feed.getId(), feed);
+                }
+            }
+            if (upToDate && loadAll) {
+                feedCacheComplete = true;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes a feed from the feed cache. Must be called after the feed or its preferences were changed.
+     */
+    static void invalidateFeedCache(long feedId) {
+        synchronized (feedCache) {
+            feedCache.remove(feedId);
+            feedCacheGeneration++;
+        }
+    }
+
+    /**
+     * Empties the feed cache. Must be called after feeds were added or removed.
+     */
+    static void invalidateFeedCache() {
+        synchronized (feedCache) {
+            feedCache.clear();
+            feedCacheComplete = false;
+            feedCacheGeneration++;
+        }
+    }
+
+    /**
+     * Clears the summaries of the episode cache. Must be called after media files were downloaded or deleted,
+     * or after the queue, the favorites or the played state of downloaded episodes changed.
+     */
+    static void invalidateEpisodeCacheSummaries() {
+        synchronized (episodeCacheSummaries) {
+            episodeCacheSummaries.clear();
+            episodeCacheGeneration++;
+        }
+    }
+
+    /**
+     * Returns the number and total size of the downloaded episodes.
+     */
+    @NonNull
+    public static EpisodeCacheSummary getDownloadedSummary() {
+        return getEpisodeCacheSummary("downloaded", 0, PodDBAdapter::getDownloadedSummaryCursor);
+    }
+
+    /**
+     * Returns the number and total size of the episodes that {@link #getCleanupCandidates} would return
+     * without a limit.
+     */
+    @NonNull
+    public static EpisodeCacheSummary getCleanupCandidatesSummary(boolean keepQueued, long playedBefore) {
+        String key = "cleanup:" + keepQueued + ":" + (playedBefore > 0);
+        return getEpisodeCacheSummary(key, playedBefore,
+                adapter -> adapter.getCleanupCandidatesSummaryCursor(keepQueued, playedBefore));
+    }
+
+    private interface SummaryQuery {
+        Cursor query(PodDBAdapter adapter);
+    }
+
+    private static EpisodeCacheSummary getEpisodeCacheSummary(String key, long playedBefore, SummaryQuery query) {
+        long generation;
+        synchronized (episodeCacheSummaries) {
+            CachedSummary cached = episodeCacheSummaries.get(key);
+            if (cached != null && cached.isValidFor(playedBefore)) {
+                return cached.summary;
+            }
+            generation = episodeCacheGeneration;
+        }
+
+        CachedSummary loaded;
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try (Cursor cursor = query.query(adapter)) {
+            cursor.moveToFirst();
+            long nextCompletionDate = cursor.getColumnCount() > 2 && !cursor.isNull(2)
+                    ? cursor.getLong(2) : Long.MAX_VALUE;
+            loaded = new CachedSummary(new EpisodeCacheSummary(cursor.getInt(0), cursor.getLong(1)),
+                    playedBefore, nextCompletionDate);
+        } finally {
+            adapter.close();
+        }
+
+        synchronized (episodeCacheSummaries) {
+            // Only cache what was loaded if nothing changed in the meantime
+            if (generation == episodeCacheGeneration) {
+                episodeCacheSummaries.put(key, loaded);
+            }
+        }
+        return loaded.summary;
+    }
+
+    /**
+     * Loads the downloaded episodes that an episode cleanup may delete, in the order they should be deleted.
+     * Favorites are never returned.
+     *
+     * @param keepQueued   Do not return episodes that are in the queue.
+     * @param playedBefore If greater than 0, only return played episodes whose playback was completed before
+     *                     this time, oldest completion first. Otherwise the oldest episodes are returned first.
+     * @param limit        The maximum number of episodes to load.
+     */
+    @NonNull
+    public static List<FeedItem> getCleanupCandidates(boolean keepQueued, long playedBefore, int limit) {
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try (Cursor cursor = adapter.getCleanupCandidatesCursor(keepQueued, playedBefore, limit)) {
+            List<FeedItem> items = extractItemlistFromCursor(adapter, cursor);
+            loadAdditionalFeedItemListData(items);
+            return items;
+        } finally {
+            adapter.close();
+        }
+    }
+
     /**
      * Loads the list of FeedItems for a certain Feed-object.
      * This method should NOT be used if the FeedItems are not used.
@@ -245,7 +454,7 @@ public final class DBReader {
         }
     }
 
-    private static LongList getQueueIDList(PodDBAdapter adapter) {
+    static LongList getQueueIDList(PodDBAdapter adapter) {
         try (Cursor cursor = adapter.getQueueIDCursor()) {
             LongList queueIds = new LongList(cursor.getCount());
             while (cursor.moveToNext()) {
@@ -274,6 +483,25 @@ public final class DBReader {
         }
     }
 
+    /**
+     * Loads a page of episodes that might be downloaded automatically.
+     * See {@link PodDBAdapter#getAutoDownloadCandidatesCursor} for the episodes that are returned.
+     *
+     * @param queued true for episodes in the queue, false for new episodes.
+     */
+    @NonNull
+    public static List<FeedItem> getAutoDownloadCandidates(boolean queued, int offset, int limit) {
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try (Cursor cursor = adapter.getAutoDownloadCandidatesCursor(queued, offset, limit)) {
+            List<FeedItem> items = extractItemlistFromCursor(adapter, cursor);
+            loadAdditionalFeedItemListData(items);
+            return items;
+        } finally {
+            adapter.close();
+        }
+    }
+
     /**
      * Loads a list of FeedItems whose episode has been downloaded.
      *
@@ -296,17 +524,16 @@ public final class DBReader {
     }
 
     /**
-     * Loads a list of FeedItems whose episode has been played.
+     * Loads a page of played FeedItems, ordered by their ID.
      *
-     * @return A list of FeedItems whose episdoe has been played.
+     * @param afterId Only items with a greater ID are loaded. 0 for the first page.
+     * @param limit The maximum number of items that should be loaded.
      */
     @NonNull
-    public static List<FeedItem> getPlayedItems() {
-        Log.d(TAG, "getPlayedItems() called");
-
+    public static List<FeedItem> getPlayedItems(long afterId, int limit) {
         PodDBAdapter adapter = PodDBAdapter.getInstance();
         adapter.open();
-        try (Cursor cursor = adapter.getPlayedItemsCursor()) {
+        try (Cursor cursor = adapter.getPlayedItemsCursor(afterId, limit)) {
             List<FeedItem> items = extractItemlistFromCursor(adapter, cursor);
             loadAdditionalFeedItemListData(items);
             return items;
@@ -541,6 +768,20 @@ public final class DBReader {
         }
     }
 
+    /**
+     * Loads a specific Feed from the database without loading its FeedItems.
+     */
+    @Nullable
+    static Feed getFeedWithoutItems(final long feedId) {
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try (Cursor cursor = adapter.getFeedCursor(feedId)) {
+            return cursor.moveToNext() ? extractFeedFromCursorRow(cursor) : null;
+        } finally {
+            adapter.close();
+        }
+    }
+
     @Nullable
     private static FeedItem getFeedItem(final long itemId, PodDBAdapter adapter) {
         Log.d(TAG, "Loading feeditem with id " + itemId);
@@ -696,6 +937,76 @@ public final class DBReader {
         }
     }
 
+    /**
+     * Loads the FeedItems for a list of guid and episode url pairs. Like
+     * {@link #getFeedItemByGuidOrEpisodeUrl(String, String)}, an item is identified by its guid if there is
+     * one and by its episode url otherwise. The items are looked up in chunks, so that large lists
+     * need only few queries.
+     *
+     * @param guidsAndEpisodeUrls Pairs of feed item guid (may be null) and episode url
+     * @return A list in the order of the given pairs, with null for items that could not be found.
+     *          Does NOT load additional attributes like feed or queue state.
+     */
+    @NonNull
+    public static List<FeedItem> getFeedItemsByGuidOrEpisodeUrl(List<Pair<String, String>> guidsAndEpisodeUrls) {
+        Set<String> guids = new HashSet<>();
+        Set<String> episodeUrls = new HashSet<>();
+        for (Pair<String, String> guidAndEpisodeUrl : guidsAndEpisodeUrls) {
+            if (guidAndEpisodeUrl.first != null) {
+                guids.add(guidAndEpisodeUrl.first);
+            } else if (guidAndEpisodeUrl.second != null) {
+                episodeUrls.add(guidAndEpisodeUrl.second);
+            }
+        }
+
+        Map<String, FeedItem> itemsByGuid = new HashMap<>();
+        Map<String, FeedItem> itemsByEpisodeUrl = new HashMap<>();
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try {
+            for (String[] chunk : chunks(guids)) {
+                try (Cursor cursor = adapter.getFeedItemCursorByGuids(chunk)) {
+                    for (FeedItem item : extractItemlistFromCursor(adapter, cursor)) {
+                        if (!itemsByGuid.containsKey(item.getItemIdentifier())) {
+                            itemsByGuid.put(item.getItemIdentifier(), item);
+                        }
+                    }
+                }
+            }
+            for (String[] chunk : chunks(episodeUrls)) {
+                try (Cursor cursor = adapter.getFeedItemCursorByEpisodeUrls(chunk)) {
+                    for (FeedItem item : extractItemlistFromCursor(adapter, cursor)) {
+                        String episodeUrl = item.getMedia().getDownload_url();
+                        if (!itemsByEpisodeUrl.containsKey(episodeUrl)) {
+                            itemsByEpisodeUrl.put(episodeUrl, item);
+                        }
+                    }
+                }
+            }
+        } finally {
+            adapter.close();
+        }
+
+        List<FeedItem> result = new ArrayList<>(guidsAndEpisodeUrls.size());
+        for (Pair<String, String> guidAndEpisodeUrl : guidsAndEpisodeUrls) {
+            if (guidAndEpisodeUrl.first != null) {
+                result.add(itemsByGuid.get(guidAndEpisodeUrl.first));
+            } else {
+                result.add(itemsByEpisodeUrl.get(guidAndEpisodeUrl.second));
+            }
+        }
+        return result;
+    }
+
+    private static List<String[]> chunks(Set<String> keys) {
+        List<String[]> chunks = new ArrayList<>();
+        String[] all = keys.toArray(new String[0]);
+        for (int i = 0; i < all.length; i += PodDBAdapter.IN_OPERATOR_MAXIMUM) {
+            chunks.add(Arrays.copyOfRange(all, i, Math.min(all.length, i + PodDBAdapter.IN_OPERATOR_MAXIMUM)));
+        }
+        return chunks;
+    }
+
     /**
      * Loads shownotes information about a FeedItem.
      *
@@ -757,15 +1068,7 @@ public final class DBReader {
      */
 
     public static int getNumberOfDownloadedEpisodes() {
-        Log.d(TAG, "getNumberOfDownloadedEpisodes() called with: " + "");
-
-        PodDBAdapter adapter = PodDBAdapter.getInstance();
-        adapter.open();
-        try {
-            return adapter.getNumberOfDownloadedEpisodes();
-        } finally {
-            adapter.close();
-        }
+        return getDownloadedSummary().getCount();
     }
 
     /**
@@ -956,7 +1259,7 @@ public final class DBReader {
         Collections.sort(feeds, comparator);
         int queueSize = adapter.getQueueSize();
         int numNewItems = adapter.getNumberOfNewItems();
-        int numDownloadedItems = adapter.getNumberOfDownloadedEpisodes();
+        int numDownloadedItems = getDownloadedSummary().getCount();
 
         List<NavDrawerData.DrawerItem> items = new ArrayList<>();
         Map<String, NavDrawerData.TagDrawerItem> folders = new HashMap<>();
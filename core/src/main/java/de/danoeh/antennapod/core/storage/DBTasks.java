@@ -5,9 +5,9 @@ import static android.content.Context.MODE_PRIVATE;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.database.Cursor;
-import android.text.TextUtils;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 import de.danoeh.antennapod.net.download.serviceinterface.DownloadRequest;
@@ -20,8 +20,10 @@ import org.greenrobot.eventbus.EventBus;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -60,6 +62,16 @@ public final class DBTasks {
 
     private static AutomaticDownloadAlgorithm downloadAlgorithm = new AutomaticDownloadAlgorithm();
 
+    /**
+     * Locks of {@link #updateFeed}, by identifying value of the saved feed. Different feeds are updated in parallel.
+     * A lock is removed as soon as no update uses it anymore.
+     */
+    private static final Map<String, FeedLock> feedLocks = new HashMap<>();
+
+    private static class FeedLock {
+        int users = 0;
+    }
+
     static {
         autodownloadExec = Executors.newSingleThreadExecutor(r -> {
             Thread t = new Thread(r);
@@ -230,7 +242,13 @@ public final class DBTasks {
         EpisodeCleanupAlgorithmFactory.build().performCleanup(context);
     }
 
-    private static Feed searchFeedByIdentifyingValueOrID(Feed feed) {
+    /**
+     * Loads the saved version of a feed, including its items, by ID or by identifying value.
+     *
+     * @return The feed from the database or null if it was not saved yet.
+     */
+    @Nullable
+    public static Feed searchFeedByIdentifyingValueOrID(Feed feed) {
         if (feed.getId() != 0) {
             return DBReader.getFeed(feed.getId());
         } else {
@@ -245,37 +263,13 @@ public final class DBTasks {
         return null;
     }
 
-    /**
-     * Get a FeedItem by its identifying value.
-     */
-    private static FeedItem searchFeedItemByIdentifyingValue(List<FeedItem> items, FeedItem searchItem) {
-        for (FeedItem item : items) {
-            if (TextUtils.equals(item.getIdentifyingValue(), searchItem.getIdentifyingValue())) {
-                return item;
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Guess if one of the items could actually mean the searched item, even if it uses another identifying value.
-     * This is to work around podcasters breaking their GUIDs.
-     */
-    private static FeedItem searchFeedItemGuessDuplicate(List<FeedItem> items, FeedItem searchItem) {
-        for (FeedItem item : items) {
-            if (FeedItemDuplicateGuesser.seemDuplicates(item, searchItem)) {
-                return item;
-            }
-        }
-        return null;
-    }
-
     /**
      * Adds new Feeds to the database or updates the old versions if they already exists. If another Feed with the same
      * identifying value already exists, this method will add new FeedItems from the new Feed to the existing Feed.
      * These FeedItems will be marked as unread with the exception of the most recent FeedItem.
      * <p/>
-     * This method can update multiple feeds at once. Submitting a feed twice in the same method call can result in undefined behavior.
+     * Updates of the same feed are serialized, different feeds can be updated in parallel. The merge runs on
+     * the calling thread, the changed feeds of parallel updates are written to the database in one transaction.
      * <p/>
      * This method should NOT be executed on the GUI thread.
      *
@@ -285,7 +279,47 @@ public final class DBTasks {
      *                            I.e. items are removed from the database if they are not in this item list.
      * @return The updated Feed from the database if it already existed, or the new Feed from the parameters otherwise.
      */
-    public static synchronized Feed updateFeed(Context context, Feed newFeed, boolean removeUnlistedItems) {
+    public static Feed updateFeed(Context context, Feed newFeed, boolean removeUnlistedItems) {
+        String key = getLockKey(newFeed);
+        FeedLock lock;
+        synchronized (feedLocks) {
+            lock = feedLocks.get(key);
+            if (lock == null) {
+                lock = new FeedLock();
+                feedLocks.put(key, lock);
+            }
+            lock.users++;
+        }
+        try {
+            synchronized (lock) {
+                return updateFeedLocked(context, newFeed, removeUnlistedItems);
+            }
+        } finally {
+            synchronized (feedLocks) {
+                lock.users--;
+                if (lock.users == 0) {
+                    feedLocks.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the identifying value of the saved feed that an update of the given feed changes. A feed that has
+     * an ID is looked up, so that callers that only know the ID use the same lock as callers that know the URL.
+     */
+    private static String getLockKey(Feed feed) {
+        String key = feed.getIdentifyingValue();
+        if (feed.getId() != 0) {
+            Feed savedFeed = DBReader.getFeedWithoutItems(feed.getId());
+            if (savedFeed != null) {
+                key = savedFeed.getIdentifyingValue();
+            }
+        }
+        return key != null ? key : "";
+    }
+
+    private static Feed updateFeedLocked(Context context, Feed newFeed, boolean removeUnlistedItems) {
         Feed resultFeed;
         List<FeedItem> unlistedItems = new ArrayList<>();
 
@@ -333,11 +367,15 @@ public final class DBTasks {
                 priorMostRecentDate = priorMostRecent.getPubDate();
             }
 
+            // Build the indexes once, so that matching items stays linear in the size of the feed
+            FeedItemIndex newItemsIndex = new FeedItemIndex(newFeed.getItems());
+            FeedItemIndex savedItemsIndex = new FeedItemIndex(savedFeed.getItems());
+
             // Look for new or updated Items
             for (int idx = 0; idx < newFeed.getItems().size(); idx++) {
                 final FeedItem item = newFeed.getItems().get(idx);
 
-                FeedItem possibleDuplicate = searchFeedItemGuessDuplicate(newFeed.getItems(), item);
+                FeedItem possibleDuplicate = newFeed.isLocalFeed() ? null : newItemsIndex.findGuessedDuplicate(item);
                 if (!newFeed.isLocalFeed() && possibleDuplicate != null && item != possibleDuplicate) {
                     // Canonical episode is the first one returned (usually oldest)
                     DBWriter.addDownloadStatus(new DownloadStatus(savedFeed,
@@ -350,9 +388,9 @@ public final class DBTasks {
                     continue;
                 }
 
-                FeedItem oldItem = searchFeedItemByIdentifyingValue(savedFeed.getItems(), item);
+                FeedItem oldItem = savedItemsIndex.findByIdentifyingValue(item);
                 if (!newFeed.isLocalFeed() && oldItem == null) {
-                    oldItem = searchFeedItemGuessDuplicate(savedFeed.getItems(), item);
+                    oldItem = savedItemsIndex.findGuessedDuplicate(item);
                     if (oldItem != null) {
                         Log.d(TAG, "Repaired duplicate: " + oldItem + ", " + item);
                         DBWriter.addDownloadStatus(new DownloadStatus(savedFeed,
@@ -378,6 +416,9 @@ public final class DBTasks {
 
                 if (oldItem != null) {
                     oldItem.updateFromOther(item);
+                    savedItemsIndex.update(oldItem);
+                    // New items are added to the saved feed, so oldItem can also be an item of the new feed
+                    newItemsIndex.update(oldItem);
                 } else {
                     // item is new
                     item.setFeed(savedFeed);
@@ -387,6 +428,7 @@ public final class DBTasks {
                     } else {
                         savedFeed.getItems().add(idx, item);
                     }
+                    savedItemsIndex.add(item);
 
                     // only mark the item new if it was published after or at the same time
                     // as the most recent item
@@ -408,7 +450,7 @@ public final class DBTasks {
                 Iterator<FeedItem> it = savedFeed.getItems().iterator();
                 while (it.hasNext()) {
                     FeedItem feedItem = it.next();
-                    if (searchFeedItemByIdentifyingValue(newFeed.getItems(), feedItem) == null) {
+                    if (!newItemsIndex.containsIdentifyingValue(feedItem)) {
                         unlistedItems.add(feedItem);
                         it.remove();
                     }
@@ -417,6 +459,11 @@ public final class DBTasks {
 
             // update attributes
             savedFeed.setLastUpdate(newFeed.getLastUpdate());
+            if (newFeed.getPageNr() == savedFeed.getPageNr()) {
+                // Validators of other pages do not describe the document that is requested on refresh
+                savedFeed.setEtag(newFeed.getEtag());
+                savedFeed.setContentDigest(newFeed.getContentDigest());
+            }
             savedFeed.setType(newFeed.getType());
             savedFeed.setLastUpdateFailed(false);
 
@@ -429,7 +476,7 @@ public final class DBTasks {
                 // Update with default values that are set in database
                 resultFeed = searchFeedByIdentifyingValueOrID(newFeed);
             } else {
-                DBWriter.setCompleteFeed(savedFeed).get();
+                DBWriter.setCompleteFeedGrouped(savedFeed).get();
             }
             if (removeUnlistedItems) {
                 DBWriter.deleteFeedItems(context, unlistedItems).get();
@@ -464,10 +511,26 @@ public final class DBTasks {
      *         and returns the search result as a List of FeedItems.
      */
     public static FutureTask<List<FeedItem>> searchFeedItems(final long feedID, final String query) {
+        return searchFeedItems(feedID, query, 0, 300);
+    }
+
+    /**
+     * Searches the FeedItems of a specific Feed for a given string. Results are ranked (matches in the
+     * title first, then newest first) and every word of the query also matches as a prefix.
+     *
+     * @param feedID  The id of the feed whose items should be searched, 0 to search all feeds.
+     * @param query   The search string.
+     * @param offset  The number of results to skip.
+     * @param limit   The maximum number of results.
+     * @return A FutureTask object that executes the search request
+     *         and returns the search result as a List of FeedItems.
+     */
+    public static FutureTask<List<FeedItem>> searchFeedItems(final long feedID, final String query,
+                                                             final int offset, final int limit) {
         return new FutureTask<>(new QueryTask<List<FeedItem>>() {
             @Override
             public void execute(PodDBAdapter adapter) {
-                Cursor searchResult = adapter.searchItems(feedID, query);
+                Cursor searchResult = adapter.searchItems(feedID, query, offset, limit);
                 List<FeedItem> items = DBReader.extractItemlistFromCursor(searchResult);
                 DBReader.loadAdditionalFeedItemListData(items);
                 setResult(items);
@@ -2,10 +2,12 @@ package de.danoeh.antennapod.core.storage;
 
 import android.app.backup.BackupManager;
 import android.content.Context;
+import android.database.SQLException;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.core.app.NotificationManagerCompat;
 
 import de.danoeh.antennapod.net.download.serviceinterface.DownloadServiceInterface;
@@ -15,6 +17,7 @@ import org.greenrobot.eventbus.EventBus;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -22,6 +25,7 @@ import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 
 import de.danoeh.antennapod.core.R;
@@ -62,6 +66,12 @@ public class DBWriter {
 
     private static final ExecutorService dbExec;
 
+    /**
+     * Feeds that wait for {@link #writePendingFeeds()}, together with the task that is run once they are written.
+     */
+    private static final List<Feed> pendingFeeds = new ArrayList<>();
+    private static final List<PendingFeedWrite> pendingFeedWrites = new ArrayList<>();
+
     static {
         dbExec = Executors.newSingleThreadExecutor(r -> {
             Thread t = new Thread(r);
@@ -84,6 +94,8 @@ public class DBWriter {
         } catch (InterruptedException e) {
             // ignore error
         }
+        DBReader.invalidateFeedCache();
+        DBReader.invalidateEpisodeCacheSummaries();
     }
 
     /**
@@ -124,6 +136,7 @@ public class DBWriter {
             PodDBAdapter adapter = PodDBAdapter.getInstance();
             adapter.open();
             adapter.setMedia(media);
+            DBReader.invalidateEpisodeCacheSummaries();
             adapter.close();
 
             if (media.getId() == PlaybackPreferences.getCurrentlyPlayingFeedMediaId()) {
@@ -168,7 +181,9 @@ public class DBWriter {
             PodDBAdapter adapter = PodDBAdapter.getInstance();
             adapter.open();
             adapter.removeFeed(feed);
+            DBReader.invalidateEpisodeCacheSummaries();
             adapter.close();
+            DBReader.invalidateFeedCache(feedId);
 
             if (!feed.isLocalFeed()) {
                 SynchronizationQueueSink.enqueueFeedRemovedIfSynchronizationIsActive(context, feed.getDownload_url());
@@ -191,11 +206,13 @@ public class DBWriter {
      * Deleting media also removes the download log entries.
      */
     private static void deleteFeedItemsSynchronous(@NonNull Context context, @NonNull List<FeedItem> items) {
-        List<FeedItem> queue = DBReader.getQueue();
+        LongList queueIds = DBReader.getQueueIDList();
         List<FeedItem> removedFromQueue = new ArrayList<>();
+        LongList removedFromQueueIds = new LongList();
         for (FeedItem item : items) {
-            if (queue.remove(item)) {
+            if (queueIds.contains(item.getId())) {
                 removedFromQueue.add(item);
+                removedFromQueueIds.add(item.getId());
             }
             if (item.getMedia() != null) {
                 if (item.getMedia().getId() == PlaybackPreferences.getCurrentlyPlayingFeedMediaId()) {
@@ -212,10 +229,9 @@ public class DBWriter {
 
         PodDBAdapter adapter = PodDBAdapter.getInstance();
         adapter.open();
-        if (!removedFromQueue.isEmpty()) {
-            adapter.setQueue(queue);
-        }
+        adapter.removeQueueItems(removedFromQueueIds.toArray());
         adapter.removeFeedItems(items);
+        DBReader.invalidateEpisodeCacheSummaries();
         adapter.close();
 
         for (FeedItem item : removedFromQueue) {
@@ -288,6 +304,7 @@ public class DBWriter {
             PodDBAdapter adapter = PodDBAdapter.getInstance();
             adapter.open();
             adapter.setFeedMediaPlaybackCompletionDate(media);
+            DBReader.invalidateEpisodeCacheSummaries();
             adapter.close();
             EventBus.getDefault().post(PlaybackHistoryEvent.listUpdated());
 
@@ -325,15 +342,15 @@ public class DBWriter {
         return dbExec.submit(() -> {
             final PodDBAdapter adapter = PodDBAdapter.getInstance();
             adapter.open();
-            final List<FeedItem> queue = DBReader.getQueue(adapter);
+            final LongList queueIds = DBReader.getQueueIDList(adapter);
             FeedItem item;
 
-            if (queue != null) {
-                if (!itemListContains(queue, itemId)) {
+            if (queueIds != null) {
+                if (!queueIds.contains(itemId)) {
                     item = DBReader.getFeedItem(itemId);
                     if (item != null) {
-                        queue.add(index, item);
-                        adapter.setQueue(queue);
+                        adapter.addQueueItem(item, index);
+                        DBReader.invalidateEpisodeCacheSummaries();
                         item.addTag(FeedItem.TAG_QUEUE);
                         EventBus.getDefault().post(QueueEvent.added(item, index));
                         EventBus.getDefault().post(FeedItemEvent.updated(item));
@@ -407,6 +424,8 @@ public class DBWriter {
                     new ItemEnqueuePositionCalculator(UserPreferences.getEnqueueLocation());
             Playable currentlyPlaying = PlaybackPreferences.createInstanceFromPreferences(context);
             int insertPosition = positionCalculator.calcPosition(queue, currentlyPlaying);
+            final int firstInsertPosition = insertPosition;
+            List<FeedItem> addedItems = new ArrayList<>();
             for (long itemId : itemIds) {
                 if (!itemListContains(queue, itemId)) {
                     final FeedItem item = DBReader.getFeedItem(itemId);
@@ -415,6 +434,7 @@ public class DBWriter {
                         events.add(QueueEvent.added(item, insertPosition));
 
                         item.addTag(FeedItem.TAG_QUEUE);
+                        addedItems.add(item);
                         updatedItems.add(item);
                         queueModified = true;
                         if (item.isNew()) {
@@ -425,8 +445,14 @@ public class DBWriter {
                 }
             }
             if (queueModified) {
-                applySortOrder(queue, events);
-                adapter.setQueue(queue);
+                if (applySortOrder(queue, events)) {
+                    adapter.setQueue(queue);
+                } else {
+                    for (int i = 0; i < addedItems.size(); i++) {
+                        adapter.addQueueItem(addedItems.get(i), firstInsertPosition + i);
+                    }
+                }
+                DBReader.invalidateEpisodeCacheSummaries();
                 for (QueueEvent event : events) {
                     EventBus.getDefault().post(event);
                 }
@@ -456,18 +482,19 @@ public class DBWriter {
      *
      * @param queue  The queue to be sorted.
      * @param events Replaces the events by a single SORT event if the list has to be sorted automatically.
+     * @return true if the queue was sorted.
      */
-    private static void applySortOrder(List<FeedItem> queue, List<QueueEvent> events) {
+    private static boolean applySortOrder(List<FeedItem> queue, List<QueueEvent> events) {
         if (!UserPreferences.isQueueKeepSorted()) {
             // queue is not in keep sorted mode, there's nothing to do
-            return;
+            return false;
         }
 
         // Sort queue by configured sort order
         SortOrder sortOrder = UserPreferences.getQueueKeepSortedOrder();
         if (sortOrder == SortOrder.RANDOM) {
             // do not shuffle the list on every change
-            return;
+            return false;
         }
         Permutor<FeedItem> permutor = FeedItemPermutors.getPermutor(sortOrder);
         permutor.reorder(queue);
@@ -475,6 +502,7 @@ public class DBWriter {
         // Replace ADDED events by a single SORTED event
         events.clear();
         events.add(QueueEvent.sorted(queue));
+        return true;
     }
 
     /**
@@ -485,6 +513,7 @@ public class DBWriter {
             PodDBAdapter adapter = PodDBAdapter.getInstance();
             adapter.open();
             adapter.clearQueue();
+            DBReader.invalidateEpisodeCacheSummaries();
             adapter.close();
 
             EventBus.getDefault().post(QueueEvent.cleared());
@@ -516,22 +545,23 @@ public class DBWriter {
         }
         final PodDBAdapter adapter = PodDBAdapter.getInstance();
         adapter.open();
-        final List<FeedItem> queue = DBReader.getQueue(adapter);
+        final LongList queueIds = DBReader.getQueueIDList(adapter);
 
-        if (queue != null) {
+        if (queueIds != null) {
             boolean queueModified = false;
             List<QueueEvent> events = new ArrayList<>();
             List<FeedItem> updatedItems = new ArrayList<>();
+            LongList removedIds = new LongList();
             for (long itemId : itemIds) {
-                int position = indexInItemList(queue, itemId);
-                if (position >= 0) {
+                if (queueIds.contains(itemId)) {
                     final FeedItem item = DBReader.getFeedItem(itemId);
                     if (item == null) {
                         Log.e(TAG, "removeQueueItem - item in queue but somehow cannot be loaded." +
                                 " Item ignored. It should never happen. id:" + itemId);
                         continue;
                     }
-                    queue.remove(position);
+                    queueIds.remove(itemId);
+                    removedIds.add(itemId);
                     item.removeTag(FeedItem.TAG_QUEUE);
                     events.add(QueueEvent.removed(item));
                     updatedItems.add(item);
@@ -541,7 +571,8 @@ public class DBWriter {
                 }
             }
             if (queueModified) {
-                adapter.setQueue(queue);
+                adapter.removeQueueItems(removedIds.toArray());
+                DBReader.invalidateEpisodeCacheSummaries();
                 for (QueueEvent event : events) {
                     EventBus.getDefault().post(event);
                 }
@@ -570,6 +601,7 @@ public class DBWriter {
         return dbExec.submit(() -> {
             final PodDBAdapter adapter = PodDBAdapter.getInstance().open();
             adapter.addFavoriteItem(item);
+            DBReader.invalidateEpisodeCacheSummaries();
             adapter.close();
             item.addTag(FeedItem.TAG_FAVORITE);
             EventBus.getDefault().post(new FavoritesEvent());
@@ -581,6 +613,7 @@ public class DBWriter {
         return dbExec.submit(() -> {
             final PodDBAdapter adapter = PodDBAdapter.getInstance().open();
             adapter.removeFavoriteItem(item);
+            DBReader.invalidateEpisodeCacheSummaries();
             adapter.close();
             item.removeTag(FeedItem.TAG_FAVORITE);
             EventBus.getDefault().post(new FavoritesEvent());
@@ -655,20 +688,18 @@ public class DBWriter {
                                             final int to, final boolean broadcastUpdate) {
         final PodDBAdapter adapter = PodDBAdapter.getInstance();
         adapter.open();
-        final List<FeedItem> queue = DBReader.getQueue(adapter);
-
-        if (queue != null) {
-            if (from >= 0 && from < queue.size() && to >= 0 && to < queue.size()) {
-                final FeedItem item = queue.remove(from);
-                queue.add(to, item);
-
-                adapter.setQueue(queue);
-                if (broadcastUpdate) {
+        final int queueSize = adapter.getQueueSize();
+
+        if (from >= 0 && from < queueSize && to >= 0 && to < queueSize) {
+            long itemId = adapter.moveQueueItem(from, to);
+            if (itemId == 0) {
+                Log.e(TAG, "moveQueueItemHelper: Could not move item");
+            } else if (broadcastUpdate) {
+                final FeedItem item = DBReader.getFeedItem(itemId);
+                if (item != null) {
                     EventBus.getDefault().post(QueueEvent.moved(item, to));
                 }
             }
-        } else {
-            Log.e(TAG, "moveQueueItemHelper: Could not load queue");
         }
         adapter.close();
     }
@@ -699,6 +730,7 @@ public class DBWriter {
             final PodDBAdapter adapter = PodDBAdapter.getInstance();
             adapter.open();
             adapter.setFeedItemRead(played, itemIds);
+            DBReader.invalidateEpisodeCacheSummaries();
             adapter.close();
             if (broadcastUpdate) {
                 EventBus.getDefault().post(new UnreadItemsUpdateEvent());
@@ -731,6 +763,7 @@ public class DBWriter {
             adapter.open();
             adapter.setFeedItemRead(played, itemId, mediaId,
                     resetMediaPosition);
+            DBReader.invalidateEpisodeCacheSummaries();
             adapter.close();
 
             EventBus.getDefault().post(new UnreadItemsUpdateEvent());
@@ -772,7 +805,11 @@ public class DBWriter {
             final PodDBAdapter adapter = PodDBAdapter.getInstance();
             adapter.open();
             adapter.setCompleteFeed(feeds);
+            DBReader.invalidateEpisodeCacheSummaries();
             adapter.close();
+            for (Feed feed : feeds) {
+                DBReader.invalidateFeedCache(feed.getId());
+            }
 
             for (Feed feed : feeds) {
                 if (!feed.isLocalFeed()) {
@@ -790,15 +827,119 @@ public class DBWriter {
             PodDBAdapter adapter = PodDBAdapter.getInstance();
             adapter.open();
             adapter.setCompleteFeed(feeds);
+            DBReader.invalidateEpisodeCacheSummaries();
             adapter.close();
+            for (Feed feed : feeds) {
+                DBReader.invalidateFeedCache(feed.getId());
+            }
         });
     }
 
+    /**
+     * Saves a feed like {@link #setCompleteFeed(Feed...)}. Feeds that are submitted by several threads
+     * while the database executor is busy are written together in one transaction.
+     */
+    static Future<?> setCompleteFeedGrouped(final Feed feed) {
+        PendingFeedWrite written = new PendingFeedWrite();
+        synchronized (pendingFeeds) {
+            if (pendingFeeds.isEmpty()) {
+                dbExec.submit(DBWriter::writePendingFeeds);
+            }
+            pendingFeeds.add(feed);
+            pendingFeedWrites.add(written);
+        }
+        return written;
+    }
+
+    private static void writePendingFeeds() {
+        Feed[] feeds;
+        List<PendingFeedWrite> writes;
+        synchronized (pendingFeeds) {
+            feeds = pendingFeeds.toArray(new Feed[0]);
+            writes = new ArrayList<>(pendingFeedWrites);
+            pendingFeeds.clear();
+            pendingFeedWrites.clear();
+        }
+        Throwable[] errors = new Throwable[feeds.length];
+        try {
+            errors = writeFeeds(feeds);
+        } catch (Throwable t) {
+            Log.e(TAG, Log.getStackTraceString(t));
+            Arrays.fill(errors, t);
+        } finally {
+            for (int i = 0; i < writes.size(); i++) {
+                writes.get(i).finish(errors[i]);
+            }
+        }
+    }
+
+    /**
+     * Stores the feeds in one transaction. If that fails, each feed is stored in a transaction of its own,
+     * so that one feed that cannot be stored does not keep the others from being saved.
+     *
+     * @return the error of each feed, or null if the feed was stored
+     */
+    @VisibleForTesting
+    static Throwable[] writeFeeds(Feed... feeds) {
+        Throwable[] errors = new Throwable[feeds.length];
+        Log.d(TAG, "Writing " + feeds.length + " feeds in one transaction");
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try {
+            try {
+                adapter.storeCompleteFeeds(feeds);
+            } catch (SQLException e) {
+                if (feeds.length == 1) {
+                    throw e;
+                }
+                Log.e(TAG, "Writing feeds together failed, writing them one by one: " + e.getMessage());
+                for (int i = 0; i < feeds.length; i++) {
+                    try {
+                        adapter.storeCompleteFeeds(feeds[i]);
+                    } catch (SQLException feedError) {
+                        Log.e(TAG, Log.getStackTraceString(feedError));
+                        errors[i] = feedError;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            errors[0] = e;
+        } finally {
+            DBReader.invalidateEpisodeCacheSummaries();
+            adapter.close();
+        }
+        for (Feed feed : feeds) {
+            DBReader.invalidateFeedCache(feed.getId());
+        }
+        return errors;
+    }
+
+    /**
+     * The future of a feed that waits in {@link #pendingFeeds}. Fails with the error of the transaction,
+     * so that callers see the same {@link java.util.concurrent.ExecutionException} as with
+     * {@link #setCompleteFeed(Feed...)}.
+     */
+    private static class PendingFeedWrite extends FutureTask<Void> {
+        PendingFeedWrite() {
+            super(() -> { }, null);
+        }
+
+        void finish(@Nullable Throwable error) {
+            if (error == null) {
+                set(null);
+            } else {
+                setException(error);
+            }
+        }
+    }
+
     public static Future<?> setItemList(final List<FeedItem> items) {
         return dbExec.submit(() -> {
             PodDBAdapter adapter = PodDBAdapter.getInstance();
             adapter.open();
             adapter.storeFeedItemlist(items);
+            DBReader.invalidateEpisodeCacheSummaries();
             adapter.close();
             EventBus.getDefault().post(FeedItemEvent.updated(items));
         });
@@ -815,6 +956,7 @@ public class DBWriter {
             PodDBAdapter adapter = PodDBAdapter.getInstance();
             adapter.open();
             adapter.setMedia(media);
+            DBReader.invalidateEpisodeCacheSummaries();
             adapter.close();
         });
     }
@@ -829,6 +971,7 @@ public class DBWriter {
             PodDBAdapter adapter = PodDBAdapter.getInstance();
             adapter.open();
             adapter.setFeedMediaPlaybackInformation(media);
+            DBReader.invalidateEpisodeCacheSummaries();
             adapter.close();
         });
     }
@@ -844,6 +987,7 @@ public class DBWriter {
             PodDBAdapter adapter = PodDBAdapter.getInstance();
             adapter.open();
             adapter.setSingleFeedItem(item);
+            DBReader.invalidateEpisodeCacheSummaries();
             adapter.close();
             EventBus.getDefault().post(FeedItemEvent.updated(item));
         });
@@ -859,6 +1003,7 @@ public class DBWriter {
             adapter.open();
             adapter.setFeedDownloadUrl(original, updated);
             adapter.close();
+            DBReader.invalidateFeedCache();
         });
     }
 
@@ -873,6 +1018,7 @@ public class DBWriter {
             adapter.open();
             adapter.setFeedPreferences(preferences);
             adapter.close();
+            DBReader.invalidateFeedCache(preferences.getFeedID());
             EventBus.getDefault().post(new FeedListUpdateEvent(preferences.getFeedID()));
         });
     }
@@ -903,16 +1049,40 @@ public class DBWriter {
             adapter.open();
             adapter.setFeedLastUpdateFailed(feedId, lastUpdateFailed);
             adapter.close();
+            DBReader.invalidateFeedCache(feedId);
             EventBus.getDefault().post(new FeedListUpdateEvent(feedId));
         });
     }
 
+    /**
+     * Saves that a refresh found the feed unchanged, so the feed was not parsed or saved again.
+     *
+     * @param notModified true if the server answered with 304 Not Modified,
+     *                    false if the document had the same digest as the last time
+     */
+    public static Future<?> setFeedRefreshUnchanged(final long feedId, final boolean notModified,
+                                                    @Nullable final String lastModified,
+                                                    @Nullable final String etag) {
+        return dbExec.submit(() -> {
+            PodDBAdapter adapter = PodDBAdapter.getInstance();
+            adapter.open();
+            boolean lastUpdateFailed = adapter.setFeedRefreshUnchanged(feedId, notModified, lastModified, etag);
+            adapter.close();
+            DBReader.invalidateFeedCache(feedId);
+            if (lastUpdateFailed) {
+                // Only the error marker of the feed list changes, unchanged feeds do not need a reload
+                EventBus.getDefault().post(new FeedListUpdateEvent(feedId));
+            }
+        });
+    }
+
     public static Future<?> setFeedCustomTitle(Feed feed) {
         return dbExec.submit(() -> {
             PodDBAdapter adapter = PodDBAdapter.getInstance();
             adapter.open();
             adapter.setFeedCustomTitle(feed.getId(), feed.getCustomTitle());
             adapter.close();
+            DBReader.invalidateFeedCache(feed.getId());
             EventBus.getDefault().post(new FeedListUpdateEvent(feed));
         });
     }
@@ -962,6 +1132,7 @@ public class DBWriter {
             adapter.open();
             adapter.setFeedItemFilter(feedId, filterValues);
             adapter.close();
+            DBReader.invalidateFeedCache(feedId);
             EventBus.getDefault().post(new FeedEvent(FeedEvent.Action.FILTER_CHANGED, feedId));
         });
     }
@@ -976,6 +1147,7 @@ public class DBWriter {
             adapter.open();
             adapter.setFeedItemSortOrder(feedId, sortOrder);
             adapter.close();
+            DBReader.invalidateFeedCache(feedId);
             EventBus.getDefault().post(new FeedEvent(FeedEvent.Action.SORT_ORDER_CHANGED, feedId));
         });
     }
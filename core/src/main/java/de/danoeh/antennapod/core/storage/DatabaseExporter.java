@@ -51,6 +51,7 @@ public class DatabaseExporter {
         FileChannel dst = null;
         try {
             File currentDB = context.getDatabasePath(PodDBAdapter.DATABASE_NAME);
+            PodDBAdapter.getInstance().checkpoint();
 
             if (currentDB.exists()) {
                 src = new FileInputStream(currentDB).getChannel();
@@ -85,18 +86,26 @@ public class DatabaseExporter {
             FileUtils.copyInputStreamToFile(inputStream, tempDB);
 
             SQLiteDatabase db = SQLiteDatabase.openDatabase(tempDB.getAbsolutePath(),
-                    null, SQLiteDatabase.OPEN_READONLY);
-            if (db.getVersion() > PodDBAdapter.VERSION) {
-                throw new IOException(context.getString(R.string.import_no_downgrade));
+                    null, SQLiteDatabase.OPEN_READWRITE);
+            try {
+                if (db.getVersion() > PodDBAdapter.VERSION) {
+                    throw new IOException(context.getString(R.string.import_no_downgrade));
+                }
+                // The counters of the backup may not match its episodes
+                PodDBAdapter.rebuildFeedCounters(db);
+            } finally {
+                db.close();
             }
-            db.close();
 
             File currentDB = context.getDatabasePath(PodDBAdapter.DATABASE_NAME);
-            boolean success = currentDB.delete();
+            // Also deletes the write-ahead log, which must not be applied to the imported database
+            boolean success = SQLiteDatabase.deleteDatabase(currentDB);
             if (!success) {
                 throw new IOException("Unable to delete old database");
             }
             FileUtils.moveFile(tempDB, currentDB);
+            DBReader.invalidateFeedCache();
+            DBReader.invalidateEpisodeCacheSummaries();
         } catch (IOException | SQLiteException e) {
             Log.e(TAG, Log.getStackTraceString(e));
             throw e;
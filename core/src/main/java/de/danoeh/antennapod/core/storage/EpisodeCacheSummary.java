@@ -0,0 +1,22 @@
+package de.danoeh.antennapod.core.storage;
+
+/**
+ * Number and total size of a set of downloaded episodes.
+ */
+public class EpisodeCacheSummary {
+    private final int count;
+    private final long bytes;
+
+    public EpisodeCacheSummary(int count, long bytes) {
+        this.count = count;
+        this.bytes = bytes;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+}
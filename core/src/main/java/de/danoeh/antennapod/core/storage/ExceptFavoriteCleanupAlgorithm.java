@@ -3,11 +3,7 @@ package de.danoeh.antennapod.core.storage;
 import android.content.Context;
 import android.util.Log;
 
-import androidx.annotation.NonNull;
-
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.ExecutionException;
@@ -28,32 +24,14 @@ public class ExceptFavoriteCleanupAlgorithm extends EpisodeCleanupAlgorithm {
      * @return the number of episodes that *could* be cleaned up, if needed
      */
     public int getReclaimableItems() {
-        return getCandidates().size();
+        return DBReader.getCleanupCandidatesSummary(false, 0).getCount();
     }
 
     @Override
     public int performCleanup(Context context, int numberOfEpisodesToDelete) {
-        List<FeedItem> candidates = getCandidates();
-        List<FeedItem> delete;
-
-        // in the absence of better data, we'll sort by item publication date
-        Collections.sort(candidates, (lhs, rhs) -> {
-            Date l = lhs.getPubDate();
-            Date r = rhs.getPubDate();
-
-            if (l != null && r != null) {
-                return l.compareTo(r);
-            } else {
-                // No date - compare by id which should be always incremented
-                return Long.compare(lhs.getId(), rhs.getId());
-            }
-        });
-
-        if (candidates.size() > numberOfEpisodesToDelete) {
-            delete = candidates.subList(0, numberOfEpisodesToDelete);
-        } else {
-            delete = candidates;
-        }
+        List<FeedItem> delete = numberOfEpisodesToDelete > 0
+                ? DBReader.getCleanupCandidates(false, 0, numberOfEpisodesToDelete)
+                : Collections.emptyList();
 
         for (FeedItem item : delete) {
             try {
@@ -71,20 +49,6 @@ public class ExceptFavoriteCleanupAlgorithm extends EpisodeCleanupAlgorithm {
         return counter;
     }
 
-    @NonNull
-    private List<FeedItem> getCandidates() {
-        List<FeedItem> candidates = new ArrayList<>();
-        List<FeedItem> downloadedItems = DBReader.getDownloadedItems();
-        for (FeedItem item : downloadedItems) {
-            if (item.hasMedia()
-                    && item.getMedia().isDownloaded()
-                    && !item.isTagged(FeedItem.TAG_FAVORITE)) {
-                candidates.add(item);
-            }
-        }
-        return candidates;
-    }
-
     @Override
     public int getDefaultCleanupParameter() {
         int cacheSize = UserPreferences.getEpisodeCacheSize();
@@ -4,7 +4,8 @@ import android.text.TextUtils;
 import de.danoeh.antennapod.model.feed.FeedItem;
 import de.danoeh.antennapod.model.feed.FeedMedia;
 
-import java.text.DateFormat;
+import java.util.Calendar;
+import java.util.Date;
 import java.util.Locale;
 
 /**
@@ -13,6 +14,8 @@ import java.util.Locale;
  * even if their feed explicitly says that the episodes are different.
  */
 public class FeedItemDuplicateGuesser {
+    static final int NO_DAY = -1;
+
     public static boolean seemDuplicates(FeedItem item1, FeedItem item2) {
         if (sameAndNotEmpty(item1.getItemIdentifier(), item2.getItemIdentifier())) {
             return true;
@@ -42,13 +45,26 @@ public class FeedItemDuplicateGuesser {
         if (item1.getPubDate() == null || item2.getPubDate() == null) {
             return false;
         }
-        DateFormat dateFormat = DateFormat.getDateInstance(DateFormat.SHORT, Locale.US); // MM/DD/YY
-        String dateOriginal = dateFormat.format(item2.getPubDate());
-        String dateNew = dateFormat.format(item1.getPubDate());
-        return TextUtils.equals(dateOriginal, dateNew); // Same date; time is ignored.
+        return dayKey(item1.getPubDate()) == dayKey(item2.getPubDate()); // Same date; time is ignored.
+    }
+
+    /**
+     * Returns a key that is equal for two dates if they are on the same day (MM/DD/YY) in the default time zone,
+     * like the dates formatted with {@link java.text.DateFormat#SHORT} in {@link Locale#US}.
+     * Returns {@link #NO_DAY} if the date is null.
+     */
+    static int dayKey(Date date) {
+        if (date == null) {
+            return NO_DAY;
+        }
+        Calendar calendar = Calendar.getInstance(Locale.US);
+        calendar.setTime(date);
+        return (calendar.get(Calendar.YEAR) % 100) * 10000
+                + calendar.get(Calendar.MONTH) * 100
+                + calendar.get(Calendar.DAY_OF_MONTH);
     }
 
-    private static boolean durationsLookSimilar(FeedMedia media1, FeedMedia media2) {
+    static boolean durationsLookSimilar(FeedMedia media1, FeedMedia media2) {
         return Math.abs(media1.getDuration() - media2.getDuration()) < 10 * 60L * 1000L;
     }
 
@@ -56,7 +72,7 @@ public class FeedItemDuplicateGuesser {
         return sameAndNotEmpty(canonicalizeTitle(item1.getTitle()), canonicalizeTitle(item2.getTitle()));
     }
 
-    private static String canonicalizeTitle(String title) {
+    static String canonicalizeTitle(String title) {
         if (title == null) {
             return "";
         }
@@ -0,0 +1,245 @@
+package de.danoeh.antennapod.core.storage;
+
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import de.danoeh.antennapod.model.feed.FeedItem;
+import de.danoeh.antennapod.model.feed.FeedMedia;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Hash index over a list of FeedItems that is used when reconciling a freshly downloaded feed with the
+ * version stored in the database. The lookups return exactly the same items as a linear scan of the list
+ * would (the first matching item in list order), but run in constant time for typical feeds.
+ * <p/>
+ * The index is backed by the list that was passed to the constructor. Items that are inserted into that list
+ * need to be announced with {@link #add(FeedItem)}, items whose attributes change need to be announced
+ * with {@link #update(FeedItem)}.
+ */
+class FeedItemIndex {
+    private final List<FeedItem> items;
+    private final Map<String, List<FeedItem>> byIdentifyingValue = new HashMap<>();
+    private final Map<String, List<FeedItem>> byItemIdentifier = new HashMap<>();
+    private final Map<String, List<FeedItem>> byStreamUrl = new HashMap<>();
+    private final Map<TitleKey, List<FeedItem>> byTitle = new HashMap<>();
+    private final Map<FeedItem, Keys> keysOfItem = new IdentityHashMap<>();
+    private final Map<FeedItem, Integer> positions = new IdentityHashMap<>();
+    private boolean positionsValid = false;
+
+    FeedItemIndex(@NonNull List<FeedItem> items) {
+        this.items = items;
+        for (FeedItem item : items) {
+            insert(item);
+        }
+    }
+
+    /**
+     * Registers an item that was inserted into the backing list.
+     */
+    void add(@NonNull FeedItem item) {
+        insert(item);
+        positionsValid = false;
+    }
+
+    /**
+     * Re-computes the keys of an item after its attributes were changed.
+     * Does nothing if the item is not part of this index.
+     */
+    void update(@NonNull FeedItem item) {
+        Keys oldKeys = keysOfItem.remove(item);
+        if (oldKeys == null) {
+            return;
+        }
+        removeFrom(byIdentifyingValue, oldKeys.identifyingValue, item);
+        removeFrom(byItemIdentifier, oldKeys.itemIdentifier, item);
+        removeFrom(byStreamUrl, oldKeys.streamUrl, item);
+        removeFrom(byTitle, oldKeys.title, item);
+        insert(item);
+        // Buckets are no longer in list order
+        positionsValid = false;
+    }
+
+    /**
+     * Returns the first item that has the same identifying value as the given item.
+     */
+    @Nullable
+    FeedItem findByIdentifyingValue(@NonNull FeedItem searchItem) {
+        return first(byIdentifyingValue.get(searchItem.getIdentifyingValue()));
+    }
+
+    boolean containsIdentifyingValue(@NonNull FeedItem searchItem) {
+        return byIdentifyingValue.containsKey(searchItem.getIdentifyingValue());
+    }
+
+    /**
+     * Returns the first item that {@link FeedItemDuplicateGuesser#seemDuplicates(FeedItem, FeedItem)}
+     * considers a duplicate of the given item.
+     */
+    @Nullable
+    FeedItem findGuessedDuplicate(@NonNull FeedItem searchItem) {
+        Keys keys = new Keys(searchItem);
+        FeedItem result = first(byItemIdentifier.get(keys.itemIdentifier));
+        if (searchItem.getMedia() == null) {
+            return result;
+        }
+        result = earlier(result, first(byStreamUrl.get(keys.streamUrl)));
+        List<FeedItem> sameTitle = byTitle.get(keys.title);
+        if (sameTitle != null) {
+            for (FeedItem candidate : sameTitle) {
+                if (FeedItemDuplicateGuesser.durationsLookSimilar(candidate.getMedia(), searchItem.getMedia())) {
+                    result = earlier(result, candidate);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void insert(FeedItem item) {
+        Keys keys = new Keys(item);
+        keysOfItem.put(item, keys);
+        // Identifying values may legitimately be null, the other keys are only set if they can match
+        addTo(byIdentifyingValue, keys.identifyingValue, item);
+        if (keys.itemIdentifier != null) {
+            addTo(byItemIdentifier, keys.itemIdentifier, item);
+        }
+        if (keys.streamUrl != null) {
+            addTo(byStreamUrl, keys.streamUrl, item);
+        }
+        if (keys.title != null) {
+            addTo(byTitle, keys.title, item);
+        }
+    }
+
+    @Nullable
+    private FeedItem first(@Nullable List<FeedItem> bucket) {
+        if (bucket == null) {
+            return null;
+        }
+        FeedItem result = bucket.get(0);
+        for (int i = 1; i < bucket.size(); i++) {
+            result = earlier(result, bucket.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the item that comes first in the backing list.
+     * Positions are only computed when two different candidates actually need to be compared.
+     */
+    @Nullable
+    private FeedItem earlier(@Nullable FeedItem item1, @Nullable FeedItem item2) {
+        if (item1 == null || item1 == item2) {
+            return item2;
+        } else if (item2 == null) {
+            return item1;
+        }
+        if (!positionsValid) {
+            positions.clear();
+            for (int i = 0; i < items.size(); i++) {
+                positions.put(items.get(i), i);
+            }
+            positionsValid = true;
+        }
+        return positions.get(item1) <= positions.get(item2) ? item1 : item2;
+    }
+
+    private static <K> void addTo(Map<K, List<FeedItem>> map, K key, FeedItem item) {
+        List<FeedItem> bucket = map.get(key);
+        if (bucket == null) {
+            bucket = new ArrayList<>(1);
+            map.put(key, bucket);
+        }
+        bucket.add(item);
+    }
+
+    private static <K> void removeFrom(Map<K, List<FeedItem>> map, K key, FeedItem item) {
+        List<FeedItem> bucket = map.get(key);
+        if (bucket == null) {
+            return;
+        }
+        for (int i = 0; i < bucket.size(); i++) {
+            if (bucket.get(i) == item) {
+                bucket.remove(i);
+                break;
+            }
+        }
+        if (bucket.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
+    private static String emptyToNull(String string) {
+        return TextUtils.isEmpty(string) ? null : string;
+    }
+
+    /**
+     * Snapshot of the values an item is indexed by.
+     */
+    private static class Keys {
+        final String identifyingValue;
+        final String itemIdentifier;
+        final String streamUrl;
+        final TitleKey title;
+
+        Keys(FeedItem item) {
+            identifyingValue = item.getIdentifyingValue();
+            itemIdentifier = emptyToNull(item.getItemIdentifier());
+            FeedMedia media = item.getMedia();
+            if (media == null) {
+                streamUrl = null;
+                title = null;
+                return;
+            }
+            streamUrl = emptyToNull(media.getStreamUrl());
+            String canonicalTitle = FeedItemDuplicateGuesser.canonicalizeTitle(item.getTitle());
+            if (TextUtils.isEmpty(canonicalTitle) || item.getPubDate() == null) {
+                title = null;
+            } else {
+                title = new TitleKey(canonicalTitle,
+                        FeedItemDuplicateGuesser.dayKey(item.getPubDate()), media.getMime_type());
+            }
+        }
+    }
+
+    /**
+     * Items with equal title keys are duplicates if their durations are similar.
+     */
+    private static class TitleKey {
+        final String canonicalTitle;
+        final int day;
+        final String mimeType;
+
+        TitleKey(String canonicalTitle, int day, String mimeType) {
+            this.canonicalTitle = canonicalTitle;
+            this.day = day;
+            this.mimeType = mimeType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TitleKey)) {
+                return false;
+            }
+            TitleKey other = (TitleKey) o;
+            return day == other.day
+                    && canonicalTitle.equals(other.canonicalTitle)
+                    && TextUtils.equals(mimeType, other.mimeType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(canonicalTitle, day, mimeType);
+        }
+    }
+}
@@ -2,9 +2,9 @@ package de.danoeh.antennapod.core.sync;
 
 import android.util.Log;
 
-import androidx.collection.ArrayMap;
 import androidx.core.util.Pair;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -18,7 +18,7 @@ public class EpisodeActionFilter {
             List<EpisodeAction> remoteActions,
             List<EpisodeAction> queuedEpisodeActions) {
         // make sure more recent local actions are not overwritten by older remote actions
-        Map<Pair<String, String>, EpisodeAction> remoteActionsThatOverrideLocalActions = new ArrayMap<>();
+        Map<Pair<String, String>, EpisodeAction> remoteActionsThatOverrideLocalActions = new HashMap<>();
         Map<Pair<String, String>, EpisodeAction> localMostRecentPlayActions =
                 createUniqueLocalMostRecentPlayActions(queuedEpisodeActions);
         for (EpisodeAction remoteAction : remoteActions) {
@@ -55,7 +55,7 @@ public class EpisodeActionFilter {
     private static Map<Pair<String, String>, EpisodeAction> createUniqueLocalMostRecentPlayActions(
             List<EpisodeAction> queuedEpisodeActions) {
         Map<Pair<String, String>, EpisodeAction> localMostRecentPlayAction;
-        localMostRecentPlayAction = new ArrayMap<>();
+        localMostRecentPlayAction = new HashMap<>();
         for (EpisodeAction action : queuedEpisodeActions) {
             Pair<String, String> key = new Pair<>(action.getPodcast(), action.getEpisode());
             EpisodeAction mostRecent = localMostRecentPlayAction.get(key);
@@ -0,0 +1,168 @@
+package de.danoeh.antennapod.core.sync;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.danoeh.antennapod.net.sync.model.EpisodeAction;
+import de.danoeh.antennapod.net.sync.model.ISyncService;
+import de.danoeh.antennapod.net.sync.model.SyncServiceException;
+import de.danoeh.antennapod.net.sync.model.UploadChangesResponse;
+
+/**
+ * Uploads episode actions in chunks, reading them page by page from a {@link Source}. Several chunks are
+ * uploaded at the same time. When a chunk and all chunks before it have been acknowledged by the server,
+ * the source gets a checkpoint, so an interrupted upload continues after the last acknowledged chunk.
+ * The chunk size grows while the server answers quickly and shrinks when it gets slow.
+ */
+public class EpisodeActionUploader {
+    private static final String TAG = "EpisodeActionUploader";
+    static final int MIN_CHUNK_SIZE = 10;
+    static final int INITIAL_CHUNK_SIZE = 30;
+    static final int MAX_CHUNK_SIZE = 300;
+    static final int MAX_PARALLEL_CHUNKS = 3;
+    static final long TARGET_LATENCY_MILLIS = 2000;
+
+    private final ISyncService syncService;
+    private int chunkSize = INITIAL_CHUNK_SIZE;
+
+    /**
+     * Actions that are read from a source, ordered by their position.
+     */
+    public static class Page {
+        public final List<EpisodeAction> actions;
+        public final long lastPosition;
+
+        /**
+         * @param lastPosition Position of the last row that was read. Rows that do not result in
+         *                     an action are included, so that they are not read again.
+         */
+        public Page(List<EpisodeAction> actions, long lastPosition) {
+            this.actions = actions;
+            this.lastPosition = lastPosition;
+        }
+    }
+
+    public interface Source {
+        /**
+         * Reads the next page.
+         *
+         * @param afterPosition Position of the last row of the previous page, or the start position.
+         * @param limit The maximum number of rows to read.
+         * @return A page with lastPosition == afterPosition if there are no more rows.
+         */
+        Page read(long afterPosition, int limit);
+
+        /**
+         * Called when all actions up to the given position have been acknowledged by the server.
+         */
+        void checkpoint(long position);
+    }
+
+    private static class Chunk {
+        final long lastPosition;
+        final Future<Upload> upload;
+
+        Chunk(long lastPosition, Future<Upload> upload) {
+            this.lastPosition = lastPosition;
+            this.upload = upload;
+        }
+    }
+
+    private static class Upload {
+        final UploadChangesResponse response;
+        final long latencyMillis;
+
+        Upload(UploadChangesResponse response, long latencyMillis) {
+            this.response = response;
+            this.latencyMillis = latencyMillis;
+        }
+    }
+
+    public EpisodeActionUploader(ISyncService syncService) {
+        this.syncService = syncService;
+    }
+
+    /**
+     * Uploads all actions of the source after the given position.
+     *
+     * @return The most recent timestamp returned by the server, or 0 if nothing was uploaded.
+     */
+    public long upload(Source source, long startPosition) throws SyncServiceException {
+        long timestamp = 0;
+        long readPosition = startPosition;
+        boolean exhausted = false;
+        Deque<Chunk> chunks = new ArrayDeque<>();
+        ExecutorService executor = Executors.newFixedThreadPool(MAX_PARALLEL_CHUNKS);
+        try {
+            while (true) {
+                while (!exhausted && chunks.size() < MAX_PARALLEL_CHUNKS) {
+                    Page page = source.read(readPosition, chunkSize);
+                    if (page.lastPosition == readPosition) {
+                        exhausted = true;
+                        break;
+                    }
+                    readPosition = page.lastPosition;
+                    Future<Upload> upload = null;
+                    if (!page.actions.isEmpty()) {
+                        upload = executor.submit(() -> upload(page.actions));
+                    }
+                    chunks.add(new Chunk(page.lastPosition, upload));
+                }
+                Chunk chunk = chunks.poll();
+                if (chunk == null) {
+                    return timestamp;
+                }
+                if (chunk.upload != null) {
+                    Upload upload = await(chunk.upload);
+                    adaptChunkSize(upload.latencyMillis);
+                    if (upload.response != null) {
+                        timestamp = Math.max(timestamp, upload.response.timestamp);
+                    }
+                }
+                source.checkpoint(chunk.lastPosition);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Upload upload(List<EpisodeAction> actions) throws SyncServiceException {
+        long start = System.currentTimeMillis();
+        UploadChangesResponse response = syncService.uploadEpisodeActions(actions);
+        long latency = System.currentTimeMillis() - start;
+        Log.d(TAG, "Uploaded " + actions.size() + " actions in " + latency + " ms");
+        return new Upload(response, latency);
+    }
+
+    private static Upload await(Future<Upload> upload) throws SyncServiceException {
+        try {
+            return upload.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SyncServiceException) {
+                throw (SyncServiceException) e.getCause();
+            }
+            throw new SyncServiceException(e.getCause());
+        } catch (InterruptedException e) {
+            throw new SyncServiceException(e);
+        }
+    }
+
+    private void adaptChunkSize(long latencyMillis) {
+        if (latencyMillis < TARGET_LATENCY_MILLIS / 2) {
+            chunkSize = Math.min(MAX_CHUNK_SIZE, chunkSize * 2);
+        } else if (latencyMillis > TARGET_LATENCY_MILLIS) {
+            chunkSize = Math.max(MIN_CHUNK_SIZE, chunkSize / 2);
+        }
+    }
+
+    int getChunkSize() {
+        return chunkSize;
+    }
+}
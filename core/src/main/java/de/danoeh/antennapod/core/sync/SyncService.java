@@ -9,6 +9,7 @@ import android.os.Build;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.core.app.NotificationCompat;
 import androidx.core.util.Pair;
 import androidx.work.BackoffPolicy;
@@ -200,7 +201,8 @@ public class SyncService extends Worker {
         }
     }
 
-    private void syncEpisodeActions(ISyncService syncServiceImpl) throws SyncServiceException {
+    @VisibleForTesting
+    void syncEpisodeActions(ISyncService syncServiceImpl) throws SyncServiceException {
         final long lastSync = SynchronizationSettings.getLastEpisodeActionSynchronizationTimestamp();
         EventBus.getDefault().postSticky(new SyncServiceEvent(R.string.sync_status_episodes_download));
         EpisodeActionChanges getResponse = syncServiceImpl.getEpisodeActionChanges(lastSync);
@@ -210,55 +212,104 @@ public class SyncService extends Worker {
 
         // upload local actions
         EventBus.getDefault().postSticky(new SyncServiceEvent(R.string.sync_status_episodes_upload));
-        List<EpisodeAction> queuedEpisodeActions = synchronizationQueueStorage.getQueuedEpisodeActions();
+        EpisodeActionUploader uploader = new EpisodeActionUploader(syncServiceImpl);
+        long uploadTimeStamp;
+        LockingAsyncExecutor.lock.lock();
+        try {
+            uploadTimeStamp = uploader.upload(getQueuedActionsSource(), 0);
+        } finally {
+            LockingAsyncExecutor.lock.unlock();
+        }
         if (lastSync == 0) {
             EventBus.getDefault().postSticky(new SyncServiceEvent(R.string.sync_status_upload_played));
-            List<FeedItem> readItems = DBReader.getPlayedItems();
-            Log.d(TAG, "First sync. Upload state for all " + readItems.size() + " played episodes");
-            for (FeedItem item : readItems) {
-                FeedMedia media = item.getMedia();
-                if (media == null) {
-                    continue;
-                }
-                EpisodeAction played = new EpisodeAction.Builder(item, EpisodeAction.PLAY)
-                        .currentTimestamp()
-                        .started(media.getDuration() / 1000)
-                        .position(media.getDuration() / 1000)
-                        .total(media.getDuration() / 1000)
-                        .build();
-                queuedEpisodeActions.add(played);
-            }
+            long checkpoint = SynchronizationSettings.getPlayedItemsUploadCheckpoint();
+            Log.d(TAG, "First sync. Upload state for all played episodes after item " + checkpoint);
+            uploadTimeStamp = Math.max(uploadTimeStamp, uploader.upload(getPlayedItemsSource(), checkpoint));
         }
-        if (queuedEpisodeActions.size() > 0) {
-            LockingAsyncExecutor.lock.lock();
-            try {
-                Log.d(TAG, "Uploading " + queuedEpisodeActions.size() + " actions: "
-                        + StringUtils.join(queuedEpisodeActions, ", "));
-                UploadChangesResponse postResponse = syncServiceImpl.uploadEpisodeActions(queuedEpisodeActions);
-                newTimeStamp = postResponse.timestamp;
-                Log.d(TAG, "Upload episode response: " + postResponse);
-                synchronizationQueueStorage.clearEpisodeActionQueue();
-            } finally {
-                LockingAsyncExecutor.lock.unlock();
-            }
+        if (uploadTimeStamp > 0) {
+            newTimeStamp = uploadTimeStamp;
         }
         SynchronizationSettings.setLastEpisodeActionSynchronizationAttemptTimestamp(newTimeStamp);
     }
 
-    private synchronized void processEpisodeActions(List<EpisodeAction> remoteActions) {
+    /**
+     * Actions that were queued before the upload started. Acknowledged actions are removed from the queue.
+     */
+    private EpisodeActionUploader.Source getQueuedActionsSource() {
+        final long lastQueuedActionId = synchronizationQueueStorage.getLastQueuedEpisodeActionId();
+        return new EpisodeActionUploader.Source() {
+            @Override
+            public EpisodeActionUploader.Page read(long afterPosition, int limit) {
+                return synchronizationQueueStorage.getQueuedEpisodeActions(afterPosition, lastQueuedActionId, limit);
+            }
+
+            @Override
+            public void checkpoint(long position) {
+                synchronizationQueueStorage.acknowledgeEpisodeActions(position);
+            }
+        };
+    }
+
+    /**
+     * A play action for every played episode, ordered by the item ID.
+     */
+    private static EpisodeActionUploader.Source getPlayedItemsSource() {
+        return new EpisodeActionUploader.Source() {
+            @Override
+            public EpisodeActionUploader.Page read(long afterPosition, int limit) {
+                List<FeedItem> items = DBReader.getPlayedItems(afterPosition, limit);
+                List<EpisodeAction> actions = new ArrayList<>();
+                for (FeedItem item : items) {
+                    FeedMedia media = item.getMedia();
+                    if (media == null) {
+                        continue;
+                    }
+                    actions.add(new EpisodeAction.Builder(item, EpisodeAction.PLAY)
+                            .currentTimestamp()
+                            .started(media.getDuration() / 1000)
+                            .position(media.getDuration() / 1000)
+                            .total(media.getDuration() / 1000)
+                            .build());
+                }
+                long lastPosition = items.isEmpty() ? afterPosition : items.get(items.size() - 1).getId();
+                return new EpisodeActionUploader.Page(actions, lastPosition);
+            }
+
+            @Override
+            public void checkpoint(long position) {
+                SynchronizationSettings.setPlayedItemsUploadCheckpoint(position);
+            }
+        };
+    }
+
+    private void processEpisodeActions(List<EpisodeAction> remoteActions) {
+        processEpisodeActions(getApplicationContext(), remoteActions,
+                synchronizationQueueStorage.getQueuedEpisodeActions());
+    }
+
+    @VisibleForTesting
+    static synchronized void processEpisodeActions(Context context, List<EpisodeAction> remoteActions,
+                                                   List<EpisodeAction> queuedActions) {
         Log.d(TAG, "Processing " + remoteActions.size() + " actions");
         if (remoteActions.size() == 0) {
             return;
         }
 
         Map<Pair<String, String>, EpisodeAction> playActionsToUpdate = EpisodeActionFilter
-                .getRemoteActionsOverridingLocalActions(remoteActions,
-                        synchronizationQueueStorage.getQueuedEpisodeActions());
+                .getRemoteActionsOverridingLocalActions(remoteActions, queuedActions);
+        List<EpisodeAction> actions = new ArrayList<>(playActionsToUpdate.values());
+        List<Pair<String, String>> guidsAndEpisodeUrls = new ArrayList<>(actions.size());
+        for (EpisodeAction action : actions) {
+            String guid = GuidValidator.isValidGuid(action.getGuid()) ? action.getGuid() : null;
+            guidsAndEpisodeUrls.add(new Pair<>(guid, action.getEpisode()));
+        }
+        List<FeedItem> feedItems = DBReader.getFeedItemsByGuidOrEpisodeUrl(guidsAndEpisodeUrls);
+
         LongList queueToBeRemoved = new LongList();
         List<FeedItem> updatedItems = new ArrayList<>();
-        for (EpisodeAction action : playActionsToUpdate.values()) {
-            String guid = GuidValidator.isValidGuid(action.getGuid()) ? action.getGuid() : null;
-            FeedItem feedItem = DBReader.getFeedItemByGuidOrEpisodeUrl(guid, action.getEpisode());
+        for (int i = 0; i < actions.size(); i++) {
+            EpisodeAction action = actions.get(i);
+            FeedItem feedItem = feedItems.get(i);
             if (feedItem == null) {
                 Log.i(TAG, "Unknown feed item: " + action);
                 continue;
@@ -282,7 +333,7 @@ public class SyncService extends Worker {
             }
             updatedItems.add(feedItem);
         }
-        DBWriter.removeQueueItem(getApplicationContext(), false, queueToBeRemoved.toArray());
+        DBWriter.removeQueueItem(context, false, queueToBeRemoved.toArray());
         DBReader.loadAdditionalFeedItemListData(updatedItems);
         DBWriter.setItemList(updatedItems);
     }
@@ -13,6 +13,7 @@ public class SynchronizationSettings {
     private static final String LAST_SYNC_ATTEMPT_SUCCESS = "last_sync_attempt_success";
     private static final String LAST_EPISODE_ACTIONS_SYNC_TIMESTAMP = "last_episode_actions_sync_timestamp";
     private static final String LAST_SUBSCRIPTION_SYNC_TIMESTAMP = "last_sync_timestamp";
+    private static final String PLAYED_ITEMS_UPLOAD_CHECKPOINT = "played_items_upload_checkpoint";
 
     public static boolean isProviderConnected() {
         return getSelectedSyncProviderKey() != null;
@@ -23,6 +24,7 @@ public class SynchronizationSettings {
                 .putLong(LAST_SUBSCRIPTION_SYNC_TIMESTAMP, 0)
                 .putLong(LAST_EPISODE_ACTIONS_SYNC_TIMESTAMP, 0)
                 .putLong(LAST_SYNC_ATTEMPT_TIMESTAMP, 0)
+                .putLong(PLAYED_ITEMS_UPLOAD_CHECKPOINT, 0)
                 .apply();
     }
 
@@ -76,6 +78,18 @@ public class SynchronizationSettings {
                 .putLong(LAST_EPISODE_ACTIONS_SYNC_TIMESTAMP, timestamp).apply();
     }
 
+    /**
+     * Returns the ID of the last played item that was uploaded during the first synchronization.
+     */
+    public static long getPlayedItemsUploadCheckpoint() {
+        return getSharedPreferences().getLong(PLAYED_ITEMS_UPLOAD_CHECKPOINT, 0);
+    }
+
+    public static void setPlayedItemsUploadCheckpoint(long itemId) {
+        getSharedPreferences().edit()
+                .putLong(PLAYED_ITEMS_UPLOAD_CHECKPOINT, itemId).apply();
+    }
+
     private static SharedPreferences getSharedPreferences() {
         return ClientConfig.applicationCallbacks.getApplicationInstance()
                 .getSharedPreferences(NAME, Context.MODE_PRIVATE);
@@ -2,16 +2,28 @@ package de.danoeh.antennapod.core.sync.queue;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.util.Log;
 
+import de.danoeh.antennapod.storage.database.PodDBAdapter;
 import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
+import de.danoeh.antennapod.core.sync.EpisodeActionUploader;
 import de.danoeh.antennapod.core.sync.SynchronizationSettings;
 import de.danoeh.antennapod.net.sync.model.EpisodeAction;
 
+/**
+ * Stores the changes that still need to be uploaded to the synchronization service.
+ * Episode actions are kept in a database table, the lists of added and removed feeds in the preferences.
+ */
 public class SynchronizationQueueStorage {
+    private static final String TAG = "SyncQueueStorage";
 
     private static final String NAME = "synchronization";
     private static final String QUEUED_EPISODE_ACTIONS = "sync_queued_episode_actions";
@@ -21,23 +33,120 @@ public class SynchronizationQueueStorage {
 
     public SynchronizationQueueStorage(Context context) {
         this.sharedPreferences = context.getSharedPreferences(NAME, Context.MODE_PRIVATE);
+        migrateEpisodeActionsFromPreferences();
     }
 
-    public ArrayList<EpisodeAction> getQueuedEpisodeActions() {
-        ArrayList<EpisodeAction> actions = new ArrayList<>();
+    /**
+     * Episode actions used to be queued as a JSON array in the preferences.
+     * Moves them to the database the first time the queue is used after the update.
+     * If the database can not be written, they stay in the preferences and are moved next time.
+     */
+    private void migrateEpisodeActionsFromPreferences() {
+        String json = getSharedPreferences().getString(QUEUED_EPISODE_ACTIONS, null);
+        if (json == null) {
+            return;
+        }
+        List<EpisodeAction> actions = new ArrayList<>();
         try {
-            String json = getSharedPreferences()
-                    .getString(QUEUED_EPISODE_ACTIONS, "[]");
             JSONArray queue = new JSONArray(json);
             for (int i = 0; i < queue.length(); i++) {
-                actions.add(EpisodeAction.readFromJsonObject(queue.getJSONObject(i)));
+                EpisodeAction action = EpisodeAction.readFromJsonObject(queue.getJSONObject(i));
+                if (action != null) {
+                    actions.add(action);
+                }
             }
         } catch (JSONException e) {
-            e.printStackTrace();
+            Log.e(TAG, Log.getStackTraceString(e));
+        }
+        if (writeEpisodeActions(actions)) {
+            getSharedPreferences().edit().remove(QUEUED_EPISODE_ACTIONS).commit();
+        }
+    }
+
+    public ArrayList<EpisodeAction> getQueuedEpisodeActions() {
+        return getQueuedEpisodeActions(getLastQueuedEpisodeActionId());
+    }
+
+    /**
+     * Returns the queued episode actions up to the given ID, in the order they were queued.
+     *
+     * @param maxId As returned by {@link #getLastQueuedEpisodeActionId()}
+     */
+    public ArrayList<EpisodeAction> getQueuedEpisodeActions(long maxId) {
+        ArrayList<EpisodeAction> actions = new ArrayList<>();
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try (Cursor cursor = adapter.getSyncEpisodeActionsCursor(maxId)) {
+            readEpisodeActions(cursor, actions);
+        } finally {
+            adapter.close();
         }
         return actions;
     }
 
+    /**
+     * Returns a page of the queued episode actions for {@link EpisodeActionUploader}.
+     * The positions of the page are the IDs of the actions.
+     *
+     * @param afterId Only actions with a greater ID are returned
+     * @param maxId As returned by {@link #getLastQueuedEpisodeActionId()}
+     * @param limit The maximum number of actions
+     */
+    public EpisodeActionUploader.Page getQueuedEpisodeActions(long afterId, long maxId, int limit) {
+        ArrayList<EpisodeAction> actions = new ArrayList<>();
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try (Cursor cursor = adapter.getSyncEpisodeActionsCursor(afterId, maxId, limit)) {
+            long lastId = readEpisodeActions(cursor, actions);
+            return new EpisodeActionUploader.Page(actions, lastId != 0 ? lastId : afterId);
+        } finally {
+            adapter.close();
+        }
+    }
+
+    /**
+     * Adds the actions of the cursor to the list and returns the ID of the last row, or 0 for an empty cursor.
+     */
+    private static long readEpisodeActions(Cursor cursor, List<EpisodeAction> actions) {
+        long lastId = 0;
+        while (cursor.moveToNext()) {
+            lastId = cursor.getLong(0);
+            try {
+                EpisodeAction action = EpisodeAction.readFromJsonObject(new JSONObject(cursor.getString(1)));
+                if (action != null) {
+                    actions.add(action);
+                }
+            } catch (JSONException e) {
+                Log.e(TAG, Log.getStackTraceString(e));
+            }
+        }
+        return lastId;
+    }
+
+    /**
+     * Returns the ID of the most recently queued episode action. Uploading the actions up to this ID
+     * and acknowledging them afterwards keeps actions that are queued during the upload.
+     */
+    public long getLastQueuedEpisodeActionId() {
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try {
+            return adapter.getLastSyncEpisodeActionId();
+        } finally {
+            adapter.close();
+        }
+    }
+
+    /**
+     * Removes the episode actions up to the given ID from the queue after they were uploaded.
+     */
+    public void acknowledgeEpisodeActions(long maxId) {
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        adapter.removeSyncEpisodeActions(maxId);
+        adapter.close();
+    }
+
     public ArrayList<String> getQueuedRemovedFeeds() {
         ArrayList<String> removedFeedUrls = new ArrayList<>();
         try {
@@ -70,9 +179,7 @@ public class SynchronizationQueueStorage {
     }
 
     public void clearEpisodeActionQueue() {
-        getSharedPreferences().edit()
-                .putString(QUEUED_EPISODE_ACTIONS, "[]").apply();
-
+        acknowledgeEpisodeActions(Long.MAX_VALUE);
     }
 
     public void clearFeedQueues() {
@@ -84,8 +191,8 @@ public class SynchronizationQueueStorage {
 
     protected void clearQueue() {
         SynchronizationSettings.resetTimestamps();
+        clearEpisodeActionQueue();
         getSharedPreferences().edit()
-                .putString(QUEUED_EPISODE_ACTIONS, "[]")
                 .putString(QUEUED_FEEDS_ADDED, "[]")
                 .putString(QUEUED_FEEDS_REMOVED, "[]")
                 .apply();
@@ -121,17 +228,27 @@ public class SynchronizationQueueStorage {
     }
 
     protected void enqueueEpisodeAction(EpisodeAction action) {
-        SharedPreferences sharedPreferences = getSharedPreferences();
-        String json = sharedPreferences.getString(QUEUED_EPISODE_ACTIONS, "[]");
-        try {
-            JSONArray queue = new JSONArray(json);
-            queue.put(action.writeToJsonObject());
-            sharedPreferences.edit().putString(
-                    QUEUED_EPISODE_ACTIONS, queue.toString()
-            ).apply();
-        } catch (JSONException jsonException) {
-            jsonException.printStackTrace();
+        writeEpisodeActions(Collections.singletonList(action));
+    }
+
+    /**
+     * Returns true if the actions were written to the database.
+     */
+    private boolean writeEpisodeActions(List<EpisodeAction> actions) {
+        List<String[]> rows = new ArrayList<>(actions.size());
+        for (EpisodeAction action : actions) {
+            JSONObject json = action.writeToJsonObject();
+            if (json == null) {
+                continue;
+            }
+            rows.add(new String[]{action.getPodcast(), action.getEpisode(),
+                    action.getAction().name(), json.toString()});
         }
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        boolean written = adapter.enqueueSyncEpisodeActions(rows);
+        adapter.close();
+        return written;
     }
 
     private SharedPreferences getSharedPreferences() {
@@ -37,6 +37,7 @@ import java.util.List;
 public class ChapterUtils {
 
     private static final String TAG = "ChapterUtils";
+    private static final MediaMetadataProber metadataProber = new MediaMetadataProber();
 
     private ChapterUtils() {
     }
@@ -90,6 +91,19 @@ public class ChapterUtils {
     }
 
     public static List<Chapter> loadChaptersFromMediaFile(Playable playable, Context context) {
+        if (!playable.localFileAvailable() && !playable.getStreamUrl().startsWith(ContentResolver.SCHEME_CONTENT)) {
+            try {
+                List<Chapter> chapters = metadataProber.loadChapters(playable.getStreamUrl());
+                if (!chapters.isEmpty()) {
+                    Log.i(TAG, "Chapters loaded");
+                    return chapters;
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to load chapters: " + e.getMessage());
+            }
+            return null;
+        }
+
         try (CountingInputStream in = openStream(playable, context)) {
             List<Chapter> chapters = readId3ChaptersFrom(in);
             if (!chapters.isEmpty()) {
@@ -112,6 +126,9 @@ public class ChapterUtils {
         return null;
     }
 
+    /**
+     * Opens a downloaded file or a file of a local folder. Remote files are read by the {@link MediaMetadataProber}.
+     */
     private static CountingInputStream openStream(Playable playable, Context context) throws IOException {
         if (playable.localFileAvailable()) {
             if (playable.getLocalMediaUrl() == null) {
@@ -122,17 +139,9 @@ public class ChapterUtils {
                 throw new IOException("Local file does not exist");
             }
             return new CountingInputStream(new BufferedInputStream(new FileInputStream(source)));
-        } else if (playable.getStreamUrl().startsWith(ContentResolver.SCHEME_CONTENT)) {
-            Uri uri = Uri.parse(playable.getStreamUrl());
-            return new CountingInputStream(new BufferedInputStream(context.getContentResolver().openInputStream(uri)));
-        } else {
-            Request request = new Request.Builder().url(playable.getStreamUrl()).build();
-            Response response = AntennapodHttpClient.getHttpClient().newCall(request).execute();
-            if (response.body() == null) {
-                throw new IOException("Body is null");
-            }
-            return new CountingInputStream(new BufferedInputStream(response.body().byteStream()));
         }
+        Uri uri = Uri.parse(playable.getStreamUrl());
+        return new CountingInputStream(new BufferedInputStream(context.getContentResolver().openInputStream(uri)));
     }
 
     public static List<Chapter> loadChaptersFromUrl(String url, boolean forceRefresh) {
@@ -166,7 +175,7 @@ public class ChapterUtils {
     }
 
     @NonNull
-    private static List<Chapter> readId3ChaptersFrom(CountingInputStream in) throws IOException, ID3ReaderException {
+    static List<Chapter> readId3ChaptersFrom(CountingInputStream in) throws IOException, ID3ReaderException {
         ChapterReader reader = new ChapterReader(in);
         reader.readInputStream();
         List<Chapter> chapters = reader.getChapters();
@@ -180,7 +189,7 @@ public class ChapterUtils {
     }
 
     @NonNull
-    private static List<Chapter> readOggChaptersFromInputStream(InputStream input) throws VorbisCommentReaderException {
+    static List<Chapter> readOggChaptersFromInputStream(InputStream input) throws VorbisCommentReaderException {
         VorbisCommentChapterReader reader = new VorbisCommentChapterReader(new BufferedInputStream(input));
         reader.readInputStream();
         List<Chapter> chapters = reader.getChapters();
@@ -0,0 +1,307 @@
+package de.danoeh.antennapod.core.util;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.apache.commons.io.input.CountingInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import de.danoeh.antennapod.core.service.download.AntennapodHttpClient;
+import de.danoeh.antennapod.model.feed.Chapter;
+import de.danoeh.antennapod.parser.media.id3.ID3ReaderException;
+import de.danoeh.antennapod.parser.media.vorbis.VorbisCommentReaderException;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Reads the chapters of a remote media file with HTTP range requests. The first ten bytes decide the container.
+ * Of an ID3 tag, only the size that its header declares is fetched. Ogg files are fetched in small chunks
+ * until the comment header has been read. The container and the chapters are remembered per URL,
+ * so opening the same episode again does not cause any requests.
+ */
+public class MediaMetadataProber {
+    private static final String TAG = "MediaMetadataProber";
+    static final int HEADER_SIZE = 10;
+    static final int OGG_CHUNK_SIZE = 64 * 1024;
+    static final int MAX_OGG_PROBE_SIZE = 2 * 1024 * 1024;
+    private static final int CACHE_SIZE = 50;
+    private static final int ID3_FLAG_FOOTER = 0x10;
+
+    enum Container { ID3, OGG, UNKNOWN }
+
+    private final OkHttpClient httpClient;
+    private final Map<String, Result> cache = new LinkedHashMap<String, Result>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private static class Result {
+        final Container container;
+        final List<Chapter> chapters;
+
+        Result(Container container, List<Chapter> chapters) {
+            this.container = container;
+            this.chapters = chapters;
+        }
+    }
+
+    /**
+     * Creates a prober that uses the current {@link AntennapodHttpClient}.
+     */
+    public MediaMetadataProber() {
+        this(null);
+    }
+
+    MediaMetadataProber(@Nullable OkHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    /**
+     * Returns the chapters of the media file at the given URL, or an empty list if it has none.
+     */
+    @NonNull
+    public List<Chapter> loadChapters(String url) throws IOException {
+        Result result;
+        synchronized (cache) {
+            result = cache.get(url);
+        }
+        if (result == null) {
+            result = probe(url);
+            synchronized (cache) {
+                cache.put(url, result);
+            }
+        }
+        return new ArrayList<>(result.chapters);
+    }
+
+    @Nullable
+    Container getCachedContainer(String url) {
+        synchronized (cache) {
+            Result result = cache.get(url);
+            return result != null ? result.container : null;
+        }
+    }
+
+    public void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private Result probe(String url) throws IOException {
+        try (RangeInputStream in = new RangeInputStream(getHttpClient(), url, HEADER_SIZE)) {
+            byte[] header = new byte[HEADER_SIZE];
+            int length = readFully(in, header);
+            Container container = getContainer(header, length);
+            Log.d(TAG, "Container of " + url + ": " + container);
+            InputStream fromStart = new SequenceInputStream(new ByteArrayInputStream(header, 0, length), in);
+            switch (container) {
+                case ID3:
+                    long tagSize = getId3TagSize(header);
+                    in.setLimit(tagSize, tagSize - HEADER_SIZE);
+                    try {
+                        return new Result(container, ChapterUtils.readId3ChaptersFrom(
+                                new CountingInputStream(new BufferedInputStream(fromStart))));
+                    } catch (ID3ReaderException e) {
+                        Log.e(TAG, "Unable to read ID3 chapters: " + e.getMessage());
+                    }
+                    break;
+                case OGG:
+                    in.setLimit(MAX_OGG_PROBE_SIZE, OGG_CHUNK_SIZE);
+                    try {
+                        return new Result(container, ChapterUtils.readOggChaptersFromInputStream(fromStart));
+                    } catch (VorbisCommentReaderException e) {
+                        Log.e(TAG, "Unable to read vorbis chapters: " + e.getMessage());
+                    }
+                    break;
+                default:
+                    break;
+            }
+            return new Result(container, Collections.emptyList());
+        }
+    }
+
+    static Container getContainer(byte[] header, int length) {
+        if (length >= 3 && header[0] == 'I' && header[1] == 'D' && header[2] == '3') {
+            return length == HEADER_SIZE ? Container.ID3 : Container.UNKNOWN;
+        } else if (length >= 4 && header[0] == 'O' && header[1] == 'g' && header[2] == 'g' && header[3] == 'S') {
+            return Container.OGG;
+        }
+        return Container.UNKNOWN;
+    }
+
+    /**
+     * Returns the size of the ID3 tag including its header and footer.
+     */
+    static long getId3TagSize(byte[] header) {
+        long size = ((header[6] & 0x7f) << 21) | ((header[7] & 0x7f) << 14)
+                | ((header[8] & 0x7f) << 7) | (header[9] & 0x7f);
+        if ((header[5] & ID3_FLAG_FOOTER) != 0) {
+            size += HEADER_SIZE;
+        }
+        return HEADER_SIZE + size;
+    }
+
+    private OkHttpClient getHttpClient() {
+        return httpClient != null ? httpClient : AntennapodHttpClient.getHttpClient();
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int length = 0;
+        while (length < buffer.length) {
+            int read = in.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    /**
+     * Reads a remote file up to a limit, fetching one range after the other as the reader gets to it.
+     * If the server ignores the range header, the response is read as a plain stream until the limit.
+     * Partial responses must start at the requested position.
+     */
+    private static class RangeInputStream extends InputStream {
+        private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+        private final OkHttpClient httpClient;
+        private final String url;
+        private long limit;
+        private long chunkSize;
+        private long position = 0;
+        private Response response;
+        private InputStream body;
+        private long bodyEnd;
+
+        RangeInputStream(OkHttpClient httpClient, String url, long limit) {
+            this.httpClient = httpClient;
+            this.url = url;
+            this.limit = limit;
+            this.chunkSize = limit;
+        }
+
+        /**
+         * @param limit Position after the last byte that may be read.
+         * @param chunkSize Number of bytes to fetch with each of the following requests.
+         */
+        void setLimit(long limit, long chunkSize) {
+            this.limit = limit;
+            this.chunkSize = Math.max(1, chunkSize);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int read = read(b, 0, 1);
+            return read < 0 ? -1 : (b[0] & 0xff);
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= limit) {
+                return -1;
+            }
+            if (body == null || position >= bodyEnd) {
+                if (!fetchNextRange()) {
+                    return -1;
+                }
+            }
+            long available = Math.min(bodyEnd, limit) - position;
+            int read = body.read(b, off, (int) Math.min(len, available));
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        private boolean fetchNextRange() throws IOException {
+            closeResponse();
+            long end = Math.min(position + chunkSize, limit);
+            Request request = new Request.Builder()
+                    .url(url)
+                    .header("Range", "bytes=" + position + "-" + (end - 1))
+                    .build();
+            response = httpClient.newCall(request).execute();
+            if (response.code() == HttpURLConnection.HTTP_PARTIAL && response.body() != null) {
+                String contentRange = response.header("Content-Range");
+                Matcher matcher = CONTENT_RANGE.matcher(contentRange != null ? contentRange : "");
+                if (!matcher.matches() || Long.parseLong(matcher.group(1)) != position
+                        || Long.parseLong(matcher.group(2)) < position) {
+                    closeResponse();
+                    throw new IOException("Content-Range " + contentRange + " does not match the request");
+                }
+                bodyEnd = Math.min(end, Long.parseLong(matcher.group(2)) + 1);
+                body = response.body().byteStream();
+                return true;
+            } else if (response.isSuccessful() && response.body() != null) {
+                // Range not supported (any more), read the whole response up to the limit
+                body = response.body().byteStream();
+                bodyEnd = Long.MAX_VALUE;
+                if (!skipFully(body, position)) {
+                    closeResponse();
+                    return false;
+                }
+                return true;
+            } else if (response.code() == 416) {
+                closeResponse(); // Requested range not satisfiable, the file is shorter
+                return false;
+            } else {
+                int code = response.code();
+                closeResponse();
+                throw new IOException("Unexpected response code " + code);
+            }
+        }
+
+        /**
+         * Skips the bytes that were already read from an earlier range.
+         *
+         * @return false if the stream ended before.
+         */
+        private static boolean skipFully(InputStream in, long count) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(count, OGG_CHUNK_SIZE)];
+            while (count > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(count, buffer.length));
+                if (read < 0) {
+                    return false;
+                }
+                count -= read;
+            }
+            return true;
+        }
+
+        private void closeResponse() {
+            if (response != null) {
+                response.close();
+                response = null;
+                body = null;
+            }
+        }
+
+        @Override
+        public void close() {
+            closeResponse();
+        }
+    }
+}
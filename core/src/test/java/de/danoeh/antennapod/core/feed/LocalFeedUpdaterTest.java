@@ -20,6 +20,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.MockedConstruction;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.robolectric.RobolectricTestRunner;
@@ -233,6 +234,37 @@ public class LocalFeedUpdaterTest {
         assertThat(imageUrl, startsWith(Feed.PREFIX_GENERATIVE_COVER));
     }
 
+    /**
+     * Test that the modification time of the files is stored and that a changed file updates its item.
+     */
+    @Test
+    public void testUpdateFeed_ChangedFile() {
+        List<FastDocumentFile> folder = mockLocalFolder(LOCAL_FEED_DIR1);
+        callUpdateFeed(folder);
+        Feed feed = verifySingleFeedInDatabase();
+        FeedItem item = DBReader.getFeedItemList(feed).get(0);
+        assertEquals(folder.get(0).getLastModified(), item.getMedia().getFileLastModified());
+
+        // Rescanning an unchanged folder keeps the item without reading the file again
+        try (MockedConstruction<MediaMetadataRetriever> retrievers =
+                     Mockito.mockConstruction(MediaMetadataRetriever.class)) {
+            callUpdateFeed(folder);
+            assertThat(retrievers.constructed(), is(empty()));
+        }
+        List<FeedItem> items = DBReader.getFeedItemList(verifySingleFeedInDatabase());
+        assertEquals(1, items.size());
+        assertEquals(item.getId(), items.get(0).getId());
+
+        FastDocumentFile file = folder.get(0);
+        FastDocumentFile changedFile = new FastDocumentFile(file.getName(), file.getType(), file.getUri(),
+                file.getLength(), file.getLastModified() + 1000);
+        callUpdateFeed(Collections.singletonList(changedFile));
+        items = DBReader.getFeedItemList(verifySingleFeedInDatabase());
+        assertEquals(1, items.size());
+        assertEquals(item.getId(), items.get(0).getId());
+        assertEquals(changedFile.getLastModified(), items.get(0).getMedia().getFileLastModified());
+    }
+
     /**
      * Fill ShadowMediaMetadataRetriever with dummy duration and title.
      *
@@ -256,13 +288,22 @@ public class LocalFeedUpdaterTest {
      * @param localFeedDir assets local feed folder with media files
      */
     private void callUpdateFeed(@NonNull String localFeedDir) {
+        callUpdateFeed(mockLocalFolder(localFeedDir));
+    }
+
+    /**
+     * Calls the method LocalFeedUpdater#tryUpdateFeed with the given files.
+     */
+    private void callUpdateFeed(@NonNull List<FastDocumentFile> files) {
         try (MockedStatic<FastDocumentFile> dfMock = Mockito.mockStatic(FastDocumentFile.class)) {
             // mock external storage
-            dfMock.when(() -> FastDocumentFile.list(any(), any())).thenReturn(mockLocalFolder(localFeedDir));
+            dfMock.when(() -> FastDocumentFile.list(any(), any())).thenReturn(files);
 
             // call method to test
             Feed feed = new Feed(FEED_URL, null);
             LocalFeedUpdater.tryUpdateFeed(feed, context, null, null);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
         }
     }
 
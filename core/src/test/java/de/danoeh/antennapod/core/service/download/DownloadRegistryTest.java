@@ -0,0 +1,87 @@
+package de.danoeh.antennapod.core.service.download;
+
+import de.danoeh.antennapod.model.feed.Feed;
+import de.danoeh.antennapod.model.feed.FeedMedia;
+import de.danoeh.antennapod.net.download.serviceinterface.DownloadRequest;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DownloadRegistryTest {
+
+    @Test
+    public void testLookupByKeys() {
+        DownloadRegistry registry = new DownloadRegistry();
+        Downloader feed = downloader("https://example.com/feed", 1, Feed.FEEDFILETYPE_FEED);
+        Downloader media = downloader("https://example.com/episode.mp3", 1, FeedMedia.FEEDFILETYPE_FEEDMEDIA);
+        registry.addAll(Arrays.asList(feed, media));
+
+        DownloadRegistry.Snapshot snapshot = registry.getSnapshot();
+        assertEquals(2, snapshot.size());
+        assertTrue(snapshot.isDownloading("https://example.com/feed"));
+        assertFalse(snapshot.isDownloading("https://example.com/other"));
+        assertSame(media, snapshot.findBySource("https://example.com/episode.mp3"));
+        assertSame(feed, snapshot.findByFeedfile(Feed.FEEDFILETYPE_FEED, 1));
+        assertSame(media, snapshot.findByFeedfile(FeedMedia.FEEDFILETYPE_FEEDMEDIA, 1));
+        assertNull(snapshot.findByFeedfile(FeedMedia.FEEDFILETYPE_FEEDMEDIA, 2));
+        assertTrue(snapshot.hasDestination("/destination/https://example.com/feed"));
+        assertEquals(1, snapshot.getRunningCount(Feed.FEEDFILETYPE_FEED));
+        assertEquals(1, snapshot.getRunningCount(FeedMedia.FEEDFILETYPE_FEEDMEDIA));
+    }
+
+    @Test
+    public void testSnapshotsAreImmutable() {
+        DownloadRegistry registry = new DownloadRegistry();
+        Downloader feed = downloader("https://example.com/feed", 1, Feed.FEEDFILETYPE_FEED);
+        registry.add(feed);
+        DownloadRegistry.Snapshot before = registry.getSnapshot();
+
+        registry.remove(feed);
+        assertEquals(1, before.size());
+        assertTrue(before.isDownloading("https://example.com/feed"));
+        assertEquals(0, registry.getSnapshot().size());
+        assertFalse(registry.getSnapshot().isDownloading("https://example.com/feed"));
+    }
+
+    @Test
+    public void testCancelledDownloads() {
+        DownloadRegistry registry = new DownloadRegistry();
+        Downloader cancelled = downloader("https://example.com/feed", 1, Feed.FEEDFILETYPE_FEED);
+        registry.add(cancelled);
+        cancelled.cancel();
+        registry.refresh();
+        DownloadRegistry.Snapshot snapshot = registry.getSnapshot();
+        assertFalse(snapshot.isDownloading("https://example.com/feed"));
+        assertEquals(0, snapshot.getRunningCount(Feed.FEEDFILETYPE_FEED));
+        assertTrue(snapshot.getRunning().isEmpty());
+        assertSame(cancelled, snapshot.findBySource("https://example.com/feed"));
+
+        // A new download of the same file is preferred over the cancelled one
+        Downloader restarted = downloader("https://example.com/feed", 1, Feed.FEEDFILETYPE_FEED);
+        registry.add(restarted);
+        snapshot = registry.getSnapshot();
+        assertTrue(snapshot.isDownloading("https://example.com/feed"));
+        assertSame(restarted, snapshot.findBySource("https://example.com/feed"));
+        assertSame(restarted, snapshot.findByFeedfile(Feed.FEEDFILETYPE_FEED, 1));
+        List<Downloader> running = snapshot.getRunning();
+        assertEquals(1, running.size());
+        assertSame(restarted, running.get(0));
+    }
+
+    private static Downloader downloader(String source, long feedfileId, int feedfileType) {
+        DownloadRequest request = new DownloadRequest("/destination/" + source, source, "title",
+                feedfileId, feedfileType, null, null, false, null, false);
+        return new Downloader(request) {
+            @Override
+            protected void download() {
+            }
+        };
+    }
+}
@@ -0,0 +1,144 @@
+package de.danoeh.antennapod.core.service.download;
+
+import de.danoeh.antennapod.model.feed.Feed;
+import de.danoeh.antennapod.model.feed.FeedMedia;
+import de.danoeh.antennapod.net.download.serviceinterface.DownloadRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DownloadSchedulerTest {
+    private final List<Runnable> started = new ArrayList<>();
+    private final List<String> log = new ArrayList<>();
+    private long now = 1000000;
+    private DownloadScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = createScheduler(1);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testPriorityLanes() {
+        submit("https://example.com/running.mp3", FeedMedia.FEEDFILETYPE_FEEDMEDIA, false);
+        submit("https://example.com/auto.mp3", FeedMedia.FEEDFILETYPE_FEEDMEDIA, false);
+        submit("https://example.com/feed.xml", Feed.FEEDFILETYPE_FEED, false);
+        submit("https://example.com/user.mp3", FeedMedia.FEEDFILETYPE_FEEDMEDIA, true);
+        submit("https://example.com/subscribe.xml", Feed.FEEDFILETYPE_FEED, true);
+        assertEquals(1, started.size());
+
+        finishAll();
+        assertEquals(5, log.size());
+        assertEquals("https://example.com/running.mp3", log.get(0));
+        assertEquals("https://example.com/user.mp3", log.get(1));
+        assertEquals("https://example.com/subscribe.xml", log.get(2));
+        assertEquals("https://example.com/feed.xml", log.get(3));
+        assertEquals("https://example.com/auto.mp3", log.get(4));
+    }
+
+    @Test
+    public void testRefreshAllDoesNotHoldUpUserDownloads() {
+        submit("https://example.com/running.mp3", FeedMedia.FEEDFILETYPE_FEEDMEDIA, false);
+        for (int i = 0; i < 3; i++) {
+            DownloadRequest request = request("https://example.com/feed" + i, Feed.FEEDFILETYPE_FEED, true);
+            scheduler.submit(request, DownloadScheduler.LANE_FEED_REFRESH, () -> log.add(request.getSource()));
+        }
+        submit("https://example.com/user.mp3", FeedMedia.FEEDFILETYPE_FEEDMEDIA, true);
+
+        finishAll();
+        assertEquals(5, log.size());
+        assertEquals("https://example.com/user.mp3", log.get(1));
+    }
+
+    @Test
+    public void testConnectionsPerHost() {
+        scheduler.shutdown();
+        scheduler = createScheduler(10);
+        for (int i = 0; i < 5; i++) {
+            submit("https://network.example.com/feed" + i, Feed.FEEDFILETYPE_FEED, false);
+        }
+        submit("https://other.example.com/feed", Feed.FEEDFILETYPE_FEED, false);
+        assertEquals(DownloadScheduler.MAX_CONNECTIONS_PER_HOST + 1, started.size());
+        assertEquals(5 - DownloadScheduler.MAX_CONNECTIONS_PER_HOST, scheduler.getWaitingCount());
+
+        finishAll();
+        assertEquals(6, log.size());
+        assertEquals(0, scheduler.getWaitingCount());
+    }
+
+    @Test
+    public void testBackOff() {
+        scheduler.backOff("https://example.com/feed1", 60000);
+        submit("https://example.com/feed2", Feed.FEEDFILETYPE_FEED, false);
+        submit("https://other.example.com/feed", Feed.FEEDFILETYPE_FEED, false);
+        assertEquals(1, started.size());
+        finishAll();
+        assertEquals(1, log.size());
+        assertEquals("https://other.example.com/feed", log.get(0));
+
+        now += 60000;
+        scheduler.dispatch();
+        finishAll();
+        assertEquals(2, log.size());
+        assertEquals("https://example.com/feed2", log.get(1));
+    }
+
+    @Test
+    public void testShouldRetry() {
+        String url = "https://example.com/feed";
+        assertFalse(scheduler.shouldRetry(url, DownloadScheduler.MAX_RETRY_AFTER_MILLIS + 1));
+        for (int i = 0; i < DownloadScheduler.MAX_RETRIES; i++) {
+            assertTrue(scheduler.shouldRetry(url, 1000));
+        }
+        assertFalse(scheduler.shouldRetry(url, 1000));
+
+        scheduler.clearRetries(url);
+        assertEquals(0, scheduler.getRetryCount());
+        assertTrue(scheduler.shouldRetry(url, 1000));
+    }
+
+    @Test
+    public void testLocalFeedsHaveNoHost() {
+        assertEquals(null, DownloadScheduler.getHost(Feed.PREFIX_LOCAL_FOLDER + "content://folder"));
+        assertEquals("example.com", DownloadScheduler.getHost("https://example.com/feed.xml"));
+    }
+
+    private DownloadScheduler createScheduler(int maxParallel) {
+        return new DownloadScheduler(started::add, maxParallel) {
+            @Override
+            long now() {
+                return now;
+            }
+        };
+    }
+
+    private void submit(String source, int feedfileType, boolean initiatedByUser) {
+        scheduler.submit(request(source, feedfileType, initiatedByUser), () -> log.add(source));
+    }
+
+    private static DownloadRequest request(String source, int feedfileType, boolean initiatedByUser) {
+        return new DownloadRequest("/destination", source, "title", 1, feedfileType,
+                null, null, false, null, initiatedByUser);
+    }
+
+    /**
+     * Runs the started downloads until nothing is left that may start.
+     */
+    private void finishAll() {
+        while (!started.isEmpty()) {
+            started.remove(0).run();
+        }
+    }
+}
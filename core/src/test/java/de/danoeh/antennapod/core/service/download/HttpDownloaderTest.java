@@ -0,0 +1,27 @@
+package de.danoeh.antennapod.core.service.download;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HttpDownloaderTest {
+
+    @Test
+    public void testParseRetryAfterSeconds() {
+        assertEquals(120000, HttpDownloader.parseRetryAfter("120", 0));
+        assertEquals(0, HttpDownloader.parseRetryAfter("-5", 0));
+    }
+
+    @Test
+    public void testParseRetryAfterDate() {
+        long now = 1445412480000L; // Wed, 21 Oct 2015 07:28:00 GMT
+        assertEquals(60000, HttpDownloader.parseRetryAfter("Wed, 21 Oct 2015 07:29:00 GMT", now));
+        assertEquals(0, HttpDownloader.parseRetryAfter("Wed, 21 Oct 2015 07:27:00 GMT", now));
+    }
+
+    @Test
+    public void testParseRetryAfterInvalid() {
+        assertEquals(0, HttpDownloader.parseRetryAfter(null, 0));
+        assertEquals(0, HttpDownloader.parseRetryAfter("soon", 0));
+    }
+}
@@ -5,14 +5,18 @@ import android.content.Context;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Random;
 
+import androidx.core.util.Pair;
 import androidx.test.platform.app.InstrumentationRegistry;
 import de.danoeh.antennapod.model.feed.Feed;
 import de.danoeh.antennapod.model.feed.FeedItem;
 import de.danoeh.antennapod.model.feed.FeedMedia;
+import de.danoeh.antennapod.model.feed.FeedPreferences;
+import de.danoeh.antennapod.model.feed.VolumeAdaptionSetting;
 import de.danoeh.antennapod.storage.preferences.UserPreferences;
 import de.danoeh.antennapod.core.util.LongList;
 import de.danoeh.antennapod.storage.database.PodDBAdapter;
@@ -29,7 +33,9 @@ import static de.danoeh.antennapod.core.storage.DbTestUtils.saveFeedlist;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -137,6 +143,26 @@ public class DbReaderTest {
             }
         }
 
+        @Test
+        public void testLoadFeedDataOfFeedItemlistUsesFeedCache() throws Exception {
+            Feed feed = saveFeedlist(1, 1, false).get(0);
+            long itemId = feed.getItems().get(0).getId();
+            Feed first = DBReader.getFeedItem(itemId).getFeed();
+            assertSame(first, DBReader.getFeedItem(itemId).getFeed());
+
+            feed.setCustomTitle("Custom title");
+            DBWriter.setFeedCustomTitle(feed).get();
+            FeedPreferences preferences = DBReader.getFeed(feed.getId()).getPreferences();
+            preferences.setKeepUpdated(false);
+            DBWriter.setFeedPreferences(preferences).get();
+
+            Feed cached = DBReader.getFeedItem(itemId).getFeed();
+            assertNotSame(first, cached);
+            assertEquals("Custom title", cached.getTitle());
+            assertFalse(cached.getPreferences().getKeepUpdated());
+            assertSame(cached, DBReader.getFeedItem(itemId).getFeed());
+        }
+
         @Test
         public void testGetFeedItemList() {
             final int numFeeds = 1;
@@ -247,6 +273,58 @@ public class DbReaderTest {
             }
         }
 
+        @Test
+        public void testCleanupCandidatesSummary() throws Exception {
+            final int numItems = 10;
+            List<FeedItem> downloaded = saveDownloadedItems(numItems);
+            PodDBAdapter adapter = PodDBAdapter.getInstance();
+            adapter.open();
+            adapter.setQueue(downloaded.subList(1, 2));
+            adapter.close();
+            assertEquals(numItems, DBReader.getDownloadedSummary().getCount());
+            assertEquals(numItems, DBReader.getCleanupCandidatesSummary(false, 0).getCount());
+            assertEquals(numItems - 1, DBReader.getCleanupCandidatesSummary(true, 0).getCount());
+
+            DBWriter.addFavoriteItem(downloaded.get(0)).get();
+            assertEquals(numItems, DBReader.getDownloadedSummary().getCount());
+            assertEquals(numItems - 1, DBReader.getCleanupCandidatesSummary(false, 0).getCount());
+            assertEquals(numItems - 2, DBReader.getCleanupCandidatesSummary(true, 0).getCount());
+
+            List<FeedItem> candidates = DBReader.getCleanupCandidates(true, 0, 3);
+            assertEquals(3, candidates.size());
+            for (FeedItem candidate : candidates) {
+                assertTrue(candidate.getId() != downloaded.get(0).getId());
+                assertTrue(candidate.getId() != downloaded.get(1).getId());
+            }
+        }
+
+        @Test
+        public void testGetAutoDownloadCandidates() {
+            List<Feed> feeds = saveFeedlist(2, 3, true);
+            FeedItem queued = feeds.get(1).getItems().get(0);
+            PodDBAdapter adapter = PodDBAdapter.getInstance();
+            adapter.open();
+            adapter.setFeedItems(FeedItem.PLAYED, FeedItem.NEW);
+            adapter.setFeedPreferences(new FeedPreferences(feeds.get(1).getId(), false,
+                    FeedPreferences.AutoDeleteAction.GLOBAL, VolumeAdaptionSetting.OFF, null, null));
+            adapter.setQueue(Collections.singletonList(queued));
+            adapter.close();
+
+            // Episodes in the queue are downloaded even if the feed does not download automatically
+            List<FeedItem> queuedCandidates = DBReader.getAutoDownloadCandidates(true, 0, 10);
+            assertEquals(1, queuedCandidates.size());
+            assertEquals(queued.getId(), queuedCandidates.get(0).getId());
+
+            List<FeedItem> newCandidates = DBReader.getAutoDownloadCandidates(false, 0, 10);
+            assertEquals(3, newCandidates.size());
+            for (FeedItem item : newCandidates) {
+                assertEquals(feeds.get(0).getId(), item.getFeedId());
+                assertNotNull(item.getFeed());
+            }
+            assertEquals(2, DBReader.getAutoDownloadCandidates(false, 0, 2).size());
+            assertEquals(1, DBReader.getAutoDownloadCandidates(false, 2, 2).size());
+        }
+
         @SuppressWarnings("SameParameterValue")
         private List<FeedItem> saveNewItems(int numItems) {
             List<Feed> feeds = saveFeedlist(numItems, numItems, true);
@@ -440,6 +518,22 @@ public class DbReaderTest {
             assertEquals(item1.getItemIdentifier(), feedItemByGuid.getItemIdentifier());
         }
 
+        @Test
+        public void testGetItemsByGuidOrEpisodeUrl() {
+            List<Feed> feeds = saveFeedlist(1, 2, true);
+            FeedItem item1 = feeds.get(0).getItems().get(0);
+            FeedItem item2 = feeds.get(0).getItems().get(1);
+
+            List<FeedItem> items = DBReader.getFeedItemsByGuidOrEpisodeUrl(Arrays.asList(
+                    new Pair<>(null, item2.getMedia().getDownload_url()),
+                    new Pair<>("unknown", item2.getMedia().getDownload_url()),
+                    new Pair<>(item1.getItemIdentifier(), "unknown")));
+            assertEquals(3, items.size());
+            assertEquals(item2.getId(), items.get(0).getId());
+            assertNull(items.get(1));
+            assertEquals(item1.getId(), items.get(2).getId());
+        }
+
     }
 
     @RunWith(ParameterizedRobolectricTestRunner.class)
@@ -17,6 +17,10 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import de.danoeh.antennapod.core.ApplicationCallbacks;
 import de.danoeh.antennapod.core.ClientConfig;
@@ -230,6 +234,93 @@ public class DbTasksTest {
     }
 
 
+    @Test
+    public void testSearchFeedItems() throws Exception {
+        final Feed feed = new Feed("url", null, "title");
+        feed.setItems(new ArrayList<>());
+        FeedItem titleMatch = new FeedItem(0, "Interview with a podcaster", "id 1", "link 1",
+                new Date(1000), FeedItem.UNPLAYED, feed);
+        FeedItem descriptionMatch = new FeedItem(0, "Episode 2", "id 2", "link 2",
+                new Date(2000), FeedItem.UNPLAYED, feed);
+        descriptionMatch.setDescriptionIfLonger("In this episode we interview a podcaster");
+        FeedItem noMatch = new FeedItem(0, "Episode 3", "id 3", "link 3",
+                new Date(3000), FeedItem.UNPLAYED, feed);
+        feed.getItems().addAll(Arrays.asList(titleMatch, descriptionMatch, noMatch));
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        adapter.setCompleteFeed(feed);
+        adapter.close();
+
+        // Prefix match, title matches are ranked first
+        List<FeedItem> results = FeedSearcher.searchFeedItems("interv podcast", 0);
+        assertEquals(Arrays.asList(titleMatch.getId(), descriptionMatch.getId()), getIdList(results));
+
+        // Paging
+        FutureTask<List<FeedItem>> secondPage = DBTasks.searchFeedItems(0, "interv", 1, 1);
+        secondPage.run();
+        assertEquals(singletonList(descriptionMatch.getId()), getIdList(secondPage.get()));
+
+        // Index is kept in sync
+        noMatch.setTitle("Interview number 3");
+        adapter.open();
+        adapter.setCompleteFeed(feed);
+        adapter.close();
+        results = FeedSearcher.searchFeedItems("interv podcast", 0);
+        assertEquals(Arrays.asList(titleMatch.getId(), descriptionMatch.getId()), getIdList(results));
+        results = FeedSearcher.searchFeedItems("number", 0);
+        assertEquals(singletonList(noMatch.getId()), getIdList(results));
+
+        DBWriter.deleteFeedItems(context, singletonList(titleMatch)).get();
+        results = FeedSearcher.searchFeedItems("interview", 0);
+        assertEquals(Arrays.asList(noMatch.getId(), descriptionMatch.getId()), getIdList(results));
+    }
+
+    @Test
+    public void testSearchFeedItemsWithAttachedPrefix() {
+        final Feed feed = new Feed("url", null, "title");
+        feed.setItems(new ArrayList<>());
+        FeedItem withPrefix = new FeedItem(0, "\u05d4\u05e9\u05dc\u05d5\u05dd", "id 1", "link 1", // "the peace"
+                new Date(1000), FeedItem.UNPLAYED, feed);
+        FeedItem other = new FeedItem(0, "\u05de\u05dc\u05d7\u05de\u05d4", "id 2", "link 2", // "war"
+                new Date(2000), FeedItem.UNPLAYED, feed);
+        feed.getItems().addAll(Arrays.asList(withPrefix, other));
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        adapter.setCompleteFeed(feed);
+        adapter.close();
+
+        List<FeedItem> results = FeedSearcher.searchFeedItems("\u05e9\u05dc\u05d5\u05dd", 0); // "peace"
+        assertEquals(singletonList(withPrefix.getId()), getIdList(results));
+    }
+
+    @Test
+    public void testSearchFeeds() throws Exception {
+        Feed feed1 = new Feed("url1", null, "Science weekly");
+        Feed feed2 = new Feed("url2", null, "History");
+        feed2.setAuthor("Science Department");
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        adapter.setCompleteFeed(feed1, feed2);
+        adapter.close();
+
+        List<Feed> results = FeedSearcher.searchFeeds("scien");
+        assertEquals(2, results.size());
+        assertEquals(feed1.getId(), results.get(0).getId());
+        assertEquals(feed2.getId(), results.get(1).getId());
+
+        // Index is kept in sync
+        feed2.setCustomTitle("Science history");
+        DBWriter.setFeedCustomTitle(feed2).get();
+        results = FeedSearcher.searchFeeds("scien");
+        assertEquals(feed2.getId(), results.get(0).getId());
+        assertEquals(feed1.getId(), results.get(1).getId());
+
+        DBWriter.deleteFeed(context, feed1.getId()).get();
+        results = FeedSearcher.searchFeeds("scien");
+        assertEquals(1, results.size());
+        assertEquals(feed2.getId(), results.get(0).getId());
+    }
+
     @SuppressWarnings("SameParameterValue")
     private void updatedFeedTest(final Feed newFeed, long feedID, List<Long> itemIDs,
                                  int numItemsOld, int numItemsNew) {
@@ -255,6 +346,87 @@ public class DbTasksTest {
         }
     }
 
+    @Test
+    public void testUpdateFeedUnchangedItemsAreNotWritten() {
+        final int numItems = 20;
+        final Date pubDate = new Date(1600000000000L);
+        DBTasks.updateFeed(context, createFeedWithMedia("url", numItems, pubDate), false);
+        DBTasks.updateFeed(context, createFeedWithMedia("url2", 0, pubDate), false);
+
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        long changes = adapter.getTotalChanges();
+        DBTasks.updateFeed(context, createFeedWithMedia("url2", 0, pubDate), false);
+        long emptyFeedChanges = adapter.getTotalChanges() - changes;
+
+        changes = adapter.getTotalChanges();
+        DBTasks.updateFeed(context, createFeedWithMedia("url", numItems, pubDate), false);
+        long unchangedFeedChanges = adapter.getTotalChanges() - changes;
+        assertEquals("Unchanged items are not written", emptyFeedChanges, unchangedFeedChanges);
+
+        Feed changedFeed = createFeedWithMedia("url", numItems, pubDate);
+        changedFeed.getItems().get(3).setTitle("new title");
+        FeedItem itemWithoutDescription = new FeedItem(0, "item 5", "id 5", "link 5",
+                pubDate, FeedItem.PLAYED, changedFeed);
+        itemWithoutDescription.setMedia(new FeedMedia(itemWithoutDescription,
+                "http://example.com/media5", 1000, "audio/mpeg"));
+        changedFeed.getItems().set(5, itemWithoutDescription);
+        changes = adapter.getTotalChanges();
+        Feed savedFeed = DBTasks.updateFeed(context, changedFeed, false);
+        assertTrue(adapter.getTotalChanges() - changes > unchangedFeedChanges);
+        adapter.close();
+
+        FeedItem changedItem = DBReader.getFeedItem(savedFeed.getItems().get(3).getId());
+        assertEquals("new title", changedItem.getTitle());
+        FeedItem unchangedItem = DBReader.getFeedItem(savedFeed.getItems().get(5).getId());
+        assertEquals("description 5", unchangedItem.getDescription());
+        assertEquals("http://example.com/media5", unchangedItem.getMedia().getDownload_url());
+    }
+
+    @Test
+    public void testUpdateFeedsInParallel() throws Exception {
+        final int numFeeds = 20;
+        final int numItems = 10;
+        final Date pubDate = new Date(1600000000000L);
+        for (int i = 0; i < numFeeds; i++) {
+            DBTasks.updateFeed(context, createFeedWithMedia("url" + i, numItems, pubDate), false);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Feed>> results = new ArrayList<>();
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < numFeeds; i++) {
+                Feed refreshed = createFeedWithMedia("url" + i, numItems, pubDate);
+                FeedItem item = new FeedItem(0, "item new", "id new" + round, "link new",
+                        new Date(pubDate.getTime() + round + 1), FeedItem.UNPLAYED, refreshed);
+                refreshed.getItems().add(item);
+                results.add(executor.submit(() -> DBTasks.updateFeed(context, refreshed, false)));
+            }
+        }
+        for (Future<Feed> result : results) {
+            assertNotNull(result.get());
+        }
+        executor.shutdown();
+
+        List<Feed> feeds = DBReader.getFeedList();
+        assertEquals(numFeeds, feeds.size());
+        for (Feed feed : feeds) {
+            assertEquals(numItems + 2, DBReader.getFeedItemList(feed).size());
+        }
+    }
+
+    private Feed createFeedWithMedia(String url, int numItems, Date pubDate) {
+        Feed feed = new Feed(url, null, "title");
+        feed.setItems(new ArrayList<>());
+        for (int i = 0; i < numItems; i++) {
+            FeedItem item = new FeedItem(0, "item " + i, "id " + i, "link " + i, pubDate, FeedItem.PLAYED, feed);
+            item.setDescriptionIfLonger("description " + i);
+            item.setMedia(new FeedMedia(item, "http://example.com/media" + i, 1000, "audio/mpeg"));
+            feed.getItems().add(item);
+        }
+        return feed;
+    }
+
     @Test
     public void testAddQueueItemsInDownload_EnqueueEnabled() throws Exception {
         // Setup test data / environment
@@ -4,6 +4,8 @@ import android.app.Application;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
 import androidx.core.util.Consumer;
@@ -25,12 +27,14 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import de.danoeh.antennapod.core.ApplicationCallbacks;
 import de.danoeh.antennapod.core.ClientConfig;
 import de.danoeh.antennapod.model.feed.Feed;
+import de.danoeh.antennapod.model.feed.FeedCounter;
 import de.danoeh.antennapod.model.feed.FeedItem;
 import de.danoeh.antennapod.model.feed.FeedMedia;
 import de.danoeh.antennapod.core.preferences.PlaybackPreferences;
@@ -754,6 +758,41 @@ public class DbWriterTest {
         }
     }
 
+    @Test
+    public void testMoveQueueItemRepeatedly() throws Exception {
+        final int numItems = 10;
+        Feed feed = new Feed("url", null, "title");
+        feed.setItems(new ArrayList<>());
+        for (int i = 0; i < numItems; i++) {
+            FeedItem item = new FeedItem(0, "title " + i, "id " + i, "link " + i,
+                    new Date(), FeedItem.PLAYED, feed);
+            feed.getItems().add(item);
+        }
+
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        adapter.setCompleteFeed(feed);
+        adapter.setQueue(feed.getItems());
+        adapter.close();
+
+        List<Long> expected = new ArrayList<>();
+        for (FeedItem item : feed.getItems()) {
+            expected.add(item.getId());
+        }
+        // Moving items into the same gap over and over uses it up, so the queue has to be spaced out again
+        for (int i = 0; i < 40; i++) {
+            int from = numItems - 1 - (i % 3);
+            int to = 1;
+            expected.add(to, expected.remove(from));
+            DBWriter.moveQueueItem(from, to, false).get(TIMEOUT, TimeUnit.SECONDS);
+            List<Long> queue = new ArrayList<>();
+            for (long id : DBReader.getQueueIDList().toArray()) {
+                queue.add(id);
+            }
+            assertEquals(expected, queue);
+        }
+    }
+
     @Test
     public void testRemoveAllNewFlags() throws Exception {
         final int numItems = 10;
@@ -782,6 +821,116 @@ public class DbWriterTest {
         }
     }
 
+    @Test
+    public void testSetFeedRefreshUnchanged() throws Exception {
+        Feed feed = new Feed("url", "Wed, 08 Oct 2014 09:00:00 GMT", "title");
+        feed.setEtag("\"etag1\"");
+        feed.setContentDigest("digest");
+        feed.setItems(new ArrayList<>());
+        feed.setLastUpdateFailed(true);
+        withPodDB(adapter -> adapter.setCompleteFeed(feed));
+
+        DBWriter.setFeedRefreshUnchanged(feed.getId(), true, null, "\"etag2\"").get(TIMEOUT, TimeUnit.SECONDS);
+        DBWriter.setFeedRefreshUnchanged(feed.getId(), false, null, null).get(TIMEOUT, TimeUnit.SECONDS);
+        DBWriter.setFeedRefreshUnchanged(feed.getId(), false, null, null).get(TIMEOUT, TimeUnit.SECONDS);
+
+        Feed feedFromDb = DBReader.getFeed(feed.getId());
+        assertNotNull(feedFromDb);
+        assertEquals(1, feedFromDb.getNotModifiedCount());
+        assertEquals(2, feedFromDb.getUnchangedCount());
+        assertEquals("Wed, 08 Oct 2014 09:00:00 GMT", feedFromDb.getLastUpdate());
+        assertEquals("\"etag2\"", feedFromDb.getEtag());
+        assertEquals("digest", feedFromDb.getContentDigest());
+        assertFalse(feedFromDb.hasLastUpdateFailed());
+    }
+
+    @Test
+    public void testFeedCountersFollowEpisodeChanges() throws Exception {
+        Feed feed = new Feed("url", null, "title");
+        feed.setItems(new ArrayList<>());
+        for (int i = 0; i < 4; i++) {
+            FeedItem item = new FeedItem(0, "title " + i, "id " + i, "link " + i,
+                    new Date(i * 1000L), FeedItem.NEW, feed);
+            item.setMedia(new FeedMedia(0, item, 1, 1, 1, "mime_type", null, "url" + i, false, null, 0, 0));
+            feed.getItems().add(item);
+        }
+        withPodDB(adapter -> adapter.setCompleteFeed(feed));
+        assertFeedCounters(feed.getId(), 4, 4, 0, 0, 0, 3000);
+
+        List<FeedItem> items = feed.getItems();
+        DBWriter.markItemPlayed(FeedItem.UNPLAYED, items.get(0).getId()).get(TIMEOUT, TimeUnit.SECONDS);
+        DBWriter.markItemPlayed(FeedItem.PLAYED, items.get(1).getId()).get(TIMEOUT, TimeUnit.SECONDS);
+        assertFeedCounters(feed.getId(), 2, 3, 1, 0, 0, 3000);
+
+        FeedMedia media = items.get(0).getMedia();
+        media.setDownloaded(true);
+        media.setFile_url("file");
+        DBWriter.setFeedMedia(media).get(TIMEOUT, TimeUnit.SECONDS);
+        assertFeedCounters(feed.getId(), 2, 3, 1, 1, 1, 3000);
+
+        DBWriter.markItemPlayed(FeedItem.PLAYED, items.get(0).getId()).get(TIMEOUT, TimeUnit.SECONDS);
+        assertFeedCounters(feed.getId(), 2, 2, 2, 1, 0, 3000);
+
+        withPodDB(adapter -> adapter.removeFeedItems(items.subList(2, 4)));
+        assertFeedCounters(feed.getId(), 0, 0, 2, 1, 0, 1000);
+
+        withPodDB(adapter -> {
+            Map<Long, Integer> downloaded = adapter.getFeedCounters(FeedCounter.SHOW_DOWNLOADED);
+            Map<Long, Integer> played = adapter.getPlayedEpisodesCounters();
+            Map<Long, Long> latest = adapter.getMostRecentItemDates();
+            adapter.rebuildFeedCounters();
+            assertEquals(downloaded, adapter.getFeedCounters(FeedCounter.SHOW_DOWNLOADED));
+            assertEquals(played, adapter.getPlayedEpisodesCounters());
+            assertEquals(latest, adapter.getMostRecentItemDates());
+        });
+    }
+
+    private static void assertFeedCounters(long feedId, int newCount, int unplayed, int played,
+                                           int downloaded, int downloadedUnplayed, long latestPubDate) {
+        withPodDB(adapter -> {
+            assertEquals(newCount, getCounter(adapter.getFeedCounters(FeedCounter.SHOW_NEW), feedId));
+            assertEquals(unplayed, getCounter(adapter.getFeedCounters(FeedCounter.SHOW_UNPLAYED), feedId));
+            assertEquals(played, getCounter(adapter.getPlayedEpisodesCounters(feedId), feedId));
+            assertEquals(downloaded, getCounter(adapter.getFeedCounters(FeedCounter.SHOW_DOWNLOADED), feedId));
+            assertEquals(downloadedUnplayed,
+                    getCounter(adapter.getFeedCounters(FeedCounter.SHOW_DOWNLOADED_UNPLAYED), feedId));
+            assertEquals(Long.valueOf(latestPubDate), adapter.getMostRecentItemDates().get(feedId));
+        });
+    }
+
+    @Test
+    public void testWriteFeedsStoresOtherFeedsOfFailedGroup() {
+        Feed feed1 = createTestFeed(1);
+        Feed broken = createTestFeed(1);
+        Feed feed2 = createTestFeed(1);
+        feed1.getItems().add(new FeedItem(0, "New", "new 1", "link", new Date(), FeedItem.NEW, feed1));
+        broken.getItems().add(new FeedItem(0, "Broken", "new 2", "link", new Date(), FeedItem.NEW, broken));
+        feed2.getItems().add(new FeedItem(0, "New", "new 3", "link", new Date(), FeedItem.NEW, feed2));
+
+        // Let the database reject the item of one feed, like a full disk would
+        File databasePath = context.getDatabasePath(PodDBAdapter.DATABASE_NAME);
+        try (SQLiteDatabase db = SQLiteDatabase.openDatabase(databasePath.getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE)) {
+            db.execSQL("CREATE TRIGGER reject_broken BEFORE INSERT ON " + PodDBAdapter.TABLE_NAME_FEED_ITEMS
+                    + " WHEN NEW." + PodDBAdapter.KEY_TITLE + " = 'Broken'"
+                    + " BEGIN SELECT RAISE(ABORT, 'Broken item'); END");
+        }
+
+        Throwable[] errors = DBWriter.writeFeeds(feed1, broken, feed2);
+        assertNull(errors[0]);
+        assertTrue(errors[1] instanceof SQLException);
+        assertNull(errors[2]);
+        assertEquals(2, DBReader.getFeedItemList(feed1).size());
+        assertEquals(1, DBReader.getFeedItemList(broken).size());
+        assertEquals(2, DBReader.getFeedItemList(feed2).size());
+        assertEquals(0, broken.getItems().get(1).getId());
+    }
+
+    private static int getCounter(Map<Long, Integer> counters, long feedId) {
+        Integer count = counters.get(feedId);
+        return count != null ? count : 0;
+    }
+
     private static Feed createTestFeed(int numItems) {
         Feed feed = new Feed("url", null, "title");
         feed.setItems(new ArrayList<>());
@@ -4,9 +4,14 @@ import de.danoeh.antennapod.model.feed.FeedItem;
 import de.danoeh.antennapod.model.feed.FeedMedia;
 import org.junit.Test;
 
+import java.text.DateFormat;
 import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -56,6 +61,28 @@ public class FeedItemDuplicateGuesserTest {
                 item("id2", "Title", "example.com/episode2", 2 * DAYS, 5 * MINUTES, "")));
     }
 
+    @Test
+    public void testDayMatchesShortDateFormat() {
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        try {
+            // 01:00 and 10:00 UTC are on different days in Los Angeles
+            TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+            DateFormat dateFormat = DateFormat.getDateInstance(DateFormat.SHORT, Locale.US);
+            long[] times = {0, 60 * MINUTES, 600 * MINUTES, DAYS + 60 * MINUTES, 100L * 365 * DAYS};
+            for (long time1 : times) {
+                for (long time2 : times) {
+                    boolean sameDay = dateFormat.format(new Date(time1)).equals(dateFormat.format(new Date(time2)));
+                    assertEquals(sameDay, FeedItemDuplicateGuesser.dayKey(new Date(time1))
+                            == FeedItemDuplicateGuesser.dayKey(new Date(time2)));
+                }
+            }
+            assertNotEquals(FeedItemDuplicateGuesser.dayKey(new Date(60 * MINUTES)),
+                    FeedItemDuplicateGuesser.dayKey(new Date(600 * MINUTES)));
+        } finally {
+            TimeZone.setDefault(defaultTimeZone);
+        }
+    }
+
     private FeedItem item(String guid, String title, String downloadUrl,
                                   long date, long duration, String mime) {
         FeedItem item = new FeedItem(0, title, guid, "link", new Date(date), FeedItem.PLAYED, null);
@@ -0,0 +1,215 @@
+package de.danoeh.antennapod.core.storage;
+
+import android.text.TextUtils;
+
+import de.danoeh.antennapod.model.feed.FeedItem;
+import de.danoeh.antennapod.model.feed.FeedMedia;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link FeedItemIndex}. Results are compared with the linear scan of the item list
+ * that DBTasks used before the index was introduced.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FeedItemIndexTest {
+    private static final long MINUTES = 1000 * 60;
+    private static final long HOURS = 60 * MINUTES;
+
+    @Test
+    public void testFindByIdentifyingValue() {
+        List<FeedItem> items = new ArrayList<>();
+        items.add(item("id1", "Title", "example.com/1", 0, 5 * MINUTES, "audio/*"));
+        items.add(item("id2", "Title", "example.com/2", 0, 5 * MINUTES, "audio/*"));
+        items.add(item("id1", "Other", "example.com/3", 0, 5 * MINUTES, "audio/*"));
+        FeedItemIndex index = new FeedItemIndex(items);
+
+        assertSame(items.get(0), index.findByIdentifyingValue(
+                item("id1", "", "", 0, 0, "")));
+        assertTrue(index.containsIdentifyingValue(item("id2", "", "", 0, 0, "")));
+        assertFalse(index.containsIdentifyingValue(item("id3", "", "", 0, 0, "")));
+        assertNull(index.findByIdentifyingValue(item("id3", "", "", 0, 0, "")));
+    }
+
+    @Test
+    public void testFindGuessedDuplicateReturnsFirstInListOrder() {
+        List<FeedItem> items = new ArrayList<>();
+        items.add(item("id1", "Title", "example.com/1", 0, 5 * MINUTES, "audio/*"));
+        items.add(item("id2", "Other", "example.com/2", 0, 5 * MINUTES, "audio/*"));
+        FeedItemIndex index = new FeedItemIndex(items);
+
+        // Matches item 2 by stream URL and item 1 by title, date and duration
+        FeedItem search = item("id3", "Title", "example.com/2", 0, 6 * MINUTES, "audio/*");
+        assertSame(items.get(0), index.findGuessedDuplicate(search));
+
+        FeedItem inserted = item("id4", "Title", "example.com/4", 0, 5 * MINUTES, "audio/*");
+        items.add(0, inserted);
+        index.add(inserted);
+        assertSame(inserted, index.findGuessedDuplicate(search));
+    }
+
+    @Test
+    public void testUpdate() {
+        List<FeedItem> items = new ArrayList<>();
+        items.add(item("id1", "Title", "example.com/1", 0, 5 * MINUTES, "audio/*"));
+        FeedItemIndex index = new FeedItemIndex(items);
+
+        items.get(0).setItemIdentifier("id2");
+        index.update(items.get(0));
+        assertNull(index.findByIdentifyingValue(item("id1", "", "", 0, 0, "")));
+        assertSame(items.get(0), index.findByIdentifyingValue(item("id2", "", "", 0, 0, "")));
+    }
+
+    @Test
+    public void testMatchesLinearScan() {
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        try {
+            // Days start at another time than in UTC
+            TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+            Random random = new Random(42);
+            List<FeedItem> items = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                items.add(randomItem(random));
+            }
+            FeedItemIndex index = new FeedItemIndex(items);
+
+            for (int i = 0; i < 2000; i++) {
+                FeedItem search = randomItem(random);
+                assertSame(linearGuessDuplicate(items, search), index.findGuessedDuplicate(search));
+                assertSame(linearByIdentifyingValue(items, search), index.findByIdentifyingValue(search));
+                assertEquals(linearByIdentifyingValue(items, search) != null, index.containsIdentifyingValue(search));
+
+                if (random.nextBoolean()) {
+                    int position = random.nextInt(items.size() + 1);
+                    items.add(position, search);
+                    index.add(search);
+                } else {
+                    FeedItem existing = items.get(random.nextInt(items.size()));
+                    existing.updateFromOther(search);
+                    index.update(existing);
+                }
+            }
+        } finally {
+            TimeZone.setDefault(defaultTimeZone);
+        }
+    }
+
+    @Test
+    public void testLargeFeedIsLinear() {
+        final int numItems = 10000;
+        List<FeedItem> items = new ArrayList<>();
+        for (int i = 0; i < numItems; i++) {
+            items.add(item("id " + i, "Episode " + i, "example.com/" + i, i * HOURS, 30 * MINUTES, "audio/mpeg"));
+        }
+        FeedItemIndex index = new FeedItemIndex(items);
+        for (int i = 0; i < numItems; i++) {
+            FeedItem search = item("new id " + i, "Episode " + i, "example.com/new/" + i,
+                    i * HOURS, 30 * MINUTES, "audio/mpeg");
+            assertSame(items.get(i), index.findGuessedDuplicate(search));
+            assertNull(index.findByIdentifyingValue(search));
+        }
+    }
+
+    private static FeedItem linearByIdentifyingValue(List<FeedItem> items, FeedItem searchItem) {
+        for (FeedItem item : items) {
+            if (TextUtils.equals(item.getIdentifyingValue(), searchItem.getIdentifyingValue())) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    private static FeedItem linearGuessDuplicate(List<FeedItem> items, FeedItem searchItem) {
+        for (FeedItem item : items) {
+            if (seemDuplicatesLikeBefore(item, searchItem)) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * FeedItemDuplicateGuesser.seemDuplicates as it was before the index was introduced.
+     */
+    private static boolean seemDuplicatesLikeBefore(FeedItem item1, FeedItem item2) {
+        if (sameAndNotEmpty(item1.getItemIdentifier(), item2.getItemIdentifier())) {
+            return true;
+        }
+        FeedMedia media1 = item1.getMedia();
+        FeedMedia media2 = item2.getMedia();
+        if (media1 == null || media2 == null) {
+            return false;
+        }
+        if (sameAndNotEmpty(media1.getStreamUrl(), media2.getStreamUrl())) {
+            return true;
+        }
+        if (!sameAndNotEmpty(canonicalizeTitle(item1.getTitle()), canonicalizeTitle(item2.getTitle()))) {
+            return false;
+        }
+        if (item1.getPubDate() == null || item2.getPubDate() == null) {
+            return false;
+        }
+        DateFormat dateFormat = DateFormat.getDateInstance(DateFormat.SHORT, Locale.US); // MM/DD/YY
+        if (!dateFormat.format(item1.getPubDate()).equals(dateFormat.format(item2.getPubDate()))) {
+            return false;
+        }
+        return Math.abs(media1.getDuration() - media2.getDuration()) < 10 * 60L * 1000L
+                && TextUtils.equals(media1.getMime_type(), media2.getMime_type());
+    }
+
+    private static boolean sameAndNotEmpty(String string1, String string2) {
+        if (TextUtils.isEmpty(string1) || TextUtils.isEmpty(string2)) {
+            return false;
+        }
+        return string1.equals(string2);
+    }
+
+    private static String canonicalizeTitle(String title) {
+        if (title == null) {
+            return "";
+        }
+        return title
+                .trim()
+                .replace('“', '"')
+                .replace('”', '"')
+                .replace('„', '"')
+                .replace('—', '-');
+    }
+
+    private FeedItem randomItem(Random random) {
+        String guid = random.nextInt(4) == 0 ? null : "id" + random.nextInt(500);
+        String title = random.nextInt(10) == 0 ? null : "Title " + random.nextInt(100);
+        String url = random.nextInt(5) == 0 ? null : "example.com/" + random.nextInt(500);
+        long date = random.nextInt(40) * 6 * HOURS;
+        long duration = random.nextInt(30) * MINUTES;
+        String mime = random.nextBoolean() ? "audio/*" : "video/*";
+        FeedItem item = item(guid, title, url, date, duration, mime);
+        if (random.nextInt(8) == 0) {
+            item.setMedia(null);
+        }
+        return item;
+    }
+
+    private FeedItem item(String guid, String title, String downloadUrl,
+                          long date, long duration, String mime) {
+        FeedItem item = new FeedItem(0, title, guid, "link", new Date(date), FeedItem.PLAYED, null);
+        FeedMedia media = new FeedMedia(item, downloadUrl, duration, mime);
+        item.setMedia(media);
+        return item;
+    }
+}
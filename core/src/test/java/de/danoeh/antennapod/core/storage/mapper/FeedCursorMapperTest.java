@@ -64,6 +64,10 @@ public class FeedCursorMapperTest {
             assertTrue(feed.getItemFilter().showUnplayed);
             assertEquals(1, feed.getSortOrder().code);
             assertTrue(feed.hasLastUpdateFailed());
+            assertEquals("feed etag", feed.getEtag());
+            assertEquals("feed content digest", feed.getContentDigest());
+            assertEquals(3, feed.getNotModifiedCount());
+            assertEquals(4, feed.getUnchangedCount());
         }
     }
 
@@ -95,6 +99,10 @@ public class FeedCursorMapperTest {
         values.put(PodDBAdapter.KEY_HIDE, "unplayed");
         values.put(PodDBAdapter.KEY_SORT_ORDER, "1");
         values.put(PodDBAdapter.KEY_LAST_UPDATE_FAILED, true);
+        values.put(PodDBAdapter.KEY_ETAG, "feed etag");
+        values.put(PodDBAdapter.KEY_CONTENT_DIGEST, "feed content digest");
+        values.put(PodDBAdapter.KEY_NOT_MODIFIED_COUNT, 3);
+        values.put(PodDBAdapter.KEY_UNCHANGED_COUNT, 4);
 
         adapter.insertTestData(PodDBAdapter.TABLE_NAME_FEEDS, values);
     }
@@ -0,0 +1,167 @@
+package de.danoeh.antennapod.core.sync;
+
+import de.danoeh.antennapod.net.sync.model.EpisodeAction;
+import de.danoeh.antennapod.net.sync.model.EpisodeActionChanges;
+import de.danoeh.antennapod.net.sync.model.ISyncService;
+import de.danoeh.antennapod.net.sync.model.SubscriptionChanges;
+import de.danoeh.antennapod.net.sync.model.SyncServiceException;
+import de.danoeh.antennapod.net.sync.model.UploadChangesResponse;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class EpisodeActionUploaderTest {
+
+    @Test
+    public void testUploadsAllActionsAndCheckpointsInOrder() throws Exception {
+        ListSource source = new ListSource(1000);
+        FakeSyncService server = new FakeSyncService(-1);
+        EpisodeActionUploader uploader = new EpisodeActionUploader(server);
+
+        long timestamp = uploader.upload(source, 0);
+
+        assertEquals(1000, server.uploadedEpisodes.size());
+        assertEquals(server.requests, timestamp);
+        assertEquals(1000, source.checkpoint);
+        for (int i = 1; i < source.checkpoints.size(); i++) {
+            assertTrue(source.checkpoints.get(i) > source.checkpoints.get(i - 1));
+        }
+    }
+
+    @Test
+    public void testResumeAfterFailedChunk() throws Exception {
+        ListSource source = new ListSource(1000);
+        FakeSyncService server = new FakeSyncService(700);
+        try {
+            new EpisodeActionUploader(server).upload(source, 0);
+            fail("Expected the upload to fail");
+        } catch (SyncServiceException e) {
+            // expected
+        }
+        long checkpoint = source.checkpoint;
+        assertTrue(checkpoint > 0);
+        assertTrue(checkpoint < 700);
+
+        FakeSyncService resumedServer = new FakeSyncService(-1);
+        new EpisodeActionUploader(resumedServer).upload(source, checkpoint);
+        assertEquals(1000, source.checkpoint);
+        for (int i = 1; i <= 1000; i++) {
+            String episode = "episode" + i;
+            if (i <= checkpoint) {
+                assertTrue(episode, server.uploadedEpisodes.contains(episode));
+                assertFalse(episode, resumedServer.uploadedEpisodes.contains(episode));
+            } else {
+                assertTrue(episode, resumedServer.uploadedEpisodes.contains(episode));
+            }
+        }
+    }
+
+    @Test
+    public void testChunkSizeAdaptsToLatency() throws Exception {
+        EpisodeActionUploader uploader = new EpisodeActionUploader(new FakeSyncService(-1));
+        uploader.upload(new ListSource(5000), 0);
+        assertEquals(EpisodeActionUploader.MAX_CHUNK_SIZE, uploader.getChunkSize());
+    }
+
+    @Test
+    public void testEmptySource() throws Exception {
+        ListSource source = new ListSource(0);
+        FakeSyncService server = new FakeSyncService(-1);
+        assertEquals(0, new EpisodeActionUploader(server).upload(source, 0));
+        assertEquals(0, server.requests);
+        assertTrue(source.checkpoints.isEmpty());
+    }
+
+    /**
+     * Serves numActions actions, the position of an action is its number.
+     */
+    private static class ListSource implements EpisodeActionUploader.Source {
+        private final int numActions;
+        final List<Long> checkpoints = Collections.synchronizedList(new ArrayList<>());
+        volatile long checkpoint = 0;
+
+        ListSource(int numActions) {
+            this.numActions = numActions;
+        }
+
+        @Override
+        public EpisodeActionUploader.Page read(long afterPosition, int limit) {
+            List<EpisodeAction> actions = new ArrayList<>();
+            long position = afterPosition;
+            while (position < numActions && actions.size() < limit) {
+                position++;
+                actions.add(new EpisodeAction.Builder("podcast", "episode" + position, EpisodeAction.PLAY)
+                        .currentTimestamp().position(1).build());
+            }
+            return new EpisodeActionUploader.Page(actions, position);
+        }
+
+        @Override
+        public void checkpoint(long position) {
+            checkpoints.add(position);
+            checkpoint = position;
+        }
+    }
+
+    private static class FakeSyncService implements ISyncService {
+        private final int failingAction;
+        final Set<String> uploadedEpisodes = Collections.synchronizedSet(new HashSet<>());
+        int requests = 0;
+
+        /**
+         * @param failingAction Number of the action whose upload fails, -1 to accept all uploads.
+         */
+        FakeSyncService(int failingAction) {
+            this.failingAction = failingAction;
+        }
+
+        @Override
+        public void login() {
+        }
+
+        @Override
+        public SubscriptionChanges getSubscriptionChanges(long lastSync) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public UploadChangesResponse uploadSubscriptionChanges(List<String> addedFeeds, List<String> removedFeeds) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public EpisodeActionChanges getEpisodeActionChanges(long lastSync) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public UploadChangesResponse uploadEpisodeActions(List<EpisodeAction> actions) throws SyncServiceException {
+            for (EpisodeAction action : actions) {
+                if (action.getEpisode().equals("episode" + failingAction)) {
+                    throw new SyncServiceException("Server error");
+                }
+            }
+            int request;
+            synchronized (this) {
+                request = ++requests;
+            }
+            for (EpisodeAction action : actions) {
+                uploadedEpisodes.add(action.getEpisode());
+            }
+            return new UploadChangesResponse(request) { };
+        }
+
+        @Override
+        public void logout() {
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package de.danoeh.antennapod.core.sync;
+
+import android.app.Application;
+import android.content.Context;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.work.testing.TestListenableWorkerBuilder;
+
+import de.danoeh.antennapod.core.ApplicationCallbacks;
+import de.danoeh.antennapod.core.ClientConfig;
+import de.danoeh.antennapod.core.storage.DBReader;
+import de.danoeh.antennapod.core.storage.DBWriter;
+import de.danoeh.antennapod.model.feed.Feed;
+import de.danoeh.antennapod.model.feed.FeedItem;
+import de.danoeh.antennapod.model.feed.FeedMedia;
+import de.danoeh.antennapod.net.sync.model.EpisodeAction;
+import de.danoeh.antennapod.net.sync.model.EpisodeActionChanges;
+import de.danoeh.antennapod.net.sync.model.ISyncService;
+import de.danoeh.antennapod.net.sync.model.SubscriptionChanges;
+import de.danoeh.antennapod.net.sync.model.UploadChangesResponse;
+import de.danoeh.antennapod.storage.database.PodDBAdapter;
+import de.danoeh.antennapod.storage.preferences.UserPreferences;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for {@link SyncService}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SyncServiceTest {
+    private static final int NUM_ACTIONS = 50000;
+    private static final long SERVER_TIMESTAMP = 1234567890L;
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        UserPreferences.init(context);
+        ClientConfig.applicationCallbacks = mock(ApplicationCallbacks.class);
+        when(ClientConfig.applicationCallbacks.getApplicationInstance()).thenReturn((Application) context);
+        SynchronizationSettings.resetTimestamps();
+
+        PodDBAdapter.init(context);
+        PodDBAdapter.deleteDatabase();
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        adapter.close();
+    }
+
+    @After
+    public void tearDown() {
+        DBWriter.tearDownTests();
+        PodDBAdapter.tearDownTests();
+    }
+
+    @Test
+    public void testProcessManyEpisodeActions() throws Exception {
+        Feed feed = new Feed("https://example.com/feed.xml", null, "feed");
+        feed.setItems(new ArrayList<>());
+        for (int i = 0; i < NUM_ACTIONS; i++) {
+            FeedItem item = new FeedItem(0, "item " + i, "guid-" + i, "link", new Date(i),
+                    FeedItem.UNPLAYED, feed);
+            item.setMedia(new FeedMedia(0, item, 3600000, 0, 1, "audio/mpeg", null,
+                    "https://example.com/episode-" + i + ".mp3", false, null, 0, 0));
+            feed.getItems().add(item);
+        }
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        adapter.setCompleteFeed(feed);
+        adapter.close();
+
+        List<EpisodeAction> remoteActions = new ArrayList<>();
+        for (int i = 0; i < NUM_ACTIONS; i++) {
+            // Half of the actions can only be matched by their episode url
+            String guid = i % 2 == 0 ? "guid-" + i : null;
+            remoteActions.add(new EpisodeAction.Builder(feed.getDownload_url(),
+                    "https://example.com/episode-" + i + ".mp3", EpisodeAction.PLAY)
+                    .guid(guid)
+                    .timestamp(new Date(1000L * i))
+                    .started(0)
+                    .position(i % 3000 + 1)
+                    .total(3600)
+                    .build());
+        }
+        remoteActions.add(new EpisodeAction.Builder(feed.getDownload_url(),
+                "https://example.com/unknown.mp3", EpisodeAction.PLAY)
+                .currentTimestamp().position(10).build());
+        MockSyncService server = new MockSyncService(remoteActions);
+
+        SyncService syncService = TestListenableWorkerBuilder.from(context, SyncService.class).build();
+        syncService.syncEpisodeActions(server);
+        // The database executor is single-threaded, so this waits for the updates of the sync
+        DBWriter.setItemList(Collections.emptyList()).get();
+
+        // All actions arrive with a single request, nothing was played or queued locally
+        assertEquals(Collections.singletonList(0L), server.episodeActionRequests);
+        assertEquals(0, server.uploadedEpisodeActions.size());
+        assertEquals(SERVER_TIMESTAMP, SynchronizationSettings.getLastEpisodeActionSynchronizationTimestamp());
+
+        List<FeedItem> items = DBReader.getFeedItemList(feed);
+        assertEquals(NUM_ACTIONS, items.size());
+        for (FeedItem item : items) {
+            int index = Integer.parseInt(item.getItemIdentifier().substring("guid-".length()));
+            assertEquals(item.getItemIdentifier(), (index % 3000 + 1) * 1000, item.getMedia().getPosition());
+        }
+    }
+
+    /**
+     * Serves a fixed list of episode actions, like a synchronization server would.
+     */
+    private static class MockSyncService implements ISyncService {
+        private final List<EpisodeAction> episodeActions;
+        final List<Long> episodeActionRequests = new ArrayList<>();
+        final List<EpisodeAction> uploadedEpisodeActions = new ArrayList<>();
+
+        MockSyncService(List<EpisodeAction> episodeActions) {
+            this.episodeActions = episodeActions;
+        }
+
+        @Override
+        public void login() {
+        }
+
+        @Override
+        public SubscriptionChanges getSubscriptionChanges(long lastSync) {
+            return new SubscriptionChanges(Collections.emptyList(), Collections.emptyList(), 0);
+        }
+
+        @Override
+        public UploadChangesResponse uploadSubscriptionChanges(List<String> addedFeeds, List<String> removedFeeds) {
+            return new UploadChangesResponse(SERVER_TIMESTAMP) { };
+        }
+
+        @Override
+        public synchronized EpisodeActionChanges getEpisodeActionChanges(long lastSync) {
+            episodeActionRequests.add(lastSync);
+            return new EpisodeActionChanges(episodeActions, SERVER_TIMESTAMP);
+        }
+
+        @Override
+        public synchronized UploadChangesResponse uploadEpisodeActions(List<EpisodeAction> queuedEpisodeActions) {
+            uploadedEpisodeActions.addAll(queuedEpisodeActions);
+            return new UploadChangesResponse(SERVER_TIMESTAMP) { };
+        }
+
+        @Override
+        public void logout() {
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package de.danoeh.antennapod.core.sync.queue;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+import de.danoeh.antennapod.net.sync.model.EpisodeAction;
+import de.danoeh.antennapod.storage.database.PodDBAdapter;
+import org.json.JSONArray;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class SynchronizationQueueStorageTest {
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PodDBAdapter.init(context);
+        PodDBAdapter.deleteDatabase();
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        adapter.close();
+    }
+
+    @After
+    public void tearDown() {
+        PodDBAdapter.tearDownTests();
+        context.getSharedPreferences("synchronization", Context.MODE_PRIVATE).edit().clear().commit();
+    }
+
+    @Test
+    public void testMigrateFromPreferences() {
+        JSONArray queue = new JSONArray();
+        queue.put(play("episode1", 10).writeToJsonObject());
+        queue.put(play("episode2", 20).writeToJsonObject());
+        queue.put(play("episode1", 30).writeToJsonObject());
+        context.getSharedPreferences("synchronization", Context.MODE_PRIVATE).edit()
+                .putString("sync_queued_episode_actions", queue.toString()).commit();
+
+        List<EpisodeAction> actions = new SynchronizationQueueStorage(context).getQueuedEpisodeActions();
+        assertEquals(2, actions.size());
+        assertEquals("episode2", actions.get(0).getEpisode());
+        assertEquals("episode1", actions.get(1).getEpisode());
+        assertEquals(30, actions.get(1).getPosition());
+        assertFalse(context.getSharedPreferences("synchronization", Context.MODE_PRIVATE)
+                .contains("sync_queued_episode_actions"));
+    }
+
+    @Test
+    public void testFailedMigrationKeepsPreferences() {
+        JSONArray queue = new JSONArray();
+        queue.put(play("episode1", 10).writeToJsonObject());
+        SharedPreferences prefs = context.getSharedPreferences("synchronization", Context.MODE_PRIVATE);
+        prefs.edit().putString("sync_queued_episode_actions", queue.toString()).commit();
+
+        // Let the database reject the actions, like a full disk would
+        File databasePath = context.getDatabasePath(PodDBAdapter.DATABASE_NAME);
+        try (SQLiteDatabase db = SQLiteDatabase.openDatabase(databasePath.getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE)) {
+            db.execSQL("CREATE TRIGGER reject_actions BEFORE INSERT ON "
+                    + PodDBAdapter.TABLE_NAME_SYNC_EPISODE_ACTIONS
+                    + " BEGIN SELECT RAISE(ABORT, 'Disk full'); END");
+        }
+        assertTrue(new SynchronizationQueueStorage(context).getQueuedEpisodeActions().isEmpty());
+        assertTrue(prefs.contains("sync_queued_episode_actions"));
+
+        try (SQLiteDatabase db = SQLiteDatabase.openDatabase(databasePath.getPath(), null,
+                SQLiteDatabase.OPEN_READWRITE)) {
+            db.execSQL("DROP TRIGGER reject_actions");
+        }
+        assertEquals(1, new SynchronizationQueueStorage(context).getQueuedEpisodeActions().size());
+        assertFalse(prefs.contains("sync_queued_episode_actions"));
+    }
+
+    @Test
+    public void testReplaceActionOfSameKind() {
+        SynchronizationQueueStorage storage = new SynchronizationQueueStorage(context);
+        storage.enqueueEpisodeAction(play("episode1", 10));
+        storage.enqueueEpisodeAction(new EpisodeAction.Builder("podcast", "episode1", EpisodeAction.DOWNLOAD)
+                .currentTimestamp().build());
+        storage.enqueueEpisodeAction(play("episode1", 20));
+
+        List<EpisodeAction> actions = storage.getQueuedEpisodeActions();
+        assertEquals(2, actions.size());
+        assertEquals(EpisodeAction.DOWNLOAD, actions.get(0).getAction());
+        assertEquals(20, actions.get(1).getPosition());
+    }
+
+    @Test
+    public void testAcknowledgeKeepsActionsQueuedDuringUpload() {
+        SynchronizationQueueStorage storage = new SynchronizationQueueStorage(context);
+        storage.enqueueEpisodeAction(play("episode1", 10));
+        storage.enqueueEpisodeAction(play("episode2", 10));
+        long lastId = storage.getLastQueuedEpisodeActionId();
+        assertEquals(2, storage.getQueuedEpisodeActions(lastId).size());
+
+        // Queued while the upload is running
+        storage.enqueueEpisodeAction(play("episode1", 20));
+        storage.enqueueEpisodeAction(play("episode3", 10));
+        storage.acknowledgeEpisodeActions(lastId);
+
+        List<EpisodeAction> actions = storage.getQueuedEpisodeActions();
+        assertEquals(2, actions.size());
+        assertEquals("episode1", actions.get(0).getEpisode());
+        assertEquals(20, actions.get(0).getPosition());
+        assertEquals("episode3", actions.get(1).getEpisode());
+
+        storage.clearEpisodeActionQueue();
+        assertTrue(storage.getQueuedEpisodeActions().isEmpty());
+    }
+
+    private static EpisodeAction play(String episode, int position) {
+        return new EpisodeAction.Builder("podcast", episode, EpisodeAction.PLAY)
+                .timestamp(new Date())
+                .started(0)
+                .position(position)
+                .total(100)
+                .build();
+    }
+}
@@ -0,0 +1,190 @@
+package de.danoeh.antennapod.core.util;
+
+import de.danoeh.antennapod.model.feed.Chapter;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MediaMetadataProberTest {
+    private static final String URL = "https://example.com/episode.mp3";
+
+    @Test
+    public void testReadsOnlyId3Tag() throws IOException {
+        byte[] tag = id3TagWithChapter("Intro", 1000);
+        byte[] file = new byte[tag.length + 100000];
+        System.arraycopy(tag, 0, file, 0, tag.length);
+        RangeServer server = new RangeServer(file, true);
+        MediaMetadataProber prober = new MediaMetadataProber(server.client());
+
+        List<Chapter> chapters = prober.loadChapters(URL);
+        assertEquals(1, chapters.size());
+        assertEquals("Intro", chapters.get(0).getTitle());
+        assertEquals(1000, chapters.get(0).getStart());
+        assertEquals(Arrays.asList("bytes=0-9", "bytes=10-" + (tag.length - 1)), server.ranges);
+        assertEquals(tag.length, server.bytesServed);
+        assertEquals(MediaMetadataProber.Container.ID3, prober.getCachedContainer(URL));
+
+        // The second time, the cached result is used
+        assertEquals(1, prober.loadChapters(URL).size());
+        assertEquals(2, server.ranges.size());
+    }
+
+    @Test
+    public void testServerIgnoresRange() throws IOException {
+        byte[] tag = id3TagWithChapter("Intro", 1000);
+        byte[] file = new byte[tag.length + 100];
+        System.arraycopy(tag, 0, file, 0, tag.length);
+        RangeServer server = new RangeServer(file, false);
+        List<Chapter> chapters = new MediaMetadataProber(server.client()).loadChapters(URL);
+        assertEquals(1, chapters.size());
+        assertEquals(1, server.ranges.size());
+    }
+
+    @Test
+    public void testServerIgnoresLaterRange() throws IOException {
+        byte[] tag = id3TagWithChapter("Intro", 1000);
+        byte[] file = new byte[tag.length + 100];
+        System.arraycopy(tag, 0, file, 0, tag.length);
+        RangeServer server = new RangeServer(file, true);
+        server.partialResponses = 1;
+        List<Chapter> chapters = new MediaMetadataProber(server.client()).loadChapters(URL);
+        assertEquals(1, chapters.size());
+        assertEquals("Intro", chapters.get(0).getTitle());
+        assertEquals(2, server.ranges.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testContentRangeMismatch() throws IOException {
+        byte[] tag = id3TagWithChapter("Intro", 1000);
+        byte[] file = new byte[tag.length + 100];
+        System.arraycopy(tag, 0, file, 0, tag.length);
+        RangeServer server = new RangeServer(file, true);
+        server.contentRangeShift = 1;
+        new MediaMetadataProber(server.client()).loadChapters(URL);
+    }
+
+    @Test
+    public void testUnknownContainerIsProbedOnce() throws IOException {
+        byte[] file = new byte[100000];
+        System.arraycopy("RIFF".getBytes(StandardCharsets.US_ASCII), 0, file, 0, 4);
+        RangeServer server = new RangeServer(file, true);
+        MediaMetadataProber prober = new MediaMetadataProber(server.client());
+
+        assertTrue(prober.loadChapters(URL).isEmpty());
+        assertTrue(prober.loadChapters(URL).isEmpty());
+        assertEquals(Collections.singletonList("bytes=0-9"), server.ranges);
+        assertEquals(MediaMetadataProber.Container.UNKNOWN, prober.getCachedContainer(URL));
+    }
+
+    @Test
+    public void testId3TagSize() {
+        byte[] header = {'I', 'D', '3', 3, 0, 0, 0, 0, 0x02, 0x01};
+        assertEquals(10 + 257, MediaMetadataProber.getId3TagSize(header));
+        header[5] = 0x10; // Footer present
+        assertEquals(20 + 257, MediaMetadataProber.getId3TagSize(header));
+    }
+
+    private static byte[] id3TagWithChapter(String title, int start) throws IOException {
+        ByteArrayOutputStream title2 = new ByteArrayOutputStream();
+        title2.write(0); // ISO-8859-1
+        title2.write(title.getBytes(StandardCharsets.ISO_8859_1));
+
+        ByteArrayOutputStream chapter = new ByteArrayOutputStream();
+        chapter.write("ch1".getBytes(StandardCharsets.US_ASCII));
+        chapter.write(0);
+        writeInt(chapter, start);
+        writeInt(chapter, start + 1000);
+        writeInt(chapter, -1);
+        writeInt(chapter, -1);
+        writeFrame(chapter, "TIT2", title2.toByteArray());
+
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        writeFrame(frames, "CHAP", chapter.toByteArray());
+        int size = frames.size();
+
+        ByteArrayOutputStream tag = new ByteArrayOutputStream();
+        tag.write(new byte[] {'I', 'D', '3', 3, 0, 0});
+        tag.write(new byte[] {(byte) ((size >> 21) & 0x7f), (byte) ((size >> 14) & 0x7f),
+                (byte) ((size >> 7) & 0x7f), (byte) (size & 0x7f)});
+        tag.write(frames.toByteArray());
+        return tag.toByteArray();
+    }
+
+    private static void writeFrame(ByteArrayOutputStream out, String id, byte[] content) throws IOException {
+        out.write(id.getBytes(StandardCharsets.US_ASCII));
+        writeInt(out, content.length);
+        out.write(new byte[2]); // Flags
+        out.write(content);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >> 24);
+        out.write(value >> 16);
+        out.write(value >> 8);
+        out.write(value);
+    }
+
+    /**
+     * Serves a file from memory and records the requested ranges.
+     */
+    private static class RangeServer {
+        private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+        private final byte[] file;
+        private final boolean supportsRanges;
+        final List<String> ranges = new ArrayList<>();
+        int bytesServed = 0;
+        /** Number of range requests that are answered with a partial response, the rest get the whole file. */
+        int partialResponses = Integer.MAX_VALUE;
+        /** Moves the range that the server claims to send, without changing the content. */
+        int contentRangeShift = 0;
+
+        RangeServer(byte[] file, boolean supportsRanges) {
+            this.file = file;
+            this.supportsRanges = supportsRanges;
+        }
+
+        OkHttpClient client() {
+            return new OkHttpClient.Builder().addInterceptor(chain -> {
+                String range = chain.request().header("Range");
+                ranges.add(range);
+                Response.Builder response = new Response.Builder()
+                        .request(chain.request())
+                        .protocol(Protocol.HTTP_1_1)
+                        .message("");
+                Matcher matcher = RANGE.matcher(range);
+                if (!supportsRanges || !matcher.matches() || partialResponses <= 0) {
+                    return response.code(200).body(ResponseBody.create(null, file)).build();
+                }
+                partialResponses--;
+                int from = Integer.parseInt(matcher.group(1));
+                int to = Math.min(Integer.parseInt(matcher.group(2)), file.length - 1);
+                if (from >= file.length) {
+                    return response.code(416).body(ResponseBody.create(null, new byte[0])).build();
+                }
+                byte[] content = Arrays.copyOfRange(file, from, to + 1);
+                bytesServed += content.length;
+                return response.code(206)
+                        .header("Content-Range", "bytes " + (from + contentRangeShift) + "-"
+                                + (to + contentRangeShift) + "/" + file.length)
+                        .body(ResponseBody.create(MediaType.parse("audio/mpeg"), content))
+                        .build();
+            }).build();
+        }
+    }
+}
@@ -49,10 +49,32 @@ public class Feed extends FeedFile {
     private List<FeedItem> items;
 
     /**
-     * String that identifies the last update (adopted from Last-Modified or ETag header).
+     * Last-Modified header of the last download.
      */
     private String lastUpdate;
 
+    /**
+     * ETag header of the last download.
+     */
+    private String etag;
+
+    /**
+     * SHA-256 digest of the last downloaded feed document, used to detect unchanged
+     * documents when the server does not support conditional requests.
+     */
+    private String contentDigest;
+
+    /**
+     * Number of refreshes that the server answered with 304 Not Modified.
+     * Counters are only read from the database, they are never written back from this object.
+     */
+    private int notModifiedCount;
+
+    /**
+     * Number of refreshes that were not saved because the document had the same digest as before.
+     */
+    private int unchangedCount;
+
     private ArrayList<FeedFunding> fundingList;
     /**
      * Feed type, for example RSS 2 or Atom.
@@ -382,6 +404,37 @@ public class Feed extends FeedFile {
         this.lastUpdate = lastModified;
     }
 
+    @Nullable
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(@Nullable String etag) {
+        this.etag = etag;
+    }
+
+    @Nullable
+    public String getContentDigest() {
+        return contentDigest;
+    }
+
+    public void setContentDigest(@Nullable String contentDigest) {
+        this.contentDigest = contentDigest;
+    }
+
+    public int getNotModifiedCount() {
+        return notModifiedCount;
+    }
+
+    public int getUnchangedCount() {
+        return unchangedCount;
+    }
+
+    public void setRefreshCounts(int notModifiedCount, int unchangedCount) {
+        this.notModifiedCount = notModifiedCount;
+        this.unchangedCount = unchangedCount;
+    }
+
     public String getFeedIdentifier() {
         return feedIdentifier;
     }
@@ -38,6 +38,7 @@ public class FeedMedia extends FeedFile implements Playable {
     private long lastPlayedTime; // Last time this media was played (in ms)
     private int played_duration; // How many ms of this file have been played
     private long size; // File size in Byte
+    private long fileLastModified; // Modification time of a file in a local folder (in ms)
     private String mime_type;
     @Nullable private volatile FeedItem item;
     private Date playbackCompletionDate;
@@ -131,6 +132,9 @@ public class FeedMedia extends FeedFile implements Playable {
         if (other.mime_type != null) {
             mime_type = other.mime_type;
         }
+        if (other.fileLastModified > 0) {
+            fileLastModified = other.fileLastModified;
+        }
     }
 
     public boolean compareWithOther(FeedMedia other) {
@@ -145,6 +149,9 @@ public class FeedMedia extends FeedFile implements Playable {
         if (other.size > 0 && other.size != size) {
             return true;
         }
+        if (other.fileLastModified > 0 && other.fileLastModified != fileLastModified) {
+            return true;
+        }
         return false;
     }
 
@@ -198,6 +205,17 @@ public class FeedMedia extends FeedFile implements Playable {
         return size;
     }
 
+    /**
+     * Returns the modification time that the file in a local folder had when it was last scanned, or 0.
+     */
+    public long getFileLastModified() {
+        return fileLastModified;
+    }
+
+    public void setFileLastModified(long fileLastModified) {
+        this.fileLastModified = fileLastModified;
+    }
+
     public void setSize(long size) {
         this.size = size;
     }
@@ -122,6 +122,20 @@ public final class UrlChecker {
         return url1.query().equals(url2.query());
     }
 
+    /**
+     * Returns a key that is the same for two URLs if {@link #urlEquals(String, String)} considers them equal,
+     * so that many URLs can be compared with a hash set. URLs that cannot be parsed are returned unchanged.
+     */
+    public static String getComparisonKey(String url) {
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (httpUrl == null) {
+            return url;
+        }
+        String query = TextUtils.isEmpty(httpUrl.query()) ? "" : httpUrl.query();
+        return httpUrl.host() + "/" + TextUtils.join("/", normalizePathSegments(httpUrl.pathSegments()))
+                + "?" + query;
+    }
+
     /**
      * Removes empty segments and converts all to lower case.
      * @param input List of path segments
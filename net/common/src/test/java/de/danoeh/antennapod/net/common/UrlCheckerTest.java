@@ -9,6 +9,7 @@ import java.net.URLEncoder;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -172,4 +173,19 @@ public class UrlCheckerTest {
         assertFalse(UrlChecker.urlEquals("https://www.example.com/?id=42&a=b", "https://www.example.com/?id=43&a=b"));
         assertFalse(UrlChecker.urlEquals("https://example.com/podcast%25test", "https://example.com/podcast test"));
     }
+
+    @Test
+    public void testComparisonKey() {
+        assertEquals(UrlChecker.getComparisonKey("https://www.example.com/test"),
+                UrlChecker.getComparisonKey("http://www.example.com//Test/"));
+        assertEquals(UrlChecker.getComparisonKey("https://example.com/?"),
+                UrlChecker.getComparisonKey("https://Example.com"));
+        assertEquals(UrlChecker.getComparisonKey("https://example.com/podcast%20test"),
+                UrlChecker.getComparisonKey("https://example.com/podcast test"));
+        assertNotEquals(UrlChecker.getComparisonKey("https://www.example.com/?id=42"),
+                UrlChecker.getComparisonKey("https://www.example.com/?id=43"));
+        assertNotEquals(UrlChecker.getComparisonKey("https://example.com/"),
+                UrlChecker.getComparisonKey("https://otherpodcast.example.com/"));
+        assertEquals("not a url", UrlChecker.getComparisonKey("not a url"));
+    }
 }
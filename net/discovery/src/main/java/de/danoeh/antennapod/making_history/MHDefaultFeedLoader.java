@@ -0,0 +1,229 @@
+package de.danoeh.antennapod.making_history;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.danoeh.antennapod.core.ClientConfig;
+import de.danoeh.antennapod.core.export.opml.OpmlElement;
+import de.danoeh.antennapod.core.export.opml.OpmlReader;
+import de.danoeh.antennapod.core.service.download.AntennapodHttpClient;
+import de.danoeh.antennapod.core.service.download.DownloadRequestCreator;
+import de.danoeh.antennapod.core.storage.DBReader;
+import de.danoeh.antennapod.model.feed.Feed;
+import de.danoeh.antennapod.net.common.UrlChecker;
+import de.danoeh.antennapod.net.download.serviceinterface.DownloadRequest;
+import de.danoeh.antennapod.net.download.serviceinterface.DownloadServiceInterface;
+import io.reactivex.Completable;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.ByteString;
+
+public class MHDefaultFeedLoader {
+    private final static String TAG = "MHDefaultFeedLoader";
+    private final static String OPML_FEED_URL = "https://firebasestorage.googleapis.com/v0/b/makinghistory-1579519443087.appspot.com/o/default_opml.xml?alt=media";
+    private final static String SHARED_PREFERENCES_NAME = "MH_SHARED_PREFERENCES";
+    private final static String OPML_HASH_PREF_NAME = "OPML_HASH";
+    private final static String OPML_DIGEST_PREF_NAME = "OPML_DIGEST";
+    private final static String OPML_ETAG_PREF_NAME = "OPML_ETAG";
+    private final static String OPML_LAST_MODIFIED_PREF_NAME = "OPML_LAST_MODIFIED";
+    private final static String UNWANTED_FEEDS_LIST_PREF_NAME = "UNWANTED_FEEDS_LIST";
+    /** The download service only accepts a limited number of requests per intent. */
+    private final static int MAX_REQUESTS_PER_BATCH = 100;
+
+    private static final AtomicBoolean isLoading = new AtomicBoolean(false);
+
+    /**
+     * Subscribes to the feeds of the default OPML file that the user neither has nor removed before.
+     * Runs in the background. Nothing is parsed if the file did not change since the last time.
+     */
+    public static void loadDefaultOPMLIfNeeded(final Activity activity) {
+        if (!isLoading.compareAndSet(false, true)) {
+            return;
+        }
+        Context context = activity.getApplicationContext();
+        Completable.fromAction(() -> importDefaultOpml(context))
+                .subscribeOn(Schedulers.io())
+                .doFinally(() -> isLoading.set(false))
+                .subscribe(() -> { }, error -> Log.d(TAG, Log.getStackTraceString(error)));
+    }
+
+    private static void importDefaultOpml(Context context) throws Exception {
+        SharedPreferences prefs = context.getSharedPreferences(SHARED_PREFERENCES_NAME, Context.MODE_MULTI_PROCESS);
+        importDefaultOpml(prefs, AntennapodHttpClient.getHttpClient(), opmlData -> importFeeds(context, opmlData));
+    }
+
+    /**
+     * Downloads the default OPML file and passes it to the importer if it changed since the last successful import.
+     *
+     * @return true if the importer was called
+     */
+    @VisibleForTesting
+    static boolean importDefaultOpml(SharedPreferences prefs, OkHttpClient client, OpmlImporter importer)
+            throws Exception {
+        Request.Builder request = new Request.Builder()
+                .header("User-Agent", ClientConfig.USER_AGENT)
+                .url(OPML_FEED_URL);
+        String previousDigest = prefs.getString(OPML_DIGEST_PREF_NAME, null);
+        if (previousDigest != null) {
+            String etag = prefs.getString(OPML_ETAG_PREF_NAME, null);
+            String lastModified = prefs.getString(OPML_LAST_MODIFIED_PREF_NAME, null);
+            if (etag != null) {
+                request.header("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                request.header("If-Modified-Since", lastModified);
+            }
+        }
+
+        byte[] opmlData;
+        String etag;
+        String lastModified;
+        try (Response response = client.newCall(request.build()).execute()) {
+            if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                Log.d(TAG, "Default OPML has not changed");
+                return false;
+            } else if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException(response.toString());
+            }
+            opmlData = response.body().bytes();
+            etag = response.header("ETag");
+            lastModified = response.header("Last-Modified");
+        }
+
+        String digest = ByteString.of(opmlData).sha256().hex();
+        boolean changed = !digest.equals(previousDigest);
+        if (changed) {
+            importer.importOpml(opmlData);
+        }
+        prefs.edit()
+                .remove(OPML_HASH_PREF_NAME)
+                .putString(OPML_DIGEST_PREF_NAME, digest)
+                .putString(OPML_ETAG_PREF_NAME, etag)
+                .putString(OPML_LAST_MODIFIED_PREF_NAME, lastModified)
+                .apply();
+        return changed;
+    }
+
+    private static void importFeeds(Context context, byte[] opmlData) throws Exception {
+        List<OpmlElement> elements;
+        try (Reader reader = new InputStreamReader(new ByteArrayInputStream(opmlData), StandardCharsets.UTF_8)) {
+            elements = new OpmlReader().readDocument(reader);
+        }
+
+        SharedPreferences prefs = context.getSharedPreferences(SHARED_PREFERENCES_NAME, Context.MODE_MULTI_PROCESS);
+        Set<String> unwantedPodcasts = prefs.getStringSet(UNWANTED_FEEDS_LIST_PREF_NAME, new HashSet<>());
+        Selection selection = selectNewFeeds(elements, unwantedPodcasts, DBReader.getFeedListDownloadUrls());
+        Log.d(TAG, "Default OPML has " + elements.size() + " feeds, "
+                + selection.newFeeds.size() + " of them are new");
+
+        List<DownloadRequest> requests = new ArrayList<>();
+        for (OpmlElement element : selection.newFeeds) {
+            Feed feed = new Feed(element.getXmlUrl(), null, element.getText());
+            requests.add(DownloadRequestCreator.create(feed).build());
+        }
+        for (int i = 0; i < requests.size(); i += MAX_REQUESTS_PER_BATCH) {
+            List<DownloadRequest> batch = requests.subList(i, Math.min(i + MAX_REQUESTS_PER_BATCH, requests.size()));
+            DownloadServiceInterface.get().download(context, false, batch.toArray(new DownloadRequest[0]));
+        }
+        // Once we've added these podcasts, theres no need to add them again ever...
+        addUnwantedFeedsToList(context, selection.handledUrls);
+    }
+
+    /**
+     * Finds the feeds of the OPML file that are neither subscribed nor unwanted. URLs are compared with
+     * {@link UrlChecker#getComparisonKey(String)}, so a feed stored with a slightly different URL, for example
+     * after a redirect from http to https, is not subscribed twice.
+     */
+    @VisibleForTesting
+    static Selection selectNewFeeds(List<OpmlElement> elements, Collection<String> unwantedUrls,
+                                    Collection<String> subscribedUrls) {
+        Set<String> skippedKeys = new HashSet<>();
+        for (String url : unwantedUrls) {
+            skippedKeys.add(UrlChecker.getComparisonKey(url));
+        }
+        for (String url : subscribedUrls) {
+            skippedKeys.add(UrlChecker.getComparisonKey(url));
+        }
+        Selection selection = new Selection();
+        Set<String> handledKeys = new HashSet<>();
+        for (OpmlElement element : elements) {
+            String url = element.getXmlUrl();
+            if (TextUtils.isEmpty(url)) {
+                continue;
+            }
+            String key = UrlChecker.getComparisonKey(url);
+            if (!handledKeys.add(key)) {
+                continue;
+            }
+            selection.handledUrls.add(url);
+            if (!skippedKeys.contains(key)) {
+                selection.newFeeds.add(element);
+            }
+        }
+        return selection;
+    }
+
+    @VisibleForTesting
+    interface OpmlImporter {
+        void importOpml(byte[] opmlData) throws Exception;
+    }
+
+    @VisibleForTesting
+    static class Selection {
+        /** Feeds to subscribe to. */
+        final List<OpmlElement> newFeeds = new ArrayList<>();
+        /** URLs of all feeds in the file, to be added to the unwanted feeds once imported. */
+        final Set<String> handledUrls = new HashSet<>();
+    }
+
+    /***
+     * Adds a podcast to the list of unwanted podcasts, this happends when the user decides to remove
+     * a podcast from the list, and will make the automatic podcast downloader ignore this podcast
+     * in later loadings.
+     */
+    public static void addUnwantedFeedToList(Context context, String feedURL)
+    {
+        Set<String> feedUrls = new HashSet<>();
+        feedUrls.add(feedURL);
+        addUnwantedFeedsToList(context, feedUrls);
+    }
+
+    private static void addUnwantedFeedsToList(Context context, Collection<String> feedUrls) {
+        if (feedUrls.isEmpty()) {
+            return;
+        }
+        SharedPreferences prefs = context.getSharedPreferences(SHARED_PREFERENCES_NAME, Context.MODE_MULTI_PROCESS);
+        Set<String> unwantedPodcasts = prefs.getStringSet(UNWANTED_FEEDS_LIST_PREF_NAME, new HashSet<String>());
+        Set<String> newUnwantedPodcasts = new HashSet<String>(unwantedPodcasts);
+        newUnwantedPodcasts.addAll(feedUrls);
+        prefs.edit().putStringSet(UNWANTED_FEEDS_LIST_PREF_NAME, newUnwantedPodcasts).apply();
+    }
+
+    private static int[] toIntArray(List<Integer> list)  {
+        int[] ret = new int[list.size()];
+        int i = 0;
+        for (Integer e : list)
+            ret[i++] = e;
+        return ret;
+    }
+}
@@ -1,39 +1,85 @@
 package de.danoeh.antennapod.making_history;
 
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
 import de.danoeh.antennapod.core.ClientConfig;
 import de.danoeh.antennapod.core.service.download.AntennapodHttpClient;
 import de.danoeh.antennapod.net.discovery.PodcastSearchResult;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
-import io.reactivex.SingleOnSubscribe;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.schedulers.Schedulers;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
+import org.apache.commons.io.FileUtils;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Loads the discover catalogue. The catalogue is kept in memory and in the cache directory, so that it is
+ * available without waiting for the network. Whenever a cached catalogue is used and it was not checked
+ * recently, it is revalidated in the background with a conditional request.
+ */
 public class MHDiscoverListLoader {
-    private final String TOP_DISCOVER_JSON_URL = "https://firebasestorage.googleapis.com/v0/b/makinghistory-1579519443087.appspot.com/o/mh_discover_feed.json?alt=media";
-    private final String ALL_ISRAELI_DISCOVER_JSON_URL = TOP_DISCOVER_JSON_URL;
+    private static final String TAG = "MHDiscoverListLoader";
+    private static final String TOP_DISCOVER_JSON_URL = "https://firebasestorage.googleapis.com/v0/b/makinghistory-1579519443087.appspot.com/o/mh_discover_feed.json?alt=media";
+    private static final String ALL_ISRAELI_DISCOVER_JSON_URL = TOP_DISCOVER_JSON_URL;
+    private static final String CACHE_FILE = "mh_discover_feed.json";
+    private static final String CACHE_INFO_FILE = "mh_discover_feed.properties";
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_LAST_MODIFIED = "last_modified";
+    static final long REVALIDATE_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static File defaultCacheDirectory;
+    private static MHDiscoverSearchIndex catalog;
+    private static long lastRevalidation = 0;
+    private static boolean revalidating = false;
+
+    private final OkHttpClient httpClient;
+    private final File cacheDirectory;
+    private final Scheduler revalidationScheduler;
 
     public MHDiscoverListLoader() {
+        this(null, null, Schedulers.io());
+    }
+
+    MHDiscoverListLoader(@Nullable OkHttpClient httpClient, @Nullable File cacheDirectory,
+                         Scheduler revalidationScheduler) {
+        this.httpClient = httpClient;
+        this.cacheDirectory = cacheDirectory;
+        this.revalidationScheduler = revalidationScheduler;
+    }
+
+    /**
+     * Sets the directory where the catalogue is stored between app starts.
+     */
+    public static void setCacheDirectory(File cacheDirectory) {
+        MHDiscoverListLoader.defaultCacheDirectory = cacheDirectory;
     }
 
     public Single<List<PodcastSearchResult>> loadToplist(boolean loadTopOnly) {
-        return Single.create((SingleOnSubscribe<List<PodcastSearchResult>>) emitter -> {
-            OkHttpClient client = AntennapodHttpClient.getHttpClient();
-            String feedString = getTopListFeed(loadTopOnly ? TOP_DISCOVER_JSON_URL : ALL_ISRAELI_DISCOVER_JSON_URL, client);
-            List<PodcastSearchResult> podcasts = parseFeed(feedString);
+        return Single.fromCallable(() -> {
+            List<PodcastSearchResult> podcasts = getCatalog().getPodcasts();
 
             // Filter only podcasts that are on the TOP category.
-            if (loadTopOnly)
-            {
+            if (loadTopOnly) {
                 List<PodcastSearchResult> result = new ArrayList<>();
                 for (PodcastSearchResult podcast : podcasts) {
                     if ("Top".equalsIgnoreCase(podcast.category)) {
@@ -42,7 +88,7 @@ public class MHDiscoverListLoader {
                 }
                 podcasts = result;
             }
-            emitter.onSuccess(podcasts);
+            return podcasts;
         })
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread());
@@ -53,25 +99,184 @@ public class MHDiscoverListLoader {
                 .observeOn(AndroidSchedulers.mainThread());
     }
 
-    private String getTopListFeed(String url, OkHttpClient client) throws IOException {
+    /**
+     * Returns the catalogue from memory or from the cache directory and only downloads it if neither has it.
+     */
+    MHDiscoverSearchIndex getCatalog() throws IOException, JSONException {
+        MHDiscoverSearchIndex index;
+        synchronized (MHDiscoverListLoader.class) {
+            index = catalog;
+        }
+        if (index == null) {
+            index = readCache();
+            if (index == null) {
+                index = download(false);
+                synchronized (MHDiscoverListLoader.class) {
+                    catalog = index;
+                    lastRevalidation = System.currentTimeMillis();
+                }
+                return index;
+            }
+            synchronized (MHDiscoverListLoader.class) {
+                catalog = index;
+            }
+        }
+        revalidateInBackground();
+        return index;
+    }
+
+    /**
+     * Forgets the catalogue that is kept in memory. The cache directory is not touched.
+     */
+    static synchronized void clearMemoryCache() {
+        catalog = null;
+        lastRevalidation = 0;
+        revalidating = false;
+    }
+
+    private void revalidateInBackground() {
+        synchronized (MHDiscoverListLoader.class) {
+            long now = System.currentTimeMillis();
+            if (revalidating || now - lastRevalidation < REVALIDATE_INTERVAL_MILLIS) {
+                return;
+            }
+            revalidating = true;
+            lastRevalidation = now;
+        }
+        revalidationScheduler.scheduleDirect(() -> {
+            try {
+                MHDiscoverSearchIndex index = download(true);
+                if (index != null) {
+                    synchronized (MHDiscoverListLoader.class) {
+                        catalog = index;
+                    }
+                }
+            } catch (IOException | JSONException e) {
+                Log.d(TAG, "Unable to revalidate the discover catalogue: " + e.getMessage());
+            } finally {
+                synchronized (MHDiscoverListLoader.class) {
+                    revalidating = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Downloads the catalogue and stores it in the cache directory.
+     *
+     * @param conditional Send the validators of the cached copy.
+     * @return The new catalogue, or null if the server reports that the cached copy is still up to date.
+     */
+    @Nullable
+    private MHDiscoverSearchIndex download(boolean conditional) throws IOException, JSONException {
         Request.Builder httpReq = new Request.Builder()
                 .header("User-Agent", ClientConfig.USER_AGENT)
-                .url(url);
+                .url(ALL_ISRAELI_DISCOVER_JSON_URL);
+        File directory = getCacheDirectory();
+        if (conditional && directory != null && new File(directory, CACHE_FILE).exists()) {
+            Properties info = readCacheInfo(directory);
+            if (info.getProperty(KEY_ETAG) != null) {
+                httpReq.header("If-None-Match", info.getProperty(KEY_ETAG));
+            }
+            if (info.getProperty(KEY_LAST_MODIFIED) != null) {
+                httpReq.header("If-Modified-Since", info.getProperty(KEY_LAST_MODIFIED));
+            }
+        }
 
+        OkHttpClient client = httpClient != null ? httpClient : AntennapodHttpClient.getHttpClient();
         try (Response response = client.newCall(httpReq.build()).execute()) {
-            if (response.isSuccessful()) {
-                return response.body().string();
+            if (conditional && response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                Log.d(TAG, "Discover catalogue is up to date");
+                return null;
+            } else if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException(response.toString());
+            }
+            String feedString = response.body().string();
+            MHDiscoverSearchIndex index = new MHDiscoverSearchIndex(parseFeed(feedString));
+            writeCache(directory, feedString, response.header("ETag"), response.header("Last-Modified"));
+            return index;
+        }
+    }
+
+    @Nullable
+    private File getCacheDirectory() {
+        return cacheDirectory != null ? cacheDirectory : defaultCacheDirectory;
+    }
+
+    @Nullable
+    private MHDiscoverSearchIndex readCache() {
+        File directory = getCacheDirectory();
+        if (directory == null) {
+            return null;
+        }
+        File file = new File(directory, CACHE_FILE);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return new MHDiscoverSearchIndex(parseFeed(FileUtils.readFileToString(file, StandardCharsets.UTF_8)));
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Unable to read cached discover catalogue: " + e.getMessage());
+            FileUtils.deleteQuietly(file);
+            FileUtils.deleteQuietly(new File(directory, CACHE_INFO_FILE));
+            return null;
+        }
+    }
+
+    private static Properties readCacheInfo(File directory) {
+        Properties info = new Properties();
+        File file = new File(directory, CACHE_INFO_FILE);
+        if (file.exists()) {
+            try (InputStream in = new FileInputStream(file)) {
+                info.load(in);
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to read cache info: " + e.getMessage());
+            }
+        }
+        return info;
+    }
+
+    /**
+     * Replaces the cached copy. The files are written next to the old ones and then renamed,
+     * so that an interrupted write does not leave a broken catalogue behind.
+     */
+    private static void writeCache(@Nullable File directory, String feedString,
+                                   @Nullable String etag, @Nullable String lastModified) {
+        if (directory == null) {
+            return;
+        }
+        Properties info = new Properties();
+        if (etag != null) {
+            info.setProperty(KEY_ETAG, etag);
+        }
+        if (lastModified != null) {
+            info.setProperty(KEY_LAST_MODIFIED, lastModified);
+        }
+        File tempFile = new File(directory, CACHE_FILE + ".tmp");
+        File tempInfoFile = new File(directory, CACHE_INFO_FILE + ".tmp");
+        try {
+            FileUtils.forceMkdir(directory);
+            FileUtils.writeStringToFile(tempFile, feedString, StandardCharsets.UTF_8);
+            try (OutputStream out = new FileOutputStream(tempInfoFile)) {
+                info.store(out, null);
+            }
+            if (!tempFile.renameTo(new File(directory, CACHE_FILE))
+                    || !tempInfoFile.renameTo(new File(directory, CACHE_INFO_FILE))) {
+                throw new IOException("Unable to rename cache files");
             }
-            throw new IOException(response.toString());
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to cache discover catalogue: " + e.getMessage());
+            FileUtils.deleteQuietly(tempFile);
+            FileUtils.deleteQuietly(tempInfoFile);
         }
     }
 
-    private List<PodcastSearchResult> parseFeed(String jsonString) throws JSONException {
+    private static List<PodcastSearchResult> parseFeed(String jsonString) throws JSONException {
         JSONObject result = new JSONObject(jsonString);
         JSONArray entries = result.getJSONArray("items");
 
         List<PodcastSearchResult> results = new ArrayList<>();
-        for (int i=0; i < entries.length(); i++) {
+        for (int i = 0; i < entries.length(); i++) {
             JSONObject json = entries.getJSONObject(i);
             results.add(PodcastSearchResult.fromMakingHistoryDiscover(json));
         }
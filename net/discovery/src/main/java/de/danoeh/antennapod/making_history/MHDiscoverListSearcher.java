@@ -1,43 +1,26 @@
 package de.danoeh.antennapod.making_history;
 
-import android.content.Context;
-
-import java.util.ArrayList;
 import java.util.List;
 
 import de.danoeh.antennapod.net.discovery.PodcastSearchResult;
 import de.danoeh.antennapod.net.discovery.PodcastSearcher;
 import io.reactivex.Single;
-import io.reactivex.SingleOnSubscribe;
 import io.reactivex.android.schedulers.AndroidSchedulers;
-import io.reactivex.disposables.Disposable;
 import io.reactivex.schedulers.Schedulers;
 
 public class MHDiscoverListSearcher implements PodcastSearcher {
-    private MHDiscoverListLoader loader;
-    private static List<PodcastSearchResult> s_cachedResultsFromDiscover = null;
+    private final MHDiscoverListLoader loader;
 
     public MHDiscoverListSearcher() {
         this.loader = new MHDiscoverListLoader();
     }
 
     public Single<List<PodcastSearchResult>> search(String query) {
-        return Single.create((SingleOnSubscribe<List<PodcastSearchResult>>) subscriber -> {
-            if (s_cachedResultsFromDiscover == null) {
-                Disposable disposable = loader.loadToplist(false).subscribe((podcastSearchResults) ->
-                {
-                    s_cachedResultsFromDiscover = podcastSearchResults;
-                    subscriber.onSuccess(filterResults(s_cachedResultsFromDiscover, query));
-                });
-            }
-            else
-            {
-                subscriber.onSuccess(filterResults(s_cachedResultsFromDiscover, query));
-            }
-        })
+        return Single.fromCallable(() -> loader.getCatalog().search(query))
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread());
     }
+
     @Override
     public Single<String> lookupUrl(String resultUrl) {
         return null;
@@ -52,18 +35,4 @@ public class MHDiscoverListSearcher implements PodcastSearcher {
     public String getName() {
         return "Podcast Israel";
     }
-
-    private List<PodcastSearchResult> filterResults(List<PodcastSearchResult> podcastSearchResults, String query)
-    {
-        List<PodcastSearchResult> searchResults = new ArrayList<>();
-        for (PodcastSearchResult result : podcastSearchResults) {
-            if  (result.title.toLowerCase().contains(query.toLowerCase()) ||
-                (result.category != null && result.category.toLowerCase().contains(query.toLowerCase())))
-            {
-                searchResults.add(result);
-            }
-        }
-
-        return searchResults;
-    }
 }
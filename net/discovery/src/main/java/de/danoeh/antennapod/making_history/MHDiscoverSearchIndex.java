@@ -0,0 +1,150 @@
+package de.danoeh.antennapod.making_history;
+
+import androidx.annotation.NonNull;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import de.danoeh.antennapod.net.discovery.PodcastSearchResult;
+
+/**
+ * The podcasts of the discover catalogue together with a search index. Titles and categories are normalized
+ * and split into words once, when the catalogue is loaded. A query matches a podcast if each of its words
+ * is the beginning of a word of the title or the category.
+ */
+public class MHDiscoverSearchIndex {
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern QUOTES = Pattern.compile("['\"\u05F3\u05F4]");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final String HEBREW_FINAL_LETTERS = "\u05DA\u05DD\u05DF\u05E3\u05E5";
+    private static final String HEBREW_REGULAR_LETTERS = "\u05DB\u05DE\u05E0\u05E4\u05E6";
+    /** Letters that are prepended to Hebrew words for "and", "in", "as", "to", "from", "that" and "the". */
+    private static final String HEBREW_PREFIXES = "\u05D5\u05D1\u05DB\u05DC\u05DE\u05E9\u05D4";
+
+    private final List<PodcastSearchResult> podcasts;
+    private final String[] words;
+    private final int[][] podcastsOfWord;
+
+    public MHDiscoverSearchIndex(@NonNull List<PodcastSearchResult> podcasts) {
+        this.podcasts = Collections.unmodifiableList(new ArrayList<>(podcasts));
+        Map<String, List<Integer>> index = new HashMap<>();
+        for (int i = 0; i < podcasts.size(); i++) {
+            PodcastSearchResult podcast = podcasts.get(i);
+            Set<String> podcastWords = new LinkedHashSet<>();
+            addIndexWords(podcastWords, podcast.title);
+            addIndexWords(podcastWords, podcast.category);
+            for (String word : podcastWords) {
+                List<Integer> ofWord = index.get(word);
+                if (ofWord == null) {
+                    ofWord = new ArrayList<>();
+                    index.put(word, ofWord);
+                }
+                ofWord.add(i);
+            }
+        }
+        words = index.keySet().toArray(new String[0]);
+        Arrays.sort(words);
+        podcastsOfWord = new int[words.length][];
+        for (int i = 0; i < words.length; i++) {
+            List<Integer> ofWord = index.get(words[i]);
+            podcastsOfWord[i] = new int[ofWord.size()];
+            for (int j = 0; j < ofWord.size(); j++) {
+                podcastsOfWord[i][j] = ofWord.get(j);
+            }
+        }
+    }
+
+    @NonNull
+    public List<PodcastSearchResult> getPodcasts() {
+        return podcasts;
+    }
+
+    /**
+     * Returns the podcasts that match the query, in the order of the catalogue.
+     */
+    @NonNull
+    public List<PodcastSearchResult> search(String query) {
+        List<String> queryWords = split(normalize(query));
+        if (queryWords.isEmpty()) {
+            return new ArrayList<>(podcasts);
+        }
+        BitSet matches = null;
+        for (String queryWord : queryWords) {
+            BitSet wordMatches = new BitSet(podcasts.size());
+            int position = Arrays.binarySearch(words, queryWord);
+            if (position < 0) {
+                position = -position - 1;
+            }
+            while (position < words.length && words[position].startsWith(queryWord)) {
+                for (int podcast : podcastsOfWord[position]) {
+                    wordMatches.set(podcast);
+                }
+                position++;
+            }
+            if (matches == null) {
+                matches = wordMatches;
+            } else {
+                matches.and(wordMatches);
+            }
+        }
+
+        List<PodcastSearchResult> results = new ArrayList<>();
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            results.add(podcasts.get(i));
+        }
+        return results;
+    }
+
+    /**
+     * Removes accents and Hebrew vowel points, folds case and replaces Hebrew final letters by their regular form.
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD);
+        String normalized = MARKS.matcher(decomposed).replaceAll("");
+        normalized = QUOTES.matcher(normalized).replaceAll("").toLowerCase(Locale.ROOT);
+        StringBuilder builder = new StringBuilder(normalized);
+        for (int i = 0; i < builder.length(); i++) {
+            int finalLetter = HEBREW_FINAL_LETTERS.indexOf(builder.charAt(i));
+            if (finalLetter >= 0) {
+                builder.setCharAt(i, HEBREW_REGULAR_LETTERS.charAt(finalLetter));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static List<String> split(String normalized) {
+        List<String> result = new ArrayList<>();
+        for (String word : SEPARATORS.split(normalized)) {
+            if (!word.isEmpty()) {
+                result.add(word);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the words of the text. Hebrew words are also added without a leading prefix letter,
+     * so that searching for a word finds titles that contain it with "the" or "and" attached.
+     */
+    private static void addIndexWords(Set<String> target, String text) {
+        for (String word : split(normalize(text))) {
+            target.add(word);
+            if (word.length() > 2 && HEBREW_PREFIXES.indexOf(word.charAt(0)) >= 0) {
+                target.add(word.substring(1));
+            }
+        }
+    }
+}
@@ -3,10 +3,10 @@ package de.danoeh.antennapod.net.discovery;
 import android.text.TextUtils;
 import android.util.Log;
 
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
-import io.reactivex.SingleOnSubscribe;
 import io.reactivex.android.schedulers.AndroidSchedulers;
-import io.reactivex.disposables.Disposable;
 import io.reactivex.schedulers.Schedulers;
 
 import java.util.ArrayList;
@@ -14,83 +14,116 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 public class CombinedSearcher implements PodcastSearcher {
     private static final String TAG = "CombinedSearcher";
+    static final long PROVIDER_TIMEOUT_SECONDS = 10;
 
     public CombinedSearcher() {
     }
 
+    /**
+     * Waits for all providers and returns the merged results.
+     */
     public Single<List<PodcastSearchResult>> search(String query) {
-        ArrayList<Disposable> disposables = new ArrayList<>();
-        List<List<PodcastSearchResult>> singleResults = new ArrayList<>(
-                Collections.nCopies(PodcastSearcherRegistry.getSearchProviders().size(), null));
-        CountDownLatch latch = new CountDownLatch(PodcastSearcherRegistry.getSearchProviders().size());
-        for (int i = 0; i < PodcastSearcherRegistry.getSearchProviders().size(); i++) {
-            PodcastSearcherRegistry.SearcherInfo searchProviderInfo
-                    = PodcastSearcherRegistry.getSearchProviders().get(i);
+        return searchIncrementally(query)
+                .last(Collections.emptyList())
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread());
+    }
+
+    /**
+     * Searches all providers at the same time. Each time a provider answers, the merged and re-ranked results
+     * of all providers that answered so far are emitted. A provider that does not answer within
+     * {@link #PROVIDER_TIMEOUT_SECONDS} is skipped. Disposing the subscription, for example because
+     * the query changed, cancels the searches that are still running.
+     */
+    public Observable<List<PodcastSearchResult>> searchIncrementally(String query) {
+        return searchIncrementally(query, PodcastSearcherRegistry.getSearchProviders(), Schedulers.computation())
+                .observeOn(AndroidSchedulers.mainThread());
+    }
+
+    static Observable<List<PodcastSearchResult>> searchIncrementally(String query,
+            List<PodcastSearcherRegistry.SearcherInfo> searchProviders, Scheduler timeoutScheduler) {
+        List<Observable<ProviderResults>> searches = new ArrayList<>();
+        for (int i = 0; i < searchProviders.size(); i++) {
+            PodcastSearcherRegistry.SearcherInfo searchProviderInfo = searchProviders.get(i);
             PodcastSearcher searcher = searchProviderInfo.searcher;
             if (searchProviderInfo.weight <= 0.00001f || searcher.getClass() == CombinedSearcher.class) {
-                latch.countDown();
                 continue;
             }
-            final int index = i;
-            disposables.add(searcher.search(query).subscribe(e -> {
-                        singleResults.set(index, e);
-                        latch.countDown();
-                    }, throwable -> {
-                        Log.d(TAG, Log.getStackTraceString(throwable));
-                        latch.countDown();
-                    }
-            ));
+            final int providerIndex = i;
+            searches.add(searcher.search(query)
+                    .timeout(PROVIDER_TIMEOUT_SECONDS, TimeUnit.SECONDS, timeoutScheduler)
+                    .map(results -> new ProviderResults(providerIndex, searchProviderInfo.weight, results))
+                    .onErrorReturn(throwable -> {
+                        Log.d(TAG, searcher.getName() + ": " + Log.getStackTraceString(throwable));
+                        return new ProviderResults(providerIndex, searchProviderInfo.weight,
+                                Collections.emptyList());
+                    })
+                    .toObservable());
         }
-
-        return Single.create((SingleOnSubscribe<List<PodcastSearchResult>>) subscriber -> {
-            latch.await();
-            List<PodcastSearchResult> results = weightSearchResults(singleResults);
-            subscriber.onSuccess(results);
-        })
-                .doOnDispose(() -> {
-                    for (Disposable disposable : disposables) {
-                        if (disposable != null) {
-                            disposable.dispose();
-                        }
-                    }
+        return Observable.merge(searches)
+                .scanWith(SearchResultRanking::new, (ranking, providerResults) -> {
+                    ranking.add(providerResults);
+                    return ranking;
                 })
-                .subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread());
+                .skip(1) // The empty initial ranking
+                .map(SearchResultRanking::getResults);
     }
 
-    private List<PodcastSearchResult> weightSearchResults(List<List<PodcastSearchResult>> singleResults) {
-        HashMap<String, Float> resultRanking = new HashMap<>();
-        HashMap<String, PodcastSearchResult> urlToResult = new HashMap<>();
-        for (int i = 0; i < singleResults.size(); i++) {
-            float providerPriority = PodcastSearcherRegistry.getSearchProviders().get(i).weight;
-            List<PodcastSearchResult> providerResults = singleResults.get(i);
-            if (providerResults == null) {
-                continue;
-            }
-            for (int position = 0; position < providerResults.size(); position++) {
-                PodcastSearchResult result = providerResults.get(position);
-                urlToResult.put(result.feedUrl, result);
+    static class ProviderResults {
+        final int providerIndex;
+        final float weight;
+        final List<PodcastSearchResult> results;
+
+        ProviderResults(int providerIndex, float weight, List<PodcastSearchResult> results) {
+            this.providerIndex = providerIndex;
+            this.weight = weight;
+            this.results = results;
+        }
+    }
+
+    /**
+     * Weights the results of the providers. A result gets a higher score the higher it is ranked by a provider
+     * and the more providers found it. The results are always combined in the order of the providers in the
+     * registry, so the ranking does not depend on the order in which the providers answered.
+     */
+    static class SearchResultRanking {
+        private final SortedMap<Integer, ProviderResults> resultsByProvider = new TreeMap<>();
 
-                float ranking = 0;
-                if (resultRanking.containsKey(result.feedUrl)) {
-                    ranking = resultRanking.get(result.feedUrl);
+        void add(ProviderResults providerResults) {
+            resultsByProvider.put(providerResults.providerIndex, providerResults);
+        }
+
+        List<PodcastSearchResult> getResults() {
+            Map<String, Float> resultRanking = new HashMap<>();
+            Map<String, PodcastSearchResult> urlToResult = new HashMap<>();
+            for (ProviderResults providerResults : resultsByProvider.values()) {
+                for (int position = 0; position < providerResults.results.size(); position++) {
+                    PodcastSearchResult result = providerResults.results.get(position);
+                    urlToResult.put(result.feedUrl, result);
+
+                    float ranking = 0;
+                    if (resultRanking.containsKey(result.feedUrl)) {
+                        ranking = resultRanking.get(result.feedUrl);
+                    }
+                    ranking += providerResults.weight * (1.f / (position + 1.f));
+                    resultRanking.put(result.feedUrl, ranking);
                 }
-                ranking += 1.f / (position + 1.f);
-                resultRanking.put(result.feedUrl, ranking * providerPriority);
             }
-        }
-        List<Map.Entry<String, Float>> sortedResults = new ArrayList<>(resultRanking.entrySet());
-        Collections.sort(sortedResults, (o1, o2) -> Double.compare(o2.getValue(), o1.getValue()));
+            List<Map.Entry<String, Float>> sortedResults = new ArrayList<>(resultRanking.entrySet());
+            Collections.sort(sortedResults, (o1, o2) -> Double.compare(o2.getValue(), o1.getValue()));
 
-        List<PodcastSearchResult> results = new ArrayList<>();
-        for (Map.Entry<String, Float> res : sortedResults) {
-            results.add(urlToResult.get(res.getKey()));
+            List<PodcastSearchResult> results = new ArrayList<>();
+            for (Map.Entry<String, Float> res : sortedResults) {
+                results.add(urlToResult.get(res.getKey()));
+            }
+            return results;
         }
-        return results;
     }
 
     @Override
@@ -0,0 +1,51 @@
+package de.danoeh.antennapod.making_history;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serves a file from memory and answers conditional requests like a real server.
+ * The requests never leave the {@link OkHttpClient} returned by {@link #client()}.
+ */
+class FakeHttpServer {
+    final List<Request> requests = new ArrayList<>();
+    private final MediaType contentType;
+    byte[] body;
+    String etag;
+    int code = 200;
+    int notModifiedCount = 0;
+
+    FakeHttpServer(String contentType, byte[] body, String etag) {
+        this.contentType = MediaType.parse(contentType);
+        this.body = body;
+        this.etag = etag;
+    }
+
+    OkHttpClient client() {
+        return new OkHttpClient.Builder().addInterceptor(chain -> {
+            Request request = chain.request();
+            requests.add(request);
+            Response.Builder response = new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .message("");
+            if (etag != null && etag.equals(request.header("If-None-Match"))) {
+                notModifiedCount++;
+                return response.code(304).body(ResponseBody.create(null, new byte[0])).build();
+            }
+            if (etag != null) {
+                response.header("ETag", etag);
+            }
+            return response.code(code)
+                    .body(ResponseBody.create(contentType, body))
+                    .build();
+        }).build();
+    }
+}
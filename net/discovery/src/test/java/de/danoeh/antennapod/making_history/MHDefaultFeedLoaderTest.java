@@ -0,0 +1,156 @@
+package de.danoeh.antennapod.making_history;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import de.danoeh.antennapod.core.ClientConfig;
+import de.danoeh.antennapod.core.export.opml.OpmlElement;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class MHDefaultFeedLoaderTest {
+    private static final byte[] OPML = "<opml version=\"2.0\"></opml>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] UPDATED_OPML = "<opml version=\"2.0\"><body/></opml>".getBytes(StandardCharsets.UTF_8);
+
+    private SharedPreferences prefs;
+    private final List<byte[]> imported = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        ClientConfig.USER_AGENT = "AntennaPod/Test";
+        Context context = RuntimeEnvironment.getApplication();
+        prefs = context.getSharedPreferences("MHDefaultFeedLoaderTest", Context.MODE_PRIVATE);
+        prefs.edit().clear().commit();
+        imported.clear();
+    }
+
+    @Test
+    public void testSelectNewFeeds() {
+        List<OpmlElement> elements = Arrays.asList(
+                element("https://example.com/new.xml"),
+                element("https://example.com/subscribed.xml"),
+                element("https://example.com/unwanted.xml"),
+                element(""),
+                element("https://example.com/new.xml"),
+                element("https://example.com/other.xml"));
+        MHDefaultFeedLoader.Selection selection = MHDefaultFeedLoader.selectNewFeeds(elements,
+                Collections.singleton("https://example.com/unwanted.xml"),
+                Collections.singletonList("https://example.com/subscribed.xml"));
+
+        assertEquals(Arrays.asList(elements.get(0), elements.get(5)), selection.newFeeds);
+        assertEquals(new HashSet<>(Arrays.asList("https://example.com/new.xml", "https://example.com/subscribed.xml",
+                "https://example.com/unwanted.xml", "https://example.com/other.xml")), selection.handledUrls);
+    }
+
+    @Test
+    public void testSelectNewFeedsMatchesNormalizedUrls() {
+        List<OpmlElement> elements = Arrays.asList(
+                element("http://example.com/podcast/feed.xml"),
+                element("https://Example.com/Removed/"),
+                element("https://example.com/podcast/feed.xml?page=2"));
+        MHDefaultFeedLoader.Selection selection = MHDefaultFeedLoader.selectNewFeeds(elements,
+                Collections.singleton("http://example.com/removed"),
+                Collections.singletonList("https://example.com/podcast/feed.xml/"));
+
+        assertEquals(Collections.singletonList(elements.get(2)), selection.newFeeds);
+        assertEquals(3, selection.handledUrls.size());
+    }
+
+    @Test
+    public void testFirstImportStoresDigestAndEtag() throws Exception {
+        FakeHttpServer server = opmlServer("\"v1\"");
+        assertTrue(MHDefaultFeedLoader.importDefaultOpml(prefs, server.client(), imported::add));
+
+        assertEquals(1, imported.size());
+        assertArrayEquals(OPML, imported.get(0));
+        assertNull(server.requests.get(0).header("If-None-Match"));
+        assertEquals("\"v1\"", prefs.getString("OPML_ETAG", null));
+        assertEquals(64, prefs.getString("OPML_DIGEST", "").length());
+    }
+
+    @Test
+    public void testNotModifiedSkipsImport() throws Exception {
+        FakeHttpServer server = opmlServer("\"v1\"");
+        MHDefaultFeedLoader.importDefaultOpml(prefs, server.client(), imported::add);
+        String digest = prefs.getString("OPML_DIGEST", null);
+
+        assertFalse(MHDefaultFeedLoader.importDefaultOpml(prefs, server.client(), imported::add));
+        assertEquals("\"v1\"", server.requests.get(1).header("If-None-Match"));
+        assertEquals(1, server.notModifiedCount);
+        assertEquals(1, imported.size());
+        assertEquals(digest, prefs.getString("OPML_DIGEST", null));
+    }
+
+    @Test
+    public void testSameContentSkipsImport() throws Exception {
+        FakeHttpServer server = opmlServer("\"v1\"");
+        MHDefaultFeedLoader.importDefaultOpml(prefs, server.client(), imported::add);
+
+        // The server changed its ETag, but not the file
+        server.etag = "\"v2\"";
+        assertFalse(MHDefaultFeedLoader.importDefaultOpml(prefs, server.client(), imported::add));
+        assertEquals(1, imported.size());
+        assertEquals("\"v2\"", prefs.getString("OPML_ETAG", null));
+
+        server.body = UPDATED_OPML;
+        server.etag = "\"v3\"";
+        assertTrue(MHDefaultFeedLoader.importDefaultOpml(prefs, server.client(), imported::add));
+        assertEquals(2, imported.size());
+        assertArrayEquals(UPDATED_OPML, imported.get(1));
+    }
+
+    @Test
+    public void testFailedImportIsRetried() throws Exception {
+        FakeHttpServer server = opmlServer("\"v1\"");
+        try {
+            MHDefaultFeedLoader.importDefaultOpml(prefs, server.client(), opmlData -> {
+                throw new IOException("Database not available");
+            });
+            fail("Expected the import error to be reported");
+        } catch (IOException expected) {
+            // Expected
+        }
+        assertNull(prefs.getString("OPML_DIGEST", null));
+        assertNull(prefs.getString("OPML_ETAG", null));
+
+        assertTrue(MHDefaultFeedLoader.importDefaultOpml(prefs, server.client(), imported::add));
+        assertNull(server.requests.get(1).header("If-None-Match"));
+        assertEquals(1, imported.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testServerError() throws Exception {
+        FakeHttpServer server = opmlServer(null);
+        server.code = 500;
+        MHDefaultFeedLoader.importDefaultOpml(prefs, server.client(), imported::add);
+    }
+
+    private static FakeHttpServer opmlServer(String etag) {
+        return new FakeHttpServer("text/x-opml", OPML, etag);
+    }
+
+    private static OpmlElement element(String xmlUrl) {
+        OpmlElement element = new OpmlElement();
+        element.setText(xmlUrl);
+        element.setXmlUrl(xmlUrl);
+        return element;
+    }
+}
@@ -0,0 +1,94 @@
+package de.danoeh.antennapod.making_history;
+
+import de.danoeh.antennapod.core.ClientConfig;
+import io.reactivex.schedulers.Schedulers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+public class MHDiscoverListLoaderTest {
+    private static final byte[] CATALOG = "{\"items\": [{\"title\": \"History\", \"category\": \"Top\"}]}"
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] UPDATED_CATALOG = ("{\"items\": [{\"title\": \"History\", \"category\": \"Top\"},"
+            + " {\"title\": \"Science\", \"category\": \"Top\"}]}").getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        ClientConfig.USER_AGENT = "AntennaPod/Test";
+        MHDiscoverListLoader.clearMemoryCache();
+    }
+
+    @After
+    public void tearDown() {
+        MHDiscoverListLoader.clearMemoryCache();
+    }
+
+    @Test
+    public void testColdStartUsesCacheAndRevalidates() throws Exception {
+        File cacheDirectory = folder.newFolder();
+        FakeHttpServer server = catalogServer("\"v1\"");
+        assertEquals(1, loader(server, cacheDirectory).getCatalog().getPodcasts().size());
+        assertEquals(1, server.requests.size());
+        assertNull(server.requests.get(0).header("If-None-Match"));
+
+        // After a restart, the cached copy is used and revalidated
+        MHDiscoverListLoader.clearMemoryCache();
+        assertEquals(1, loader(server, cacheDirectory).getCatalog().getPodcasts().size());
+        assertEquals(2, server.requests.size());
+        assertEquals("\"v1\"", server.requests.get(1).header("If-None-Match"));
+        assertEquals(1, server.notModifiedCount);
+
+        // Within the revalidation interval, the network is not used at all
+        assertEquals(1, loader(server, cacheDirectory).getCatalog().getPodcasts().size());
+        assertEquals(2, server.requests.size());
+    }
+
+    @Test
+    public void testRevalidationReplacesCatalog() throws Exception {
+        File cacheDirectory = folder.newFolder();
+        FakeHttpServer server = catalogServer("\"v1\"");
+        loader(server, cacheDirectory).getCatalog();
+
+        server.body = UPDATED_CATALOG;
+        server.etag = "\"v2\"";
+        MHDiscoverListLoader.clearMemoryCache();
+        // The cached copy is returned at once, the update is used from then on
+        assertEquals(1, loader(server, cacheDirectory).getCatalog().getPodcasts().size());
+        assertEquals(2, loader(server, cacheDirectory).getCatalog().getPodcasts().size());
+
+        MHDiscoverListLoader.clearMemoryCache();
+        server.requests.clear();
+        assertEquals(2, loader(server, cacheDirectory).getCatalog().getPodcasts().size());
+        assertEquals("\"v2\"", server.requests.get(0).header("If-None-Match"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNoCacheAndServerError() throws Exception {
+        FakeHttpServer server = catalogServer(null);
+        server.code = 500;
+        loader(server, folder.newFolder()).getCatalog();
+    }
+
+    private static FakeHttpServer catalogServer(String etag) {
+        return new FakeHttpServer("application/json", CATALOG, etag);
+    }
+
+    private static MHDiscoverListLoader loader(FakeHttpServer server, File cacheDirectory) {
+        return new MHDiscoverListLoader(server.client(), cacheDirectory, Schedulers.trampoline());
+    }
+}
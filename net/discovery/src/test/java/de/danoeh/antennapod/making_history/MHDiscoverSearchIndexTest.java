@@ -0,0 +1,64 @@
+package de.danoeh.antennapod.making_history;
+
+import de.danoeh.antennapod.net.discovery.PodcastSearchResult;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class MHDiscoverSearchIndexTest {
+
+    @Test
+    public void testPrefixSearch() throws JSONException {
+        MHDiscoverSearchIndex index = new MHDiscoverSearchIndex(Arrays.asList(
+                podcast("The History Hour", "Top"),
+                podcast("Science Café", "Science"),
+                podcast("Histoire", null)));
+        assertEquals(Arrays.asList("The History Hour", "Histoire"), titles(index.search("hist")));
+        assertEquals(Arrays.asList("The History Hour"), titles(index.search("HISTORY h")));
+        assertEquals(Arrays.asList("Science Café"), titles(index.search("cafe")));
+        assertEquals(Arrays.asList("Science Café"), titles(index.search("science")));
+        assertEquals(Arrays.asList("The History Hour"), titles(index.search("top")));
+        assertEquals(0, index.search("story").size());
+        assertEquals(3, index.search(" ").size());
+    }
+
+    @Test
+    public void testHebrewNormalization() throws JSONException {
+        MHDiscoverSearchIndex index = new MHDiscoverSearchIndex(Arrays.asList(
+                podcast("הסִיפּוּר", null), // "The story" with vowel points
+                podcast("שלום צה״ל", null))); // "Shalom IDF" with gershayim
+        // Without vowel points and without the leading "the"
+        assertEquals(1, index.search("סיפור").size());
+        // A final letter matches its regular form while typing
+        assertEquals(1, index.search("שלומ").size());
+        // Abbreviations match with or without quotes
+        assertEquals(1, index.search("צהל").size());
+        assertEquals(1, index.search("צה\"ל").size());
+    }
+
+    private static PodcastSearchResult podcast(String title, String category) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("title", title);
+        if (category != null) {
+            json.put("category", category);
+        }
+        return PodcastSearchResult.fromMakingHistoryDiscover(json);
+    }
+
+    private static List<String> titles(List<PodcastSearchResult> results) {
+        List<String> titles = new ArrayList<>();
+        for (PodcastSearchResult result : results) {
+            titles.add(result.title);
+        }
+        return titles;
+    }
+}
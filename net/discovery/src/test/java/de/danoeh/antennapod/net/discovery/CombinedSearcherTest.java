@@ -0,0 +1,178 @@
+package de.danoeh.antennapod.net.discovery;
+
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+public class CombinedSearcherTest {
+    /** The weights of the providers in the registry. Index 1 is the combined searcher, index 2 is disabled. */
+    private static final float[] WEIGHTS = {2.f, 1.f, 0.f, 1.f, 1.f, 1.f};
+
+    @Test
+    public void testRankingDoesNotDependOnArrivalOrder() throws JSONException {
+        List<List<PodcastSearchResult>> providerResults = Arrays.asList(
+                results(0, "a", "b", "c"),
+                null,
+                null,
+                results(3, "c", "d", "a", "e"),
+                results(4, "d", "c", "f"),
+                results(5, "b", "g", "d", "h", "a"));
+        List<PodcastSearchResult> expected = weightSearchResultsLikeBefore(providerResults);
+        assertEquals(8, expected.size());
+
+        for (List<Integer> order : permutations(Arrays.asList(0, 3, 4, 5))) {
+            CombinedSearcher.SearchResultRanking ranking = new CombinedSearcher.SearchResultRanking();
+            for (int providerIndex : order) {
+                ranking.add(new CombinedSearcher.ProviderResults(providerIndex, WEIGHTS[providerIndex],
+                        providerResults.get(providerIndex)));
+            }
+            List<PodcastSearchResult> results = ranking.getResults();
+            assertEquals(order.toString(), expected.size(), results.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertSame(order.toString(), expected.get(i), results.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testProviderTimeout() throws JSONException {
+        List<PodcastSearchResult> answered = results(1, "a", "b");
+        List<PodcastSearcherRegistry.SearcherInfo> providers = Arrays.asList(
+                new PodcastSearcherRegistry.SearcherInfo(new FakeSearcher(Single.never()), 2.f),
+                new PodcastSearcherRegistry.SearcherInfo(new FakeSearcher(Single.just(answered)), 1.f));
+        TestScheduler scheduler = new TestScheduler();
+
+        TestObserver<List<PodcastSearchResult>> observer =
+                CombinedSearcher.searchIncrementally("query", providers, scheduler).test();
+        observer.assertValueCount(1);
+        observer.assertNotComplete();
+
+        scheduler.advanceTimeBy(CombinedSearcher.PROVIDER_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        observer.assertComplete();
+        observer.assertValueCount(2);
+        assertEquals(answered, observer.values().get(1));
+    }
+
+    @Test
+    public void testAllProvidersTimeOut() {
+        List<PodcastSearcherRegistry.SearcherInfo> providers = Collections.singletonList(
+                new PodcastSearcherRegistry.SearcherInfo(new FakeSearcher(Single.never()), 1.f));
+        TestScheduler scheduler = new TestScheduler();
+
+        TestObserver<List<PodcastSearchResult>> observer =
+                CombinedSearcher.searchIncrementally("query", providers, scheduler).test();
+        observer.assertNoValues();
+
+        scheduler.advanceTimeBy(CombinedSearcher.PROVIDER_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        observer.assertComplete();
+        observer.assertValue(Collections.emptyList());
+    }
+
+    /**
+     * The weighting that was used before the results were streamed, with the weights of {@link #WEIGHTS}.
+     */
+    private static List<PodcastSearchResult> weightSearchResultsLikeBefore(
+            List<List<PodcastSearchResult>> singleResults) {
+        HashMap<String, Float> resultRanking = new HashMap<>();
+        HashMap<String, PodcastSearchResult> urlToResult = new HashMap<>();
+        for (int i = 0; i < singleResults.size(); i++) {
+            float providerPriority = WEIGHTS[i];
+            List<PodcastSearchResult> providerResults = singleResults.get(i);
+            if (providerResults == null) {
+                continue;
+            }
+            for (int position = 0; position < providerResults.size(); position++) {
+                PodcastSearchResult result = providerResults.get(position);
+                urlToResult.put(result.feedUrl, result);
+
+                float ranking = 0;
+                if (resultRanking.containsKey(result.feedUrl)) {
+                    ranking = resultRanking.get(result.feedUrl);
+                }
+                ranking += 1.f / (position + 1.f);
+                resultRanking.put(result.feedUrl, ranking * providerPriority);
+            }
+        }
+        List<Map.Entry<String, Float>> sortedResults = new ArrayList<>(resultRanking.entrySet());
+        Collections.sort(sortedResults, (o1, o2) -> Double.compare(o2.getValue(), o1.getValue()));
+
+        List<PodcastSearchResult> results = new ArrayList<>();
+        for (Map.Entry<String, Float> res : sortedResults) {
+            results.add(urlToResult.get(res.getKey()));
+        }
+        return results;
+    }
+
+    private static List<PodcastSearchResult> results(int provider, String... names) throws JSONException {
+        List<PodcastSearchResult> results = new ArrayList<>();
+        for (String name : names) {
+            JSONObject json = new JSONObject();
+            json.put("title", name + " from " + provider);
+            json.put("feed", "https://example.com/" + name + ".xml");
+            results.add(PodcastSearchResult.fromMakingHistoryDiscover(json));
+        }
+        return results;
+    }
+
+    private static List<List<Integer>> permutations(List<Integer> values) {
+        List<List<Integer>> permutations = new ArrayList<>();
+        if (values.isEmpty()) {
+            permutations.add(new ArrayList<>());
+            return permutations;
+        }
+        for (int i = 0; i < values.size(); i++) {
+            List<Integer> rest = new ArrayList<>(values);
+            Integer first = rest.remove(i);
+            for (List<Integer> permutation : permutations(rest)) {
+                permutation.add(0, first);
+                permutations.add(permutation);
+            }
+        }
+        return permutations;
+    }
+
+    private static class FakeSearcher implements PodcastSearcher {
+        private final Single<List<PodcastSearchResult>> results;
+
+        FakeSearcher(Single<List<PodcastSearchResult>> results) {
+            this.results = results;
+        }
+
+        @Override
+        public Single<List<PodcastSearchResult>> search(String query) {
+            return results;
+        }
+
+        @Override
+        public Single<String> lookupUrl(String resultUrl) {
+            return Single.just(resultUrl);
+        }
+
+        @Override
+        public boolean urlNeedsLookup(String resultUrl) {
+            return false;
+        }
+
+        @Override
+        public String getName() {
+            return "Fake";
+        }
+    }
+}
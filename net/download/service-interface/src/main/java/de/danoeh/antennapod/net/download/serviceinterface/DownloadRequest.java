@@ -22,6 +22,8 @@ public class DownloadRequest implements Parcelable {
     private String username;
     private String password;
     private String lastModified;
+    private String etag;
+    private String contentDigest;
     private final boolean deleteOnFailure;
     private final long feedfileId;
     private final int feedfileType;
@@ -45,12 +47,16 @@ public class DownloadRequest implements Parcelable {
         this(builder.destination, builder.source, builder.title, builder.feedfileId, builder.feedfileType,
              builder.lastModified, builder.deleteOnFailure, builder.username, builder.password, false,
              builder.arguments != null ? builder.arguments : new Bundle(), builder.initiatedByUser);
+        this.etag = builder.etag;
+        this.contentDigest = builder.contentDigest;
     }
 
     private DownloadRequest(Parcel in) {
         this(in.readString(), in.readString(), in.readString(), in.readLong(), in.readInt(), in.readString(),
              in.readByte() > 0, nullIfEmpty(in.readString()), nullIfEmpty(in.readString()), in.readByte() > 0,
              in.readBundle(), in.readByte() > 0);
+        etag = in.readString();
+        contentDigest = in.readString();
     }
 
     private DownloadRequest(String destination, String source, String title, long feedfileId, int feedfileType,
@@ -94,6 +100,8 @@ public class DownloadRequest implements Parcelable {
         dest.writeByte((mediaEnqueued) ? (byte) 1 : 0);
         dest.writeBundle(arguments);
         dest.writeByte(initiatedByUser ? (byte) 1 : 0);
+        dest.writeString(etag);
+        dest.writeString(contentDigest);
     }
 
     private static String nonNullString(String str) {
@@ -124,6 +132,9 @@ public class DownloadRequest implements Parcelable {
 
         if (lastModified != null ? !lastModified.equals(that.lastModified) : that.lastModified != null)
             return false;
+        if (etag != null ? !etag.equals(that.etag) : that.etag != null) return false;
+        if (contentDigest != null ? !contentDigest.equals(that.contentDigest) : that.contentDigest != null)
+            return false;
         if (deleteOnFailure != that.deleteOnFailure) return false;
         if (feedfileId != that.feedfileId) return false;
         if (feedfileType != that.feedfileType) return false;
@@ -151,6 +162,8 @@ public class DownloadRequest implements Parcelable {
         result = 31 * result + (username != null ? username.hashCode() : 0);
         result = 31 * result + (password != null ? password.hashCode() : 0);
         result = 31 * result + (lastModified != null ? lastModified.hashCode() : 0);
+        result = 31 * result + (etag != null ? etag.hashCode() : 0);
+        result = 31 * result + (contentDigest != null ? contentDigest.hashCode() : 0);
         result = 31 * result + (deleteOnFailure ? 1 : 0);
         result = 31 * result + (int) (feedfileId ^ (feedfileId >>> 32));
         result = 31 * result + feedfileType;
@@ -237,6 +250,29 @@ public class DownloadRequest implements Parcelable {
         return lastModified;
     }
 
+    public DownloadRequest setEtag(@Nullable String etag) {
+        this.etag = etag;
+        return this;
+    }
+
+    @Nullable
+    public String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Sets the digest of the downloaded document. Before the download, this is the digest of the last download.
+     */
+    public DownloadRequest setContentDigest(@Nullable String contentDigest) {
+        this.contentDigest = contentDigest;
+        return this;
+    }
+
+    @Nullable
+    public String getContentDigest() {
+        return contentDigest;
+    }
+
     public boolean isDeleteOnFailure() {
         return deleteOnFailure;
     }
@@ -268,6 +304,8 @@ public class DownloadRequest implements Parcelable {
         private String username;
         private String password;
         private String lastModified;
+        private String etag;
+        private String contentDigest;
         private boolean deleteOnFailure = false;
         private final long feedfileId;
         private final int feedfileType;
@@ -299,6 +337,8 @@ public class DownloadRequest implements Parcelable {
         public void setForce(boolean force) {
             if (force) {
                 lastModified = null;
+                etag = null;
+                contentDigest = null;
             }
         }
 
@@ -312,6 +352,16 @@ public class DownloadRequest implements Parcelable {
             return this;
         }
 
+        public Builder etag(String etag) {
+            this.etag = etag;
+            return this;
+        }
+
+        public Builder contentDigest(String contentDigest) {
+            this.contentDigest = contentDigest;
+            return this;
+        }
+
         public Builder withAuthentication(String username, String password) {
             this.username = username;
             this.password = password;
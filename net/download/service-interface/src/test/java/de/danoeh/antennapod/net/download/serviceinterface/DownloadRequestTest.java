@@ -70,6 +70,9 @@ public class DownloadRequestTest {
             FeedMedia item1 = createFeedItem(1);
             DownloadRequest request1 = new DownloadRequest.Builder(destStr, item1)
                     .withAuthentication(username1, password1)
+                    .lastModified("Wed, 08 Oct 2014 09:00:00 GMT")
+                    .etag("\"etag1\"")
+                    .contentDigest("digest1")
                     .build();
 
             FeedMedia item2 = createFeedItem(2);
@@ -102,6 +105,12 @@ public class DownloadRequestTest {
         assertEquals(message + " - size", toParcel.size(), fromParcel.size());
         assertEquals(message + " - source", toParcel.get(1).getSource(), fromParcel.get(1).getSource());
         assertEquals(message + " - password", toParcel.get(0).getPassword(), fromParcel.get(0).getPassword());
+        assertEquals(message + " - last modified", toParcel.get(0).getLastModified(),
+                fromParcel.get(0).getLastModified());
+        assertEquals(message + " - etag", toParcel.get(0).getEtag(), fromParcel.get(0).getEtag());
+        assertEquals(message + " - content digest", toParcel.get(0).getContentDigest(),
+                fromParcel.get(0).getContentDigest());
+        assertEquals(message + " - no etag", toParcel.get(1).getEtag(), fromParcel.get(1).getEtag());
         assertEquals(message + " - argument", toString(toParcel.get(0).getArguments()),
                 toString(fromParcel.get(0).getArguments()));
     }
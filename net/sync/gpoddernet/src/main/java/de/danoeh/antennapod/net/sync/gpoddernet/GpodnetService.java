@@ -47,7 +47,6 @@ import okhttp3.ResponseBody;
 public class GpodnetService implements ISyncService {
     public static final String TAG = "GpodnetService";
     private static final String DEFAULT_BASE_HOST = "gpodder.net";
-    private static final int UPLOAD_BULK_SIZE = 30;
     private static final MediaType TEXT = MediaType.parse("plain/text; charset=utf-8");
     private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
     private String baseScheme;
@@ -279,24 +278,13 @@ public class GpodnetService implements ISyncService {
     @Override
     public UploadChangesResponse uploadEpisodeActions(List<EpisodeAction> episodeActions) throws SyncServiceException {
         requireLoggedIn();
-        UploadChangesResponse response = null;
-        for (int i = 0; i < episodeActions.size(); i += UPLOAD_BULK_SIZE) {
-            response = uploadEpisodeActionsPartial(episodeActions,
-                    i, Math.min(episodeActions.size(), i + UPLOAD_BULK_SIZE));
-        }
-        return response;
-    }
-
-    private UploadChangesResponse uploadEpisodeActionsPartial(List<EpisodeAction> episodeActions, int from, int to)
-            throws SyncServiceException {
         try {
-            Log.d(TAG, "Uploading partial actions " + from + " to " + to + " of " + episodeActions.size());
+            Log.d(TAG, "Uploading " + episodeActions.size() + " actions");
             URL url = new URI(baseScheme, null, baseHost, basePort,
                     String.format("/api/2/episodes/%s.json", username), null, null).toURL();
 
             final JSONArray list = new JSONArray();
-            for (int i = from; i < to; i++) {
-                EpisodeAction episodeAction = episodeActions.get(i);
+            for (EpisodeAction episodeAction : episodeActions) {
                 JSONObject obj = episodeAction.writeToJsonObject();
                 if (obj != null) {
                     obj.put("device", deviceId);
@@ -26,7 +26,6 @@ import java.util.HashMap;
 import java.util.List;
 
 public class NextcloudSyncService implements ISyncService {
-    private static final int UPLOAD_BULK_SIZE = 30;
     private final OkHttpClient httpClient;
     private final HostnameParser hostname;
     private final String username;
@@ -101,19 +100,9 @@ public class NextcloudSyncService implements ISyncService {
     @Override
     public UploadChangesResponse uploadEpisodeActions(List<EpisodeAction> queuedEpisodeActions)
             throws NextcloudSynchronizationServiceException {
-        for (int i = 0; i < queuedEpisodeActions.size(); i += UPLOAD_BULK_SIZE) {
-            uploadEpisodeActionsPartial(queuedEpisodeActions,
-                    i, Math.min(queuedEpisodeActions.size(), i + UPLOAD_BULK_SIZE));
-        }
-        return new NextcloudGpodderEpisodeActionPostResponse(System.currentTimeMillis() / 1000);
-    }
-
-    private void uploadEpisodeActionsPartial(List<EpisodeAction> queuedEpisodeActions, int from, int to)
-            throws NextcloudSynchronizationServiceException {
         try {
             final JSONArray list = new JSONArray();
-            for (int i = from; i < to; i++) {
-                EpisodeAction episodeAction = queuedEpisodeActions.get(i);
+            for (EpisodeAction episodeAction : queuedEpisodeActions) {
                 JSONObject obj = episodeAction.writeToJsonObject();
                 if (obj != null) {
                     list.put(obj);
@@ -127,6 +116,7 @@ public class NextcloudSyncService implements ISyncService {
             e.printStackTrace();
             throw new NextcloudSynchronizationServiceException(e);
         }
+        return new NextcloudGpodderEpisodeActionPostResponse(System.currentTimeMillis() / 1000);
     }
 
     private String performRequest(HttpUrl.Builder url, String method, RequestBody body) throws IOException {
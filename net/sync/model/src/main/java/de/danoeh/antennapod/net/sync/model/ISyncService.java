@@ -13,6 +13,9 @@ public interface ISyncService {
 
     EpisodeActionChanges getEpisodeActionChanges(long lastSync) throws SyncServiceException;
 
+    /**
+     * Uploads the actions in a single request. Callers split large lists into chunks.
+     */
     UploadChangesResponse uploadEpisodeActions(List<EpisodeAction> queuedEpisodeActions)
             throws SyncServiceException;
 
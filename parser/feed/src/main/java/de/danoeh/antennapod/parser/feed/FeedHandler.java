@@ -6,7 +6,10 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -18,19 +21,44 @@ import de.danoeh.antennapod.model.feed.Feed;
 public class FeedHandler {
     public FeedHandlerResult parseFeed(Feed feed) throws SAXException, IOException,
             ParserConfigurationException, UnsupportedFeedtypeException {
-        TypeGetter tg = new TypeGetter();
-        TypeGetter.Type type = tg.getType(feed);
-        SyndHandler handler = new SyndHandler(feed, type);
+        try (InputStream inputStream = new FileInputStream(new File(feed.getFile_url()))) {
+            return parseFeed(feed, inputStream);
+        } catch (FileNotFoundException e) {
+            throw new UnsupportedFeedtypeException(TypeGetter.Type.INVALID);
+        }
+    }
+
+    /**
+     * Parses the feed while reading it from the stream, for example directly from a network connection.
+     * The type of the feed is detected from the root element during the same pass.
+     * If the stream fails before the root element was read, the feed type is reported as invalid.
+     * The stream is not closed.
+     */
+    public FeedHandlerResult parseFeed(Feed feed, InputStream inputStream) throws SAXException, IOException,
+            ParserConfigurationException, UnsupportedFeedtypeException {
+        SyndHandler handler = new SyndHandler(feed);
 
         SAXParserFactory factory = SAXParserFactory.newInstance();
         factory.setNamespaceAware(true);
         SAXParser saxParser = factory.newSAXParser();
-        File file = new File(feed.getFile_url());
-        Reader inputStreamReader = new XmlStreamReader(file);
-        InputSource inputSource = new InputSource(inputStreamReader);
 
-        saxParser.parse(inputSource, handler);
-        inputStreamReader.close();
+        try {
+            Reader inputStreamReader = new XmlStreamReader(inputStream);
+            saxParser.parse(new InputSource(inputStreamReader), handler);
+        } catch (IOException e) {
+            if (handler.getType() == null) {
+                throw new UnsupportedFeedtypeException(TypeGetter.Type.INVALID);
+            }
+            throw e;
+        } catch (SAXException e) {
+            if (e.getException() instanceof UnsupportedFeedtypeException) {
+                throw (UnsupportedFeedtypeException) e.getException();
+            } else if (handler.getType() == null) {
+                // Not even the root element could be read, the document is most likely HTML
+                throw new UnsupportedFeedtypeException(TypeGetter.Type.INVALID, "html");
+            }
+            throw e;
+        }
         return new FeedHandlerResult(handler.state.feed, handler.state.alternateUrls);
     }
 }
@@ -23,18 +23,42 @@ import de.danoeh.antennapod.parser.feed.namespace.Atom;
 public class SyndHandler extends DefaultHandler {
     private static final String TAG = "SyndHandler";
     private static final String DEFAULT_PREFIX = "";
+    private static final String ATOM_ROOT = "feed";
+    private static final String RSS_ROOT = "rss";
+    private static final String XML_NSURI = "http://www.w3.org/XML/1998/namespace";
     public final HandlerState state;
+    private TypeGetter.Type type;
 
     public SyndHandler(Feed feed, TypeGetter.Type type) {
         state = new HandlerState(feed);
+        this.type = type;
         if (type == TypeGetter.Type.RSS20 || type == TypeGetter.Type.RSS091) {
             state.defaultNamespaces.push(new Rss20());
         }
     }
 
+    /**
+     * Creates a handler that detects the type of the feed from the root element,
+     * so the document only needs to be read once.
+     */
+    public SyndHandler(Feed feed) {
+        state = new HandlerState(feed);
+        this.type = null;
+    }
+
+    /**
+     * Returns the type of the feed, or null if it was not detected yet.
+     */
+    public TypeGetter.Type getType() {
+        return type;
+    }
+
     @Override
     public void startElement(String uri, String localName, String qualifiedName,
             Attributes attributes) throws SAXException {
+        if (type == null) {
+            detectType(localName, attributes);
+        }
         state.contentBuf = new StringBuilder();
         Namespace handler = getHandlingNamespace(uri, qualifiedName);
         if (handler != null) {
@@ -117,6 +141,41 @@ public class SyndHandler extends DefaultHandler {
         }
     }
 
+    /**
+     * Detects the type of the feed from its root element.
+     */
+    private void detectType(String rootElement, Attributes attributes) throws SAXException {
+        switch (rootElement) {
+            case ATOM_ROOT:
+                state.feed.setType(Feed.TYPE_ATOM1);
+                Log.d(TAG, "Recognized type Atom");
+                String strLang = attributes.getValue(XML_NSURI, "lang");
+                if (strLang != null) {
+                    state.feed.setLanguage(strLang);
+                }
+                type = TypeGetter.Type.ATOM;
+                return;
+            case RSS_ROOT:
+                String strVersion = attributes.getValue("version");
+                if (strVersion == null || strVersion.equals("2.0")) {
+                    state.feed.setType(Feed.TYPE_RSS2);
+                    Log.d(TAG, "Recognized type RSS 2.0");
+                    type = TypeGetter.Type.RSS20;
+                } else if (strVersion.equals("0.91") || strVersion.equals("0.92")) {
+                    Log.d(TAG, "Recognized type RSS 0.91/0.92");
+                    type = TypeGetter.Type.RSS091;
+                } else {
+                    throw new SAXException(new UnsupportedFeedtypeException("Unsupported rss version"));
+                }
+                // Prefix mappings of the root element were already reported, RSS must stay below them
+                state.defaultNamespaces.insertElementAt(new Rss20(), 0);
+                return;
+            default:
+                Log.d(TAG, "Type is invalid");
+                throw new SAXException(new UnsupportedFeedtypeException(TypeGetter.Type.INVALID, rootElement));
+        }
+    }
+
     private Namespace getHandlingNamespace(String uri, String qualifiedName) {
         Namespace handler = state.namespaces.get(uri);
         if (handler == null && !state.defaultNamespaces.empty()
@@ -0,0 +1,367 @@
+package de.danoeh.antennapod.parser.feed.util;
+
+import androidx.annotation.Nullable;
+
+import java.util.Date;
+
+/**
+ * Hand-written parser for the date formats that almost all feeds use:
+ * RFC 822 dates with a numeric or well-known time zone ("Wed, 08 Oct 2014 09:00:00 +0000")
+ * and ISO 8601 dates ("2014-10-08", "2014-10-08T09:00:00Z", "2014-10-08T09:00:00.123+02:00").
+ * For these strings, it returns the same result as the format patterns in {@link DateUtils},
+ * without creating formatters or running regular expressions.
+ * Anything it does not recognize is left to the format patterns.
+ * <p/>
+ * Instances are only used by a single thread, the static entry point is thread-safe.
+ */
+final class DateScanner {
+    private static final String[] MONTHS_SHORT = {
+            "jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct", "nov", "dec"
+    };
+    private static final String[] MONTHS_LONG = {
+            "january", "february", "march", "april", "may", "june",
+            "july", "august", "september", "october", "november", "december"
+    };
+    private static final int[] DAYS_IN_MONTH = {31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+    private static final long MILLIS_PER_DAY = 24 * 60 * MILLIS_PER_MINUTE;
+
+    private final String text;
+    private int pos = 0;
+
+    private DateScanner(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Parses the date or returns null if the format is not one of the common ones.
+     */
+    @Nullable
+    static Date parse(String input) {
+        String text = input.trim();
+        if (text.isEmpty()) {
+            return null;
+        }
+        DateScanner scanner = new DateScanner(text);
+        Long millis;
+        if (text.length() >= 10 && isDigit(text.charAt(0)) && isDigit(text.charAt(3))
+                && (text.charAt(4) == '-' || text.charAt(4) == '/')) {
+            millis = scanner.scanIso8601();
+        } else {
+            millis = scanner.scanRfc822();
+        }
+        return millis == null ? null : new Date(millis);
+    }
+
+    /**
+     * [weekday, ]d[d] month yyyy HH:mm[:ss] zone
+     */
+    @Nullable
+    private Long scanRfc822() {
+        int wordEnd = pos;
+        while (wordEnd < text.length() && isWordChar(text.charAt(wordEnd))) {
+            wordEnd++;
+        }
+        if (wordEnd > pos && wordEnd + 1 < text.length()
+                && text.charAt(wordEnd) == ',' && text.charAt(wordEnd + 1) == ' ') {
+            // The weekday is not used. Wrong weekdays are ignored by the format patterns as well.
+            pos = wordEnd + 1;
+            skipSpaces();
+        }
+        int day = readNumber(1, 2);
+        if (day < 0 || !skipSpaces()) {
+            return null;
+        }
+        int month = readMonth();
+        if (month < 0 || !skipSpaces()) {
+            return null;
+        }
+        int year = readNumber(4, 4);
+        if (year < 0 || !skipSpaces()) {
+            return null;
+        }
+        int hour = readNumber(2, 2);
+        if (hour < 0 || !skip(':')) {
+            return null;
+        }
+        int minute = readNumber(2, 2);
+        if (minute < 0) {
+            return null;
+        }
+        int second = 0;
+        if (skip(':')) {
+            second = readNumber(2, 2);
+            if (second < 0) {
+                return null;
+            }
+        }
+        if (!skipSpaces()) {
+            return null;
+        }
+        Integer offset = readZone();
+        if (offset == null || pos != text.length()) {
+            return null;
+        }
+        return toMillis(year, month, day, hour, minute, second, 0, offset);
+    }
+
+    /**
+     * yyyy-MM-dd[THH:mm:ss[.S+][zone]]
+     */
+    @Nullable
+    private Long scanIso8601() {
+        int year = readNumber(4, 4);
+        if (year < 0 || !skipDateSeparator()) {
+            return null;
+        }
+        int month = readNumber(2, 2);
+        if (month < 0 || !skipDateSeparator()) {
+            return null;
+        }
+        int day = readNumber(2, 2);
+        if (day < 0) {
+            return null;
+        }
+        if (pos == text.length()) {
+            return toMillis(year, month, day, 0, 0, 0, 0, 0);
+        }
+        if (!skip('T')) {
+            return null;
+        }
+        int hour = readNumber(2, 2);
+        if (hour < 0 || !skip(':')) {
+            return null;
+        }
+        int minute = readNumber(2, 2);
+        if (minute < 0 || !skip(':')) {
+            return null;
+        }
+        int second = readNumber(2, 2);
+        if (second < 0) {
+            return null;
+        }
+
+        int millis = 0;
+        int offset = 0;
+        if (skip('.')) {
+            int digitsStart = pos;
+            while (pos < text.length() && isDigit(text.charAt(pos))) {
+                if (pos - digitsStart < 3) {
+                    millis = millis * 10 + (text.charAt(pos) - '0');
+                }
+                pos++;
+            }
+            int digits = pos - digitsStart;
+            if (digits == 0) {
+                return null;
+            }
+            for (int i = digits; i < 3; i++) {
+                millis *= 10;
+            }
+            if (pos == text.length() - 1 && text.charAt(pos) == 'Z') {
+                if (digits == 3) {
+                    return null;
+                }
+                // The format patterns drop the last character when padding or truncating the fraction
+                pos++;
+            } else if (pos < text.length()) {
+                skipSpaces();
+                Integer numericOffset = readNumericOffset();
+                if (numericOffset == null) {
+                    return null;
+                }
+                offset = numericOffset;
+            }
+        } else if (pos == text.length() - 1 && text.charAt(pos) == 'Z') {
+            pos++;
+        } else if (pos < text.length()) {
+            Integer numericOffset = readNumericOffset();
+            if (numericOffset == null) {
+                return null;
+            }
+            offset = numericOffset;
+        }
+        if (pos != text.length()) {
+            return null;
+        }
+        return toMillis(year, month, day, hour, minute, second, millis, offset);
+    }
+
+    /**
+     * Returns the offset from GMT in minutes, or null if the zone is unknown.
+     */
+    @Nullable
+    private Integer readZone() {
+        if (pos >= text.length()) {
+            return null;
+        }
+        char c = text.charAt(pos);
+        if (c == '+' || c == '-') {
+            return readNumericOffset();
+        }
+        int start = pos;
+        while (pos < text.length() && text.charAt(pos) >= 'A' && text.charAt(pos) <= 'Z') {
+            pos++;
+        }
+        // Only zones that are unambiguous. Others (like CST) are left to the format patterns.
+        switch (text.substring(start, pos)) {
+            case "GMT":
+            case "UTC":
+                return 0;
+            case "CET":
+                return 60;
+            case "CEST":
+                return 120;
+            case "EST":
+                return -5 * 60;
+            case "EDT":
+                return -4 * 60;
+            case "MST":
+                return -7 * 60;
+            case "MDT":
+                return -6 * 60;
+            case "PST":
+                return -8 * 60;
+            case "PDT":
+                return -7 * 60;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Reads +HHMM or +HH:MM at the end of the string.
+     */
+    @Nullable
+    private Integer readNumericOffset() {
+        int remaining = text.length() - pos;
+        if (remaining != 5 && remaining != 6) {
+            return null;
+        }
+        char sign = text.charAt(pos);
+        if (sign != '+' && sign != '-') {
+            return null;
+        }
+        pos++;
+        int hours = readTwoDigits();
+        if (hours < 0 || hours > 23) {
+            return null;
+        }
+        if (remaining == 6 && !skip(':')) {
+            return null;
+        }
+        int minutes = readTwoDigits();
+        if (minutes < 0 || minutes > 59) {
+            return null;
+        }
+        int offset = hours * 60 + minutes;
+        return sign == '-' ? -offset : offset;
+    }
+
+    private int readMonth() {
+        int start = pos;
+        while (pos < text.length() && Character.isLetter(text.charAt(pos))) {
+            pos++;
+        }
+        String name = text.substring(start, pos);
+        if ("Sept".equals(name)) {
+            return 9;
+        }
+        for (int i = 0; i < MONTHS_SHORT.length; i++) {
+            if (name.equalsIgnoreCase(MONTHS_SHORT[i]) || name.equalsIgnoreCase(MONTHS_LONG[i])) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads an unsigned number with the given number of digits. Returns -1 if there is none.
+     */
+    private int readNumber(int minDigits, int maxDigits) {
+        int start = pos;
+        int value = 0;
+        while (pos < text.length() && isDigit(text.charAt(pos))) {
+            if (pos - start == maxDigits) {
+                return -1;
+            }
+            value = value * 10 + (text.charAt(pos) - '0');
+            pos++;
+        }
+        return pos - start < minDigits ? -1 : value;
+    }
+
+    /**
+     * Reads exactly two digits, even if more digits follow. Returns -1 if there are none.
+     */
+    private int readTwoDigits() {
+        if (pos + 2 > text.length() || !isDigit(text.charAt(pos)) || !isDigit(text.charAt(pos + 1))) {
+            return -1;
+        }
+        int value = (text.charAt(pos) - '0') * 10 + (text.charAt(pos + 1) - '0');
+        pos += 2;
+        return value;
+    }
+
+    private boolean skip(char c) {
+        if (pos < text.length() && text.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean skipDateSeparator() {
+        return skip('-') || skip('/');
+    }
+
+    /**
+     * Skips at least one space.
+     */
+    private boolean skipSpaces() {
+        int start = pos;
+        while (pos < text.length() && text.charAt(pos) == ' ') {
+            pos++;
+        }
+        return pos > start;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '_';
+    }
+
+    /**
+     * Returns null for values that are out of range. The format patterns are not lenient either.
+     */
+    @Nullable
+    private static Long toMillis(int year, int month, int day, int hour, int minute, int second,
+                                 int millis, int offsetMinutes) {
+        if (year < 1600 || month < 1 || month > 12 || day < 1 || day > DAYS_IN_MONTH[month - 1]
+                || (month == 2 && day == 29 && !isLeapYear(year))
+                || hour > 23 || minute > 59 || second > 59) {
+            return null;
+        }
+        long days = daysFromCivil(year, month, day);
+        return days * MILLIS_PER_DAY + ((hour * 60L + minute - offsetMinutes) * 60L + second) * 1000L + millis;
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    /**
+     * Number of days since 1970-01-01 in the proleptic Gregorian calendar.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
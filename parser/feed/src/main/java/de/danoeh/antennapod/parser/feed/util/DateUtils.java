@@ -27,6 +27,17 @@ public class DateUtils {
         if (input == null) {
             throw new IllegalArgumentException("Date must not be null");
         }
+        Date result = DateScanner.parse(input);
+        if (result != null) {
+            return result;
+        }
+        return parseWithPatterns(input);
+    }
+
+    /**
+     * Slow path that tries all known format patterns one after another.
+     */
+    static Date parseWithPatterns(final String input) {
         String date = input.trim().replace('/', '-').replaceAll("( ){2,}+", " ");
 
         // remove colon from timezone to avoid differences between Android and Java SimpleDateFormat
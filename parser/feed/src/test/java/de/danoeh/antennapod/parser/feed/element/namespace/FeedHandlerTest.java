@@ -0,0 +1,110 @@
+package de.danoeh.antennapod.parser.feed.element.namespace;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import de.danoeh.antennapod.model.feed.Feed;
+import de.danoeh.antennapod.parser.feed.FeedHandler;
+import de.danoeh.antennapod.parser.feed.UnsupportedFeedtypeException;
+import de.danoeh.antennapod.parser.feed.util.TypeGetter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for parsing feeds from a stream in FeedHandler.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FeedHandlerTest {
+
+    @Test
+    public void testStreamMatchesFile() throws Exception {
+        String[] files = {"feed-rss-testRss2Basic.xml", "feed-atom-testAtomBasic.xml"};
+        for (String fileName : files) {
+            File feedFile = FeedParserTestHelper.getFeedFile(fileName);
+            Feed fromFile = FeedParserTestHelper.runFeedParser(feedFile);
+            Feed fromStream = new Feed("http://example.com/feed", null);
+            try (InputStream in = new FileInputStream(feedFile)) {
+                new FeedHandler().parseFeed(fromStream, in);
+            }
+            assertEquals(fileName, fromFile.getType(), fromStream.getType());
+            assertEquals(fileName, fromFile.getTitle(), fromStream.getTitle());
+            assertEquals(fileName, fromFile.getLanguage(), fromStream.getLanguage());
+            assertEquals(fileName, fromFile.getItems().size(), fromStream.getItems().size());
+            for (int i = 0; i < fromFile.getItems().size(); i++) {
+                assertEquals(fromFile.getItems().get(i).getTitle(), fromStream.getItems().get(i).getTitle());
+                assertEquals(fromFile.getItems().get(i).getPubDate(), fromStream.getItems().get(i).getPubDate());
+            }
+        }
+    }
+
+    @Test
+    public void testRss091() throws Exception {
+        Feed feed = parse("<rss version=\"0.91\"><channel><title>title</title></channel></rss>");
+        assertEquals("title", feed.getTitle());
+    }
+
+    @Test
+    public void testUnsupportedRssVersion() throws Exception {
+        try {
+            parse("<rss version=\"1.0\"><channel><title>title</title></channel></rss>");
+            fail("Expected UnsupportedFeedtypeException");
+        } catch (UnsupportedFeedtypeException e) {
+            assertEquals(TypeGetter.Type.INVALID, e.getType());
+            assertNull(e.getRootElement());
+        }
+    }
+
+    @Test
+    public void testUnknownRootElement() throws Exception {
+        try {
+            parse("<html><body>Not a feed</body></html>");
+            fail("Expected UnsupportedFeedtypeException");
+        } catch (UnsupportedFeedtypeException e) {
+            assertEquals("html", e.getRootElement());
+        }
+    }
+
+    @Test
+    public void testNotXml() throws Exception {
+        try {
+            parse("This is not a feed");
+            fail("Expected UnsupportedFeedtypeException");
+        } catch (UnsupportedFeedtypeException e) {
+            assertEquals("html", e.getRootElement());
+        }
+    }
+
+    @Test
+    public void testReadErrorBeforeRootElement() throws Exception {
+        InputStream in = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Connection reset");
+            }
+        };
+        try {
+            new FeedHandler().parseFeed(new Feed("http://example.com/feed", null), in);
+            fail("Expected UnsupportedFeedtypeException");
+        } catch (UnsupportedFeedtypeException e) {
+            assertEquals(TypeGetter.Type.INVALID, e.getType());
+            assertNull(e.getRootElement());
+        }
+    }
+
+    private static Feed parse(String document) throws Exception {
+        Feed feed = new Feed("http://example.com/feed", null);
+        InputStream in = new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8));
+        new FeedHandler().parseFeed(feed, in);
+        return feed;
+    }
+}
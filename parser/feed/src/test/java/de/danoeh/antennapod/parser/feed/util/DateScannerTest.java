@@ -0,0 +1,92 @@
+package de.danoeh.antennapod.parser.feed.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit test for {@link DateScanner}. Results must be identical to the format patterns in {@link DateUtils}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DateScannerTest {
+    /**
+     * Date strings from the other parser tests that the scanner is expected to handle.
+     */
+    private static final String[] HANDLED = {
+            "2015-03-28T13:31:04.963870",
+            "2015-03-28T13:31:04.96",
+            "2015-03-28T13:31:04.9",
+            "2015-03-28T13:31:04.963870 +0700",
+            "2015-03-28T13:31:04.96 +0700",
+            "2015-03-28T13:31:04.9 +0700",
+            "Sat, 28 Mar 2015 01:31:04 EST",
+            "Sat, 28 Mar 2015 01:31 EST",
+            "Sat, 28 March 2015 08:16:12 -0400",
+            "Tue,  23 Mar   2010 01:06:26 -0500",
+            "2017-02-22T14:28:00.002-08:00",
+            "Sun, 29 Jan 2017 00:00:00 CEST",
+            "Sun, 29 Jan 2017 00:00:00 CET",
+            "Thu, 8 Oct 2014 09:00:00 GMT",
+            "Mon, 8 Sept 2014 00:00:00 GMT",
+            "1970-01-01T00:00:00Z",
+            "1970-01-01T00:09:00Z",
+            "2014-10-08",
+            "2014/10/08",
+            "2014-10-08T09:00:00",
+            "2014-10-08T09:00:00+02:00",
+            "2014-10-08T09:00:00-0230",
+            "2014-10-08T09:00:00.5Z",
+            "2014-10-08T09:00:00.123456Z",
+            "Wed, 08 Oct 2014 09:00:00 +0000",
+            "Wednesday, 08 October 2014 09:00:00 PDT",
+            "8 Oct 2014 09:00 UTC",
+            "  Wed, 08 Oct 2014 09:00:00 +0000  ",
+    };
+
+    /**
+     * Strings that are left to the format patterns.
+     */
+    private static final String[] NOT_HANDLED = {
+            "01 Jan 70 01:00:00 +0100",
+            "Wed, 25 May 2011 12:33:00",
+            "Sun 01 Mar 2015 01:00:00 GMT-0400 (EDT)",
+            "Wed, 08 Oct 2014 09:00:00 CST",
+            "2014-10-08T09:00:00.123Z",
+            "2014-10-08T09:00:00 +0200",
+            "2014-10-08T09:00",
+            "Wed, 31 Feb 2014 09:00:00 +0000",
+            "2014-02-29",
+            "2014-10-08T24:00:00Z",
+            "",
+            "not a date",
+    };
+
+    @Test
+    public void testHandledDatesMatchPatterns() {
+        for (String date : HANDLED) {
+            Date scanned = DateScanner.parse(date);
+            assertNotNull(date, scanned);
+            assertEquals(date, DateUtils.parseWithPatterns(date), scanned);
+        }
+    }
+
+    @Test
+    public void testUnknownFormatsAreLeftToPatterns() {
+        for (String date : NOT_HANDLED) {
+            assertNull(date, DateScanner.parse(date));
+        }
+    }
+
+    @Test
+    public void testParseStillUsesPatterns() {
+        for (String date : NOT_HANDLED) {
+            assertEquals(date, DateUtils.parseWithPatterns(date), DateUtils.parse(date));
+        }
+    }
+}
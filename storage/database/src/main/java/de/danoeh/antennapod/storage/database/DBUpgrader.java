@@ -330,6 +330,62 @@ class DBUpgrader {
             db.execSQL("ALTER TABLE " + PodDBAdapter.TABLE_NAME_FEED_ITEMS
                     + " ADD COLUMN " + PodDBAdapter.KEY_PODCASTINDEX_CHAPTER_URL + " TEXT");
         }
+        if (oldVersion < 2080000) {
+            db.execSQL("ALTER TABLE " + PodDBAdapter.TABLE_NAME_FEEDS
+                    + " ADD COLUMN " + PodDBAdapter.KEY_ETAG + " TEXT");
+            db.execSQL("ALTER TABLE " + PodDBAdapter.TABLE_NAME_FEEDS
+                    + " ADD COLUMN " + PodDBAdapter.KEY_CONTENT_DIGEST + " TEXT");
+            db.execSQL("ALTER TABLE " + PodDBAdapter.TABLE_NAME_FEEDS
+                    + " ADD COLUMN " + PodDBAdapter.KEY_NOT_MODIFIED_COUNT + " INTEGER DEFAULT 0");
+            db.execSQL("ALTER TABLE " + PodDBAdapter.TABLE_NAME_FEEDS
+                    + " ADD COLUMN " + PodDBAdapter.KEY_UNCHANGED_COUNT + " INTEGER DEFAULT 0");
+            // The last update column used to contain the ETag if the server did not send Last-Modified
+            db.execSQL("UPDATE " + PodDBAdapter.TABLE_NAME_FEEDS
+                    + " SET " + PodDBAdapter.KEY_ETAG + "=" + PodDBAdapter.KEY_LASTUPDATE + ", "
+                    + PodDBAdapter.KEY_LASTUPDATE + "=NULL"
+                    + " WHERE " + PodDBAdapter.KEY_LASTUPDATE + " LIKE '\"%'"
+                    + " OR " + PodDBAdapter.KEY_LASTUPDATE + " LIKE 'W/%'");
+        }
+        if (oldVersion < 2090000) {
+            db.execSQL(PodDBAdapter.CREATE_TABLE_FEED_COUNTERS);
+            db.execSQL(PodDBAdapter.FILL_FEED_COUNTERS);
+            db.execSQL(PodDBAdapter.CREATE_TRIGGER_FEED_ITEMS_INSERT);
+            db.execSQL(PodDBAdapter.CREATE_TRIGGER_FEED_ITEMS_UPDATE);
+            db.execSQL(PodDBAdapter.CREATE_TRIGGER_FEED_ITEMS_DELETE);
+            db.execSQL(PodDBAdapter.CREATE_TRIGGER_FEED_MEDIA_INSERT);
+            db.execSQL(PodDBAdapter.CREATE_TRIGGER_FEED_MEDIA_UPDATE);
+            db.execSQL(PodDBAdapter.CREATE_TRIGGER_FEED_MEDIA_DELETE);
+        }
+        if (oldVersion < 2100000) {
+            db.execSQL(PodDBAdapter.CREATE_TABLE_SYNC_EPISODE_ACTIONS);
+            db.execSQL(PodDBAdapter.CREATE_INDEX_SYNC_EPISODE_ACTIONS_KEY);
+        }
+        if (oldVersion < 2110000) {
+            db.execSQL(PodDBAdapter.CREATE_INDEX_FEEDITEMS_ITEM_IDENTIFIER);
+            db.execSQL(PodDBAdapter.CREATE_INDEX_FEEDMEDIA_DOWNLOAD_URL);
+        }
+        if (oldVersion < 2120000) {
+            db.execSQL(PodDBAdapter.CREATE_INDEX_FEEDMEDIA_DOWNLOADED);
+        }
+        if (oldVersion < 2130000) {
+            db.execSQL("ALTER TABLE " + PodDBAdapter.TABLE_NAME_FEED_MEDIA
+                    + " ADD COLUMN " + PodDBAdapter.KEY_FILE_LAST_MODIFIED + " INTEGER DEFAULT 0");
+        }
+        if (oldVersion < 2140000) {
+            // The search tables of 2070000 stored a copy of the text, now they read it from the content tables
+            db.execSQL("DROP TABLE IF EXISTS " + PodDBAdapter.TABLE_NAME_FEED_ITEMS_FTS);
+            db.execSQL("DROP TABLE IF EXISTS " + PodDBAdapter.TABLE_NAME_FEEDS_FTS);
+            db.execSQL(PodDBAdapter.CREATE_TABLE_FEED_ITEMS_FTS);
+            db.execSQL(PodDBAdapter.CREATE_TABLE_FEEDS_FTS);
+            for (String trigger : PodDBAdapter.CREATE_TRIGGERS_FEED_ITEMS_FTS) {
+                db.execSQL(trigger);
+            }
+            for (String trigger : PodDBAdapter.CREATE_TRIGGERS_FEEDS_FTS) {
+                db.execSQL(trigger);
+            }
+            db.execSQL(PodDBAdapter.REBUILD_FEED_ITEMS_FTS);
+            db.execSQL(PodDBAdapter.REBUILD_FEEDS_FTS);
+        }
     }
 
 }
@@ -0,0 +1,274 @@
+package de.danoeh.antennapod.storage.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.Nullable;
+
+import de.danoeh.antennapod.model.feed.Chapter;
+import de.danoeh.antennapod.model.feed.FeedItem;
+import de.danoeh.antennapod.model.feed.FeedMedia;
+
+import java.io.Closeable;
+
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_AUTO_DOWNLOAD_ATTEMPTS;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_DESCRIPTION;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_DOWNLOADED;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_DOWNLOAD_URL;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_DURATION;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_FEED;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_FEEDITEM;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_FILE_LAST_MODIFIED;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_FILE_URL;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_HAS_CHAPTERS;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_HAS_EMBEDDED_PICTURE;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_ID;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_IMAGE_URL;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_ITEM_IDENTIFIER;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_LAST_PLAYED_TIME;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_LINK;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_MIME_TYPE;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_PAYMENT_LINK;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_PLAYBACK_COMPLETION_DATE;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_PODCASTINDEX_CHAPTER_URL;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_POSITION;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_PUBDATE;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_READ;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_SIZE;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_START;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.KEY_TITLE;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.TABLE_NAME_FEED_ITEMS;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.TABLE_NAME_FEED_MEDIA;
+import static de.danoeh.antennapod.storage.database.PodDBAdapter.TABLE_NAME_SIMPLECHAPTERS;
+
+/**
+ * Writes FeedItems together with their media and chapters. The statements are compiled once and reused
+ * for all items that are written with the same instance, so a whole feed can be stored without compiling
+ * SQL or creating ContentValues for every row.
+ * <p/>
+ * Existing rows are only updated if one of the written columns actually differs from the stored value.
+ * The comparison is done by SQLite on the stored row itself instead of a separately stored hash,
+ * because other parts of the app (playback state, read state) update the same rows directly.
+ * Refreshing a feed that did not change therefore does not write anything.
+ * <p/>
+ * Must be used inside a transaction and closed afterwards.
+ */
+class FeedItemWriter implements Closeable {
+    private static final String[] ITEM_COLUMNS = {
+        KEY_TITLE, KEY_LINK, KEY_DESCRIPTION, KEY_PUBDATE, KEY_PAYMENT_LINK, KEY_FEED, KEY_READ,
+        KEY_HAS_CHAPTERS, KEY_ITEM_IDENTIFIER, KEY_AUTO_DOWNLOAD_ATTEMPTS, KEY_IMAGE_URL,
+        KEY_PODCASTINDEX_CHAPTER_URL
+    };
+    private static final String[] MEDIA_COLUMNS = {
+        KEY_DURATION, KEY_POSITION, KEY_SIZE, KEY_MIME_TYPE, KEY_DOWNLOAD_URL, KEY_DOWNLOADED,
+        KEY_FILE_URL, KEY_HAS_EMBEDDED_PICTURE, KEY_LAST_PLAYED_TIME, KEY_PLAYBACK_COMPLETION_DATE, KEY_FEEDITEM,
+        KEY_FILE_LAST_MODIFIED
+    };
+    private static final String[] CHAPTER_COLUMNS = {
+        KEY_TITLE, KEY_START, KEY_FEEDITEM, KEY_LINK, KEY_IMAGE_URL
+    };
+
+    private final SQLiteDatabase db;
+    private SQLiteStatement insertItem;
+    private SQLiteStatement updateItem;
+    private SQLiteStatement insertMedia;
+    private SQLiteStatement updateMedia;
+    private SQLiteStatement insertChapter;
+    private SQLiteStatement updateChapter;
+
+    FeedItemWriter(SQLiteDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * Inserts or updates the item row. Media and chapters are not written.
+     */
+    void writeItem(FeedItem item) {
+        boolean isNew = item.getId() == 0;
+        SQLiteStatement statement;
+        if (isNew) {
+            if (insertItem == null) {
+                insertItem = db.compileStatement(buildInsert(TABLE_NAME_FEED_ITEMS, ITEM_COLUMNS));
+            }
+            statement = insertItem;
+        } else {
+            if (updateItem == null) {
+                // A missing description never overwrites a stored one
+                updateItem = db.compileStatement(buildUpdate(TABLE_NAME_FEED_ITEMS, ITEM_COLUMNS,
+                        KEY_DESCRIPTION));
+            }
+            statement = updateItem;
+        }
+        statement.clearBindings();
+        bind(statement, 1, item.getTitle());
+        bind(statement, 2, item.getLink());
+        bind(statement, 3, item.getDescription());
+        statement.bindLong(4, item.getPubDate().getTime());
+        bind(statement, 5, item.getPaymentLink());
+        statement.bindLong(6, item.getFeed().getId());
+        if (item.isNew()) {
+            statement.bindLong(7, FeedItem.NEW);
+        } else if (item.isPlayed()) {
+            statement.bindLong(7, FeedItem.PLAYED);
+        } else {
+            statement.bindLong(7, FeedItem.UNPLAYED);
+        }
+        bind(statement, 8, item.getChapters() != null || item.hasChapters());
+        bind(statement, 9, item.getItemIdentifier());
+        statement.bindLong(10, item.getAutoDownloadAttemptsAndTime());
+        bind(statement, 11, item.getImageUrl());
+        bind(statement, 12, item.getPodcastIndexChapterUrl());
+        if (isNew) {
+            item.setId(statement.executeInsert());
+            return;
+        }
+        statement.bindLong(ITEM_COLUMNS.length + 1, item.getId());
+        statement.executeUpdateDelete();
+    }
+
+    /**
+     * Inserts or updates a media row.
+     */
+    void writeMedia(FeedMedia media) {
+        boolean isNew = media.getId() == 0;
+        SQLiteStatement statement;
+        if (isNew) {
+            if (insertMedia == null) {
+                insertMedia = db.compileStatement(buildInsert(TABLE_NAME_FEED_MEDIA, MEDIA_COLUMNS));
+            }
+            statement = insertMedia;
+        } else {
+            if (updateMedia == null) {
+                updateMedia = db.compileStatement(buildUpdate(TABLE_NAME_FEED_MEDIA, MEDIA_COLUMNS, KEY_FEEDITEM));
+            }
+            statement = updateMedia;
+        }
+        statement.clearBindings();
+        statement.bindLong(1, media.getDuration());
+        statement.bindLong(2, media.getPosition());
+        statement.bindLong(3, media.getSize());
+        bind(statement, 4, media.getMime_type());
+        bind(statement, 5, media.getDownload_url());
+        bind(statement, 6, media.isDownloaded());
+        bind(statement, 7, media.getFile_url());
+        bind(statement, 8, media.hasEmbeddedPicture());
+        statement.bindLong(9, media.getLastPlayedTime());
+        statement.bindLong(10, media.getPlaybackCompletionDate() != null
+                ? media.getPlaybackCompletionDate().getTime() : 0);
+        if (media.getItem() != null) {
+            statement.bindLong(11, media.getItem().getId());
+        } else {
+            statement.bindNull(11);
+        }
+        statement.bindLong(12, media.getFileLastModified());
+        if (isNew) {
+            media.setId(statement.executeInsert());
+        } else {
+            statement.bindLong(MEDIA_COLUMNS.length + 1, media.getId());
+            statement.executeUpdateDelete();
+        }
+    }
+
+    /**
+     * Inserts or updates the chapter rows of an item.
+     */
+    void writeChapters(FeedItem item) {
+        for (Chapter chapter : item.getChapters()) {
+            boolean isNew = chapter.getId() == 0;
+            SQLiteStatement statement;
+            if (isNew) {
+                if (insertChapter == null) {
+                    insertChapter = db.compileStatement(buildInsert(TABLE_NAME_SIMPLECHAPTERS, CHAPTER_COLUMNS));
+                }
+                statement = insertChapter;
+            } else {
+                if (updateChapter == null) {
+                    updateChapter = db.compileStatement(buildUpdate(TABLE_NAME_SIMPLECHAPTERS, CHAPTER_COLUMNS));
+                }
+                statement = updateChapter;
+            }
+            statement.clearBindings();
+            bind(statement, 1, chapter.getTitle());
+            statement.bindLong(2, chapter.getStart());
+            statement.bindLong(3, item.getId());
+            bind(statement, 4, chapter.getLink());
+            bind(statement, 5, chapter.getImageUrl());
+            if (isNew) {
+                chapter.setId(statement.executeInsert());
+            } else {
+                statement.bindLong(CHAPTER_COLUMNS.length + 1, chapter.getId());
+                statement.executeUpdateDelete();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        SQLiteStatement[] statements = {insertItem, updateItem, insertMedia, updateMedia, insertChapter,
+            updateChapter};
+        for (SQLiteStatement statement : statements) {
+            if (statement != null) {
+                statement.close();
+            }
+        }
+    }
+
+    private static void bind(SQLiteStatement statement, int index, @Nullable String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    private static void bind(SQLiteStatement statement, int index, boolean value) {
+        statement.bindLong(index, value ? 1 : 0);
+    }
+
+    static String buildInsert(String table, String[] columns) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+        StringBuilder values = new StringBuilder(") VALUES (");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(',');
+                values.append(',');
+            }
+            sql.append(columns[i]);
+            values.append('?').append(i + 1);
+        }
+        return sql.append(values).append(')').toString();
+    }
+
+    /**
+     * Builds an update statement that only matches the row if one of the values differs.
+     * The id is bound after the columns.
+     *
+     * @param keepIfNull Columns that keep their stored value if null is bound
+     */
+    static String buildUpdate(String table, String[] columns, String... keepIfNull) {
+        StringBuilder set = new StringBuilder("UPDATE ").append(table).append(" SET ");
+        StringBuilder unchanged = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            String column = columns[i];
+            String param = "?" + (i + 1);
+            boolean nullKeepsValue = false;
+            for (String keep : keepIfNull) {
+                nullKeepsValue |= keep.equals(column);
+            }
+            if (i > 0) {
+                set.append(',');
+                unchanged.append(" AND ");
+            }
+            if (nullKeepsValue) {
+                set.append(column).append("=COALESCE(").append(param).append(',').append(column).append(')');
+                unchanged.append('(').append(param).append(" IS NULL OR ")
+                        .append(column).append(" IS ").append(param).append(')');
+            } else {
+                set.append(column).append('=').append(param);
+                unchanged.append(column).append(" IS ").append(param);
+            }
+        }
+        return set.append(" WHERE ").append(KEY_ID).append("=?").append(columns.length + 1)
+                .append(" AND NOT (").append(unchanged).append(')').toString();
+    }
+}
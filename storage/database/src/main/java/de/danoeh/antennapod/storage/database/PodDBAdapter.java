@@ -10,6 +10,7 @@ import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteDatabase.CursorFactory;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -22,6 +23,8 @@ import de.danoeh.antennapod.model.feed.FeedFunding;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -31,6 +34,7 @@ import java.util.Set;
 
 import de.danoeh.antennapod.model.feed.Chapter;
 import de.danoeh.antennapod.model.feed.Feed;
+import de.danoeh.antennapod.model.feed.FeedComponent;
 import de.danoeh.antennapod.model.feed.FeedItem;
 import de.danoeh.antennapod.model.feed.FeedItemFilter;
 import de.danoeh.antennapod.model.feed.FeedMedia;
@@ -50,12 +54,12 @@ public class PodDBAdapter {
 
     private static final String TAG = "PodDBAdapter";
     public static final String DATABASE_NAME = "Antennapod.db";
-    public static final int VERSION = 2060000;
+    public static final int VERSION = 2140000;
 
     /**
      * Maximum number of arguments for IN-operator.
      */
-    private static final int IN_OPERATOR_MAXIMUM = 800;
+    public static final int IN_OPERATOR_MAXIMUM = 800;
 
     // Key-constants
     public static final String KEY_ID = "id";
@@ -108,6 +112,7 @@ public class PodDBAdapter {
     public static final String KEY_LAST_UPDATE_FAILED = "last_update_failed";
     public static final String KEY_HAS_EMBEDDED_PICTURE = "has_embedded_picture";
     public static final String KEY_LAST_PLAYED_TIME = "last_played_time";
+    public static final String KEY_FILE_LAST_MODIFIED = "file_last_modified";
     public static final String KEY_INCLUDE_FILTER = "include_filter";
     public static final String KEY_EXCLUDE_FILTER = "exclude_filter";
     public static final String KEY_MINIMAL_DURATION_FILTER = "minimal_duration_filter";
@@ -117,6 +122,20 @@ public class PodDBAdapter {
     public static final String KEY_FEED_TAGS = "tags";
     public static final String KEY_EPISODE_NOTIFICATION = "episode_notification";
     public static final String KEY_PODCASTINDEX_CHAPTER_URL = "podcastindex_chapter_url";
+    public static final String KEY_ETAG = "etag";
+    public static final String KEY_CONTENT_DIGEST = "content_digest";
+    public static final String KEY_NOT_MODIFIED_COUNT = "not_modified_count";
+    public static final String KEY_UNCHANGED_COUNT = "unchanged_count";
+    public static final String KEY_NEW_COUNT = "new_count";
+    public static final String KEY_UNPLAYED_COUNT = "unplayed_count";
+    public static final String KEY_PLAYED_COUNT = "played_count";
+    public static final String KEY_DOWNLOADED_COUNT = "downloaded_count";
+    public static final String KEY_DOWNLOADED_UNPLAYED_COUNT = "downloaded_unplayed_count";
+    public static final String KEY_LATEST_PUBDATE = "latest_pubdate";
+    public static final String KEY_PODCAST = "podcast";
+    public static final String KEY_EPISODE = "episode";
+    public static final String KEY_ACTION = "action";
+    public static final String KEY_DATA = "data";
 
     // Table names
     public static final String TABLE_NAME_FEEDS = "Feeds";
@@ -127,6 +146,10 @@ public class PodDBAdapter {
     public static final String TABLE_NAME_QUEUE = "Queue";
     public static final String TABLE_NAME_SIMPLECHAPTERS = "SimpleChapters";
     public static final String TABLE_NAME_FAVORITES = "Favorites";
+    public static final String TABLE_NAME_FEED_ITEMS_FTS = "FeedItemsFts";
+    public static final String TABLE_NAME_FEEDS_FTS = "FeedsFts";
+    public static final String TABLE_NAME_FEED_COUNTERS = "FeedCounters";
+    public static final String TABLE_NAME_SYNC_EPISODE_ACTIONS = "SyncEpisodeActions";
 
     // SQL Statements for creating new tables
     private static final String TABLE_PRIMARY_KEY = KEY_ID
@@ -157,7 +180,11 @@ public class PodDBAdapter {
             + KEY_FEED_TAGS + " TEXT,"
             + KEY_FEED_SKIP_INTRO + " INTEGER DEFAULT 0,"
             + KEY_FEED_SKIP_ENDING + " INTEGER DEFAULT 0,"
-            + KEY_EPISODE_NOTIFICATION + " INTEGER DEFAULT 0)";
+            + KEY_EPISODE_NOTIFICATION + " INTEGER DEFAULT 0,"
+            + KEY_ETAG + " TEXT,"
+            + KEY_CONTENT_DIGEST + " TEXT,"
+            + KEY_NOT_MODIFIED_COUNT + " INTEGER DEFAULT 0,"
+            + KEY_UNCHANGED_COUNT + " INTEGER DEFAULT 0)";
 
     private static final String CREATE_TABLE_FEED_ITEMS = "CREATE TABLE "
             + TABLE_NAME_FEED_ITEMS + " (" + TABLE_PRIMARY_KEY
@@ -179,7 +206,8 @@ public class PodDBAdapter {
             + KEY_FEEDITEM + " INTEGER,"
             + KEY_PLAYED_DURATION + " INTEGER,"
             + KEY_HAS_EMBEDDED_PICTURE + " INTEGER,"
-            + KEY_LAST_PLAYED_TIME + " INTEGER" + ")";
+            + KEY_LAST_PLAYED_TIME + " INTEGER,"
+            + KEY_FILE_LAST_MODIFIED + " INTEGER DEFAULT 0" + ")";
 
     private static final String CREATE_TABLE_DOWNLOAD_LOG = "CREATE TABLE "
             + TABLE_NAME_DOWNLOAD_LOG + " (" + TABLE_PRIMARY_KEY + KEY_FEEDFILE
@@ -188,6 +216,12 @@ public class PodDBAdapter {
             + " INTEGER," + KEY_REASON_DETAILED + " TEXT,"
             + KEY_DOWNLOADSTATUS_TITLE + " TEXT)";
 
+    /**
+     * The queue is ordered by the ID column. New IDs are spaced out by this value, so that an item
+     * can be inserted or moved by giving it an ID between those of its new neighbours.
+     */
+    static final long QUEUE_POSITION_GAP = 1 << 16;
+
     private static final String CREATE_TABLE_QUEUE = "CREATE TABLE "
             + TABLE_NAME_QUEUE + "(" + KEY_ID + " INTEGER PRIMARY KEY,"
             + KEY_FEEDITEM + " INTEGER," + KEY_FEED + " INTEGER)";
@@ -222,10 +256,206 @@ public class PodDBAdapter {
             + TABLE_NAME_SIMPLECHAPTERS + "_" + KEY_FEEDITEM + " ON " + TABLE_NAME_SIMPLECHAPTERS + " ("
             + KEY_FEEDITEM + ")";
 
+    static final String CREATE_INDEX_FEEDITEMS_ITEM_IDENTIFIER = "CREATE INDEX "
+            + TABLE_NAME_FEED_ITEMS + "_" + KEY_ITEM_IDENTIFIER + " ON " + TABLE_NAME_FEED_ITEMS + " ("
+            + KEY_ITEM_IDENTIFIER + ")";
+
+    static final String CREATE_INDEX_FEEDMEDIA_DOWNLOAD_URL = "CREATE INDEX "
+            + TABLE_NAME_FEED_MEDIA + "_" + KEY_DOWNLOAD_URL + " ON " + TABLE_NAME_FEED_MEDIA + " ("
+            + KEY_DOWNLOAD_URL + ")";
+
+    static final String CREATE_INDEX_FEEDMEDIA_DOWNLOADED = "CREATE INDEX "
+            + TABLE_NAME_FEED_MEDIA + "_" + KEY_DOWNLOADED + " ON " + TABLE_NAME_FEED_MEDIA + " ("
+            + KEY_DOWNLOADED + "," + KEY_PLAYBACK_COMPLETION_DATE + ")";
+
     static final String CREATE_TABLE_FAVORITES = "CREATE TABLE "
             + TABLE_NAME_FAVORITES + "(" + KEY_ID + " INTEGER PRIMARY KEY,"
             + KEY_FEEDITEM + " INTEGER," + KEY_FEED + " INTEGER)";
 
+    // Episode actions that still need to be uploaded to the synchronization service. The data column
+    // holds the action as JSON. Only the latest action of each kind is kept for an episode.
+    static final String CREATE_TABLE_SYNC_EPISODE_ACTIONS = "CREATE TABLE "
+            + TABLE_NAME_SYNC_EPISODE_ACTIONS + " (" + TABLE_PRIMARY_KEY
+            + KEY_PODCAST + " TEXT," + KEY_EPISODE + " TEXT," + KEY_ACTION + " TEXT," + KEY_DATA + " TEXT)";
+
+    static final String CREATE_INDEX_SYNC_EPISODE_ACTIONS_KEY = "CREATE UNIQUE INDEX "
+            + TABLE_NAME_SYNC_EPISODE_ACTIONS + "_key ON " + TABLE_NAME_SYNC_EPISODE_ACTIONS + " ("
+            + KEY_PODCAST + "," + KEY_EPISODE + "," + KEY_ACTION + ")";
+
+    // Full-text search tables. They only contain the index and read the text from the items and feeds tables,
+    // the docid of each row is the id of the corresponding item or feed. The triggers below keep the index in sync.
+    static final String CREATE_TABLE_FEED_ITEMS_FTS = "CREATE VIRTUAL TABLE "
+            + TABLE_NAME_FEED_ITEMS_FTS + " USING fts4(content=\"" + TABLE_NAME_FEED_ITEMS + "\","
+            + KEY_TITLE + "," + KEY_DESCRIPTION + ", tokenize=unicode61)";
+
+    static final String CREATE_TABLE_FEEDS_FTS = "CREATE VIRTUAL TABLE "
+            + TABLE_NAME_FEEDS_FTS + " USING fts4(content=\"" + TABLE_NAME_FEEDS + "\","
+            + KEY_TITLE + "," + KEY_CUSTOM_TITLE + "," + KEY_AUTHOR + "," + KEY_DESCRIPTION + ", tokenize=unicode61)";
+
+    static final String[] CREATE_TRIGGERS_FEED_ITEMS_FTS = createSearchIndexTriggers(TABLE_NAME_FEED_ITEMS,
+            TABLE_NAME_FEED_ITEMS_FTS, KEY_TITLE, KEY_DESCRIPTION);
+
+    static final String[] CREATE_TRIGGERS_FEEDS_FTS = createSearchIndexTriggers(TABLE_NAME_FEEDS,
+            TABLE_NAME_FEEDS_FTS, KEY_TITLE, KEY_CUSTOM_TITLE, KEY_AUTHOR, KEY_DESCRIPTION);
+
+    static final String REBUILD_FEED_ITEMS_FTS = "INSERT INTO " + TABLE_NAME_FEED_ITEMS_FTS
+            + "(" + TABLE_NAME_FEED_ITEMS_FTS + ") VALUES('rebuild')";
+
+    static final String REBUILD_FEEDS_FTS = "INSERT INTO " + TABLE_NAME_FEEDS_FTS
+            + "(" + TABLE_NAME_FEEDS_FTS + ") VALUES('rebuild')";
+
+    /**
+     * Creates the triggers that keep a full-text search table in sync with the table that contains its text.
+     * The old text has to be removed from the index before the row is changed, because the index reads it
+     * from that table. Saving a row without changing the searchable columns does not touch the index.
+     */
+    private static String[] createSearchIndexTriggers(String table, String ftsTable, String... columns) {
+        StringBuilder columnList = new StringBuilder();
+        StringBuilder newValues = new StringBuilder();
+        StringBuilder changed = new StringBuilder();
+        for (String column : columns) {
+            columnList.append(',').append(column);
+            newValues.append(",NEW.").append(column);
+            if (changed.length() > 0) {
+                changed.append(" OR ");
+            }
+            changed.append("OLD.").append(column).append(" IS NOT NEW.").append(column);
+        }
+        String remove = "DELETE FROM " + ftsTable + " WHERE docid=OLD." + KEY_ID + ";";
+        String add = "INSERT INTO " + ftsTable + "(docid" + columnList + ") VALUES(NEW." + KEY_ID + newValues + ");";
+        String updateOf = " UPDATE OF " + columnList.substring(1) + " ON " + table + " WHEN " + changed;
+        return new String[]{
+                "CREATE TRIGGER " + table + "_fts_insert AFTER INSERT ON " + table + " BEGIN " + add + " END",
+                "CREATE TRIGGER " + table + "_fts_before_update BEFORE" + updateOf + " BEGIN " + remove + " END",
+                "CREATE TRIGGER " + table + "_fts_after_update AFTER" + updateOf + " BEGIN " + add + " END",
+                "CREATE TRIGGER " + table + "_fts_delete BEFORE DELETE ON " + table + " BEGIN " + remove + " END"
+        };
+    }
+
+    // Counters of the episodes of each feed. The rows are kept up to date by the triggers below,
+    // so that the counters do not need to be calculated from all episodes whenever they are displayed.
+    static final String CREATE_TABLE_FEED_COUNTERS = "CREATE TABLE " + TABLE_NAME_FEED_COUNTERS + " ("
+            + KEY_FEED + " INTEGER PRIMARY KEY,"
+            + KEY_NEW_COUNT + " INTEGER DEFAULT 0,"
+            + KEY_UNPLAYED_COUNT + " INTEGER DEFAULT 0,"
+            + KEY_PLAYED_COUNT + " INTEGER DEFAULT 0,"
+            + KEY_DOWNLOADED_COUNT + " INTEGER DEFAULT 0,"
+            + KEY_DOWNLOADED_UNPLAYED_COUNT + " INTEGER DEFAULT 0,"
+            + KEY_LATEST_PUBDATE + " INTEGER DEFAULT 0)";
+
+    private static final String IS_UNPLAYED = "(" + KEY_READ + " IS " + FeedItem.NEW
+            + " OR " + KEY_READ + " IS " + FeedItem.UNPLAYED + ")";
+
+    static final String FILL_FEED_COUNTERS = "INSERT INTO " + TABLE_NAME_FEED_COUNTERS + " ("
+            + KEY_FEED + "," + KEY_NEW_COUNT + "," + KEY_UNPLAYED_COUNT + "," + KEY_PLAYED_COUNT + ","
+            + KEY_DOWNLOADED_COUNT + "," + KEY_DOWNLOADED_UNPLAYED_COUNT + "," + KEY_LATEST_PUBDATE + ")"
+            + " SELECT " + KEY_FEED + ","
+            + " SUM(" + KEY_READ + " IS " + FeedItem.NEW + "),"
+            + " SUM" + IS_UNPLAYED + ","
+            + " SUM(" + KEY_READ + " IS " + FeedItem.PLAYED + "),"
+            + " SUM(" + KEY_DOWNLOADED + " IS 1),"
+            + " SUM(" + KEY_DOWNLOADED + " IS 1 AND " + IS_UNPLAYED + "),"
+            + " IFNULL(MAX(" + KEY_PUBDATE + "), 0)"
+            + " FROM " + TABLE_NAME_FEED_ITEMS
+            + " LEFT JOIN " + TABLE_NAME_FEED_MEDIA + " ON "
+            + TABLE_NAME_FEED_ITEMS + "." + KEY_ID + "=" + TABLE_NAME_FEED_MEDIA + "." + KEY_FEEDITEM
+            + " GROUP BY " + KEY_FEED;
+
+    static final String CREATE_TRIGGER_FEED_ITEMS_INSERT = "CREATE TRIGGER " + TABLE_NAME_FEED_ITEMS
+            + "_counters_insert AFTER INSERT ON " + TABLE_NAME_FEED_ITEMS + " BEGIN "
+            + addFeedItemToCounters("NEW")
+            + " END";
+
+    static final String CREATE_TRIGGER_FEED_ITEMS_UPDATE = "CREATE TRIGGER " + TABLE_NAME_FEED_ITEMS
+            + "_counters_update AFTER UPDATE OF " + KEY_READ + "," + KEY_FEED + "," + KEY_PUBDATE
+            + " ON " + TABLE_NAME_FEED_ITEMS
+            + " WHEN OLD." + KEY_READ + " IS NOT NEW." + KEY_READ
+            + " OR OLD." + KEY_FEED + " IS NOT NEW." + KEY_FEED
+            + " OR OLD." + KEY_PUBDATE + " IS NOT NEW." + KEY_PUBDATE + " BEGIN "
+            + removeFeedItemFromCounters("OLD")
+            + addFeedItemToCounters("NEW")
+            + " END";
+
+    static final String CREATE_TRIGGER_FEED_ITEMS_DELETE = "CREATE TRIGGER " + TABLE_NAME_FEED_ITEMS
+            + "_counters_delete AFTER DELETE ON " + TABLE_NAME_FEED_ITEMS + " BEGIN "
+            + removeFeedItemFromCounters("OLD")
+            + " END";
+
+    static final String CREATE_TRIGGER_FEED_MEDIA_INSERT = "CREATE TRIGGER " + TABLE_NAME_FEED_MEDIA
+            + "_counters_insert AFTER INSERT ON " + TABLE_NAME_FEED_MEDIA
+            + " WHEN NEW." + KEY_DOWNLOADED + " IS 1 BEGIN "
+            + updateFeedMediaCounters("NEW", "+")
+            + " END";
+
+    static final String CREATE_TRIGGER_FEED_MEDIA_UPDATE = "CREATE TRIGGER " + TABLE_NAME_FEED_MEDIA
+            + "_counters_update AFTER UPDATE OF " + KEY_DOWNLOADED + "," + KEY_FEEDITEM
+            + " ON " + TABLE_NAME_FEED_MEDIA
+            + " WHEN OLD." + KEY_DOWNLOADED + " IS NOT NEW." + KEY_DOWNLOADED
+            + " OR OLD." + KEY_FEEDITEM + " IS NOT NEW." + KEY_FEEDITEM + " BEGIN "
+            + updateFeedMediaCounters("OLD", "-")
+            + updateFeedMediaCounters("NEW", "+")
+            + " END";
+
+    static final String CREATE_TRIGGER_FEED_MEDIA_DELETE = "CREATE TRIGGER " + TABLE_NAME_FEED_MEDIA
+            + "_counters_delete AFTER DELETE ON " + TABLE_NAME_FEED_MEDIA
+            + " WHEN OLD." + KEY_DOWNLOADED + " IS 1 BEGIN "
+            + updateFeedMediaCounters("OLD", "-")
+            + " END";
+
+    /**
+     * Adds the episode in the given row of a trigger (NEW or OLD) to the counters of its feed.
+     */
+    private static String addFeedItemToCounters(String row) {
+        return "INSERT OR IGNORE INTO " + TABLE_NAME_FEED_COUNTERS + " (" + KEY_FEED + ") VALUES ("
+                + row + "." + KEY_FEED + ");"
+                + updateFeedItemCounters(row, "+")
+                + "," + KEY_LATEST_PUBDATE + "=MAX(" + KEY_LATEST_PUBDATE + ", IFNULL(" + row + "." + KEY_PUBDATE
+                + ", 0)) WHERE " + KEY_FEED + "=" + row + "." + KEY_FEED + ";";
+    }
+
+    /**
+     * Removes the episode in the given row of a trigger from the counters of its feed.
+     * The latest publication date is only searched again if the episode was the latest one.
+     */
+    private static String removeFeedItemFromCounters(String row) {
+        return updateFeedItemCounters(row, "-")
+                + "," + KEY_LATEST_PUBDATE + "=CASE WHEN IFNULL(" + row + "." + KEY_PUBDATE + ", 0) < "
+                + KEY_LATEST_PUBDATE + " THEN " + KEY_LATEST_PUBDATE
+                + " ELSE IFNULL((SELECT MAX(" + KEY_PUBDATE + ") FROM " + TABLE_NAME_FEED_ITEMS
+                + " WHERE " + KEY_FEED + "=" + row + "." + KEY_FEED + "), 0) END"
+                + " WHERE " + KEY_FEED + "=" + row + "." + KEY_FEED + ";";
+    }
+
+    private static String updateFeedItemCounters(String row, String operator) {
+        String isUnplayed = "(" + row + "." + KEY_READ + " IS " + FeedItem.NEW
+                + " OR " + row + "." + KEY_READ + " IS " + FeedItem.UNPLAYED + ")";
+        String downloaded = "(SELECT COUNT(*) FROM " + TABLE_NAME_FEED_MEDIA + " WHERE " + KEY_FEEDITEM + "="
+                + row + "." + KEY_ID + " AND " + KEY_DOWNLOADED + " IS 1)";
+        return "UPDATE " + TABLE_NAME_FEED_COUNTERS + " SET "
+                + KEY_NEW_COUNT + "=" + KEY_NEW_COUNT + operator
+                + "(" + row + "." + KEY_READ + " IS " + FeedItem.NEW + "),"
+                + KEY_UNPLAYED_COUNT + "=" + KEY_UNPLAYED_COUNT + operator + isUnplayed + ","
+                + KEY_PLAYED_COUNT + "=" + KEY_PLAYED_COUNT + operator
+                + "(" + row + "." + KEY_READ + " IS " + FeedItem.PLAYED + "),"
+                + KEY_DOWNLOADED_COUNT + "=" + KEY_DOWNLOADED_COUNT + operator + downloaded + ","
+                + KEY_DOWNLOADED_UNPLAYED_COUNT + "=" + KEY_DOWNLOADED_UNPLAYED_COUNT + operator
+                + "(" + isUnplayed + " AND " + downloaded + " > 0)";
+    }
+
+    /**
+     * Adds or removes a downloaded media file in the given row of a trigger to or from the counters
+     * of the feed of its episode.
+     */
+    private static String updateFeedMediaCounters(String row, String operator) {
+        String isDownloaded = "(" + row + "." + KEY_DOWNLOADED + " IS 1)";
+        String item = " FROM " + TABLE_NAME_FEED_ITEMS + " WHERE " + KEY_ID + "=" + row + "." + KEY_FEEDITEM;
+        return "UPDATE " + TABLE_NAME_FEED_COUNTERS + " SET "
+                + KEY_DOWNLOADED_COUNT + "=" + KEY_DOWNLOADED_COUNT + operator + isDownloaded + ","
+                + KEY_DOWNLOADED_UNPLAYED_COUNT + "=" + KEY_DOWNLOADED_UNPLAYED_COUNT + operator
+                + "(" + isDownloaded + " AND (SELECT " + IS_UNPLAYED + item + "))"
+                + " WHERE " + KEY_FEED + "=(SELECT " + KEY_FEED + item + ");";
+    }
+
     /**
      * All the tables in the database
      */
@@ -236,7 +466,9 @@ public class PodDBAdapter {
             TABLE_NAME_DOWNLOAD_LOG,
             TABLE_NAME_QUEUE,
             TABLE_NAME_SIMPLECHAPTERS,
-            TABLE_NAME_FAVORITES
+            TABLE_NAME_FAVORITES,
+            TABLE_NAME_FEED_COUNTERS,
+            TABLE_NAME_SYNC_EPISODE_ACTIONS
     };
 
     public static final String SELECT_KEY_ITEM_ID = "item_id";
@@ -271,7 +503,8 @@ public class PodDBAdapter {
             + TABLE_NAME_FEED_MEDIA + "." + KEY_FEEDITEM + ", "
             + TABLE_NAME_FEED_MEDIA + "." + KEY_PLAYED_DURATION + ", "
             + TABLE_NAME_FEED_MEDIA + "." + KEY_HAS_EMBEDDED_PICTURE + ", "
-            + TABLE_NAME_FEED_MEDIA + "." + KEY_LAST_PLAYED_TIME;
+            + TABLE_NAME_FEED_MEDIA + "." + KEY_LAST_PLAYED_TIME + ", "
+            + TABLE_NAME_FEED_MEDIA + "." + KEY_FILE_LAST_MODIFIED;
 
     private static final String KEYS_FEED =
             TABLE_NAME_FEEDS + "." + KEY_ID + " AS " + SELECT_KEY_FEED_ID + ", "
@@ -307,7 +540,11 @@ public class PodDBAdapter {
             + TABLE_NAME_FEEDS + "." + KEY_FEED_TAGS + ", "
             + TABLE_NAME_FEEDS + "." + KEY_FEED_SKIP_INTRO + ", "
             + TABLE_NAME_FEEDS + "." + KEY_FEED_SKIP_ENDING + ", "
-            + TABLE_NAME_FEEDS + "." + KEY_EPISODE_NOTIFICATION;
+            + TABLE_NAME_FEEDS + "." + KEY_EPISODE_NOTIFICATION + ", "
+            + TABLE_NAME_FEEDS + "." + KEY_ETAG + ", "
+            + TABLE_NAME_FEEDS + "." + KEY_CONTENT_DIGEST + ", "
+            + TABLE_NAME_FEEDS + "." + KEY_NOT_MODIFIED_COUNT + ", "
+            + TABLE_NAME_FEEDS + "." + KEY_UNCHANGED_COUNT;
 
     private static final String JOIN_FEED_ITEM_AND_MEDIA = " LEFT JOIN " + TABLE_NAME_FEED_MEDIA
             + " ON " + TABLE_NAME_FEED_ITEMS + "." + KEY_ID + "=" + TABLE_NAME_FEED_MEDIA + "." + KEY_FEEDITEM + " ";
@@ -324,6 +561,7 @@ public class PodDBAdapter {
 
     private static Context context;
     private static PodDBAdapter instance;
+    private static boolean writeAheadLoggingEnabled = false;
 
     private final SQLiteDatabase db;
     private final PodDBHelper dbHelper;
@@ -332,6 +570,15 @@ public class PodDBAdapter {
         PodDBAdapter.context = context.getApplicationContext();
     }
 
+    /**
+     * Enables write-ahead logging. In this mode, the database keeps a pool of read-only connections,
+     * so queries can run while another thread writes (for example during a feed refresh).
+     * Must be called before the database is opened for the first time.
+     */
+    public static void setWriteAheadLoggingEnabled(boolean enabled) {
+        writeAheadLoggingEnabled = enabled;
+    }
+
     public static synchronized PodDBAdapter getInstance() {
         if (instance == null) {
             instance = new PodDBAdapter();
@@ -348,7 +595,11 @@ public class PodDBAdapter {
         SQLiteDatabase newDb;
         try {
             newDb = dbHelper.getWritableDatabase();
-            newDb.disableWriteAheadLogging();
+            if (writeAheadLoggingEnabled) {
+                newDb.enableWriteAheadLogging();
+            } else {
+                newDb.disableWriteAheadLogging();
+            }
         } catch (SQLException ex) {
             Log.e(TAG, Log.getStackTraceString(ex));
             newDb = dbHelper.getReadableDatabase();
@@ -365,6 +616,19 @@ public class PodDBAdapter {
         // do nothing
     }
 
+    /**
+     * Copies all changes from the write-ahead log to the database file, so that the database file
+     * can be copied on its own. Does nothing if write-ahead logging is disabled.
+     */
+    public void checkpoint() {
+        if (!db.isWriteAheadLoggingEnabled()) {
+            return;
+        }
+        Cursor cursor = db.rawQuery("PRAGMA wal_checkpoint(FULL)", null);
+        cursor.moveToFirst();
+        cursor.close();
+    }
+
     /**
      * <p>Resets all database connections to ensure new database connections for
      * the next test case. Call method only for unit tests.</p>
@@ -413,6 +677,8 @@ public class PodDBAdapter {
         values.put(KEY_DOWNLOAD_URL, feed.getDownload_url());
         values.put(KEY_DOWNLOADED, feed.isDownloaded());
         values.put(KEY_LASTUPDATE, feed.getLastUpdate());
+        values.put(KEY_ETAG, feed.getEtag());
+        values.put(KEY_CONTENT_DIGEST, feed.getContentDigest());
         values.put(KEY_TYPE, feed.getType());
         values.put(KEY_FEED_IDENTIFIER, feed.getFeedIdentifier());
 
@@ -490,6 +756,7 @@ public class PodDBAdapter {
         values.put(KEY_FILE_URL, media.getFile_url());
         values.put(KEY_HAS_EMBEDDED_PICTURE, media.hasEmbeddedPicture());
         values.put(KEY_LAST_PLAYED_TIME, media.getLastPlayedTime());
+        values.put(KEY_FILE_LAST_MODIFIED, media.getFileLastModified());
 
         if (media.getPlaybackCompletionDate() != null) {
             values.put(KEY_PLAYBACK_COMPLETION_DATE, media.getPlaybackCompletionDate().getTime());
@@ -554,12 +821,29 @@ public class PodDBAdapter {
      */
     public void setCompleteFeed(Feed... feeds) {
         try {
+            storeCompleteFeeds(feeds);
+        } catch (SQLException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+        }
+    }
+
+    /**
+     * Like {@link #setCompleteFeed(Feed...)}, but passes errors on to the caller. If the transaction fails,
+     * the IDs it assigned to new feeds, items, media and chapters are reset, so the objects can be stored again.
+     */
+    public void storeCompleteFeeds(Feed... feeds) throws SQLException {
+        List<FeedComponent> newComponents = new ArrayList<>();
+        for (Feed feed : feeds) {
+            collectNewComponents(feed, newComponents);
+        }
+        boolean successful = false;
+        try (FeedItemWriter writer = new FeedItemWriter(db)) {
             db.beginTransactionNonExclusive();
             for (Feed feed : feeds) {
                 setFeed(feed);
                 if (feed.getItems() != null) {
                     for (FeedItem item : feed.getItems()) {
-                        updateOrInsertFeedItem(item, false);
+                        updateOrInsertFeedItem(writer, item, false);
                     }
                 }
                 if (feed.getPreferences() != null) {
@@ -567,10 +851,38 @@ public class PodDBAdapter {
                 }
             }
             db.setTransactionSuccessful();
-        } catch (SQLException e) {
-            Log.e(TAG, Log.getStackTraceString(e));
+            successful = true;
         } finally {
             db.endTransaction();
+            if (!successful) {
+                for (FeedComponent component : newComponents) {
+                    component.setId(0);
+                }
+            }
+        }
+    }
+
+    private static void collectNewComponents(Feed feed, List<FeedComponent> newComponents) {
+        if (feed.getId() == 0) {
+            newComponents.add(feed);
+        }
+        if (feed.getItems() == null) {
+            return;
+        }
+        for (FeedItem item : feed.getItems()) {
+            if (item.getId() == 0) {
+                newComponents.add(item);
+            }
+            if (item.getMedia() != null && item.getMedia().getId() == 0) {
+                newComponents.add(item.getMedia());
+            }
+            if (item.getChapters() != null) {
+                for (Chapter chapter : item.getChapters()) {
+                    if (chapter.getId() == 0) {
+                        newComponents.add(chapter);
+                    }
+                }
+            }
         }
     }
 
@@ -584,10 +896,10 @@ public class PodDBAdapter {
     }
 
     public void storeFeedItemlist(List<FeedItem> items) {
-        try {
+        try (FeedItemWriter writer = new FeedItemWriter(db)) {
             db.beginTransactionNonExclusive();
             for (FeedItem item : items) {
-                updateOrInsertFeedItem(item, true);
+                updateOrInsertFeedItem(writer, item, true);
             }
             db.setTransactionSuccessful();
         } catch (SQLException e) {
@@ -599,9 +911,9 @@ public class PodDBAdapter {
 
     public long setSingleFeedItem(FeedItem item) {
         long result = 0;
-        try {
+        try (FeedItemWriter writer = new FeedItemWriter(db)) {
             db.beginTransactionNonExclusive();
-            result = updateOrInsertFeedItem(item, true);
+            result = updateOrInsertFeedItem(writer, item, true);
             db.setTransactionSuccessful();
         } catch (SQLException e) {
             Log.e(TAG, Log.getStackTraceString(e));
@@ -614,53 +926,26 @@ public class PodDBAdapter {
     /**
      * Inserts or updates a feeditem entry
      *
+     * @param writer   Writer with the compiled statements of the current transaction
      * @param item     The FeedItem
      * @param saveFeed true if the Feed of the item should also be saved. This should be set to
      *                 false if the method is executed on a list of FeedItems of the same Feed.
      * @return the id of the entry
      */
-    private long updateOrInsertFeedItem(FeedItem item, boolean saveFeed) {
+    private long updateOrInsertFeedItem(FeedItemWriter writer, FeedItem item, boolean saveFeed) {
         if (item.getId() == 0 && item.getPubDate() == null) {
             Log.e(TAG, "Newly saved item has no pubDate. Using current date as pubDate");
             item.setPubDate(new Date());
         }
-
-        ContentValues values = new ContentValues();
-        values.put(KEY_TITLE, item.getTitle());
-        values.put(KEY_LINK, item.getLink());
-        if (item.getDescription() != null) {
-            values.put(KEY_DESCRIPTION, item.getDescription());
-        }
-        values.put(KEY_PUBDATE, item.getPubDate().getTime());
-        values.put(KEY_PAYMENT_LINK, item.getPaymentLink());
         if (saveFeed && item.getFeed() != null) {
             setFeed(item.getFeed());
         }
-        values.put(KEY_FEED, item.getFeed().getId());
-        if (item.isNew()) {
-            values.put(KEY_READ, FeedItem.NEW);
-        } else if (item.isPlayed()) {
-            values.put(KEY_READ, FeedItem.PLAYED);
-        } else {
-            values.put(KEY_READ, FeedItem.UNPLAYED);
-        }
-        values.put(KEY_HAS_CHAPTERS, item.getChapters() != null || item.hasChapters());
-        values.put(KEY_ITEM_IDENTIFIER, item.getItemIdentifier());
-        values.put(KEY_AUTO_DOWNLOAD_ATTEMPTS, item.getAutoDownloadAttemptsAndTime());
-        values.put(KEY_IMAGE_URL, item.getImageUrl());
-        values.put(KEY_PODCASTINDEX_CHAPTER_URL, item.getPodcastIndexChapterUrl());
-
-        if (item.getId() == 0) {
-            item.setId(db.insert(TABLE_NAME_FEED_ITEMS, null, values));
-        } else {
-            db.update(TABLE_NAME_FEED_ITEMS, values, KEY_ID + "=?",
-                    new String[]{String.valueOf(item.getId())});
-        }
+        writer.writeItem(item);
         if (item.getMedia() != null) {
-            setMedia(item.getMedia());
+            writer.writeMedia(item.getMedia());
         }
         if (item.getChapters() != null) {
-            setChapters(item);
+            writer.writeChapters(item);
         }
         return item.getId();
     }
@@ -711,23 +996,6 @@ public class PodDBAdapter {
         }
     }
 
-    private void setChapters(FeedItem item) {
-        ContentValues values = new ContentValues();
-        for (Chapter chapter : item.getChapters()) {
-            values.put(KEY_TITLE, chapter.getTitle());
-            values.put(KEY_START, chapter.getStart());
-            values.put(KEY_FEEDITEM, item.getId());
-            values.put(KEY_LINK, chapter.getLink());
-            values.put(KEY_IMAGE_URL, chapter.getImageUrl());
-            if (chapter.getId() == 0) {
-                chapter.setId(db.insert(TABLE_NAME_SIMPLECHAPTERS, null, values));
-            } else {
-                db.update(TABLE_NAME_SIMPLECHAPTERS, values, KEY_ID + "=?",
-                        new String[]{String.valueOf(chapter.getId())});
-            }
-        }
-    }
-
     public void setFeedLastUpdateFailed(long feedId, boolean failed) {
         final String sql = "UPDATE " + TABLE_NAME_FEEDS
                 + " SET " + KEY_LAST_UPDATE_FAILED + "=" + (failed ? "1" : "0")
@@ -735,6 +1003,38 @@ public class PodDBAdapter {
         db.execSQL(sql);
     }
 
+    /**
+     * Records a refresh that did not need to be saved because the feed did not change,
+     * either because the server answered with 304 Not Modified or because the document had the same digest.
+     * The validators are stored anyway, the server might have sent new ones.
+     *
+     * @return true if the last refresh of the feed had failed
+     */
+    public boolean setFeedRefreshUnchanged(long feedId, boolean notModified,
+                                           @Nullable String lastModified, @Nullable String etag) {
+        String counter = notModified ? KEY_NOT_MODIFIED_COUNT : KEY_UNCHANGED_COUNT;
+        try {
+            // The failure flag is read and reset in one transaction, so that a concurrent refresh can not lose it
+            db.beginTransactionNonExclusive();
+            boolean lastUpdateFailed;
+            try (Cursor cursor = db.rawQuery("SELECT " + KEY_LAST_UPDATE_FAILED + " FROM " + TABLE_NAME_FEEDS
+                    + " WHERE " + KEY_ID + "=?", new String[]{String.valueOf(feedId)})) {
+                lastUpdateFailed = cursor.moveToFirst() && cursor.getInt(0) != 0;
+            }
+            db.execSQL("UPDATE " + TABLE_NAME_FEEDS
+                    + " SET " + counter + "=" + counter + "+1, "
+                    + KEY_LAST_UPDATE_FAILED + "=0, "
+                    + KEY_LASTUPDATE + "=COALESCE(?, " + KEY_LASTUPDATE + "), "
+                    + KEY_ETAG + "=COALESCE(?, " + KEY_ETAG + ")"
+                    + " WHERE " + KEY_ID + "=?",
+                    new Object[]{lastModified, etag, feedId});
+            db.setTransactionSuccessful();
+            return lastUpdateFailed;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     public void setFeedCustomTitle(long feedId, String customTitle) {
         ContentValues values = new ContentValues();
         values.put(KEY_CUSTOM_TITLE, customTitle);
@@ -821,7 +1121,7 @@ public class PodDBAdapter {
             db.delete(TABLE_NAME_QUEUE, null, null);
             for (int i = 0; i < queue.size(); i++) {
                 FeedItem item = queue.get(i);
-                values.put(KEY_ID, i);
+                values.put(KEY_ID, (i + 1) * QUEUE_POSITION_GAP);
                 values.put(KEY_FEEDITEM, item.getId());
                 values.put(KEY_FEED, item.getFeed().getId());
                 db.insertWithOnConflict(TABLE_NAME_QUEUE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
@@ -838,6 +1138,137 @@ public class PodDBAdapter {
         db.delete(TABLE_NAME_QUEUE, null, null);
     }
 
+    /**
+     * Inserts an item into the queue. Only the row of the new item is written.
+     *
+     * @param index Position in the queue. If it is beyond the end of the queue, the item is appended.
+     */
+    public void addQueueItem(FeedItem item, int index) {
+        try {
+            db.beginTransactionNonExclusive();
+            ContentValues values = new ContentValues();
+            values.put(KEY_ID, getFreeQueuePosition(index, item.getId()));
+            values.put(KEY_FEEDITEM, item.getId());
+            values.put(KEY_FEED, item.getFeedId());
+            db.insert(TABLE_NAME_QUEUE, null, values);
+            db.setTransactionSuccessful();
+        } catch (SQLException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Moves the item at one position of the queue to another position. Only the row of that item is written.
+     *
+     * @return The ID of the moved item, or 0 if there is no item at the source position.
+     */
+    public long moveQueueItem(int from, int to) {
+        long itemId = 0;
+        try {
+            db.beginTransactionNonExclusive();
+            try (Cursor cursor = db.rawQuery("SELECT " + KEY_FEEDITEM + " FROM " + TABLE_NAME_QUEUE
+                    + " ORDER BY " + KEY_ID + " LIMIT 1 OFFSET " + from, null)) {
+                if (cursor.moveToFirst()) {
+                    itemId = cursor.getLong(0);
+                }
+            }
+            if (itemId != 0) {
+                ContentValues values = new ContentValues();
+                values.put(KEY_ID, getFreeQueuePosition(to, itemId));
+                db.update(TABLE_NAME_QUEUE, values, KEY_FEEDITEM + "=?", new String[]{String.valueOf(itemId)});
+            }
+            db.setTransactionSuccessful();
+        } catch (SQLException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            itemId = 0;
+        } finally {
+            db.endTransaction();
+        }
+        return itemId;
+    }
+
+    /**
+     * Removes the given items from the queue with a single statement. The positions of the other items stay the same.
+     */
+    public void removeQueueItems(long... itemIds) {
+        if (itemIds.length == 0) {
+            return;
+        }
+        StringBuilder ids = new StringBuilder();
+        for (long itemId : itemIds) {
+            if (ids.length() > 0) {
+                ids.append(",");
+            }
+            ids.append(itemId);
+        }
+        db.delete(TABLE_NAME_QUEUE, KEY_FEEDITEM + " IN (" + ids + ")", null);
+    }
+
+    /**
+     * Returns a value for the ID column that sorts an item at the given index of the queue. The queue is
+     * stored with gaps of {@link #QUEUE_POSITION_GAP} between the IDs, so a new ID can be taken from the
+     * middle of a gap. If there is no gap left between the neighbours, the queue is spaced out again.
+     *
+     * @param itemId The item that gets the position. It is ignored when looking for the neighbours.
+     */
+    private long getFreeQueuePosition(int index, long itemId) {
+        long[] neighbours = getQueueNeighbours(index, itemId);
+        if (neighbours[1] >= 0 && neighbours[1] - neighbours[0] < 2) {
+            respaceQueue();
+            neighbours = getQueueNeighbours(index, itemId);
+        }
+        if (neighbours[1] < 0) {
+            return neighbours[0] + QUEUE_POSITION_GAP;
+        }
+        return neighbours[0] + (neighbours[1] - neighbours[0]) / 2;
+    }
+
+    /**
+     * Returns the IDs of the rows before and after the given index, 0 if there is no row before
+     * and -1 if there is no row after it.
+     */
+    private long[] getQueueNeighbours(int index, long excludedItemId) {
+        String otherItems = " FROM " + TABLE_NAME_QUEUE + " WHERE " + KEY_FEEDITEM + "!=" + excludedItemId;
+        if (index <= 0) {
+            try (Cursor cursor = db.rawQuery("SELECT " + KEY_ID + otherItems
+                    + " ORDER BY " + KEY_ID + " LIMIT 1", null)) {
+                return new long[] {0, cursor.moveToFirst() ? cursor.getLong(0) : -1};
+            }
+        }
+        try (Cursor cursor = db.rawQuery("SELECT " + KEY_ID + otherItems
+                + " ORDER BY " + KEY_ID + " LIMIT 2 OFFSET " + (index - 1), null)) {
+            if (cursor.moveToFirst()) {
+                long before = cursor.getLong(0);
+                return new long[] {before, cursor.moveToNext() ? cursor.getLong(0) : -1};
+            }
+        }
+        // The index is beyond the end of the queue
+        try (Cursor cursor = db.rawQuery("SELECT IFNULL(MAX(" + KEY_ID + "), 0)" + otherItems, null)) {
+            return new long[] {cursor.moveToFirst() ? cursor.getLong(0) : 0, -1};
+        }
+    }
+
+    /**
+     * Gives the items of the queue IDs with gaps of {@link #QUEUE_POSITION_GAP} between them, keeping their order.
+     * Must be called inside of a transaction.
+     */
+    private void respaceQueue() {
+        Log.d(TAG, "Spacing out the queue");
+        // Move all rows out of the way first, so that the new IDs do not collide with the old ones
+        db.execSQL("UPDATE " + TABLE_NAME_QUEUE + " SET " + KEY_ID + "=-" + KEY_ID + "-1");
+        try (Cursor cursor = db.rawQuery("SELECT " + KEY_ID + " FROM " + TABLE_NAME_QUEUE
+                + " ORDER BY " + KEY_ID + " DESC", null)) {
+            long position = 0;
+            while (cursor.moveToNext()) {
+                position += QUEUE_POSITION_GAP;
+                db.execSQL("UPDATE " + TABLE_NAME_QUEUE + " SET " + KEY_ID + "=? WHERE " + KEY_ID + "=?",
+                        new Object[] {position, cursor.getLong(0)});
+            }
+        }
+    }
+
     /**
      * Remove the listed items and their FeedMedia entries.
      */
@@ -878,6 +1309,8 @@ public class PodDBAdapter {
     public void removeFeed(Feed feed) {
         try {
             db.beginTransactionNonExclusive();
+            // Removed first, so that deleting the episodes does not need to update the counters
+            db.delete(TABLE_NAME_FEED_COUNTERS, KEY_FEED + "=?", new String[]{String.valueOf(feed.getId())});
             if (feed.getItems() != null) {
                 removeFeedItems(feed.getItems());
             }
@@ -905,6 +1338,74 @@ public class PodDBAdapter {
         db.delete(TABLE_NAME_DOWNLOAD_LOG, null, null);
     }
 
+    /**
+     * Adds episode actions to the synchronization queue. A queued action of the same kind
+     * for the same episode is replaced, so only the latest one is uploaded.
+     *
+     * @param actions Arrays of podcast URL, episode URL, action and JSON data
+     * @return true if the actions were written
+     */
+    public boolean enqueueSyncEpisodeActions(List<String[]> actions) {
+        SQLiteStatement statement = null;
+        try {
+            db.beginTransactionNonExclusive();
+            statement = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_NAME_SYNC_EPISODE_ACTIONS
+                    + " (" + KEY_PODCAST + "," + KEY_EPISODE + "," + KEY_ACTION + "," + KEY_DATA
+                    + ") VALUES (?,?,?,?)");
+            for (String[] action : actions) {
+                statement.clearBindings();
+                for (int i = 0; i < action.length; i++) {
+                    if (action[i] != null) {
+                        statement.bindString(i + 1, action[i]);
+                    }
+                }
+                statement.executeInsert();
+            }
+            db.setTransactionSuccessful();
+            return true;
+        } catch (SQLException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            return false;
+        } finally {
+            if (statement != null) {
+                statement.close();
+            }
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Returns the ID and the JSON data of the queued episode actions up to the given ID, oldest first.
+     */
+    public final Cursor getSyncEpisodeActionsCursor(long maxId) {
+        return getSyncEpisodeActionsCursor(0, maxId, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns at most limit queued episode actions with an ID greater than afterId and at most maxId.
+     */
+    public final Cursor getSyncEpisodeActionsCursor(long afterId, long maxId, int limit) {
+        return db.query(TABLE_NAME_SYNC_EPISODE_ACTIONS, new String[]{KEY_ID, KEY_DATA},
+                KEY_ID + ">? AND " + KEY_ID + "<=?", new String[]{String.valueOf(afterId), String.valueOf(maxId)},
+                null, null, KEY_ID + " ASC", String.valueOf(limit));
+    }
+
+    /**
+     * Returns the ID of the most recently queued episode action, or 0 if the queue is empty.
+     */
+    public long getLastSyncEpisodeActionId() {
+        return DatabaseUtils.longForQuery(db, "SELECT IFNULL(MAX(" + KEY_ID + "), 0) FROM "
+                + TABLE_NAME_SYNC_EPISODE_ACTIONS, null);
+    }
+
+    /**
+     * Removes the queued episode actions up to the given ID after they were uploaded. Actions that were
+     * queued (or replaced) in the meantime have a higher ID and stay in the queue.
+     */
+    public void removeSyncEpisodeActions(long maxId) {
+        db.delete(TABLE_NAME_SYNC_EPISODE_ACTIONS, KEY_ID + "<=?", new String[]{String.valueOf(maxId)});
+    }
+
     /**
      * Get all Feeds from the Feed Table.
      *
@@ -1057,6 +1558,47 @@ public class PodDBAdapter {
         return db.rawQuery(query, null);
     }
 
+    /**
+     * Returns episodes that might be downloaded automatically. The episodes have media that is not downloaded,
+     * automatic download was not disabled for them and they do not belong to a local feed.
+     * The title filters and the retry delays of failed downloads still need to be checked by the caller.
+     *
+     * @param queued If true, returns episodes in the queue, in queue order. Otherwise returns new episodes that
+     *               are not in the queue and whose feed has automatic download enabled and a matching minimal
+     *               duration, most recent first.
+     */
+    public final Cursor getAutoDownloadCandidatesCursor(boolean queued, int offset, int limit) {
+        String itemId = TABLE_NAME_FEED_ITEMS + "." + KEY_ID;
+        String queueItems = "SELECT " + KEY_FEEDITEM + " FROM " + TABLE_NAME_QUEUE;
+        String where = " WHERE " + TABLE_NAME_FEED_MEDIA + "." + KEY_ID + " IS NOT NULL"
+                + " AND " + TABLE_NAME_FEED_MEDIA + "." + KEY_DOWNLOADED + "=0"
+                + " AND " + TABLE_NAME_FEED_ITEMS + "." + KEY_AUTO_DOWNLOAD_ATTEMPTS + "!=0"
+                + " AND " + TABLE_NAME_FEEDS + "." + KEY_DOWNLOAD_URL
+                    + " NOT LIKE '" + Feed.PREFIX_LOCAL_FOLDER + "%'";
+        String order;
+        if (queued) {
+            where += " AND " + itemId + " IN (" + queueItems + ")";
+            order = "(SELECT " + KEY_ID + " FROM " + TABLE_NAME_QUEUE + " WHERE " + KEY_FEEDITEM + "=" + itemId + ")";
+        } else {
+            String minimalDuration = TABLE_NAME_FEEDS + "." + KEY_MINIMAL_DURATION_FILTER;
+            String duration = TABLE_NAME_FEED_MEDIA + "." + KEY_DURATION;
+            where += " AND " + TABLE_NAME_FEED_ITEMS + "." + KEY_READ + "=" + FeedItem.NEW
+                    + " AND " + TABLE_NAME_FEEDS + "." + KEY_KEEP_UPDATED + ">0"
+                    + " AND " + TABLE_NAME_FEEDS + "." + KEY_AUTO_DOWNLOAD_ENABLED + ">0"
+                    + " AND " + itemId + " NOT IN (" + queueItems + ")"
+                    + " AND NOT (" + minimalDuration + ">-1 AND " + duration + ">0"
+                        + " AND " + duration + "/1000<" + minimalDuration + ")";
+            order = TABLE_NAME_FEED_ITEMS + "." + KEY_PUBDATE + " DESC";
+        }
+        final String query = SELECT_FEED_ITEMS_AND_MEDIA
+                + " INNER JOIN " + TABLE_NAME_FEEDS
+                + " ON " + TABLE_NAME_FEED_ITEMS + "." + KEY_FEED + "=" + TABLE_NAME_FEEDS + "." + KEY_ID
+                + where
+                + " ORDER BY " + order + ", " + itemId
+                + " LIMIT " + offset + ", " + limit;
+        return db.rawQuery(query, null);
+    }
+
     public final Cursor getRecentlyPublishedItemsCursor(int offset, int limit, FeedItemFilter filter) {
         String filterQuery = FeedItemFilterQuery.generateFrom(filter);
         String whereClause = "".equals(filterQuery) ? "" : " WHERE " + filterQuery;
@@ -1101,9 +1643,77 @@ public class PodDBAdapter {
         return db.rawQuery(query, null);
     }
 
-    public Cursor getPlayedItemsCursor() {
+    /**
+     * Returns the downloaded items that an episode cleanup may delete, in the order they should be deleted.
+     * Favorites are never returned.
+     *
+     * @param keepQueued   Do not return items that are in the queue.
+     * @param playedBefore If greater than 0, only return played items whose playback was completed before
+     *                     this time, ordered by completion date. Otherwise items are ordered by publication date.
+     * @param limit        The maximum number of items to return.
+     */
+    public Cursor getCleanupCandidatesCursor(boolean keepQueued, long playedBefore, int limit) {
+        String order = playedBefore > 0
+                ? TABLE_NAME_FEED_MEDIA + "." + KEY_PLAYBACK_COMPLETION_DATE
+                : TABLE_NAME_FEED_ITEMS + "." + KEY_PUBDATE + " IS NULL, " + TABLE_NAME_FEED_ITEMS + "." + KEY_PUBDATE;
+        final String query = SELECT_FEED_ITEMS_AND_MEDIA
+                + "WHERE " + cleanupCandidatesFilter(keepQueued, playedBefore > 0)
+                + (playedBefore > 0 ? " AND " + TABLE_NAME_FEED_MEDIA + "." + KEY_PLAYBACK_COMPLETION_DATE
+                        + "<" + playedBefore : "")
+                + " ORDER BY " + order + ", " + TABLE_NAME_FEED_ITEMS + "." + KEY_ID
+                + " LIMIT " + limit;
+        return db.rawQuery(query, null);
+    }
+
+    /**
+     * Returns a single row with the number and the total size of the items that
+     * {@link #getCleanupCandidatesCursor} would return without a limit. The third column contains the
+     * earliest completion date of played items that are not yet old enough to be deleted, or null.
+     */
+    public Cursor getCleanupCandidatesSummaryCursor(boolean keepQueued, long playedBefore) {
+        String completionDate = TABLE_NAME_FEED_MEDIA + "." + KEY_PLAYBACK_COMPLETION_DATE;
+        String isOldEnough = playedBefore > 0 ? "(" + completionDate + "<" + playedBefore + ")" : "1";
+        final String query = "SELECT IFNULL(SUM(" + isOldEnough + "), 0),"
+                + " IFNULL(SUM(CASE WHEN " + isOldEnough + " THEN " + TABLE_NAME_FEED_MEDIA + "." + KEY_SIZE
+                + " ELSE 0 END), 0),"
+                + " MIN(CASE WHEN " + isOldEnough + " THEN NULL ELSE " + completionDate + " END)"
+                + " FROM " + TABLE_NAME_FEED_ITEMS + JOIN_FEED_ITEM_AND_MEDIA
+                + "WHERE " + cleanupCandidatesFilter(keepQueued, playedBefore > 0);
+        return db.rawQuery(query, null);
+    }
+
+    private static String cleanupCandidatesFilter(boolean keepQueued, boolean onlyPlayed) {
+        String itemId = TABLE_NAME_FEED_ITEMS + "." + KEY_ID;
+        String filter = TABLE_NAME_FEED_MEDIA + "." + KEY_DOWNLOADED + ">0"
+                + " AND " + itemId + " NOT IN (SELECT " + KEY_FEEDITEM + " FROM " + TABLE_NAME_FAVORITES + ")";
+        if (keepQueued) {
+            filter += " AND " + itemId + " NOT IN (SELECT " + KEY_FEEDITEM + " FROM " + TABLE_NAME_QUEUE + ")";
+        }
+        if (onlyPlayed) {
+            filter += " AND " + TABLE_NAME_FEED_ITEMS + "." + KEY_READ + "=" + FeedItem.PLAYED
+                    + " AND " + TABLE_NAME_FEED_MEDIA + "." + KEY_PLAYBACK_COMPLETION_DATE + ">0";
+        }
+        return filter;
+    }
+
+    /**
+     * Returns a single row with the number and the total size of all downloaded media files.
+     */
+    public Cursor getDownloadedSummaryCursor() {
+        final String query = "SELECT COUNT(*), IFNULL(SUM(" + KEY_SIZE + "), 0) FROM " + TABLE_NAME_FEED_MEDIA
+                + " WHERE " + KEY_DOWNLOADED + ">0";
+        return db.rawQuery(query, null);
+    }
+
+    /**
+     * Returns at most limit played items with an ID greater than afterId, ordered by ID.
+     */
+    public Cursor getPlayedItemsCursor(long afterId, int limit) {
         final String query = SELECT_FEED_ITEMS_AND_MEDIA
-                + "WHERE " + TABLE_NAME_FEED_ITEMS + "." + KEY_READ + "=" + FeedItem.PLAYED;
+                + "WHERE " + TABLE_NAME_FEED_ITEMS + "." + KEY_READ + "=" + FeedItem.PLAYED
+                + " AND " + TABLE_NAME_FEED_ITEMS + "." + KEY_ID + ">" + afterId
+                + " ORDER BY " + TABLE_NAME_FEED_ITEMS + "." + KEY_ID + " ASC"
+                + " LIMIT " + limit;
         return db.rawQuery(query, null);
     }
 
@@ -1181,6 +1791,31 @@ public class PodDBAdapter {
         return db.rawQuery(query, null);
     }
 
+    /**
+     * Returns the items with the given GUIDs, including their media.
+     */
+    public final Cursor getFeedItemCursorByGuids(final String[] guids) {
+        return getFeedItemCursorByKeys(TABLE_NAME_FEED_ITEMS + "." + KEY_ITEM_IDENTIFIER, guids);
+    }
+
+    /**
+     * Returns the items whose media has one of the given download URLs.
+     */
+    public final Cursor getFeedItemCursorByEpisodeUrls(final String[] episodeUrls) {
+        return getFeedItemCursorByKeys(TABLE_NAME_FEED_MEDIA + "." + KEY_DOWNLOAD_URL, episodeUrls);
+    }
+
+    private Cursor getFeedItemCursorByKeys(String column, String[] keys) {
+        if (keys.length > IN_OPERATOR_MAXIMUM) {
+            throw new IllegalArgumentException("number of keys must not be larger than " + IN_OPERATOR_MAXIMUM);
+        }
+        final String query = SELECT_FEED_ITEMS_AND_MEDIA
+                + " INNER JOIN " + TABLE_NAME_FEEDS
+                + " ON " + TABLE_NAME_FEED_ITEMS + "." + KEY_FEED + "=" + TABLE_NAME_FEEDS + "." + KEY_ID
+                + " WHERE " + column + " IN (" + TextUtils.join(",", Collections.nCopies(keys.length, "?")) + ")";
+        return db.rawQuery(query, keys);
+    }
+
     public Cursor getImageAuthenticationCursor(final String imageUrl) {
         String downloadUrl = DatabaseUtils.sqlEscapeString(imageUrl);
         final String query = ""
@@ -1256,15 +1891,10 @@ public class PodDBAdapter {
     }
 
     public final int getNumberOfNewItems() {
-        Object[] args = new String[]{
-                TABLE_NAME_FEED_ITEMS + "." + KEY_ID,
-                TABLE_NAME_FEED_ITEMS,
-                TABLE_NAME_FEEDS,
-                TABLE_NAME_FEED_ITEMS + "." + KEY_FEED + "=" + TABLE_NAME_FEEDS + "." + KEY_ID,
-                TABLE_NAME_FEED_ITEMS + "." + KEY_READ + "=" + FeedItem.NEW
-                        + " AND " + TABLE_NAME_FEEDS + "." + KEY_KEEP_UPDATED + " > 0"
-        };
-        final String query = String.format("SELECT COUNT(%s) FROM %s INNER JOIN %s ON %s WHERE %s", args);
+        final String query = "SELECT SUM(" + KEY_NEW_COUNT + ") FROM " + TABLE_NAME_FEED_COUNTERS
+                + " INNER JOIN " + TABLE_NAME_FEEDS
+                + " ON " + TABLE_NAME_FEED_COUNTERS + "." + KEY_FEED + "=" + TABLE_NAME_FEEDS + "." + KEY_ID
+                + " WHERE " + TABLE_NAME_FEEDS + "." + KEY_KEEP_UPDATED + " > 0";
         Cursor c = db.rawQuery(query, null);
         int result = 0;
         if (c.moveToFirst()) {
@@ -1275,32 +1905,32 @@ public class PodDBAdapter {
     }
 
     public final Map<Long, Integer> getFeedCounters(FeedCounter setting, long... feedIds) {
-        String whereRead;
+        String counter;
         switch (setting) {
             case SHOW_NEW:
-                whereRead = KEY_READ + "=" + FeedItem.NEW;
+                counter = KEY_NEW_COUNT;
                 break;
             case SHOW_UNPLAYED:
-                whereRead = "(" + KEY_READ + "=" + FeedItem.NEW
-                        + " OR " + KEY_READ + "=" + FeedItem.UNPLAYED + ")";
+                counter = KEY_UNPLAYED_COUNT;
                 break;
             case SHOW_DOWNLOADED:
-                whereRead = KEY_DOWNLOADED + "=1";
+                counter = KEY_DOWNLOADED_COUNT;
                 break;
             case SHOW_DOWNLOADED_UNPLAYED:
-                whereRead = "(" + KEY_READ + "=" + FeedItem.NEW
-                        + " OR " + KEY_READ + "=" + FeedItem.UNPLAYED + ")"
-                        + " AND " + KEY_DOWNLOADED + "=1";
+                counter = KEY_DOWNLOADED_UNPLAYED_COUNT;
                 break;
             case SHOW_NONE:
                 // deliberate fall-through
             default: // NONE
                 return new HashMap<>();
         }
-        return conditionalFeedCounterRead(whereRead, feedIds);
+        return readFeedCounter(counter, feedIds);
     }
 
-    private Map<Long, Integer> conditionalFeedCounterRead(String whereRead, long... feedIds) {
+    /**
+     * Reads one of the precalculated counters. Feeds with a count of 0 are not included.
+     */
+    private Map<Long, Integer> readFeedCounter(String counter, long... feedIds) {
         String limitFeeds = "";
         if (feedIds.length > 0) {
             // work around TextUtils.join wanting only boxed items
@@ -1312,15 +1942,12 @@ public class PodDBAdapter {
             }
             // there's an extra ',', get rid of it
             builder.deleteCharAt(builder.length() - 1);
-            limitFeeds = KEY_FEED + " IN (" + builder.toString() + ") AND ";
+            limitFeeds = " AND " + KEY_FEED + " IN (" + builder.toString() + ")";
         }
 
-        final String query = "SELECT " + KEY_FEED + ", COUNT(" + TABLE_NAME_FEED_ITEMS + "." + KEY_ID + ") AS count "
-                + " FROM " + TABLE_NAME_FEED_ITEMS
-                + " LEFT JOIN " + TABLE_NAME_FEED_MEDIA + " ON "
-                + TABLE_NAME_FEED_ITEMS + "." + KEY_ID + "=" + TABLE_NAME_FEED_MEDIA + "." + KEY_FEEDITEM
-                + " WHERE " + limitFeeds + " "
-                + whereRead + " GROUP BY " + KEY_FEED;
+        final String query = "SELECT " + KEY_FEED + ", " + counter
+                + " FROM " + TABLE_NAME_FEED_COUNTERS
+                + " WHERE " + counter + " > 0" + limitFeeds;
 
         Cursor c = db.rawQuery(query, null);
         Map<Long, Integer> result = new HashMap<>();
@@ -1336,15 +1963,12 @@ public class PodDBAdapter {
     }
 
     public final Map<Long, Integer> getPlayedEpisodesCounters(long... feedIds) {
-        String whereRead = KEY_READ + "=" + FeedItem.PLAYED;
-        return conditionalFeedCounterRead(whereRead, feedIds);
+        return readFeedCounter(KEY_PLAYED_COUNT, feedIds);
     }
 
     public final Map<Long, Long> getMostRecentItemDates() {
-        final String query = "SELECT " + KEY_FEED + ","
-                + " MAX(" + TABLE_NAME_FEED_ITEMS + "." + KEY_PUBDATE + ") AS most_recent_pubdate"
-                + " FROM " + TABLE_NAME_FEED_ITEMS
-                + " GROUP BY " + KEY_FEED;
+        final String query = "SELECT " + KEY_FEED + ", " + KEY_LATEST_PUBDATE
+                + " FROM " + TABLE_NAME_FEED_COUNTERS;
 
         Cursor c = db.rawQuery(query, null);
         Map<Long, Long> result = new HashMap<>();
@@ -1359,6 +1983,38 @@ public class PodDBAdapter {
         return result;
     }
 
+    /**
+     * Calculates the counters of all feeds from scratch. They are usually updated by triggers
+     * whenever episodes change, so this is only needed if they got out of sync.
+     */
+    public void rebuildFeedCounters() {
+        try {
+            rebuildFeedCounters(db);
+        } catch (SQLException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+        }
+    }
+
+    /**
+     * Calculates the counters of all feeds from scratch in a database that is not opened by the adapter,
+     * for example a backup before it is imported. Does nothing if the database is too old to have counters;
+     * they are then filled when it is upgraded.
+     */
+    public static void rebuildFeedCounters(SQLiteDatabase db) {
+        if (DatabaseUtils.queryNumEntries(db, "sqlite_master", "type='table' AND name=?",
+                new String[]{TABLE_NAME_FEED_COUNTERS}) == 0) {
+            return;
+        }
+        try {
+            db.beginTransactionNonExclusive();
+            db.delete(TABLE_NAME_FEED_COUNTERS, null, null);
+            db.execSQL(FILL_FEED_COUNTERS);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     public final int getNumberOfDownloadedEpisodes() {
         final String query = "SELECT COUNT(DISTINCT " + KEY_ID + ") AS count FROM " + TABLE_NAME_FEED_MEDIA +
                 " WHERE " + KEY_DOWNLOADED + " > 0";
@@ -1390,12 +2046,94 @@ public class PodDBAdapter {
     }
 
     /**
-     * Searches for the given query in various values of all items or the items
-     * of a specified feed.
+     * Converts a user-entered search string to a full-text query that matches all words as prefixes.
+     *
+     * @param column If not null, the words only match in this column.
+     * @return The query, or null if the search string does not contain any words.
+     */
+    @Nullable
+    static String prepareFullTextQuery(String query, @Nullable String column) {
+        StringBuilder builder = new StringBuilder();
+        for (String word : query.split("\\s+")) {
+            // Quoting the word prevents FTS operators like OR, NEAR or "-" from being interpreted
+            String cleaned = word.replace("\"", "").replace("*", "");
+            if (cleaned.isEmpty()) {
+                continue;
+            }
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            if (column != null) {
+                builder.append(column).append(':');
+            }
+            builder.append('"').append(cleaned).append("*\"");
+        }
+        return builder.length() == 0 ? null : builder.toString();
+    }
+
+    /**
+     * Hebrew and Arabic attach articles, prepositions and conjunctions (like ה, ב, ל or ال) to the
+     * following word. The full-text index only matches the beginning of such words, so they are
+     * searched as substrings instead.
+     */
+    static boolean needsSubstringSearch(String query) {
+        for (int i = 0; i < query.length(); i++) {
+            Character.UnicodeBlock block = Character.UnicodeBlock.of(query.charAt(i));
+            if (block == Character.UnicodeBlock.HEBREW || block == Character.UnicodeBlock.ARABIC) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Searches for the given query in the title and description of all items or the items
+     * of a specified feed. Items that match in the title come first, then the newest items.
      *
      * @return A cursor with all search results in SEL_FI_EXTRA selection.
      */
     public Cursor searchItems(long feedID, String searchQuery) {
+        return searchItems(feedID, searchQuery, 0, 300);
+    }
+
+    /**
+     * Searches for the given query in the title and description of all items or the items
+     * of a specified feed. Items that match in the title come first, then the newest items.
+     *
+     * @param offset The number of results to skip.
+     * @param limit The maximum number of results.
+     * @return A cursor with all search results in SEL_FI_EXTRA selection.
+     */
+    public Cursor searchItems(long feedID, String searchQuery, int offset, int limit) {
+        String fullTextQuery = prepareFullTextQuery(searchQuery, null);
+        if (fullTextQuery == null || needsSubstringSearch(searchQuery)) {
+            return searchItemsLike(feedID, searchQuery, offset, limit);
+        }
+        String titleQuery = prepareFullTextQuery(searchQuery, KEY_TITLE);
+
+        String queryFeedId = "";
+        if (feedID != 0) {
+            // search items in specific feed
+            queryFeedId = " AND " + KEY_FEED + " = " + feedID;
+        }
+        final String query = SELECT_FEED_ITEMS_AND_MEDIA_WITH_DESCRIPTION
+                + " WHERE " + TABLE_NAME_FEED_ITEMS + "." + KEY_ID + " IN ("
+                    + "SELECT docid FROM " + TABLE_NAME_FEED_ITEMS_FTS
+                    + " WHERE " + TABLE_NAME_FEED_ITEMS_FTS + " MATCH ?)"
+                + queryFeedId
+                + " ORDER BY " + TABLE_NAME_FEED_ITEMS + "." + KEY_ID + " IN ("
+                    + "SELECT docid FROM " + TABLE_NAME_FEED_ITEMS_FTS
+                    + " WHERE " + TABLE_NAME_FEED_ITEMS_FTS + " MATCH ?) DESC, "
+                + KEY_PUBDATE + " DESC"
+                + " LIMIT " + offset + ", " + limit;
+        return db.rawQuery(query, new String[]{fullTextQuery, titleQuery});
+    }
+
+    /**
+     * Fallback for search strings that do not contain any words for the full-text search
+     * or that need a substring search.
+     */
+    private Cursor searchItemsLike(long feedID, String searchQuery, int offset, int limit) {
         String[] queryWords = prepareSearchQuery(searchQuery);
 
         String queryFeedId;
@@ -1424,17 +2162,40 @@ public class PodDBAdapter {
             }
         }
 
-        sb.append(") ORDER BY " + KEY_PUBDATE + " DESC LIMIT 300");
+        sb.append(") ORDER BY " + KEY_PUBDATE + " DESC LIMIT " + offset + ", " + limit);
 
         return db.rawQuery(sb.toString(), null);
     }
 
     /**
      * Searches for the given query in various values of all feeds.
+     * Feeds that match in the title come first.
      *
      * @return A cursor with all search results in SEL_FI_EXTRA selection.
      */
     public Cursor searchFeeds(String searchQuery) {
+        String fullTextQuery = prepareFullTextQuery(searchQuery, null);
+        if (fullTextQuery == null || needsSubstringSearch(searchQuery)) {
+            return searchFeedsLike(searchQuery);
+        }
+        String titleQuery = prepareFullTextQuery(searchQuery, KEY_TITLE);
+        String customTitleQuery = prepareFullTextQuery(searchQuery, KEY_CUSTOM_TITLE);
+
+        final String matchingIds = "SELECT docid FROM " + TABLE_NAME_FEEDS_FTS
+                + " WHERE " + TABLE_NAME_FEEDS_FTS + " MATCH ?";
+        final String query = "SELECT " + KEYS_FEED + " FROM " + TABLE_NAME_FEEDS
+                + " WHERE " + TABLE_NAME_FEEDS + "." + KEY_ID + " IN (" + matchingIds + ")"
+                + " ORDER BY (" + TABLE_NAME_FEEDS + "." + KEY_ID + " IN (" + matchingIds + ")"
+                    + " OR " + TABLE_NAME_FEEDS + "." + KEY_ID + " IN (" + matchingIds + ")) DESC, "
+                + TABLE_NAME_FEEDS + "." + KEY_TITLE + " ASC LIMIT 300";
+        return db.rawQuery(query, new String[]{fullTextQuery, titleQuery, customTitleQuery});
+    }
+
+    /**
+     * Fallback for search strings that do not contain any words for the full-text search
+     * or that need a substring search.
+     */
+    private Cursor searchFeedsLike(String searchQuery) {
         String[] queryWords = prepareSearchQuery(searchQuery);
 
         String queryStart = "SELECT " + KEYS_FEED + " FROM " + TABLE_NAME_FEEDS + " WHERE ";
@@ -1462,6 +2223,14 @@ public class PodDBAdapter {
         return db.rawQuery(sb.toString(), null);
     }
 
+    /**
+     * Returns the number of rows that were inserted, updated or deleted since the database was opened.
+     */
+    @VisibleForTesting(otherwise = VisibleForTesting.NONE)
+    public long getTotalChanges() {
+        return DatabaseUtils.longForQuery(db, "SELECT total_changes()", null);
+    }
+
     /**
      * Insert raw data to the database.
      * Call method only for unit tests.
@@ -1485,11 +2254,19 @@ public class PodDBAdapter {
             try {
                 FileUtils.copyFile(dbPath, backupFile);
                 Log.d(TAG, "Dumped database to " + backupFile.getPath());
+                // In WAL mode, the latest changes are not yet in the database file
+                for (String suffix : new String[]{"-wal", "-shm"}) {
+                    File journal = new File(dbPath.getPath() + suffix);
+                    if (journal.exists()) {
+                        FileUtils.copyFile(journal, new File(backupFile.getPath() + suffix));
+                    }
+                }
             } catch (IOException e) {
                 Log.d(TAG, Log.getStackTraceString(e));
             }
 
-            new DefaultDatabaseErrorHandler().onCorruption(db); // This deletes the database
+            // This deletes the database, including the write-ahead log
+            new DefaultDatabaseErrorHandler().onCorruption(db);
         }
     }
 
@@ -1517,6 +2294,16 @@ public class PodDBAdapter {
             db.execSQL(CREATE_TABLE_QUEUE);
             db.execSQL(CREATE_TABLE_SIMPLECHAPTERS);
             db.execSQL(CREATE_TABLE_FAVORITES);
+            db.execSQL(CREATE_TABLE_FEED_ITEMS_FTS);
+            db.execSQL(CREATE_TABLE_FEEDS_FTS);
+            for (String trigger : CREATE_TRIGGERS_FEED_ITEMS_FTS) {
+                db.execSQL(trigger);
+            }
+            for (String trigger : CREATE_TRIGGERS_FEEDS_FTS) {
+                db.execSQL(trigger);
+            }
+            db.execSQL(CREATE_TABLE_FEED_COUNTERS);
+            db.execSQL(CREATE_TABLE_SYNC_EPISODE_ACTIONS);
 
             db.execSQL(CREATE_INDEX_FEEDITEMS_FEED);
             db.execSQL(CREATE_INDEX_FEEDITEMS_PUBDATE);
@@ -1524,6 +2311,17 @@ public class PodDBAdapter {
             db.execSQL(CREATE_INDEX_FEEDMEDIA_FEEDITEM);
             db.execSQL(CREATE_INDEX_QUEUE_FEEDITEM);
             db.execSQL(CREATE_INDEX_SIMPLECHAPTERS_FEEDITEM);
+            db.execSQL(CREATE_INDEX_SYNC_EPISODE_ACTIONS_KEY);
+            db.execSQL(CREATE_INDEX_FEEDITEMS_ITEM_IDENTIFIER);
+            db.execSQL(CREATE_INDEX_FEEDMEDIA_DOWNLOAD_URL);
+            db.execSQL(CREATE_INDEX_FEEDMEDIA_DOWNLOADED);
+
+            db.execSQL(CREATE_TRIGGER_FEED_ITEMS_INSERT);
+            db.execSQL(CREATE_TRIGGER_FEED_ITEMS_UPDATE);
+            db.execSQL(CREATE_TRIGGER_FEED_ITEMS_DELETE);
+            db.execSQL(CREATE_TRIGGER_FEED_MEDIA_INSERT);
+            db.execSQL(CREATE_TRIGGER_FEED_MEDIA_UPDATE);
+            db.execSQL(CREATE_TRIGGER_FEED_MEDIA_DELETE);
         }
 
         @Override
@@ -39,6 +39,10 @@ public abstract class FeedCursorMapper {
         int indexSortOrder = cursor.getColumnIndexOrThrow(PodDBAdapter.KEY_SORT_ORDER);
         int indexLastUpdateFailed = cursor.getColumnIndexOrThrow(PodDBAdapter.KEY_LAST_UPDATE_FAILED);
         int indexImageUrl = cursor.getColumnIndexOrThrow(PodDBAdapter.KEY_IMAGE_URL);
+        int indexEtag = cursor.getColumnIndexOrThrow(PodDBAdapter.KEY_ETAG);
+        int indexContentDigest = cursor.getColumnIndexOrThrow(PodDBAdapter.KEY_CONTENT_DIGEST);
+        int indexNotModifiedCount = cursor.getColumnIndexOrThrow(PodDBAdapter.KEY_NOT_MODIFIED_COUNT);
+        int indexUnchangedCount = cursor.getColumnIndexOrThrow(PodDBAdapter.KEY_UNCHANGED_COUNT);
 
         Feed feed = new Feed(
                 cursor.getLong(indexId),
@@ -62,6 +66,9 @@ public abstract class FeedCursorMapper {
                 SortOrder.fromCodeString(cursor.getString(indexSortOrder)),
                 cursor.getInt(indexLastUpdateFailed) > 0
         );
+        feed.setEtag(cursor.getString(indexEtag));
+        feed.setContentDigest(cursor.getString(indexContentDigest));
+        feed.setRefreshCounts(cursor.getInt(indexNotModifiedCount), cursor.getInt(indexUnchangedCount));
 
         FeedPreferences preferences = FeedPreferencesCursorMapper.convert(cursor);
         feed.setPreferences(preferences);
@@ -27,6 +27,7 @@ public abstract class FeedMediaCursorMapper {
         int indexDownloaded = cursor.getColumnIndexOrThrow(PodDBAdapter.KEY_DOWNLOADED);
         int indexPlayedDuration = cursor.getColumnIndexOrThrow(PodDBAdapter.KEY_PLAYED_DURATION);
         int indexLastPlayedTime = cursor.getColumnIndexOrThrow(PodDBAdapter.KEY_LAST_PLAYED_TIME);
+        int indexFileLastModified = cursor.getColumnIndexOrThrow(PodDBAdapter.KEY_FILE_LAST_MODIFIED);
 
         long mediaId = cursor.getLong(indexId);
         Date playbackCompletionDate = null;
@@ -48,7 +49,7 @@ public abstract class FeedMediaCursorMapper {
                 break;
         }
 
-        return new FeedMedia(
+        FeedMedia media = new FeedMedia(
                 mediaId,
                 null,
                 cursor.getInt(indexDuration),
@@ -63,5 +64,7 @@ public abstract class FeedMediaCursorMapper {
                 hasEmbeddedPicture,
                 cursor.getLong(indexLastPlayedTime)
         );
+        media.setFileLastModified(cursor.getLong(indexFileLastModified));
+        return media;
     }
 }
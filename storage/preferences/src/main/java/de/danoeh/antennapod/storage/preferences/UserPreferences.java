@@ -108,6 +108,7 @@ public class UserPreferences {
     // Other
     private static final String PREF_DATA_FOLDER = "prefDataFolder";
     public static final String PREF_DELETE_REMOVES_FROM_QUEUE = "prefDeleteRemovesFromQueue";
+    private static final String PREF_DATABASE_WRITE_AHEAD_LOGGING = "prefDatabaseWriteAheadLogging";
     public static final String PREF_USAGE_COUNTING_DATE = "prefUsageCounting";
 
     // Mediaplayer
@@ -406,6 +407,14 @@ public class UserPreferences {
         return prefs.getBoolean(PREF_DELETE_REMOVES_FROM_QUEUE, false);
     }
 
+    /**
+     * Returns true if the database should use write-ahead logging.
+     * Changes only take effect after the app is restarted.
+     */
+    public static boolean isDatabaseWriteAheadLoggingEnabled() {
+        return prefs.getBoolean(PREF_DATABASE_WRITE_AHEAD_LOGGING, false);
+    }
+
     public static float getPlaybackSpeed(MediaType mediaType) {
         if (mediaType == MediaType.VIDEO) {
             return getVideoPlaybackSpeed();